@@ -33,6 +33,7 @@ import mchorse.bbs_mod.morphing.Morph;
 import mchorse.bbs_mod.network.ClientNetwork;
 import mchorse.bbs_mod.network.ServerNetwork;
 import mchorse.bbs_mod.particles.ParticleManager;
+import mchorse.bbs_mod.particles.ParticleScheduler;
 import mchorse.bbs_mod.resources.AssetProvider;
 import mchorse.bbs_mod.resources.Link;
 import mchorse.bbs_mod.resources.packs.URLError;
@@ -102,6 +103,7 @@ public class BBSModClient implements ClientModInitializer
     private static EntitySelectors selectors;
 
     private static ParticleManager particles;
+    private static ParticleScheduler particleScheduler = new ParticleScheduler();
 
     private static KeyBinding keyDashboard;
     private static KeyBinding keyItemEditor;
@@ -175,6 +177,11 @@ public class BBSModClient implements ClientModInitializer
         return particles;
     }
 
+    public static ParticleScheduler getParticleScheduler()
+    {
+        return particleScheduler;
+    }
+
     public static CameraController getCameraController()
     {
         return cameraController;
@@ -468,6 +475,7 @@ public class BBSModClient implements ClientModInitializer
             ClientNetwork.resetHandshake();
             films.reset();
             cameraController.reset();
+            particleScheduler.reset();
         });
 
         ClientTickEvents.START_CLIENT_TICK.register((client) ->
@@ -504,8 +512,11 @@ public class BBSModClient implements ClientModInitializer
                 modelBlockItemRenderer.update();
                 gunItemRenderer.update();
                 textures.update();
+                models.processLoaded();
             }
 
+            ClientNetwork.tick();
+
             while (keyDashboard.wasPressed()) UIScreen.open(getDashboard());
             while (keyItemEditor.wasPressed()) this.keyOpenModelBlockEditor(mc);
             while (keyPlayFilm.wasPressed()) this.keyPlayFilm();
@@ -547,6 +558,8 @@ public class BBSModClient implements ClientModInitializer
                     gunZoom = new GunZoom(properties.fovTarget, properties.fovInterp, properties.fovDuration);
                 }
             }
+
+            particleScheduler.flush();
         });
 
         HudRenderCallback.EVENT.register((drawContext, tickDelta) ->
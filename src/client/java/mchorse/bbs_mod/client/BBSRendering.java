@@ -9,6 +9,7 @@ import mchorse.bbs_mod.camera.clips.misc.CurveClip;
 import mchorse.bbs_mod.camera.clips.misc.SubtitleClip;
 import mchorse.bbs_mod.camera.controller.CameraWorkCameraController;
 import mchorse.bbs_mod.camera.controller.PlayCameraController;
+import mchorse.bbs_mod.cubic.render.ModelRenderQueue;
 import mchorse.bbs_mod.events.ModelBlockEntityUpdateCallback;
 import mchorse.bbs_mod.forms.renderers.utils.RecolorVertexConsumer;
 import mchorse.bbs_mod.graphics.texture.Texture;
@@ -73,6 +74,13 @@ public class BBSRendering
     private static Framebuffer clientFramebuffer;
     private static Texture texture;
 
+    private static ModelRenderQueue modelQueue = new ModelRenderQueue();
+
+    public static ModelRenderQueue getModelQueue()
+    {
+        return modelQueue;
+    }
+
     public static int getMotionBlur()
     {
         return getMotionBlur(BBSSettings.videoSettings.frameRate.get(), getMotionBlurFactor());
@@ -305,7 +313,10 @@ public class BBSRendering
     public static void onWorldRenderBegin()
     {
         MinecraftClient mc = MinecraftClient.getInstance();
+        BBSModClient.getTextures().startRenderFrame();
+        BBSModClient.getModels().processLoaded();
         BBSModClient.getFilms().startRenderFrame(mc.getTickDelta());
+        modelQueue.begin();
 
         UIBaseMenu menu = UIScreen.getCurrentMenu();
 
@@ -324,10 +335,22 @@ public class BBSRendering
         toggleFramebuffer(true);
     }
 
+    /**
+     * Draw queued model instances after block entities, so model blocks
+     * are drawn before translucent terrain, and stop queueing, because
+     * hand and UI rendering use different projection
+     */
+    public static void onRenderBlockEntitiesEnd()
+    {
+        modelQueue.end();
+    }
+
     public static void onWorldRenderEnd()
     {
         MinecraftClient mc = MinecraftClient.getInstance();
 
+        modelQueue.end();
+
         if (BBSModClient.getCameraController().getCurrent() instanceof PlayCameraController controller)
         {
             DrawContext drawContext = new DrawContext(mc, mc.getBufferBuilders().getEntityVertexConsumers());
@@ -418,6 +441,7 @@ public class BBSRendering
         }
 
         BBSModClient.getFilms().render(worldRenderContext);
+        modelQueue.flush();
     }
 
     public static boolean isOptifinePresent()
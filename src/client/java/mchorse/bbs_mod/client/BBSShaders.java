@@ -15,6 +15,8 @@ import java.util.Optional;
 public class BBSShaders
 {
     private static ShaderProgram model;
+    private static ShaderProgram modelPalette;
+    private static ShaderProgram modelInstanced;
     private static ShaderProgram multiLink;
     private static ShaderProgram subtitles;
 
@@ -32,6 +34,8 @@ public class BBSShaders
     public static void setup()
     {
         if (model != null) model.close();
+        if (modelPalette != null) modelPalette.close();
+        if (modelInstanced != null) modelInstanced.close();
         if (subtitles != null) subtitles.close();
         if (subtitles != null) subtitles.close();
 
@@ -46,6 +50,8 @@ public class BBSShaders
             ResourceFactory factory = new ProxyResourceFactory(MinecraftClient.getInstance().getResourceManager());
 
             model = new ShaderProgram(factory, "model", VertexFormats.POSITION_COLOR_TEXTURE_OVERLAY_LIGHT_NORMAL);
+            modelPalette = new ShaderProgram(factory, "model_palette", VertexFormats.POSITION_COLOR_TEXTURE_OVERLAY_LIGHT_NORMAL);
+            modelInstanced = new ShaderProgram(factory, "model_instanced", VertexFormats.POSITION_COLOR_TEXTURE_OVERLAY_LIGHT_NORMAL);
             multiLink = new ShaderProgram(factory, "multilink", VertexFormats.POSITION_TEXTURE_COLOR);
             subtitles = new ShaderProgram(factory, "subtitles", VertexFormats.POSITION_TEXTURE_COLOR);
 
@@ -66,6 +72,16 @@ public class BBSShaders
         return model;
     }
 
+    public static ShaderProgram getModelPalette()
+    {
+        return modelPalette;
+    }
+
+    public static ShaderProgram getModelInstanced()
+    {
+        return modelInstanced;
+    }
+
     public static ShaderProgram getMultilinkProgram()
     {
         return multiLink;
@@ -1,21 +1,32 @@
 package mchorse.bbs_mod.cubic;
 
 import com.mojang.blaze3d.systems.RenderSystem;
+import mchorse.bbs_mod.BBSModClient;
+import mchorse.bbs_mod.BBSSettings;
 import mchorse.bbs_mod.bobj.BOBJBone;
+import mchorse.bbs_mod.client.BBSRendering;
+import mchorse.bbs_mod.client.BBSShaders;
 import mchorse.bbs_mod.cubic.data.animation.Animations;
 import mchorse.bbs_mod.cubic.data.model.Model;
 import mchorse.bbs_mod.cubic.data.model.ModelGroup;
 import mchorse.bbs_mod.cubic.model.ArmorSlot;
 import mchorse.bbs_mod.cubic.model.ArmorType;
+import mchorse.bbs_mod.cubic.model.ModelLOD;
 import mchorse.bbs_mod.cubic.model.View;
 import mchorse.bbs_mod.cubic.model.bobj.BOBJModel;
 import mchorse.bbs_mod.cubic.render.CubicCubeRenderer;
 import mchorse.bbs_mod.cubic.render.CubicMatrixRenderer;
+import mchorse.bbs_mod.cubic.render.CubicPaletteRenderer;
+import mchorse.bbs_mod.cubic.render.ModelRenderQueue;
 import mchorse.bbs_mod.cubic.render.CubicRenderer;
 import mchorse.bbs_mod.cubic.render.CubicVAOBuilderRenderer;
 import mchorse.bbs_mod.cubic.render.CubicVAORenderer;
 import mchorse.bbs_mod.cubic.render.vao.BOBJModelVAO;
+import mchorse.bbs_mod.cubic.render.vao.ModelBatchBuilder;
+import mchorse.bbs_mod.cubic.render.vao.ModelPalette;
+import mchorse.bbs_mod.cubic.render.vao.ModelPaletteVAO;
 import mchorse.bbs_mod.cubic.render.vao.ModelVAO;
+import mchorse.bbs_mod.cubic.render.vao.ModelVAORenderer;
 import mchorse.bbs_mod.data.DataStorageUtils;
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.ListType;
@@ -29,7 +40,6 @@ import mchorse.bbs_mod.utils.MathUtils;
 import mchorse.bbs_mod.utils.colors.Color;
 import mchorse.bbs_mod.utils.pose.Pose;
 import mchorse.bbs_mod.utils.resources.LinkUtils;
-import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gl.ShaderProgram;
 import net.minecraft.client.render.BufferBuilder;
 import net.minecraft.client.render.BufferRenderer;
@@ -42,6 +52,7 @@ import org.joml.Matrix4f;
 import org.joml.Vector3f;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -75,8 +86,16 @@ public class ModelInstance implements IModelInstance
     public ArmorSlot fpMain;
     public ArmorSlot fpOffhand;
 
+    /* Simplified meshes, sorted by distance */
+    public List<ModelLOD> lods = new ArrayList<>();
+
     private Map<ModelGroup, ModelVAO> vaos = new HashMap<>();
 
+    /* Batched (bone palette) rendering, per-group VAOs are still used
+     * with Iris shaders and for picking */
+    private ModelPaletteVAO paletteVao;
+    private ModelPalette palette;
+
     public ModelInstance(String id, IModel model, Animations animations, Link texture)
     {
         this.id = id;
@@ -110,6 +129,11 @@ public class ModelInstance implements IModelInstance
         return this.vaos;
     }
 
+    public ModelPaletteVAO getPaletteVao()
+    {
+        return this.paletteVao;
+    }
+
     public String getAnchor()
     {
         String anchor = this.model.getAnchor();
@@ -220,13 +244,68 @@ public class ModelInstance implements IModelInstance
 
             this.view.fromData(config.getMap("look_at"));
         }
+
+        /* Optional simplified meshes for far away instances */
+        if (config.has("lod", BaseType.TYPE_LIST))
+        {
+            this.lods.clear();
+
+            for (BaseType type : config.getList("lod"))
+            {
+                if (!type.isMap())
+                {
+                    continue;
+                }
+
+                ModelLOD lod = new ModelLOD();
+
+                lod.fromData(type.asMap());
+
+                if (!lod.model.isEmpty() && !lod.model.equals(this.id))
+                {
+                    this.lods.add(lod);
+                }
+            }
+
+            this.lods.sort(Comparator.comparingDouble((lod) -> lod.distance));
+        }
+    }
+
+    /**
+     * Get the model that should be rendered at given distance: the farthest
+     * simplified mesh whose distance was reached, or this model if there
+     * are none (or they're still being loaded)
+     */
+    public ModelInstance getLOD(float distance)
+    {
+        ModelInstance instance = this;
+
+        for (ModelLOD lod : this.lods)
+        {
+            if (distance < lod.distance)
+            {
+                break;
+            }
+
+            ModelInstance model = BBSModClient.getModels().getModel(lod.model);
+
+            if (model != null)
+            {
+                instance = model;
+            }
+        }
+
+        return instance;
     }
 
+    /**
+     * Set up model's VAOs. It must be called on the render thread.
+     */
     public void setup()
     {
         if (this.model instanceof BOBJModel model)
         {
-            MinecraftClient.getInstance().execute(model::setup);
+            model.setup();
         }
 
         /* VAOs should be only generated if there are no shape keys */
@@ -237,10 +316,15 @@ public class ModelInstance implements IModelInstance
 
         if (this.model instanceof Model model && !this.onCpu)
         {
-            MinecraftClient.getInstance().execute(() ->
+            ModelBatchBuilder batch = BBSSettings.modelsBatched.get() ? new ModelBatchBuilder() : null;
+
+            CubicRenderer.processRenderModel(new CubicVAOBuilderRenderer(this.vaos, batch), null, new MatrixStack(), model);
+
+            if (batch != null && !batch.isEmpty())
             {
-                CubicRenderer.processRenderModel(new CubicVAOBuilderRenderer(this.vaos), null, new MatrixStack(), model);
-            });
+                this.paletteVao = new ModelPaletteVAO(batch.build());
+                this.palette = new ModelPalette(model.getAllGroupKeys().size());
+            }
         }
     }
 
@@ -257,6 +341,14 @@ public class ModelInstance implements IModelInstance
         }
 
         this.vaos.clear();
+
+        if (this.paletteVao != null)
+        {
+            this.paletteVao.delete();
+
+            this.paletteVao = null;
+            this.palette = null;
+        }
     }
 
     /* Rendering */
@@ -328,6 +420,16 @@ public class ModelInstance implements IModelInstance
     {
         if (this.model instanceof Model model)
         {
+            if (this.isBatchRendered(program, stencilMap))
+            {
+                if (!this.queueBatched(model, stack, color, light, overlay))
+                {
+                    this.renderBatched(model, stack, color, light, overlay);
+                }
+
+                return;
+            }
+
             boolean isVao = this.isVAORendered();
             CubicCubeRenderer renderProcessor = isVao
                 ? new CubicVAORenderer(program.get(), this, light, overlay, stencilMap, keys)
@@ -367,4 +469,52 @@ public class ModelInstance implements IModelInstance
             }
         }
     }
+
+    /**
+     * Batched rendering is only possible with BBS' model shader, because
+     * neither vanilla or Iris' shaders, nor the picking shader know about
+     * the bone palette
+     */
+    private boolean isBatchRendered(Supplier<ShaderProgram> program, StencilMap stencilMap)
+    {
+        return this.paletteVao != null
+            && stencilMap == null
+            && BBSSettings.modelsBatched.get()
+            && BBSShaders.getModelPalette() != null
+            && program.get() == BBSShaders.getModel();
+    }
+
+    /**
+     * Queue the model for instanced rendering. Its palette is filled
+     * without tint and light, because they're applied per instance.
+     */
+    private boolean queueBatched(Model model, MatrixStack stack, Color color, int light, int overlay)
+    {
+        ModelRenderQueue queue = BBSRendering.getModelQueue();
+
+        if (!queue.isActive())
+        {
+            return false;
+        }
+
+        this.fillPalette(model, 1F, 1F, 1F, 1F, 0, overlay);
+
+        return queue.add(this, this.palette, stack, color, light, overlay);
+    }
+
+    private void renderBatched(Model model, MatrixStack stack, Color color, int light, int overlay)
+    {
+        this.fillPalette(model, color.r, color.g, color.b, color.a, light, overlay);
+
+        ModelVAORenderer.render(BBSShaders.getModelPalette(), this.paletteVao, this.palette, stack, overlay);
+    }
+
+    private void fillPalette(Model model, float r, float g, float b, float a, int light, int overlay)
+    {
+        CubicPaletteRenderer renderer = new CubicPaletteRenderer(this.palette, light, overlay);
+
+        renderer.setColor(r, g, b, a);
+        this.palette.hideAll();
+        CubicRenderer.processRenderModel(renderer, null, new MatrixStack(), model);
+    }
 }
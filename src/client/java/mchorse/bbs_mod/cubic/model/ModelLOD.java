@@ -0,0 +1,30 @@
+package mchorse.bbs_mod.cubic.model;
+
+import mchorse.bbs_mod.data.IMapSerializable;
+import mchorse.bbs_mod.data.types.MapType;
+
+/**
+ * Simplified mesh of a model, which is rendered instead of the full model
+ * beyond given distance (in blocks). The simplified model is referenced by
+ * its ID, and it should have the same groups (or bones) as the full model,
+ * because it's posed with full model's pose.
+ */
+public class ModelLOD implements IMapSerializable
+{
+    public String model = "";
+    public float distance = 32F;
+
+    @Override
+    public void toData(MapType data)
+    {
+        data.putString("model", this.model);
+        data.putFloat("distance", this.distance);
+    }
+
+    @Override
+    public void fromData(MapType data)
+    {
+        this.model = data.getString("model", this.model);
+        this.distance = data.getFloat("distance", this.distance);
+    }
+}
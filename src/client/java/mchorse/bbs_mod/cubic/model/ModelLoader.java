@@ -1,47 +1,191 @@
 package mchorse.bbs_mod.cubic.model;
 
-import java.util.LinkedList;
+import mchorse.bbs_mod.BBSSettings;
+import mchorse.bbs_mod.cubic.ModelInstance;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Model loader
+ *
+ * Loads models on a few worker threads. Requests are de-duplicated by
+ * model's key, and the worker always picks the request with the highest
+ * priority (models of forms that are being rendered come before preloaded
+ * ones). Loaded models are queued, and they're set up (which creates
+ * their VAOs) on the render thread in {@link ModelManager#processLoaded()}.
+ *
+ * Requests are immutable for the workers except for their priority, which
+ * is guarded by the loader's lock, while loaded models are handed over to
+ * the render thread through a concurrent queue.
+ */
 public class ModelLoader implements Runnable
 {
+    public static final int PRIORITY_PRELOAD = 0;
+    public static final int PRIORITY_VISIBLE = 1;
+
     private ModelManager manager;
-    private Thread thread;
-    private Queue<String> queue = new LinkedList<>();
+    private final Map<String, Request> queue = new LinkedHashMap<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final Queue<Request> loaded = new ConcurrentLinkedQueue<>();
 
     public ModelLoader(ModelManager manager)
     {
         this.manager = manager;
     }
 
-    public void add(String key)
+    /**
+     * Queue a model to be loaded. If the model is already queued, its
+     * request is returned instead (with its priority raised to given
+     * priority).
+     */
+    public synchronized Request add(String key, int priority)
+    {
+        Request request = this.queue.get(key);
+
+        if (request != null)
+        {
+            request.priority = Math.max(request.priority, priority);
+
+            return request;
+        }
+
+        request = new Request(key, priority);
+
+        this.queue.put(key, request);
+
+        if (this.threads.size() < this.getMaxThreads() && this.threads.size() < this.queue.size())
+        {
+            Thread thread = new Thread(this, "BBS model loader " + this.threads.size());
+
+            thread.setDaemon(true);
+            this.threads.add(thread);
+            thread.start();
+        }
+
+        return request;
+    }
+
+    /**
+     * Raise priority of given request, if it's still in the queue
+     */
+    public synchronized void prioritize(Request request, int priority)
+    {
+        request.priority = Math.max(request.priority, priority);
+    }
+
+    /**
+     * Remove given request from the queue, if no worker took it yet
+     */
+    public synchronized void cancel(Request request)
+    {
+        this.queue.remove(request.key, request);
+    }
+
+    /**
+     * Drop all queued and loaded models
+     */
+    public synchronized void reset()
+    {
+        this.queue.clear();
+
+        Request request;
+
+        while ((request = this.loaded.poll()) != null)
+        {
+            if (request.model != null)
+            {
+                request.model.delete();
+            }
+        }
+    }
+
+    /**
+     * Poll a model that was loaded by one of the workers (it should be
+     * called on the render thread)
+     */
+    public Request poll()
+    {
+        return this.loaded.poll();
+    }
+
+    private int getMaxThreads()
     {
-        this.queue.offer(key);
+        int threads = BBSSettings.modelsThreads.get();
 
-        if (this.thread == null)
+        if (threads <= 0)
         {
-            this.thread = new Thread(this, "BBS model loader");
-            this.thread.start();
+            threads = Math.min(4, Runtime.getRuntime().availableProcessors() - 1);
         }
+
+        return Math.max(threads, 1);
+    }
+
+    private synchronized Request take()
+    {
+        Request best = null;
+
+        for (Request request : this.queue.values())
+        {
+            if (best == null || request.priority > best.priority)
+            {
+                best = request;
+            }
+        }
+
+        if (best == null)
+        {
+            /* No more work, so the worker stops */
+            this.threads.remove(Thread.currentThread());
+        }
+        else
+        {
+            this.queue.remove(best.key);
+        }
+
+        return best;
     }
 
     @Override
     public void run()
     {
-        while (!this.queue.isEmpty())
+        Request request;
+
+        while ((request = this.take()) != null)
         {
-            String model = this.queue.poll();
+            long start = System.nanoTime();
 
             try
             {
-                this.manager.loadModel(model);
+                request.model = this.manager.loadModel(request.key);
             }
             catch (Exception e)
             {
                 e.printStackTrace();
             }
+
+            request.time = System.nanoTime() - start;
+
+            this.loaded.add(request);
         }
+    }
+
+    public static class Request
+    {
+        public final String key;
+        public int priority;
 
-        this.thread = null;
+        public ModelInstance model;
+        public long time;
+
+        public Request(String key, int priority)
+        {
+            this.key = key;
+            this.priority = priority;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package mchorse.bbs_mod.cubic.model;
 
 import mchorse.bbs_mod.BBSMod;
+import mchorse.bbs_mod.BBSSettings;
 import mchorse.bbs_mod.cubic.ModelInstance;
 import mchorse.bbs_mod.cubic.MolangHelper;
 import mchorse.bbs_mod.cubic.model.loaders.BOBJModelLoader;
@@ -19,6 +20,7 @@ import mchorse.bbs_mod.utils.pose.PoseManager;
 import mchorse.bbs_mod.utils.pose.ShapeKeysManager;
 import mchorse.bbs_mod.utils.watchdog.IWatchDogListener;
 import mchorse.bbs_mod.utils.watchdog.WatchDogEvent;
+import net.minecraft.client.MinecraftClient;
 
 import java.io.InputStream;
 import java.nio.file.Path;
@@ -40,6 +42,7 @@ public class ModelManager implements IWatchDogListener
     public final MolangParser parser;
 
     private ModelLoader loader = new ModelLoader(this);
+    private final Map<String, ModelLoader.Request> loading = new HashMap<>();
 
     public ModelManager(AssetProvider provider)
     {
@@ -91,19 +94,105 @@ public class ModelManager implements IWatchDogListener
         return new ArrayList<>(keys);
     }
 
+    /**
+     * Get a loaded model. If the model isn't loaded yet, it gets queued to
+     * be loaded (with a high priority, as it's assumed that the model is
+     * needed to render something), and null is returned until it's ready.
+     *
+     * Models are stored and published only on the render thread, so this
+     * method shouldn't be called from other threads.
+     */
     public ModelInstance getModel(String id)
     {
         if (this.models.containsKey(id))
         {
+            ModelLoader.Request request = this.loading.get(id);
+
+            if (request != null)
+            {
+                this.loader.prioritize(request, ModelLoader.PRIORITY_VISIBLE);
+            }
+
             return this.models.get(id);
         }
 
         this.models.put(id, null);
-        this.loader.add(id);
+        this.loading.put(id, this.loader.add(id, ModelLoader.PRIORITY_VISIBLE));
 
         return null;
     }
 
+    /**
+     * Queue a model to be loaded in the background (after models that are
+     * being rendered), unless it's already loaded or being loaded
+     */
+    public void preloadModel(String id)
+    {
+        if (this.models.containsKey(id))
+        {
+            return;
+        }
+
+        this.models.put(id, null);
+        this.loading.put(id, this.loader.add(id, ModelLoader.PRIORITY_PRELOAD));
+    }
+
+    /**
+     * Set up models that were loaded by loader's workers, and publish them.
+     * Setting up a model creates its VAOs, so it must be called on the
+     * render thread, and it stops once the time budget is exceeded, so
+     * remaining models get set up next frame.
+     */
+    public void processLoaded()
+    {
+        long budget = BBSSettings.modelsUploadBudget.get() * 1_000_000L;
+        long start = System.nanoTime();
+        ModelLoader.Request request;
+
+        while ((request = this.loader.poll()) != null)
+        {
+            /* The model was reloaded while it was being loaded */
+            if (this.loading.get(request.key) != request)
+            {
+                if (request.model != null)
+                {
+                    request.model.delete();
+                }
+
+                continue;
+            }
+
+            long setupStart = System.nanoTime();
+
+            this.loading.remove(request.key);
+
+            if (request.model != null)
+            {
+                request.model.setup();
+            }
+
+            this.models.put(request.key, request.model);
+
+            if (request.model != null)
+            {
+                System.out.println(String.format("Model \"%s\" was loaded in %.1f ms (set up in %.1f ms)!",
+                    request.key,
+                    request.time / 1_000_000D,
+                    (System.nanoTime() - setupStart) / 1_000_000D
+                ));
+            }
+
+            if (System.nanoTime() - start >= budget)
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Load a model by given key. It doesn't set up, nor registers the
+     * model, so it can be called on any thread (see {@link ModelLoader}).
+     */
     public ModelInstance loadModel(String id)
     {
         ModelInstance model = null;
@@ -125,14 +214,6 @@ public class ModelManager implements IWatchDogListener
         {
             System.err.println("Model \"" + id + "\" wasn't loaded properly, or was loaded with no top level groups!");
         }
-        else
-        {
-            System.out.println("Model \"" + id + "\" was loaded!");
-
-            model.setup();
-        }
-
-        this.models.put(id, model);
 
         return model;
     }
@@ -162,6 +243,8 @@ public class ModelManager implements IWatchDogListener
         }
 
         this.models.clear();
+        this.loading.clear();
+        this.loader.reset();
         PoseManager.INSTANCE.clear();
         ShapeKeysManager.INSTANCE.clear();
         this.setupLoaders();
@@ -205,12 +288,23 @@ public class ModelManager implements IWatchDogListener
         if (this.isRelodable(link))
         {
             String key = StringUtils.parentPath(link.path.substring(MODELS_PREFIX.length()));
-            ModelInstance model = this.models.remove(key);
 
-            if (model != null)
+            /* Models are stored on the render thread */
+            MinecraftClient.getInstance().execute(() ->
             {
-                model.delete();
-            }
+                ModelInstance model = this.models.remove(key);
+                ModelLoader.Request request = this.loading.remove(key);
+
+                if (request != null)
+                {
+                    this.loader.cancel(request);
+                }
+
+                if (model != null)
+                {
+                    model.delete();
+                }
+            });
         }
     }
 }
\ No newline at end of file
@@ -73,17 +73,11 @@ public class BOBJModelLoader implements IModelLoader
 
                 if (id.startsWith("emoticons/"))
                 {
-                    if (this.defaultAnimations == null)
-                    {
-                        this.loadDefaultAnimations(models.provider, models.parser);
-                    }
+                    Animations defaultAnimations = this.getDefaultAnimations(models.provider, models.parser);
 
-                    if (this.defaultAnimations != null)
+                    for (Animation value : defaultAnimations.animations.values())
                     {
-                        for (Animation value : this.defaultAnimations.animations.values())
-                        {
-                            instance.animations.add(value);
-                        }
+                        instance.animations.add(value);
                     }
                 }
 
@@ -102,6 +96,20 @@ public class BOBJModelLoader implements IModelLoader
         return null;
     }
 
+    /**
+     * Get default emoticon animations, loading them if needed (models are
+     * loaded on several threads, so default animations are loaded once)
+     */
+    private synchronized Animations getDefaultAnimations(AssetProvider provider, MolangParser parser)
+    {
+        if (this.defaultAnimations == null)
+        {
+            this.loadDefaultAnimations(provider, parser);
+        }
+
+        return this.defaultAnimations;
+    }
+
     public void loadDefaultAnimations(AssetProvider provider, MolangParser parser)
     {
         this.defaultAnimations = new Animations(parser);
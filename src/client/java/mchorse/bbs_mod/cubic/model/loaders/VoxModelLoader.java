@@ -1,5 +1,6 @@
 package mchorse.bbs_mod.cubic.model.loaders;
 
+import mchorse.bbs_mod.BBSSettings;
 import mchorse.bbs_mod.cubic.ModelInstance;
 import mchorse.bbs_mod.cubic.data.animation.Animations;
 import mchorse.bbs_mod.cubic.data.model.Model;
@@ -43,6 +44,8 @@ public class VoxModelLoader implements IModelLoader
                 ModelGroup group = new ModelGroup(node.name);
                 VoxBuilder builder = new VoxBuilder(node.translation, node.rotation);
 
+                builder.greedy = BBSSettings.modelsGreedyVox.get();
+
                 group.initial.translate.set(node.translation.x, node.translation.z, node.translation.y);
                 group.meshes.add(builder.build(node.chunk));
                 newModel.topGroups.add(group);
@@ -0,0 +1,51 @@
+package mchorse.bbs_mod.cubic.render;
+
+import mchorse.bbs_mod.cubic.data.model.Model;
+import mchorse.bbs_mod.cubic.data.model.ModelGroup;
+import mchorse.bbs_mod.cubic.render.vao.ModelPalette;
+import mchorse.bbs_mod.utils.MathUtils;
+import mchorse.bbs_mod.utils.interps.Lerps;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.LightmapTextureManager;
+import net.minecraft.client.util.math.MatrixStack;
+
+/**
+ * Cubic palette renderer
+ *
+ * Instead of drawing every group, it only fills the bone palette of a
+ * batched model with groups' matrices, colors and lights, so the model
+ * can be drawn afterwards with a few draw calls. It should be processed
+ * with an identity matrix stack, so matrices are relative to model's root.
+ */
+public class CubicPaletteRenderer extends CubicCubeRenderer
+{
+    private ModelPalette palette;
+
+    public CubicPaletteRenderer(ModelPalette palette, int light, int overlay)
+    {
+        super(light, overlay, null, null);
+
+        this.palette = palette;
+    }
+
+    @Override
+    public boolean renderGroup(BufferBuilder builder, MatrixStack stack, ModelGroup group, Model model)
+    {
+        int light = this.light;
+        int u = (int) Lerps.lerp(light & '\uffff', LightmapTextureManager.MAX_BLOCK_LIGHT_COORDINATE, MathUtils.clamp(group.lighting, 0F, 1F));
+        int v = light >> 16 & '\uffff';
+
+        this.palette.set(
+            group.index,
+            stack.peek().getPositionMatrix(),
+            this.r * group.color.r,
+            this.g * group.color.g,
+            this.b * group.color.b,
+            this.a * group.color.a,
+            u | v << 16,
+            MathUtils.clamp(group.lighting, 0F, 1F)
+        );
+
+        return false;
+    }
+}
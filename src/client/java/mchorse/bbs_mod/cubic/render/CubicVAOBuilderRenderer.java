@@ -1,6 +1,7 @@
 package mchorse.bbs_mod.cubic.render;
 
 import mchorse.bbs_mod.client.BBSRendering;
+import mchorse.bbs_mod.cubic.render.vao.ModelBatchBuilder;
 import mchorse.bbs_mod.cubic.render.vao.ModelVAO;
 import mchorse.bbs_mod.cubic.render.vao.ModelVAOData;
 import mchorse.bbs_mod.cubic.data.model.Model;
@@ -36,6 +37,7 @@ public class CubicVAOBuilderRenderer implements ICubicRenderer
     private final static Vector2f u3 = new Vector2f();
 
     private Map<ModelGroup, ModelVAO> model;
+    private ModelBatchBuilder batch;
 
     /* Temporary variables to avoid allocating and GC vectors */
     private ModelVertex modelVertex = new ModelVertex();
@@ -43,8 +45,18 @@ public class CubicVAOBuilderRenderer implements ICubicRenderer
     private Vector4f vertex = new Vector4f();
 
     public CubicVAOBuilderRenderer(Map<ModelGroup, ModelVAO> model)
+    {
+        this(model, null);
+    }
+
+    /**
+     * @param batch if it's not null, groups' geometry is also packed into
+     *              it for batched (bone palette) rendering
+     */
+    public CubicVAOBuilderRenderer(Map<ModelGroup, ModelVAO> model, ModelBatchBuilder batch)
     {
         this.model = model;
+        this.batch = batch;
     }
 
     @Override
@@ -75,7 +87,14 @@ public class CubicVAOBuilderRenderer implements ICubicRenderer
             float[] u = CollectionUtils.toArray(uvs);
             float[] t = BBSRendering.calculateTangents(v, n, u);
 
-            this.model.put(group, new ModelVAO(new ModelVAOData(v, n, t, u)));
+            ModelVAOData data = new ModelVAOData(v, n, t, u);
+
+            this.model.put(group, new ModelVAO(data));
+
+            if (this.batch != null)
+            {
+                this.batch.add(group.index, data);
+            }
         }
 
         return false;
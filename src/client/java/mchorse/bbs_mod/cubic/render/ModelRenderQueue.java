@@ -0,0 +1,214 @@
+package mchorse.bbs_mod.cubic.render;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import mchorse.bbs_mod.BBSSettings;
+import mchorse.bbs_mod.client.BBSShaders;
+import mchorse.bbs_mod.cubic.ModelInstance;
+import mchorse.bbs_mod.cubic.render.vao.ModelPalette;
+import mchorse.bbs_mod.cubic.render.vao.ModelPaletteVAO;
+import mchorse.bbs_mod.cubic.render.vao.ModelVAORenderer;
+import mchorse.bbs_mod.utils.colors.Color;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.ShaderProgram;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.util.math.MatrixStack;
+import org.joml.Matrix4f;
+import org.lwjgl.opengl.GL30;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Model render queue
+ *
+ * Collects batched models that are rendered in the world during a frame
+ * (model blocks, actors of films, etc.), and groups them by model, texture
+ * and pose (bone palette). Every group is then drawn with instanced draw
+ * calls, where per-instance transforms, colors, lights and overlays are
+ * streamed into an instance buffer.
+ *
+ * Models that can't be queued (the queue isn't active, or the model has
+ * too many different poses this frame) should be rendered right away.
+ */
+public class ModelRenderQueue
+{
+    /**
+     * Maximum amount of different poses of a model per frame. Models that
+     * are animated differently would end up with one instance per group,
+     * so beyond this limit they're rendered right away instead.
+     */
+    public static final int MAX_POSES = 16;
+
+    private boolean active;
+    private final Map<ModelInstance, List<Bucket>> models = new LinkedHashMap<>();
+
+    private final Matrix4f matrix = new Matrix4f();
+    private final MatrixStack identity = new MatrixStack();
+
+    public boolean isActive()
+    {
+        return this.active;
+    }
+
+    public void begin()
+    {
+        this.models.clear();
+
+        this.active = BBSSettings.modelsInstancing.get() && BBSShaders.getModelInstanced() != null;
+    }
+
+    public void end()
+    {
+        this.flush();
+
+        this.active = false;
+    }
+
+    /**
+     * Queue an instance of given model with given (untinted and unlit)
+     * palette. Texture is taken from the currently bound shader texture.
+     *
+     * @return whether the instance was queued
+     */
+    public boolean add(ModelInstance model, ModelPalette palette, MatrixStack stack, Color color, int light, int overlay)
+    {
+        if (!this.active)
+        {
+            return false;
+        }
+
+        int texture = RenderSystem.getShaderTexture(0);
+        int hash = palette.poseHash();
+        List<Bucket> buckets = this.models.computeIfAbsent(model, (k) -> new ArrayList<>());
+        Bucket bucket = null;
+
+        for (Bucket b : buckets)
+        {
+            if (b.texture == texture && b.hash == hash && b.palette.isSamePose(palette))
+            {
+                bucket = b;
+
+                break;
+            }
+        }
+
+        if (bucket == null)
+        {
+            if (buckets.size() >= MAX_POSES)
+            {
+                return false;
+            }
+
+            bucket = new Bucket(texture, hash, palette.copy(), model.culling);
+            buckets.add(bucket);
+        }
+
+        this.matrix.set(RenderSystem.getModelViewMatrix()).mul(stack.peek().getPositionMatrix());
+        bucket.add(this.matrix, color, light, overlay);
+
+        return true;
+    }
+
+    /**
+     * Draw all queued instances
+     */
+    public void flush()
+    {
+        if (this.models.isEmpty())
+        {
+            return;
+        }
+
+        ShaderProgram shader = BBSShaders.getModelInstanced();
+        GameRenderer gameRenderer = MinecraftClient.getInstance().gameRenderer;
+        int currentVAO = GL30.glGetInteger(GL30.GL_VERTEX_ARRAY_BINDING);
+        int currentElementArrayBuffer = GL30.glGetInteger(GL30.GL_ELEMENT_ARRAY_BUFFER_BINDING);
+        int currentTexture = RenderSystem.getShaderTexture(0);
+
+        gameRenderer.getLightmapTextureManager().enable();
+        gameRenderer.getOverlayTexture().setupOverlayColor();
+        RenderSystem.enableBlend();
+        RenderSystem.defaultBlendFunc();
+        RenderSystem.enableDepthTest();
+
+        for (Map.Entry<ModelInstance, List<Bucket>> entry : this.models.entrySet())
+        {
+            ModelPaletteVAO vao = entry.getKey().getPaletteVao();
+
+            /* Model could've been reloaded since it was queued */
+            if (vao == null)
+            {
+                continue;
+            }
+
+            for (Bucket bucket : entry.getValue())
+            {
+                if (bucket.culling) RenderSystem.enableCull();
+                else RenderSystem.disableCull();
+
+                RenderSystem.setShaderTexture(0, bucket.texture);
+                ModelVAORenderer.setupUniforms(this.identity, shader);
+
+                shader.bind();
+                vao.renderInstanced(shader, bucket.palette, bucket.instances, bucket.count);
+                shader.unbind();
+            }
+        }
+
+        RenderSystem.enableCull();
+        RenderSystem.setShaderTexture(0, currentTexture);
+        RenderSystem.disableBlend();
+        gameRenderer.getLightmapTextureManager().disable();
+        gameRenderer.getOverlayTexture().teardownOverlayColor();
+
+        GL30.glBindVertexArray(currentVAO);
+        GL30.glBindBuffer(GL30.GL_ELEMENT_ARRAY_BUFFER, currentElementArrayBuffer);
+
+        this.models.clear();
+    }
+
+    private static class Bucket
+    {
+        public final int texture;
+        public final int hash;
+        public final ModelPalette palette;
+        public final boolean culling;
+
+        public float[] instances = new float[ModelPaletteVAO.INSTANCE_STRIDE * 4];
+        public int count;
+
+        public Bucket(int texture, int hash, ModelPalette palette, boolean culling)
+        {
+            this.texture = texture;
+            this.hash = hash;
+            this.palette = palette;
+            this.culling = culling;
+        }
+
+        public void add(Matrix4f matrix, Color color, int light, int overlay)
+        {
+            int offset = this.count * ModelPaletteVAO.INSTANCE_STRIDE;
+
+            if (offset + ModelPaletteVAO.INSTANCE_STRIDE > this.instances.length)
+            {
+                float[] instances = new float[this.instances.length * 2];
+
+                System.arraycopy(this.instances, 0, instances, 0, offset);
+                this.instances = instances;
+            }
+
+            matrix.get(this.instances, offset);
+
+            this.instances[offset + ModelPaletteVAO.INSTANCE_COLOR] = color.r;
+            this.instances[offset + ModelPaletteVAO.INSTANCE_COLOR + 1] = color.g;
+            this.instances[offset + ModelPaletteVAO.INSTANCE_COLOR + 2] = color.b;
+            this.instances[offset + ModelPaletteVAO.INSTANCE_COLOR + 3] = color.a;
+            this.instances[offset + ModelPaletteVAO.INSTANCE_LIGHT] = Float.intBitsToFloat(light);
+            this.instances[offset + ModelPaletteVAO.INSTANCE_LIGHT + 1] = Float.intBitsToFloat(overlay);
+
+            this.count += 1;
+        }
+    }
+}
@@ -1,18 +1,17 @@
 package mchorse.bbs_mod.cubic.render.vao;
 
+import mchorse.bbs_mod.BBSSettings;
 import mchorse.bbs_mod.bobj.BOBJArmature;
 import mchorse.bbs_mod.bobj.BOBJLoader;
 import mchorse.bbs_mod.client.BBSRendering;
 import mchorse.bbs_mod.ui.framework.elements.utils.StencilMap;
-import mchorse.bbs_mod.utils.joml.Matrices;
 import net.minecraft.client.gl.ShaderProgram;
 import net.minecraft.client.util.math.MatrixStack;
-import org.joml.Matrix4f;
-import org.joml.Vector3f;
-import org.joml.Vector4f;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL30;
 
+import java.util.Arrays;
+
 public class BOBJModelVAO
 {
     public BOBJLoader.CompiledData data;
@@ -34,6 +33,13 @@ public class BOBJModelVAO
     private int[] tmpLight;
     private float[] tmpTangents;
 
+    /* Skinning cache */
+    private float[] tmpMatrices;
+    private float[] lastMatrices;
+    private int lastStencil;
+    private boolean lastShaders;
+    private boolean cached;
+
     public BOBJModelVAO(BOBJLoader.CompiledData data)
     {
         this.data = data;
@@ -110,81 +116,29 @@ public class BOBJModelVAO
      * Update this mesh. This method is responsible for applying 
      * matrix transformations to vertices and normals according to its 
      * bone owners and these bone influences.
+     *
+     * If bone matrices (and stencil and shaders state) didn't change
+     * since the last update, buffers already contain the skinned mesh, so
+     * skinning and uploading are skipped.
      */
     public void updateMesh(StencilMap stencilMap)
     {
-        Vector4f sum = new Vector4f();
-        Vector4f result = new Vector4f(0F, 0F, 0F, 0F);
-        Vector3f sumNormal = new Vector3f();
-        Vector3f resultNormal = new Vector3f();
-
-        float[] oldVertices = this.data.posData;
-        float[] newVertices = this.tmpVertices;
-        float[] oldNormals = this.data.normData;
-        float[] newNormals = this.tmpNormals;
+        float[] matrices = BOBJSkinner.flatten(this.armature.matrices, this.tmpMatrices);
+        boolean hasShaders = BBSRendering.isIrisShadersEnabled();
+        int stencil = stencilMap == null ? 0 : (stencilMap.increment ? 2 : 1);
 
-        Matrix4f[] matrices = this.armature.matrices;
+        this.tmpMatrices = matrices;
 
-        for (int i = 0, c = this.count; i < c; i++)
+        if (this.cached && stencil == this.lastStencil && hasShaders == this.lastShaders && Arrays.equals(matrices, this.lastMatrices))
         {
-            int count = 0;
-            float maxWeight = -1;
-            int lightBone = -1;
-
-            for (int w = 0; w < 4; w++)
-            {
-                float weight = this.data.weightData[i * 4 + w];
-
-                if (weight > 0)
-                {
-                    int index = this.data.boneIndexData[i * 4 + w];
-
-                    sum.set(oldVertices[i * 3], oldVertices[i * 3 + 1], oldVertices[i * 3 + 2], 1F);
-                    matrices[index].transform(sum);
-                    result.add(sum.mul(weight));
-
-                    sumNormal.set(oldNormals[i * 3], oldNormals[i * 3 + 1], oldNormals[i * 3 + 2]);
-                    Matrices.TEMP_3F.set(matrices[index]).transform(sumNormal);
-                    resultNormal.add(sumNormal.mul(weight));
-
-                    count++;
-
-                    if (weight > maxWeight)
-                    {
-                        lightBone = index;
-                        maxWeight = weight;
-                    }
-                }
-            }
-
-            if (count == 0)
-            {
-                result.set(oldVertices[i * 3], oldVertices[i * 3 + 1], oldVertices[i * 3 + 2], 1F);
-                resultNormal.set(oldNormals[i * 3], oldNormals[i * 3 + 1], oldNormals[i * 3 + 2]);
-            }
-
-            result.x /= result.w;
-            result.y /= result.w;
-            result.z /= result.w;
-
-            newVertices[i * 3] = result.x;
-            newVertices[i * 3 + 1] = result.y;
-            newVertices[i * 3 + 2] = result.z;
-
-            newNormals[i * 3] = resultNormal.x;
-            newNormals[i * 3 + 1] = resultNormal.y;
-            newNormals[i * 3 + 2] = resultNormal.z;
-
-            result.set(0F, 0F, 0F, 0F);
-            resultNormal.set(0F, 0F, 0F);
-
-            if (stencilMap != null)
-            {
-                this.tmpLight[i * 2] = Math.max(0, stencilMap.increment ? lightBone : 0);
-                this.tmpLight[i * 2 + 1] = 0;
-            }
+            return;
         }
 
+        float[] newVertices = this.tmpVertices;
+        float[] newNormals = this.tmpNormals;
+
+        BOBJSkinner.skin(matrices, this.data, newVertices, newNormals, stencilMap == null ? null : this.tmpLight, stencil == 2, BBSSettings.modelsParallelSkinning.get());
+
         this.processData(newVertices, newNormals);
 
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vertexBuffer);
@@ -193,7 +147,7 @@ public class BOBJModelVAO
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.normalBuffer);
         GL15.glBufferData(GL15.GL_ARRAY_BUFFER, newNormals, GL15.GL_DYNAMIC_DRAW);
 
-        if (BBSRendering.isIrisShadersEnabled())
+        if (hasShaders)
         {
             BBSRendering.calculateTangents(this.tmpTangents, newVertices, newNormals, this.data.texData);
 
@@ -206,6 +160,13 @@ public class BOBJModelVAO
             GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.lightBuffer);
             GL15.glBufferData(GL15.GL_ARRAY_BUFFER, this.tmpLight, GL15.GL_DYNAMIC_DRAW);
         }
+
+        /* Swap matrices, so the last ones wouldn't get overwritten */
+        this.tmpMatrices = this.lastMatrices;
+        this.lastMatrices = matrices;
+        this.lastStencil = stencil;
+        this.lastShaders = hasShaders;
+        this.cached = true;
     }
 
     protected void processData(float[] newVertices, float[] newNormals)
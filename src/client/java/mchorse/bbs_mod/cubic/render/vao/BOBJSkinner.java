@@ -0,0 +1,189 @@
+package mchorse.bbs_mod.cubic.render.vao;
+
+import mchorse.bbs_mod.bobj.BOBJLoader;
+import org.joml.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * BOBJ skinner
+ *
+ * Skins vertices and normals of a BOBJ mesh with bone matrices that are
+ * flattened into a float array (16 floats per bone, column-major like
+ * {@link Matrix4f#get(float[], int)}). The kernel works only on primitive
+ * arrays, without any per-vertex objects or virtual calls, so the JIT can
+ * keep everything in registers (and unroll and vectorize what it can).
+ *
+ * Big meshes can be skinned in parallel, in chunks of {@link #CHUNK}
+ * vertices, because every vertex is independent from the others.
+ */
+public class BOBJSkinner
+{
+    public static final int CHUNK = 4096;
+
+    private static ForkJoinPool pool;
+
+    /**
+     * Flatten given matrices into given array (which is reallocated if
+     * it's too small)
+     */
+    public static float[] flatten(Matrix4f[] matrices, float[] array)
+    {
+        int length = matrices.length * 16;
+
+        if (array == null || array.length != length)
+        {
+            array = new float[length];
+        }
+
+        for (int i = 0; i < matrices.length; i++)
+        {
+            matrices[i].get(array, i * 16);
+        }
+
+        return array;
+    }
+
+    /**
+     * Skin the whole mesh, in parallel if the mesh is big enough
+     */
+    public static void skin(float[] matrices, BOBJLoader.CompiledData data, float[] vertices, float[] normals, int[] light, boolean increment, boolean parallel)
+    {
+        int count = data.normData.length / 3;
+
+        if (!parallel || count < CHUNK * 2)
+        {
+            skin(matrices, data, vertices, normals, light, increment, 0, count);
+
+            return;
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+        for (int from = 0; from < count; from += CHUNK)
+        {
+            int start = from;
+            int end = Math.min(from + CHUNK, count);
+
+            tasks.add(ForkJoinTask.adapt(() -> skin(matrices, data, vertices, normals, light, increment, start, end)));
+        }
+
+        getPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+
+    /**
+     * Skin vertices in given range. Every vertex is transformed by up to
+     * four bones, and its position and normal are blended by bone weights.
+     * Vertices without weights are left as they are.
+     *
+     * @param light if it's not null, index of the most influential bone
+     *              is written for every vertex (or 0, if it's not increment)
+     */
+    public static void skin(float[] matrices, BOBJLoader.CompiledData data, float[] vertices, float[] normals, int[] light, boolean increment, int from, int to)
+    {
+        float[] oldVertices = data.posData;
+        float[] oldNormals = data.normData;
+        float[] weights = data.weightData;
+        int[] bones = data.boneIndexData;
+
+        for (int i = from; i < to; i++)
+        {
+            int v = i * 3;
+            float x = oldVertices[v];
+            float y = oldVertices[v + 1];
+            float z = oldVertices[v + 2];
+            float nx = oldNormals[v];
+            float ny = oldNormals[v + 1];
+            float nz = oldNormals[v + 2];
+
+            float rx = 0F;
+            float ry = 0F;
+            float rz = 0F;
+            float rw = 0F;
+            float rnx = 0F;
+            float rny = 0F;
+            float rnz = 0F;
+
+            int count = 0;
+            float maxWeight = -1;
+            int lightBone = -1;
+
+            for (int w = i * 4, wc = w + 4; w < wc; w++)
+            {
+                float weight = weights[w];
+
+                if (weight > 0)
+                {
+                    int bone = bones[w];
+                    int m = bone * 16;
+
+                    rx += (matrices[m] * x + matrices[m + 4] * y + matrices[m + 8] * z + matrices[m + 12]) * weight;
+                    ry += (matrices[m + 1] * x + matrices[m + 5] * y + matrices[m + 9] * z + matrices[m + 13]) * weight;
+                    rz += (matrices[m + 2] * x + matrices[m + 6] * y + matrices[m + 10] * z + matrices[m + 14]) * weight;
+                    rw += (matrices[m + 3] * x + matrices[m + 7] * y + matrices[m + 11] * z + matrices[m + 15]) * weight;
+
+                    rnx += (matrices[m] * nx + matrices[m + 4] * ny + matrices[m + 8] * nz) * weight;
+                    rny += (matrices[m + 1] * nx + matrices[m + 5] * ny + matrices[m + 9] * nz) * weight;
+                    rnz += (matrices[m + 2] * nx + matrices[m + 6] * ny + matrices[m + 10] * nz) * weight;
+
+                    count++;
+
+                    if (weight > maxWeight)
+                    {
+                        lightBone = bone;
+                        maxWeight = weight;
+                    }
+                }
+            }
+
+            if (count == 0)
+            {
+                rx = x;
+                ry = y;
+                rz = z;
+                rw = 1F;
+                rnx = nx;
+                rny = ny;
+                rnz = nz;
+            }
+
+            vertices[v] = rx / rw;
+            vertices[v + 1] = ry / rw;
+            vertices[v + 2] = rz / rw;
+
+            normals[v] = rnx;
+            normals[v + 1] = rny;
+            normals[v + 2] = rnz;
+
+            if (light != null)
+            {
+                light[i * 2] = Math.max(0, increment ? lightBone : 0);
+                light[i * 2 + 1] = 0;
+            }
+        }
+    }
+
+    private static ForkJoinPool getPool()
+    {
+        if (pool == null)
+        {
+            int threads = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+
+            pool = new ForkJoinPool(threads, (pool) ->
+            {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+
+                thread.setName("BBS skinning " + thread.getPoolIndex());
+                thread.setDaemon(true);
+
+                return thread;
+            }, null, false);
+        }
+
+        return pool;
+    }
+}
@@ -0,0 +1,187 @@
+package mchorse.bbs_mod.cubic.render.vao;
+
+import com.ibm.icu.impl.Assert;
+import mchorse.bbs_mod.bobj.BOBJLoader;
+import mchorse.bbs_mod.utils.Benchmark;
+import org.joml.Matrix3f;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+
+import java.util.Random;
+
+/**
+ * Headless check and microbenchmark of {@link BOBJSkinner}. A random mesh
+ * is skinned by the previous per-vertex JOML implementation and by the
+ * skinner (sequentially and in parallel), the check fails if results
+ * differ, and an average time per skinning is printed.
+ */
+public class BOBJSkinnerBenchmark
+{
+    private static final int VERTICES = 60_000;
+    private static final int BONES = 40;
+    private static final float EPSILON = 0.001F;
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(42);
+        BOBJLoader.CompiledData data = createMesh(random);
+        Matrix4f[] matrices = new Matrix4f[BONES];
+
+        for (int i = 0; i < BONES; i++)
+        {
+            matrices[i] = new Matrix4f()
+                .translate(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1)
+                .rotateXYZ(random.nextFloat() * 6, random.nextFloat() * 6, random.nextFloat() * 6)
+                .scale(0.5F + random.nextFloat());
+        }
+
+        float[] flat = BOBJSkinner.flatten(matrices, null);
+        float[] expectedVertices = new float[data.posData.length];
+        float[] expectedNormals = new float[data.normData.length];
+        int[] expectedLight = new int[data.posData.length];
+        float[] vertices = new float[data.posData.length];
+        float[] normals = new float[data.normData.length];
+        int[] light = new int[data.posData.length];
+
+        skinReference(matrices, data, expectedVertices, expectedNormals, expectedLight);
+
+        BOBJSkinner.skin(flat, data, vertices, normals, light, true, false);
+        compare("sequential", expectedVertices, expectedNormals, expectedLight, vertices, normals, light);
+
+        BOBJSkinner.skin(flat, data, vertices, normals, light, true, true);
+        compare("parallel", expectedVertices, expectedNormals, expectedLight, vertices, normals, light);
+
+        Benchmark.measure("reference", () -> skinReference(matrices, data, expectedVertices, expectedNormals, expectedLight));
+        Benchmark.measure("sequential", () -> BOBJSkinner.skin(BOBJSkinner.flatten(matrices, flat), data, vertices, normals, light, true, false));
+        Benchmark.measure("parallel", () -> BOBJSkinner.skin(BOBJSkinner.flatten(matrices, flat), data, vertices, normals, light, true, true));
+    }
+
+    private static BOBJLoader.CompiledData createMesh(Random random)
+    {
+        float[] pos = new float[VERTICES * 3];
+        float[] norm = new float[VERTICES * 3];
+        float[] weights = new float[VERTICES * 4];
+        int[] bones = new int[VERTICES * 4];
+
+        for (int i = 0; i < VERTICES; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                pos[i * 3 + j] = random.nextFloat() * 4 - 2;
+                norm[i * 3 + j] = random.nextFloat() * 2 - 1;
+            }
+
+            /* Some vertices aren't weighted at all */
+            int influences = random.nextInt(5);
+            float total = 0;
+
+            for (int w = 0; w < 4; w++)
+            {
+                float weight = w < influences ? random.nextFloat() : 0F;
+
+                weights[i * 4 + w] = weight;
+                bones[i * 4 + w] = w < influences ? random.nextInt(BONES) : -1;
+                total += weight;
+            }
+
+            for (int w = 0; w < influences; w++)
+            {
+                weights[i * 4 + w] /= total;
+            }
+        }
+
+        return new BOBJLoader.CompiledData(pos, new float[VERTICES * 2], norm, weights, bones, new int[0], null);
+    }
+
+    /**
+     * Previous implementation of {@link BOBJModelVAO#updateMesh}'s skinning
+     */
+    private static void skinReference(Matrix4f[] matrices, BOBJLoader.CompiledData data, float[] newVertices, float[] newNormals, int[] light)
+    {
+        Vector4f sum = new Vector4f();
+        Vector4f result = new Vector4f(0F, 0F, 0F, 0F);
+        Vector3f sumNormal = new Vector3f();
+        Vector3f resultNormal = new Vector3f();
+        Matrix3f normalMatrix = new Matrix3f();
+
+        float[] oldVertices = data.posData;
+        float[] oldNormals = data.normData;
+
+        for (int i = 0, c = data.normData.length / 3; i < c; i++)
+        {
+            int count = 0;
+            float maxWeight = -1;
+            int lightBone = -1;
+
+            for (int w = 0; w < 4; w++)
+            {
+                float weight = data.weightData[i * 4 + w];
+
+                if (weight > 0)
+                {
+                    int index = data.boneIndexData[i * 4 + w];
+
+                    sum.set(oldVertices[i * 3], oldVertices[i * 3 + 1], oldVertices[i * 3 + 2], 1F);
+                    matrices[index].transform(sum);
+                    result.add(sum.mul(weight));
+
+                    sumNormal.set(oldNormals[i * 3], oldNormals[i * 3 + 1], oldNormals[i * 3 + 2]);
+                    normalMatrix.set(matrices[index]).transform(sumNormal);
+                    resultNormal.add(sumNormal.mul(weight));
+
+                    count++;
+
+                    if (weight > maxWeight)
+                    {
+                        lightBone = index;
+                        maxWeight = weight;
+                    }
+                }
+            }
+
+            if (count == 0)
+            {
+                result.set(oldVertices[i * 3], oldVertices[i * 3 + 1], oldVertices[i * 3 + 2], 1F);
+                resultNormal.set(oldNormals[i * 3], oldNormals[i * 3 + 1], oldNormals[i * 3 + 2]);
+            }
+
+            newVertices[i * 3] = result.x / result.w;
+            newVertices[i * 3 + 1] = result.y / result.w;
+            newVertices[i * 3 + 2] = result.z / result.w;
+
+            newNormals[i * 3] = resultNormal.x;
+            newNormals[i * 3 + 1] = resultNormal.y;
+            newNormals[i * 3 + 2] = resultNormal.z;
+
+            result.set(0F, 0F, 0F, 0F);
+            resultNormal.set(0F, 0F, 0F);
+
+            light[i * 2] = Math.max(0, lightBone);
+            light[i * 2 + 1] = 0;
+        }
+    }
+
+    private static void compare(String name, float[] expectedVertices, float[] expectedNormals, int[] expectedLight, float[] vertices, float[] normals, int[] light)
+    {
+        float error = 0F;
+        int lightErrors = 0;
+
+        for (int i = 0; i < vertices.length; i++)
+        {
+            error = Math.max(error, Math.abs(expectedVertices[i] - vertices[i]));
+            error = Math.max(error, Math.abs(expectedNormals[i] - normals[i]));
+        }
+
+        for (int i = 0; i < light.length; i++)
+        {
+            if (expectedLight[i] != light[i])
+            {
+                lightErrors += 1;
+            }
+        }
+
+        System.out.println(String.format("%s: max error %.8f, light mismatches %d", name, error, lightErrors));
+        Assert.assrt(name + " skinning doesn't match the reference", error < EPSILON && lightErrors == 0);
+    }
+}
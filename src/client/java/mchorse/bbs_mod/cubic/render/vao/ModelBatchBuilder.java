@@ -0,0 +1,188 @@
+package mchorse.bbs_mod.cubic.render.vao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Model batch builder
+ *
+ * Packs non-indexed per-group {@link ModelVAOData} into {@link ModelBatchData}.
+ * Identical vertices (same position, normal, UV and bone) are merged, so
+ * the two shared corners of every quad are stored only once. Tangents are
+ * not packed, because batched models are rendered only with BBS' own
+ * shader (Iris shaders go through per-group VAOs).
+ *
+ * It doesn't touch OpenGL, so it can be used and checked without a GPU.
+ */
+public class ModelBatchBuilder
+{
+    /**
+     * Vertex layout: position (3), normal (3), UV (2) and bone (1, int
+     * bits stored as float)
+     */
+    public static final int STRIDE = 9;
+    public static final int NORMAL = 3;
+    public static final int UV = 6;
+    public static final int BONE = 8;
+
+    /**
+     * Maximum amount of bones per batch. 32 matrices, colors and lights
+     * take 192 vec4 uniforms, which fits into OpenGL 3.2's guaranteed 256.
+     */
+    public static final int PALETTE_SIZE = 32;
+
+    private final int paletteSize;
+    private final List<Group> groups = new ArrayList<>();
+
+    public ModelBatchBuilder()
+    {
+        this(PALETTE_SIZE);
+    }
+
+    public ModelBatchBuilder(int paletteSize)
+    {
+        this.paletteSize = Math.max(paletteSize, 1);
+    }
+
+    public boolean isEmpty()
+    {
+        return this.groups.isEmpty();
+    }
+
+    /**
+     * Add geometry of a group (with given index) to the batch
+     */
+    public void add(int bone, ModelVAOData data)
+    {
+        if (data.vertices().length > 0)
+        {
+            this.groups.add(new Group(bone, data));
+        }
+    }
+
+    public ModelBatchData build()
+    {
+        this.groups.sort((a, b) -> Integer.compare(a.bone, b.bone));
+
+        int total = 0;
+
+        for (Group group : this.groups)
+        {
+            total += group.data.vertices().length / 3;
+        }
+
+        float[] vertices = new float[total * STRIDE];
+        int[] indices = new int[total];
+        int[] table = new int[Math.max(Integer.highestOneBit(total * 2 + 1) << 1, 16)];
+        List<ModelBatchData.Batch> batches = new ArrayList<>();
+        int count = 0;
+        int index = 0;
+
+        for (int i = 0; i < this.groups.size(); i += this.paletteSize)
+        {
+            int size = Math.min(this.paletteSize, this.groups.size() - i);
+            int[] bones = new int[size];
+            int offset = index;
+
+            for (int b = 0; b < size; b++)
+            {
+                Group group = this.groups.get(i + b);
+                float[] v = group.data.vertices();
+                float[] n = group.data.normals();
+                float[] u = group.data.texCoords();
+
+                bones[b] = group.bone;
+
+                for (int j = 0, c = v.length / 3; j < c; j++)
+                {
+                    int o = count * STRIDE;
+
+                    vertices[o] = v[j * 3];
+                    vertices[o + 1] = v[j * 3 + 1];
+                    vertices[o + 2] = v[j * 3 + 2];
+                    vertices[o + NORMAL] = n[j * 3];
+                    vertices[o + NORMAL + 1] = n[j * 3 + 1];
+                    vertices[o + NORMAL + 2] = n[j * 3 + 2];
+                    vertices[o + UV] = u[j * 2];
+                    vertices[o + UV + 1] = u[j * 2 + 1];
+                    vertices[o + BONE] = Float.intBitsToFloat(b);
+
+                    int existing = find(table, vertices, count);
+
+                    if (existing >= 0)
+                    {
+                        indices[index] = existing;
+                    }
+                    else
+                    {
+                        indices[index] = count;
+                        count += 1;
+                    }
+
+                    index += 1;
+                }
+            }
+
+            batches.add(new ModelBatchData.Batch(bones, offset, index - offset));
+        }
+
+        return new ModelBatchData(Arrays.copyOf(vertices, count * STRIDE), indices, batches);
+    }
+
+    /**
+     * Find a vertex equal to the one at given index in the open addressing
+     * hash table (which stores vertex index + 1), or insert it if there
+     * is none and return -1
+     */
+    private static int find(int[] table, float[] vertices, int vertex)
+    {
+        int mask = table.length - 1;
+        int slot = hash(vertices, vertex) & mask;
+
+        while (table[slot] != 0)
+        {
+            int other = table[slot] - 1;
+
+            if (equals(vertices, vertex, other))
+            {
+                return other;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        table[slot] = vertex + 1;
+
+        return -1;
+    }
+
+    private static int hash(float[] vertices, int vertex)
+    {
+        int hash = 1;
+
+        for (int i = vertex * STRIDE, c = i + STRIDE; i < c; i++)
+        {
+            hash = hash * 31 + Float.floatToRawIntBits(vertices[i]);
+        }
+
+        /* Spread the bits, because the table is indexed by the lowest ones */
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(float[] vertices, int a, int b)
+    {
+        for (int i = 0; i < STRIDE; i++)
+        {
+            if (Float.floatToRawIntBits(vertices[a * STRIDE + i]) != Float.floatToRawIntBits(vertices[b * STRIDE + i]))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private record Group(int bone, ModelVAOData data)
+    {}
+}
@@ -0,0 +1,248 @@
+package mchorse.bbs_mod.cubic.render.vao;
+
+import com.ibm.icu.impl.Assert;
+import mchorse.bbs_mod.utils.Benchmark;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Headless check and microbenchmark of {@link ModelBatchBuilder} and
+ * {@link ModelPalette}. A model of random boxes (one box per group, like
+ * a Bedrock model) is packed, then every triangle is unpacked through the
+ * index buffer and compared to the original, and vertices transformed
+ * with per-batch palettes are compared to vertices transformed with
+ * group matrices. Palette's pose comparison (used to group instances)
+ * is checked too. Any mismatch fails the check before build time is
+ * measured.
+ */
+public class ModelBatchBuilderBenchmark
+{
+    private static final int GROUPS = 80;
+    private static final float EPSILON = 0.001F;
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(42);
+        List<ModelVAOData> groups = new ArrayList<>();
+
+        for (int i = 0; i < GROUPS; i++)
+        {
+            groups.add(createBox(random));
+        }
+
+        ModelBatchData data = build(groups);
+        int vertices = 0;
+
+        for (ModelVAOData group : groups)
+        {
+            vertices += group.vertices().length / 3;
+        }
+
+        System.out.println(String.format("%d groups: %d -> %d vertices (%d indices), %d -> %d draw calls",
+            GROUPS, vertices, data.getVertexCount(), data.indices().length, GROUPS, data.batches().size()));
+
+        checkPacking(groups, data);
+        checkPalette(groups, data, random);
+
+        Benchmark.measure("build", () -> build(groups));
+    }
+
+    private static ModelBatchData build(List<ModelVAOData> groups)
+    {
+        ModelBatchBuilder builder = new ModelBatchBuilder();
+
+        /* Reversed, to check that groups are sorted by their index */
+        for (int i = groups.size() - 1; i >= 0; i--)
+        {
+            builder.add(i, groups.get(i));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * A box with 6 quads, 2 triangles each, the way CubicVAOBuilderRenderer
+     * writes them
+     */
+    private static ModelVAOData createBox(Random random)
+    {
+        Vector3f min = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat());
+        Vector3f max = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat()).add(min);
+        float[][] corners = new float[8][];
+
+        for (int i = 0; i < 8; i++)
+        {
+            corners[i] = new float[] {(i & 1) == 0 ? min.x : max.x, (i & 2) == 0 ? min.y : max.y, (i & 4) == 0 ? min.z : max.z};
+        }
+
+        int[][] quads = {{0, 2, 3, 1}, {4, 5, 7, 6}, {0, 1, 5, 4}, {2, 6, 7, 3}, {0, 4, 6, 2}, {1, 3, 7, 5}};
+        float[][] normals = {{0, 0, -1}, {0, 0, 1}, {0, -1, 0}, {0, 1, 0}, {-1, 0, 0}, {1, 0, 0}};
+        float[][] uvs = {{0, 0}, {1, 0}, {1, 1}, {0, 1}};
+        int[] order = {0, 1, 2, 0, 2, 3};
+
+        float[] v = new float[6 * 6 * 3];
+        float[] n = new float[6 * 6 * 3];
+        float[] u = new float[6 * 6 * 2];
+        int index = 0;
+
+        for (int q = 0; q < quads.length; q++)
+        {
+            for (int o : order)
+            {
+                System.arraycopy(corners[quads[q][o]], 0, v, index * 3, 3);
+                System.arraycopy(normals[q], 0, n, index * 3, 3);
+                System.arraycopy(uvs[o], 0, u, index * 2, 2);
+
+                index += 1;
+            }
+        }
+
+        return new ModelVAOData(v, n, v, u);
+    }
+
+    private static void checkPacking(List<ModelVAOData> groups, ModelBatchData data)
+    {
+        int mismatches = 0;
+        int index = 0;
+        int maxBone = 0;
+
+        for (ModelBatchData.Batch batch : data.batches())
+        {
+            if (batch.offset() != index)
+            {
+                mismatches += 1;
+            }
+
+            for (int b = 0; b < batch.bones().length; b++)
+            {
+                ModelVAOData group = groups.get(batch.bones()[b]);
+
+                for (int j = 0, c = group.vertices().length / 3; j < c; j++, index++)
+                {
+                    int o = data.indices()[index] * ModelBatchBuilder.STRIDE;
+                    float[] vertices = data.vertices();
+                    int bone = Float.floatToRawIntBits(vertices[o + ModelBatchBuilder.BONE]);
+
+                    maxBone = Math.max(maxBone, bone);
+
+                    boolean same = bone == b
+                        && vertices[o] == group.vertices()[j * 3]
+                        && vertices[o + 1] == group.vertices()[j * 3 + 1]
+                        && vertices[o + 2] == group.vertices()[j * 3 + 2]
+                        && vertices[o + ModelBatchBuilder.NORMAL] == group.normals()[j * 3]
+                        && vertices[o + ModelBatchBuilder.NORMAL + 1] == group.normals()[j * 3 + 1]
+                        && vertices[o + ModelBatchBuilder.NORMAL + 2] == group.normals()[j * 3 + 2]
+                        && vertices[o + ModelBatchBuilder.UV] == group.texCoords()[j * 2]
+                        && vertices[o + ModelBatchBuilder.UV + 1] == group.texCoords()[j * 2 + 1];
+
+                    if (!same)
+                    {
+                        mismatches += 1;
+                    }
+                }
+            }
+
+            if (index != batch.offset() + batch.count())
+            {
+                mismatches += 1;
+            }
+        }
+
+        System.out.println(String.format("packing: mismatches %d, max bone %d (palette size %d)", mismatches, maxBone, ModelBatchBuilder.PALETTE_SIZE));
+        Assert.assrt("Packed vertices don't match groups", mismatches == 0);
+        Assert.assrt("Bone index doesn't fit the palette", maxBone < ModelBatchBuilder.PALETTE_SIZE);
+    }
+
+    private static void checkPalette(List<ModelVAOData> groups, ModelBatchData data, Random random)
+    {
+        ModelPalette palette = new ModelPalette(groups.size());
+        Matrix4f[] matrices = new Matrix4f[groups.size()];
+
+        palette.hideAll();
+
+        for (int i = 0; i < groups.size(); i++)
+        {
+            matrices[i] = new Matrix4f()
+                .translate(random.nextFloat(), random.nextFloat(), random.nextFloat())
+                .rotateXYZ(random.nextFloat() * 6, random.nextFloat() * 6, random.nextFloat() * 6);
+
+            /* Every fifth group is hidden */
+            if (i % 5 != 0)
+            {
+                palette.set(i, matrices[i], 1F, 1F, 1F, 1F, i << 16 | i, 0F);
+            }
+        }
+
+        float error = 0F;
+        int lightErrors = 0;
+        int visible = 0;
+        Vector3f expected = new Vector3f();
+
+        for (ModelBatchData.Batch batch : data.batches())
+        {
+            palette.fill(batch);
+
+            float[] m = palette.getBatchMatrices();
+            int[] lights = palette.getBatchLights();
+
+            for (int i = batch.offset(), c = i + batch.count(); i < c; i++)
+            {
+                int o = data.indices()[i] * ModelBatchBuilder.STRIDE;
+                float[] vertices = data.vertices();
+                int local = Float.floatToRawIntBits(vertices[o + ModelBatchBuilder.BONE]);
+                int bone = batch.bones()[local];
+                int b = local * 16;
+                float x = vertices[o];
+                float y = vertices[o + 1];
+                float z = vertices[o + 2];
+
+                /* What the shader does */
+                float rx = m[b] * x + m[b + 4] * y + m[b + 8] * z + m[b + 12];
+                float ry = m[b + 1] * x + m[b + 5] * y + m[b + 9] * z + m[b + 13];
+                float rz = m[b + 2] * x + m[b + 6] * y + m[b + 10] * z + m[b + 14];
+
+                if (bone % 5 == 0)
+                {
+                    expected.set(0F);
+                }
+                else
+                {
+                    matrices[bone].transformPosition(x, y, z, expected);
+
+                    visible += 1;
+
+                    if (lights[local * 2] != bone || lights[local * 2 + 1] != bone)
+                    {
+                        lightErrors += 1;
+                    }
+                }
+
+                error = Math.max(error, Math.abs(expected.x - rx));
+                error = Math.max(error, Math.abs(expected.y - ry));
+                error = Math.max(error, Math.abs(expected.z - rz));
+            }
+        }
+
+        System.out.println(String.format("palette: max error %.8f, light mismatches %d, visible indices %d", error, lightErrors, visible));
+        Assert.assrt("Palette transforms don't match group matrices", error < EPSILON && lightErrors == 0 && visible > 0);
+
+        /* Instances are grouped by pose, which shouldn't depend on light */
+        ModelPalette copy = palette.copy();
+        boolean same = copy.poseHash() == palette.poseHash() && copy.isSamePose(palette);
+
+        copy.set(1, matrices[1], 1F, 1F, 1F, 1F, 0, 0F);
+
+        boolean ignoresLight = copy.poseHash() == palette.poseHash() && copy.isSamePose(palette);
+
+        copy.set(1, matrices[2], 1F, 1F, 1F, 1F, 0, 0F);
+
+        boolean different = !copy.isSamePose(palette);
+
+        System.out.println(String.format("pose: same %s, ignores light %s, different %s", same, ignoresLight, different));
+        Assert.assrt("Pose comparison is wrong", same && ignoresLight && different);
+    }
+}
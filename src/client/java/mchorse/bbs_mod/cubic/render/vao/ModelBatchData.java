@@ -0,0 +1,28 @@
+package mchorse.bbs_mod.cubic.render.vao;
+
+import java.util.List;
+
+/**
+ * Model batch data
+ *
+ * All groups of a model packed into one interleaved vertex array (see
+ * {@link ModelBatchBuilder#STRIDE}) and one index array. Vertices of
+ * every batch are transformed by a palette of at most
+ * {@link ModelBatchBuilder#PALETTE_SIZE} bone matrices, so a whole model
+ * is drawn in as many draw calls as there are batches.
+ */
+public record ModelBatchData(float[] vertices, int[] indices, List<Batch> batches)
+{
+    public int getVertexCount()
+    {
+        return this.vertices.length / ModelBatchBuilder.STRIDE;
+    }
+
+    /**
+     * Range of indices that are drawn with the same palette. Vertices in
+     * the range store the index of their bone in {@link #bones}, which
+     * are (global) indices of model's groups.
+     */
+    public record Batch(int[] bones, int offset, int count)
+    {}
+}
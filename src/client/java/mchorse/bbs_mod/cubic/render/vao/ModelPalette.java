@@ -0,0 +1,150 @@
+package mchorse.bbs_mod.cubic.render.vao;
+
+import org.joml.Matrix4f;
+
+import java.util.Arrays;
+
+/**
+ * Model palette
+ *
+ * Per-draw state of every group of a batched model: bone matrix (relative
+ * to model's root, column-major), color, packed light and group's own
+ * lighting factor (used when light is applied per instance). Before drawing
+ * a batch, the state of its bones is copied into small arrays that are
+ * uploaded as uniform arrays.
+ *
+ * Hidden bones have a zero matrix, which collapses their triangles.
+ */
+public class ModelPalette
+{
+    public final float[] matrices;
+    public final float[] colors;
+    public final int[] lights;
+    public final float[] lighting;
+
+    /* Per-batch uniform arrays */
+    private float[] batchMatrices = new float[0];
+    private float[] batchColors = new float[0];
+    private int[] batchLights = new int[0];
+    private float[] batchLighting = new float[0];
+
+    public ModelPalette(int bones)
+    {
+        this.matrices = new float[bones * 16];
+        this.colors = new float[bones * 4];
+        this.lights = new int[bones];
+        this.lighting = new float[bones];
+    }
+
+    public ModelPalette copy()
+    {
+        ModelPalette palette = new ModelPalette(this.lights.length);
+
+        System.arraycopy(this.matrices, 0, palette.matrices, 0, this.matrices.length);
+        System.arraycopy(this.colors, 0, palette.colors, 0, this.colors.length);
+        System.arraycopy(this.lights, 0, palette.lights, 0, this.lights.length);
+        System.arraycopy(this.lighting, 0, palette.lighting, 0, this.lighting.length);
+
+        return palette;
+    }
+
+    /**
+     * Hash of the pose part of the palette (matrices, colors and lighting
+     * factors), see {@link #isSamePose(ModelPalette)}
+     */
+    public int poseHash()
+    {
+        int hash = Arrays.hashCode(this.matrices);
+
+        hash = hash * 31 + Arrays.hashCode(this.colors);
+        hash = hash * 31 + Arrays.hashCode(this.lighting);
+
+        return hash;
+    }
+
+    /**
+     * Whether both palettes transform and color the model the same way
+     * (packed lights aren't compared, because instanced rendering applies
+     * light per instance)
+     */
+    public boolean isSamePose(ModelPalette palette)
+    {
+        return Arrays.equals(this.matrices, palette.matrices)
+            && Arrays.equals(this.colors, palette.colors)
+            && Arrays.equals(this.lighting, palette.lighting);
+    }
+
+    public void hideAll()
+    {
+        Arrays.fill(this.matrices, 0F);
+        Arrays.fill(this.colors, 0F);
+        Arrays.fill(this.lighting, 0F);
+    }
+
+    public void set(int bone, Matrix4f matrix, float r, float g, float b, float a, int light, float lighting)
+    {
+        if (bone < 0 || bone >= this.lights.length)
+        {
+            return;
+        }
+
+        matrix.get(this.matrices, bone * 16);
+
+        this.colors[bone * 4] = r;
+        this.colors[bone * 4 + 1] = g;
+        this.colors[bone * 4 + 2] = b;
+        this.colors[bone * 4 + 3] = a;
+        this.lights[bone] = light;
+        this.lighting[bone] = lighting;
+    }
+
+    /**
+     * Copy state of given batch's bones into per-batch arrays (lights are
+     * unpacked into UV pairs)
+     */
+    public void fill(ModelBatchData.Batch batch)
+    {
+        int[] bones = batch.bones();
+
+        if (this.batchLights.length != bones.length * 2)
+        {
+            this.batchMatrices = new float[bones.length * 16];
+            this.batchColors = new float[bones.length * 4];
+            this.batchLights = new int[bones.length * 2];
+            this.batchLighting = new float[bones.length];
+        }
+
+        for (int i = 0; i < bones.length; i++)
+        {
+            int bone = bones[i];
+            int light = this.lights[bone];
+
+            System.arraycopy(this.matrices, bone * 16, this.batchMatrices, i * 16, 16);
+            System.arraycopy(this.colors, bone * 4, this.batchColors, i * 4, 4);
+
+            this.batchLights[i * 2] = light & 0xFFFF;
+            this.batchLights[i * 2 + 1] = light >> 16 & 0xFFFF;
+            this.batchLighting[i] = this.lighting[bone];
+        }
+    }
+
+    public float[] getBatchMatrices()
+    {
+        return this.batchMatrices;
+    }
+
+    public float[] getBatchColors()
+    {
+        return this.batchColors;
+    }
+
+    public int[] getBatchLights()
+    {
+        return this.batchLights;
+    }
+
+    public float[] getBatchLighting()
+    {
+        return this.batchLighting;
+    }
+}
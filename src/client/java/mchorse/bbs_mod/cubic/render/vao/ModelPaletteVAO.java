@@ -0,0 +1,232 @@
+package mchorse.bbs_mod.cubic.render.vao;
+
+import net.minecraft.client.gl.ShaderProgram;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Model palette VAO
+ *
+ * A whole model in one interleaved vertex buffer and one index buffer
+ * (see {@link ModelBatchData}). Every batch is drawn with a single
+ * glDrawElements call, after its bone palette is uploaded to the
+ * model_palette shader's uniform arrays.
+ *
+ * It can also be drawn instanced (model_instanced shader), in which case
+ * per-instance transforms, colors, lights and overlays are streamed into
+ * a separate instance buffer (see {@link #INSTANCE_STRIDE}).
+ */
+public class ModelPaletteVAO
+{
+    /**
+     * Instance layout: model-view matrix (16), color (4) and packed light
+     * and overlay (2, int bits stored as float)
+     */
+    public static final int INSTANCE_STRIDE = 22;
+    public static final int INSTANCE_COLOR = 16;
+    public static final int INSTANCE_LIGHT = 20;
+
+    private ModelBatchData data;
+
+    private int vao;
+    private int vertexBuffer;
+    private int indexBuffer;
+
+    /* Uniform locations of the last used shader */
+    private int program = -1;
+    private int bonesLocation;
+    private int colorsLocation;
+    private int lightsLocation;
+
+    /* Instanced rendering */
+    private int instanceBuffer;
+    private FloatBuffer instanceData;
+    private int instancedProgram = -1;
+    private int instanceBonesLocation;
+    private int instanceColorsLocation;
+    private int instanceLightingLocation;
+    private int instanceMatrixAttribute;
+    private int instanceColorAttribute;
+    private int instanceLightAttribute;
+
+    public ModelPaletteVAO(ModelBatchData data)
+    {
+        int currentVAO = GL30.glGetInteger(GL30.GL_VERTEX_ARRAY_BINDING);
+
+        this.data = data;
+        this.upload(data);
+
+        GL30.glBindVertexArray(currentVAO);
+    }
+
+    public ModelBatchData getData()
+    {
+        return this.data;
+    }
+
+    public void delete()
+    {
+        GL30.glDeleteVertexArrays(this.vao);
+        GL30.glDeleteBuffers(this.vertexBuffer);
+        GL30.glDeleteBuffers(this.indexBuffer);
+
+        if (this.instanceBuffer != 0)
+        {
+            GL30.glDeleteBuffers(this.instanceBuffer);
+            MemoryUtil.memFree(this.instanceData);
+
+            this.instanceBuffer = 0;
+            this.instanceData = null;
+        }
+    }
+
+    private void upload(ModelBatchData data)
+    {
+        int stride = ModelBatchBuilder.STRIDE * 4;
+
+        this.vao = GL30.glGenVertexArrays();
+        this.vertexBuffer = GL30.glGenBuffers();
+        this.indexBuffer = GL30.glGenBuffers();
+
+        GL30.glBindVertexArray(this.vao);
+
+        GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, this.vertexBuffer);
+        GL30.glBufferData(GL30.GL_ARRAY_BUFFER, data.vertices(), GL30.GL_STATIC_DRAW);
+        GL30.glVertexAttribPointer(Attributes.POSITION, 3, GL30.GL_FLOAT, false, stride, 0);
+        GL30.glVertexAttribPointer(Attributes.NORMAL, 3, GL30.GL_FLOAT, false, stride, ModelBatchBuilder.NORMAL * 4);
+        GL30.glVertexAttribPointer(Attributes.TEXTURE_UV, 2, GL30.GL_FLOAT, false, stride, ModelBatchBuilder.UV * 4);
+        /* Bone index goes into UV2 (lightmap) slot, like BOBJ's stencil bones */
+        GL30.glVertexAttribIPointer(Attributes.LIGHTMAP_UV, 1, GL30.GL_INT, stride, ModelBatchBuilder.BONE * 4);
+
+        GL30.glBindBuffer(GL30.GL_ELEMENT_ARRAY_BUFFER, this.indexBuffer);
+        GL30.glBufferData(GL30.GL_ELEMENT_ARRAY_BUFFER, data.indices(), GL30.GL_STATIC_DRAW);
+
+        GL30.glEnableVertexAttribArray(Attributes.POSITION);
+        GL30.glEnableVertexAttribArray(Attributes.NORMAL);
+        GL30.glEnableVertexAttribArray(Attributes.TEXTURE_UV);
+        GL30.glEnableVertexAttribArray(Attributes.LIGHTMAP_UV);
+
+        GL30.glDisableVertexAttribArray(Attributes.COLOR);
+        GL30.glDisableVertexAttribArray(Attributes.OVERLAY_UV);
+        GL30.glDisableVertexAttribArray(Attributes.TANGENTS);
+        GL30.glDisableVertexAttribArray(Attributes.MID_TEXTURE_UV);
+    }
+
+    /**
+     * Draw all batches. Given shader must be already bound.
+     */
+    public void render(ShaderProgram shader, ModelPalette palette, int overlay)
+    {
+        int program = shader.getGlRef();
+
+        if (this.program != program)
+        {
+            this.program = program;
+            this.bonesLocation = GL30.glGetUniformLocation(program, "Bones");
+            this.colorsLocation = GL30.glGetUniformLocation(program, "BoneColors");
+            this.lightsLocation = GL30.glGetUniformLocation(program, "BoneLights");
+        }
+
+        GL30.glBindVertexArray(this.vao);
+        GL30.glVertexAttribI2i(Attributes.OVERLAY_UV, overlay & '\uffff', overlay >> 16 & '\uffff');
+
+        for (ModelBatchData.Batch batch : this.data.batches())
+        {
+            palette.fill(batch);
+
+            GL30.glUniformMatrix4fv(this.bonesLocation, false, palette.getBatchMatrices());
+            GL30.glUniform4fv(this.colorsLocation, palette.getBatchColors());
+            GL30.glUniform2iv(this.lightsLocation, palette.getBatchLights());
+            GL30.glDrawElements(GL30.GL_TRIANGLES, batch.count(), GL30.GL_UNSIGNED_INT, batch.offset() * 4L);
+        }
+
+        GL30.glBindVertexArray(0);
+    }
+
+    /**
+     * Draw given amount of instances of all batches with the same palette.
+     * Given shader must be already bound.
+     */
+    public void renderInstanced(ShaderProgram shader, ModelPalette palette, float[] instances, int count)
+    {
+        int program = shader.getGlRef();
+
+        if (this.instancedProgram != program)
+        {
+            this.instancedProgram = program;
+            this.instanceBonesLocation = GL30.glGetUniformLocation(program, "Bones");
+            this.instanceColorsLocation = GL30.glGetUniformLocation(program, "BoneColors");
+            this.instanceLightingLocation = GL30.glGetUniformLocation(program, "BoneLighting");
+            this.instanceMatrixAttribute = GL30.glGetAttribLocation(program, "InstanceMat");
+            this.instanceColorAttribute = GL30.glGetAttribLocation(program, "InstanceColor");
+            this.instanceLightAttribute = GL30.glGetAttribLocation(program, "InstanceLight");
+        }
+
+        if (this.instanceMatrixAttribute < 0 || this.instanceColorAttribute < 0 || this.instanceLightAttribute < 0)
+        {
+            return;
+        }
+
+        int floats = count * INSTANCE_STRIDE;
+        int stride = INSTANCE_STRIDE * 4;
+
+        if (this.instanceBuffer == 0)
+        {
+            this.instanceBuffer = GL30.glGenBuffers();
+            this.instanceData = MemoryUtil.memAllocFloat(floats);
+        }
+        else if (this.instanceData.capacity() < floats)
+        {
+            this.instanceData = MemoryUtil.memRealloc(this.instanceData, floats);
+        }
+
+        this.instanceData.clear();
+        this.instanceData.put(instances, 0, floats);
+        this.instanceData.flip();
+
+        GL30.glBindVertexArray(this.vao);
+        GL30.glBindBuffer(GL30.GL_ARRAY_BUFFER, this.instanceBuffer);
+        GL30.glBufferData(GL30.GL_ARRAY_BUFFER, this.instanceData, GL30.GL_STREAM_DRAW);
+
+        /* mat4 takes four attribute locations, one per column */
+        for (int i = 0; i < 4; i++)
+        {
+            int location = this.instanceMatrixAttribute + i;
+
+            GL30.glVertexAttribPointer(location, 4, GL30.GL_FLOAT, false, stride, i * 16L);
+            GL33.glVertexAttribDivisor(location, 1);
+            GL30.glEnableVertexAttribArray(location);
+        }
+
+        GL30.glVertexAttribPointer(this.instanceColorAttribute, 4, GL30.GL_FLOAT, false, stride, INSTANCE_COLOR * 4L);
+        GL33.glVertexAttribDivisor(this.instanceColorAttribute, 1);
+        GL30.glEnableVertexAttribArray(this.instanceColorAttribute);
+
+        GL30.glVertexAttribIPointer(this.instanceLightAttribute, 2, GL30.GL_INT, stride, INSTANCE_LIGHT * 4L);
+        GL33.glVertexAttribDivisor(this.instanceLightAttribute, 1);
+        GL30.glEnableVertexAttribArray(this.instanceLightAttribute);
+
+        for (ModelBatchData.Batch batch : this.data.batches())
+        {
+            palette.fill(batch);
+
+            GL30.glUniformMatrix4fv(this.instanceBonesLocation, false, palette.getBatchMatrices());
+            GL30.glUniform4fv(this.instanceColorsLocation, palette.getBatchColors());
+            GL30.glUniform1fv(this.instanceLightingLocation, palette.getBatchLighting());
+            GL33.glDrawElementsInstanced(GL30.GL_TRIANGLES, batch.count(), GL30.GL_UNSIGNED_INT, batch.offset() * 4L, count);
+        }
+
+        /* Instance attributes shouldn't stay enabled for non-instanced rendering */
+        for (int i = 0; i < 4; i++)
+        {
+            GL30.glDisableVertexAttribArray(this.instanceMatrixAttribute + i);
+        }
+
+        GL30.glDisableVertexAttribArray(this.instanceColorAttribute);
+        GL30.glDisableVertexAttribArray(this.instanceLightAttribute);
+        GL30.glBindVertexArray(0);
+    }
+}
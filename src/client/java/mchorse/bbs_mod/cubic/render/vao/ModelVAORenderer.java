@@ -25,6 +25,24 @@ public class ModelVAORenderer
         GL30.glBindBuffer(GL30.GL_ELEMENT_ARRAY_BUFFER, currentElementArrayBuffer);
     }
 
+    /**
+     * Render a batched model, all of its batches with given palette
+     */
+    public static void render(ShaderProgram shader, ModelPaletteVAO modelVAO, ModelPalette palette, MatrixStack stack, int overlay)
+    {
+        int currentVAO = GL30.glGetInteger(GL30.GL_VERTEX_ARRAY_BINDING);
+        int currentElementArrayBuffer = GL30.glGetInteger(GL30.GL_ELEMENT_ARRAY_BUFFER_BINDING);
+
+        setupUniforms(stack, shader);
+
+        shader.bind();
+        modelVAO.render(shader, palette, overlay);
+        shader.unbind();
+
+        GL30.glBindVertexArray(currentVAO);
+        GL30.glBindBuffer(GL30.GL_ELEMENT_ARRAY_BUFFER, currentElementArrayBuffer);
+    }
+
     public static void setupUniforms(MatrixStack stack, ShaderProgram shader)
     {
         for (int i = 0; i < 12; i++)
@@ -15,6 +15,7 @@ import mchorse.bbs_mod.forms.forms.Form;
 import mchorse.bbs_mod.forms.forms.utils.Anchor;
 import mchorse.bbs_mod.forms.renderers.FormRenderType;
 import mchorse.bbs_mod.forms.renderers.FormRenderingContext;
+import mchorse.bbs_mod.forms.renderers.ModelFormRenderer;
 import mchorse.bbs_mod.forms.renderers.utils.MatrixCache;
 import mchorse.bbs_mod.mixin.client.ClientPlayerEntityAccessor;
 import mchorse.bbs_mod.morphing.Morph;
@@ -95,9 +96,9 @@ public abstract class BaseFilmController
 
         if (relative)
         {
-            cx = context.replay.keyframes.x.interpolate(0F) + context.replay.relativeOffset.get().x;
-            cy = context.replay.keyframes.y.interpolate(0F) + context.replay.relativeOffset.get().y;
-            cz = context.replay.keyframes.z.interpolate(0F) + context.replay.relativeOffset.get().z;
+            cx = context.replay.keyframes.x.interpolateDouble(0F) + context.replay.relativeOffset.get().x;
+            cy = context.replay.keyframes.y.interpolateDouble(0F) + context.replay.relativeOffset.get().y;
+            cz = context.replay.keyframes.z.interpolateDouble(0F) + context.replay.relativeOffset.get().z;
         }
 
         Matrix4f target = null;
@@ -376,6 +377,7 @@ public abstract class BaseFilmController
                 IEntity entity = new StubEntity(world);
 
                 entity.setForm(FormUtils.copy(replay.form.get()));
+                ModelFormRenderer.preloadModels(entity.getForm());
                 replay.keyframes.apply(0, entity);
                 entity.setPrevX(entity.getX());
                 entity.setPrevY(entity.getY());
@@ -441,20 +443,20 @@ public abstract class BaseFilmController
                         if (anEntity instanceof ActorEntity actor)
                         {
                             /* Force synchronize entity angles */
-                            actor.setYaw(replay.keyframes.yaw.interpolate(ticks).floatValue());
-                            actor.setHeadYaw(replay.keyframes.headYaw.interpolate(ticks).floatValue());
-                            actor.setBodyYaw(replay.keyframes.bodyYaw.interpolate(ticks).floatValue());
-                            actor.setPitch(replay.keyframes.pitch.interpolate(ticks).floatValue());
+                            actor.setYaw(replay.keyframes.yaw.interpolateFloat(ticks));
+                            actor.setHeadYaw(replay.keyframes.headYaw.interpolateFloat(ticks));
+                            actor.setBodyYaw(replay.keyframes.bodyYaw.interpolateFloat(ticks));
+                            actor.setPitch(replay.keyframes.pitch.interpolateFloat(ticks));
                             replay.applyClientActions(ticks, new MCEntity(anEntity), this.film);
                         }
                         else if (anEntity instanceof PlayerEntity player)
                         {
-                            double x = replay.keyframes.x.interpolate(ticks);
-                            double y = replay.keyframes.y.interpolate(ticks);
-                            double z = replay.keyframes.z.interpolate(ticks);
-                            double prevX = replay.keyframes.x.interpolate(ticks - 1);
-                            double prevY = replay.keyframes.y.interpolate(ticks - 1);
-                            double prevZ = replay.keyframes.z.interpolate(ticks - 1);
+                            double x = replay.keyframes.x.interpolateDouble(ticks);
+                            double y = replay.keyframes.y.interpolateDouble(ticks);
+                            double z = replay.keyframes.z.interpolateDouble(ticks);
+                            double prevX = replay.keyframes.x.interpolateDouble(ticks - 1);
+                            double prevY = replay.keyframes.y.interpolateDouble(ticks - 1);
+                            double prevZ = replay.keyframes.z.interpolateDouble(ticks - 1);
 
                             player.setVelocity(x - prevX, y - prevY, z - prevZ);
                         }
@@ -496,10 +498,10 @@ public abstract class BaseFilmController
 
                         if (anEntity instanceof PlayerEntity player)
                         {
-                            double x = replay.keyframes.x.interpolate(ticks);
-                            double y = replay.keyframes.y.interpolate(ticks);
-                            double z = replay.keyframes.z.interpolate(ticks);
-                            boolean sneaking = replay.keyframes.sneaking.interpolate(ticks) > 0;
+                            double x = replay.keyframes.x.interpolateDouble(ticks);
+                            double y = replay.keyframes.y.interpolateDouble(ticks);
+                            double z = replay.keyframes.z.interpolateDouble(ticks);
+                            boolean sneaking = replay.keyframes.sneaking.interpolateDouble(ticks) > 0;
 
                             Vec3d pos = player.getPos();
 
@@ -507,7 +509,7 @@ public abstract class BaseFilmController
                             player.setPosition(x, y, z);
 
                             player.setSneaking(sneaking);
-                            player.setOnGround(replay.keyframes.grounded.interpolate(ticks) > 0);
+                            player.setOnGround(replay.keyframes.grounded.interpolateDouble(ticks) > 0);
 
                             if (player instanceof ClientPlayerEntityAccessor accessor)
                             {
@@ -519,7 +521,7 @@ public abstract class BaseFilmController
                                 playerEntity.input.sneaking = sneaking;
                             }
 
-                            player.fallDistance = replay.keyframes.fall.interpolate(ticks).floatValue();
+                            player.fallDistance = replay.keyframes.fall.interpolateFloat(ticks);
                         }
                     }
                 }
@@ -588,9 +590,9 @@ public abstract class BaseFilmController
                             replay.properties.applyProperties(form, tick + delta);
                         }
 
-                        float yawHead = replay.keyframes.headYaw.interpolate(tick + delta).floatValue();
-                        float yawBody = replay.keyframes.bodyYaw.interpolate(tick + delta).floatValue();
-                        float pitch = replay.keyframes.pitch.interpolate(tick + delta).floatValue();
+                        float yawHead = replay.keyframes.headYaw.interpolateFloat(tick + delta);
+                        float yawBody = replay.keyframes.bodyYaw.interpolateFloat(tick + delta);
+                        float pitch = replay.keyframes.pitch.interpolateFloat(tick + delta);
 
                         player.setYaw(yawHead);
                         player.setHeadYaw(yawHead);
@@ -1,6 +1,7 @@
 package mchorse.bbs_mod.film;
 
 import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.logging.LogUtils;
 import mchorse.bbs_mod.BBSModClient;
 import mchorse.bbs_mod.BBSSettings;
 import mchorse.bbs_mod.audio.AudioRenderer;
@@ -9,7 +10,9 @@ import mchorse.bbs_mod.camera.controller.ICameraController;
 import mchorse.bbs_mod.camera.controller.PlayCameraController;
 import mchorse.bbs_mod.camera.controller.RunnerCameraController;
 import mchorse.bbs_mod.camera.utils.TimeUtils;
+import mchorse.bbs_mod.data.DataStorageUtils;
 import mchorse.bbs_mod.film.replays.Replay;
+import mchorse.bbs_mod.film.replays.ReplayKeyframes;
 import mchorse.bbs_mod.morphing.Morph;
 import mchorse.bbs_mod.network.ClientNetwork;
 import mchorse.bbs_mod.ui.ContentType;
@@ -22,6 +25,7 @@ import mchorse.bbs_mod.utils.colors.Colors;
 import mchorse.bbs_mod.utils.keyframes.KeyframeChannel;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
 import net.minecraft.client.MinecraftClient;
+import org.slf4j.Logger;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -31,6 +35,8 @@ import java.util.Map;
 
 public class Films
 {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
     private List<BaseFilmController> controllers = new ArrayList<BaseFilmController>();
     private Recorder recorder;
 
@@ -169,6 +175,11 @@ public class Films
                 channel.simplify();
             }
 
+            if (BBSSettings.recordingReduction.get())
+            {
+                this.reduceRecording(recorder.keyframes);
+            }
+
             if (ClientNetwork.isIsBBSModOnServer())
             {
                 ClientNetwork.sendActionRecording(recorder.film.getId(), recorder.exception, recorder.initialTick, 0, false);
@@ -180,6 +191,40 @@ public class Films
         return recorder;
     }
 
+    /**
+     * Reduce recorded keyframes with configured tolerances, and report
+     * keyframe counts and sizes before and after reduction (so tolerances
+     * could be tuned).
+     */
+    private void reduceRecording(ReplayKeyframes keyframes)
+    {
+        int countBefore = this.countKeyframes(keyframes);
+        int bytesBefore = DataStorageUtils.writeToBytes(keyframes.toData()).length;
+
+        keyframes.reduce(
+            BBSSettings.recordingReductionPosition.get(),
+            BBSSettings.recordingReductionRotation.get(),
+            BBSSettings.recordingReductionOther.get()
+        );
+
+        int countAfter = this.countKeyframes(keyframes);
+        int bytesAfter = DataStorageUtils.writeToBytes(keyframes.toData()).length;
+
+        LOGGER.info("Reduced recorded keyframes: " + countBefore + " -> " + countAfter + " keyframes, " + bytesBefore + " -> " + bytesAfter + " bytes");
+    }
+
+    private int countKeyframes(ReplayKeyframes keyframes)
+    {
+        int count = 0;
+
+        for (KeyframeChannel<?> channel : keyframes.getChannels())
+        {
+            count += channel.size();
+        }
+
+        return count;
+    }
+
     public void add(BaseFilmController controller)
     {
         this.controllers.add(controller);
@@ -25,9 +25,13 @@ import mchorse.bbs_mod.forms.forms.Form;
 import mchorse.bbs_mod.forms.forms.ModelForm;
 import mchorse.bbs_mod.forms.renderers.utils.MatrixCache;
 import mchorse.bbs_mod.forms.renderers.utils.MatrixCacheEntry;
+import mchorse.bbs_mod.forms.renderers.utils.PoseSnapshot;
 import mchorse.bbs_mod.resources.Link;
 import mchorse.bbs_mod.settings.values.core.ValuePose;
+import mchorse.bbs_mod.ui.dashboard.UIDashboard;
+import mchorse.bbs_mod.ui.film.UIFilmPanel;
 import mchorse.bbs_mod.ui.framework.UIContext;
+import mchorse.bbs_mod.ui.framework.UIScreen;
 import mchorse.bbs_mod.ui.framework.elements.utils.StencilMap;
 import mchorse.bbs_mod.utils.MathUtils;
 import mchorse.bbs_mod.utils.MatrixStackUtils;
@@ -71,6 +75,12 @@ public class ModelFormRenderer extends FormRenderer<ModelForm> implements ITicka
 
     private IEntity entity = new StubEntity();
 
+    /* Level of detail: last animated pose, and a frame counter that is
+     * staggered, so throttled forms don't all animate on the same frame */
+    private PoseSnapshot lodPose = new PoseSnapshot();
+    private int lodFrame = System.identityHashCode(this);
+    private boolean lodFrozen;
+
     @Override
     protected void applyTransforms(MatrixStack stack, boolean origin, float transition)
     {
@@ -118,11 +128,56 @@ public class ModelFormRenderer extends FormRenderer<ModelForm> implements ITicka
         return uiMatrix;
     }
 
+    /**
+     * Get how often (in frames) animation of a form at given distance should
+     * be updated: 1 is every frame, and 0 is never (the pose is frozen).
+     * The interval grows with distance, the same way as form's size on the
+     * screen shrinks.
+     */
+    public static int getLODInterval(float distance)
+    {
+        float near = BBSSettings.lodDistance.get();
+
+        if (distance <= near)
+        {
+            return 1;
+        }
+
+        if (distance >= BBSSettings.lodFreezeDistance.get())
+        {
+            return 0;
+        }
+
+        return MathUtils.clamp((int) (distance / near), 1, BBSSettings.lodMaxInterval.get());
+    }
+
     public static ModelInstance getModel(ModelForm form)
     {
         return BBSModClient.getModels().getModel(form.model.get());
     }
 
+    /**
+     * Queue models of given form and all of its body parts to be loaded in
+     * the background, so they would be ready by the time they're rendered
+     */
+    public static void preloadModels(Form form)
+    {
+        if (form == null)
+        {
+            return;
+        }
+
+        if (form instanceof ModelForm modelForm && !modelForm.model.get().isEmpty())
+        {
+            BBSModClient.getModels().preloadModel(modelForm.model.get());
+        }
+
+        for (BodyPart part : form.parts.getAllTyped())
+        {
+            preloadModels(part.getForm());
+        }
+    }
+
     public ModelFormRenderer(ModelForm form)
     {
         super(form);
@@ -225,6 +280,8 @@ public class ModelFormRenderer extends FormRenderer<ModelForm> implements ITicka
 
         this.ensureAnimator(context.getTransition());
 
+        this.lodFrozen = false;
+
         ModelInstance model = this.getModel();
 
         if (this.animator != null && model != null)
@@ -257,7 +314,7 @@ public class ModelFormRenderer extends FormRenderer<ModelForm> implements ITicka
                 ? GameRenderer::getRenderTypeEntityTranslucentCullProgram
                 : BBSShaders::getModel;
 
-            this.renderModel(this.entity, mainShader, stack, model, LightmapTextureManager.pack(15, 15), OverlayTexture.DEFAULT_UV, color, true, null, context.getTransition());
+            this.renderModel(this.entity, mainShader, stack, model, LightmapTextureManager.pack(15, 15), OverlayTexture.DEFAULT_UV, color, true, true, null, context.getTransition());
 
             /* Render body parts */
             stack.push();
@@ -275,7 +332,7 @@ public class ModelFormRenderer extends FormRenderer<ModelForm> implements ITicka
         }
     }
 
-    private void renderModel(IEntity target, Supplier<ShaderProgram> program, MatrixStack stack, ModelInstance model, int light, int overlay, Color color, boolean ui, StencilMap stencilMap, float transition)
+    private void renderModel(IEntity target, Supplier<ShaderProgram> program, MatrixStack stack, ModelInstance model, int light, int overlay, Color color, boolean ui, boolean items, StencilMap stencilMap, float transition)
     {
         if (!model.culling)
         {
@@ -312,9 +369,12 @@ public class ModelFormRenderer extends FormRenderer<ModelForm> implements ITicka
         }
 
         /* Render items */
-        this.captureMatrices(model);
+        if (items || !this.form.parts.getAllTyped().isEmpty())
+        {
+            this.captureMatrices(model);
+        }
 
-        if (stencilMap == null)
+        if (stencilMap == null && items)
         {
             this.renderItems(target, model, stack, EquipmentSlot.MAINHAND, ModelTransformationMode.THIRD_PERSON_RIGHT_HAND, model.itemsMain, color, overlay, light);
             this.renderItems(target, model, stack, EquipmentSlot.OFFHAND, ModelTransformationMode.THIRD_PERSON_LEFT_HAND, model.itemsOff, color, overlay, light);
@@ -459,7 +519,7 @@ public class ModelFormRenderer extends FormRenderer<ModelForm> implements ITicka
             RenderSystem.enableDepthTest();
             RenderSystem.enableBlend();
 
-            this.renderModel(this.entity, mainShader, matrices, model, light, OverlayTexture.DEFAULT_UV, color, false, null, 0F);
+            this.renderModel(this.entity, mainShader, matrices, model, light, OverlayTexture.DEFAULT_UV, color, false, true, null, 0F);
 
             for (ModelGroup group : model.getModel().getAllGroups())
             {
@@ -483,26 +543,102 @@ public class ModelFormRenderer extends FormRenderer<ModelForm> implements ITicka
 
         if (this.animator != null && model != null)
         {
+            float distance = this.getLODDistance(context);
+            ModelInstance lod = distance < 0F ? model : model.getLOD(distance);
             Link link = this.form.texture.get();
-            Link texture = link == null ? model.texture : link;
+            Link texture = link == null ? lod.texture : link;
             Color color = this.form.color.get().copy();
 
             color.mul(context.color);
-            model.model.resetPose();
 
-            this.animator.applyActions(context.entity, model, context.getTransition());
-            model.model.applyPose(this.getPose());
+            this.applyLODPose(context, model, distance);
+
+            /* Simplified mesh is posed with the pose of the full model */
+            if (lod != model)
+            {
+                lod.model.resetPose();
+                this.lodPose.apply(lod.model);
+            }
 
             context.stack.multiply(RotationAxis.POSITIVE_Y.rotation(MathUtils.PI));
 
             BBSModClient.getTextures().bindTexture(texture);
 
-            Supplier<ShaderProgram> mainShader = (BBSRendering.isIrisShadersEnabled() && BBSRendering.isRenderingWorld()) || !model.isVAORendered()
+            Supplier<ShaderProgram> mainShader = (BBSRendering.isIrisShadersEnabled() && BBSRendering.isRenderingWorld()) || !lod.isVAORendered()
                 ? GameRenderer::getRenderTypeEntityTranslucentCullProgram
                 : BBSShaders::getModel;
             Supplier<ShaderProgram> shader = this.getShader(context, mainShader, BBSShaders::getPickerModelsProgram);
 
-            this.renderModel(context.entity, shader, context.stack, model, context.light, context.overlay, color, false, context.stencilMap, context.getTransition());
+            this.renderModel(context.entity, shader, context.stack, lod, context.light, context.overlay, color, false, !this.lodFrozen, context.stencilMap, context.getTransition());
+        }
+    }
+
+    /**
+     * Get distance (in blocks, divided by form's LOD multiplier) from the
+     * camera to this form, or -1 if level of detail shouldn't be applied
+     * (it's disabled, the form is rendered in UI or for picking, or a film
+     * is being edited or recorded, where every frame must be exact). The
+     * matrix stack is relative to the camera in the world, so the distance
+     * is the length of its translation.
+     */
+    private float getLODDistance(FormRenderingContext context)
+    {
+        float scale = this.form.lodScale.get();
+
+        if (!BBSSettings.lodEnabled.get() || scale <= 0F || context.ui || context.isPicking())
+        {
+            return -1F;
+        }
+
+        if (context.type != FormRenderType.MODEL_BLOCK && context.type != FormRenderType.ENTITY)
+        {
+            return -1F;
+        }
+
+        if (BBSModClient.getVideoRecorder().isRecording())
+        {
+            return -1F;
+        }
+
+        if (UIScreen.getCurrentMenu() instanceof UIDashboard dashboard && dashboard.getPanels().panel instanceof UIFilmPanel)
+        {
+            return -1F;
+        }
+
+        return context.stack.peek().getPositionMatrix().getTranslation(Vectors.EMPTY_3F).length() / scale;
+    }
+
+    /**
+     * Animate the model, or reuse the last animated pose of this form when
+     * its animation is throttled (or frozen) due to distance
+     */
+    private void applyLODPose(FormRenderingContext context, ModelInstance model, float distance)
+    {
+        int interval = distance < 0F ? 1 : getLODInterval(distance);
+        boolean update = interval == 1 || !this.lodPose.has(model.model) || (interval > 1 && this.lodFrame % interval == 0);
+
+        this.lodFrame += 1;
+        this.lodFrozen = interval == 0;
+
+        if (!update)
+        {
+            this.lodPose.apply(model.model);
+
+            return;
+        }
+
+        model.model.resetPose();
+
+        this.animator.applyActions(context.entity, model, context.getTransition());
+        model.model.applyPose(this.getPose());
+
+        if (distance < 0F)
+        {
+            this.lodPose.clear();
+        }
+        else
+        {
+            this.lodPose.capture(model.model);
         }
     }
 
@@ -644,7 +780,8 @@ public class ModelFormRenderer extends FormRenderer<ModelForm> implements ITicka
     {
         this.ensureAnimator(0F);
 
-        if (this.animator != null)
+        /* Frozen forms don't need to advance their animations */
+        if (this.animator != null && !this.lodFrozen)
         {
             this.animator.update(entity);
         }
@@ -188,7 +188,7 @@ public class ParticleFormRenderer extends FormRenderer<ParticleForm> implements
                 this.restart = false;
             }
 
-            this.emitter.update();
+            BBSModClient.getParticleScheduler().schedule(this.emitter);
         }
     }
 }
\ No newline at end of file
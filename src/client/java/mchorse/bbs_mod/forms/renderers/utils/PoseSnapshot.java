@@ -0,0 +1,99 @@
+package mchorse.bbs_mod.forms.renderers.utils;
+
+import mchorse.bbs_mod.bobj.BOBJBone;
+import mchorse.bbs_mod.cubic.IModel;
+import mchorse.bbs_mod.cubic.data.model.ModelGroup;
+import mchorse.bbs_mod.utils.colors.Color;
+import mchorse.bbs_mod.utils.pose.Transform;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pose snapshot
+ *
+ * Copy of the animated state of model's groups (current transform, color
+ * and lighting) or BOBJ bones (transform), stored by their names. Because
+ * models are shared between forms, it allows a form to reuse its last
+ * animated pose without running the animator again, and to pose another
+ * model that has the same groups (a simplified mesh).
+ */
+public class PoseSnapshot
+{
+    private IModel model;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Whether this snapshot was captured from given model
+     */
+    public boolean has(IModel model)
+    {
+        return this.model != null && this.model == model;
+    }
+
+    public void clear()
+    {
+        this.model = null;
+        this.entries.clear();
+    }
+
+    public void capture(IModel model)
+    {
+        if (this.model != model)
+        {
+            this.entries.clear();
+        }
+
+        this.model = model;
+
+        for (ModelGroup group : model.getAllGroups())
+        {
+            Entry entry = this.entries.computeIfAbsent(group.id, (k) -> new Entry());
+
+            entry.transform.copy(group.current);
+            entry.color.copy(group.color);
+            entry.lighting = group.lighting;
+        }
+
+        for (BOBJBone bone : model.getAllBOBJBones())
+        {
+            this.entries.computeIfAbsent(bone.name, (k) -> new Entry()).transform.copy(bone.transform);
+        }
+    }
+
+    /**
+     * Apply captured state onto given model. Groups (or bones) that weren't
+     * captured are left untouched.
+     */
+    public void apply(IModel model)
+    {
+        for (ModelGroup group : model.getAllGroups())
+        {
+            Entry entry = this.entries.get(group.id);
+
+            if (entry != null)
+            {
+                group.current.copy(entry.transform);
+                group.color.copy(entry.color);
+                group.lighting = entry.lighting;
+            }
+        }
+
+        for (BOBJBone bone : model.getAllBOBJBones())
+        {
+            Entry entry = this.entries.get(bone.name);
+
+            if (entry != null)
+            {
+                bone.transform.copy(entry.transform);
+            }
+        }
+    }
+
+    private static class Entry
+    {
+        public final Transform transform = new Transform();
+        public final Color color = new Color();
+        public float lighting;
+    }
+}
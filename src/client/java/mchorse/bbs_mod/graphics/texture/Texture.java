@@ -99,6 +99,22 @@ public class Texture
         return this.mipmap && this.getParameter(GL30.GL_TEXTURE_MAX_LEVEL) > 0;
     }
 
+    /**
+     * Approximate amount of video memory that is used by this texture
+     * (including mipmaps)
+     */
+    public long getByteSize()
+    {
+        if (!this.isValid())
+        {
+            return 0;
+        }
+
+        long bytes = (long) this.width * this.height * this.format.bytes;
+
+        return this.mipmap ? bytes * 4 / 3 : bytes;
+    }
+
     public boolean isValid()
     {
         return this.id >= 0;
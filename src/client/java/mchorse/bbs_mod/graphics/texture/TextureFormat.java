@@ -5,15 +5,16 @@ import org.lwjgl.opengl.GL30;
 
 public enum TextureFormat
 {
-    RGBA_U8(GL11.GL_RGBA8, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, GL30.GL_COLOR_ATTACHMENT0),
-    RGB_U8(GL11.GL_RGB8, GL11.GL_RGB, GL11.GL_UNSIGNED_BYTE, GL30.GL_COLOR_ATTACHMENT0),
-    RGBA_F16(GL30.GL_RGBA16F, GL11.GL_RGBA, GL11.GL_FLOAT, GL30.GL_COLOR_ATTACHMENT0),
-    DEPTH_F24(GL30.GL_DEPTH_COMPONENT24, GL30.GL_DEPTH_COMPONENT, GL30.GL_FLOAT, GL30.GL_DEPTH_ATTACHMENT);
+    RGBA_U8(GL11.GL_RGBA8, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, GL30.GL_COLOR_ATTACHMENT0, 4),
+    RGB_U8(GL11.GL_RGB8, GL11.GL_RGB, GL11.GL_UNSIGNED_BYTE, GL30.GL_COLOR_ATTACHMENT0, 3),
+    RGBA_F16(GL30.GL_RGBA16F, GL11.GL_RGBA, GL11.GL_FLOAT, GL30.GL_COLOR_ATTACHMENT0, 8),
+    DEPTH_F24(GL30.GL_DEPTH_COMPONENT24, GL30.GL_DEPTH_COMPONENT, GL30.GL_FLOAT, GL30.GL_DEPTH_ATTACHMENT, 4);
 
     public final int internal;
     public final int format;
     public final int type;
     public final int attachment;
+    public final int bytes;
 
     public static TextureFormat getByName(String name)
     {
@@ -29,12 +30,13 @@ public enum TextureFormat
         return RGBA_U8;
     }
 
-    private TextureFormat(int internal, int format, int type, int attachment)
+    private TextureFormat(int internal, int format, int type, int attachment, int bytes)
     {
         this.internal = internal;
         this.format = format;
         this.type = type;
         this.attachment = attachment;
+        this.bytes = bytes;
     }
 
     public boolean isDepth()
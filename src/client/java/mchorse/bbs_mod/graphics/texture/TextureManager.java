@@ -2,6 +2,7 @@ package mchorse.bbs_mod.graphics.texture;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 import mchorse.bbs_mod.BBSMod;
+import mchorse.bbs_mod.BBSSettings;
 import mchorse.bbs_mod.client.BBSRendering;
 import mchorse.bbs_mod.resources.AssetProvider;
 import mchorse.bbs_mod.resources.Link;
@@ -14,21 +15,47 @@ import mchorse.bbs_mod.utils.watchdog.IWatchDogListener;
 import mchorse.bbs_mod.utils.watchdog.WatchDogEvent;
 import org.lwjgl.opengl.GL11;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TextureManager implements IWatchDogListener
 {
+    /**
+     * Amount of frames during which a recently used texture can't be
+     * evicted. Textures of forms that are being rendered are requested
+     * every frame, so they're never evicted.
+     */
+    public static final int PINNED_FRAMES = 20;
+
     public final Map<Link, Texture> textures = new HashMap<>();
     public final Map<Link, AnimatedTexture> animatedTextures = new HashMap<>();
     public AssetProvider provider;
 
     private Texture error;
+    private Texture placeholder;
     private TextureExtruder extruder = new TextureExtruder();
     private int tick;
 
+    /* Asynchronous loading */
+    private ExecutorService loader;
+    private final Map<Link, LoadRequest> loading = new HashMap<>();
+    private final Queue<LoadRequest> decoded = new ConcurrentLinkedQueue<>();
+
+    /* Residency (least recently used textures come first) */
+    private final Map<Link, Residency> residency = new LinkedHashMap<>(16, 0.75F, true);
+    private long usedBytes;
+    private int evictions;
+    private int frame;
+
     public TextureManager(AssetProvider provider)
     {
         this.provider = provider;
@@ -82,6 +109,30 @@ public class TextureManager implements IWatchDogListener
         return this.error;
     }
 
+    /**
+     * Texture that is returned instead of textures which are being loaded
+     * asynchronously
+     */
+    public Texture getPlaceholder()
+    {
+        if (this.placeholder == null)
+        {
+            Pixels pixels = Pixels.fromSize(1, 1);
+
+            pixels.setColor(0, 0, new Color().set(0xff808080));
+            pixels.rewindBuffer();
+
+            Texture texture = new Texture();
+            texture.setFilter(GL11.GL_NEAREST);
+            texture.uploadTexture(pixels);
+            texture.unbind();
+
+            this.placeholder = texture;
+        }
+
+        return this.placeholder;
+    }
+
     public void bindTexture(Link texture)
     {
         this.bindTexture(texture, 0);
@@ -121,6 +172,9 @@ public class TextureManager implements IWatchDogListener
 
     public void delete(Link link)
     {
+        this.loading.remove(link);
+        this.forget(link);
+
         Texture texture = this.textures.remove(link);
 
         if (texture != null)
@@ -191,35 +245,20 @@ public class TextureManager implements IWatchDogListener
 
         if (texture == null)
         {
+            if (this.canLoadAsync(link))
+            {
+                this.loadAsync(link, filter, silent);
+
+                return this.getPlaceholder();
+            }
+
             try
             {
                 Pixels pixels = this.getPixels(link);
 
                 if (pixels != null)
                 {
-                    if (!link.source.startsWith("http"))
-                    {
-                        try (InputStream stream = this.provider.getAsset(new Link(link.source, link.path + ".mcmeta")))
-                        {
-                            AnimatedTexture animatedTexture = AnimatedTexture.load(stream, pixels);
-
-                            texture = animatedTexture.getTexture(this.tick);
-
-                            System.out.println("Animated texture \"" + link + "\" was loaded!");
-
-                            this.animatedTextures.put(link, animatedTexture);
-
-                            return texture;
-                        }
-                        catch (Exception e)
-                        {}
-                    }
-
-                    texture = Texture.textureFromPixels(pixels, filter);
-
-                    System.out.println("Texture \"" + link + "\" was loaded!");
-
-                    this.textures.put(link, texture);
+                    texture = this.upload(link, pixels, this.readMeta(link), filter);
                 }
                 else
                 {
@@ -244,8 +283,316 @@ public class TextureManager implements IWatchDogListener
         return texture;
     }
 
+    /**
+     * Read texture's .mcmeta file (if there is one), which makes it an
+     * animated texture
+     */
+    private byte[] readMeta(Link link)
+    {
+        if (link.source.startsWith("http"))
+        {
+            return null;
+        }
+
+        try (InputStream stream = this.provider.getAsset(new Link(link.source, link.path + ".mcmeta")))
+        {
+            return stream.readAllBytes();
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Upload decoded pixels as a texture (or an animated texture, if given
+     * .mcmeta data is valid), and register it
+     */
+    private Texture upload(Link link, Pixels pixels, byte[] meta, int filter)
+    {
+        if (meta != null)
+        {
+            try
+            {
+                AnimatedTexture animatedTexture = AnimatedTexture.load(new ByteArrayInputStream(meta), pixels);
+                long bytes = 0;
+
+                for (Texture texture : animatedTexture.textures)
+                {
+                    bytes += texture.getByteSize();
+                }
+
+                System.out.println("Animated texture \"" + link + "\" was loaded!");
+
+                pixels.delete();
+                this.animatedTextures.put(link, animatedTexture);
+                this.track(link, bytes);
+
+                return animatedTexture.getTexture(this.tick);
+            }
+            catch (Exception e)
+            {}
+        }
+
+        Texture texture = Texture.textureFromPixels(pixels, filter);
+
+        System.out.println("Texture \"" + link + "\" was loaded!");
+
+        this.textures.put(link, texture);
+        this.track(link, texture.getByteSize());
+
+        return texture;
+    }
+
+    /* Asynchronous loading */
+
+    private boolean canLoadAsync(Link link)
+    {
+        /* Multi-skins have their own thread */
+        return BBSSettings.texturesAsync.get() && !(link instanceof MultiLink);
+    }
+
+    /**
+     * Decode the texture on the loader's thread, unless it's already being
+     * loaded. Decoded pixels are uploaded in {@link #processUploads()}.
+     */
+    private void loadAsync(Link link, int filter, boolean silent)
+    {
+        if (this.loading.containsKey(link))
+        {
+            return;
+        }
+
+        LoadRequest request = new LoadRequest(link, filter, silent);
+
+        this.loading.put(link, request);
+        this.getLoader().execute(() ->
+        {
+            request.started = System.nanoTime();
+
+            try
+            {
+                request.pixels = this.getPixels(link);
+
+                if (request.pixels != null)
+                {
+                    request.meta = this.readMeta(link);
+                }
+            }
+            catch (Exception e)
+            {
+                request.error = e;
+            }
+
+            request.decoded = System.nanoTime();
+
+            this.decoded.add(request);
+        });
+    }
+
+    private ExecutorService getLoader()
+    {
+        if (this.loader == null)
+        {
+            int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+            this.loader = Executors.newFixedThreadPool(threads, (runnable) ->
+            {
+                Thread thread = new Thread(runnable, "BBS texture loader");
+
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+
+        return this.loader;
+    }
+
+    /**
+     * Upload textures that were decoded asynchronously. It should be called
+     * on the render thread every frame, and it stops once the upload time
+     * budget is exceeded, so remaining textures get uploaded next frame.
+     */
+    public void processUploads()
+    {
+        if (this.decoded.isEmpty())
+        {
+            return;
+        }
+
+        long budget = BBSSettings.texturesUploadBudget.get() * 1_000_000L;
+        long start = System.nanoTime();
+        LoadRequest request;
+
+        while ((request = this.decoded.poll()) != null)
+        {
+            this.finishLoading(request);
+
+            if (System.nanoTime() - start >= budget)
+            {
+                break;
+            }
+        }
+    }
+
+    private void finishLoading(LoadRequest request)
+    {
+        Link link = request.link;
+
+        /* The texture was deleted or reloaded while it was being decoded */
+        if (this.loading.get(link) != request || this.get(link) != null)
+        {
+            if (this.loading.get(link) == request)
+            {
+                this.loading.remove(link);
+            }
+
+            if (request.pixels != null)
+            {
+                request.pixels.delete();
+            }
+
+            return;
+        }
+
+        this.loading.remove(link);
+
+        if (request.error != null || request.pixels == null)
+        {
+            if (request.error != null && !request.silent)
+            {
+                request.error.printStackTrace();
+            }
+
+            this.textures.put(link, this.getError());
+
+            return;
+        }
+
+        long uploadStart = System.nanoTime();
+
+        this.upload(link, request.pixels, request.meta, request.filter);
+
+        long now = System.nanoTime();
+
+        System.out.println(String.format("Texture \"%s\" took %.1f ms to load (decoding %.1f ms, waiting %.1f ms, uploading %.1f ms)",
+            link,
+            (now - request.requested) / 1_000_000D,
+            (request.decoded - request.started) / 1_000_000D,
+            (uploadStart - request.decoded + request.started - request.requested) / 1_000_000D,
+            (now - uploadStart) / 1_000_000D
+        ));
+    }
+
+    /* Residency */
+
+    public long getUsedBytes()
+    {
+        return this.usedBytes;
+    }
+
+    public int getEvictions()
+    {
+        return this.evictions;
+    }
+
+    public int getResidentCount()
+    {
+        return this.residency.size();
+    }
+
+    private void track(Link link, long bytes)
+    {
+        this.forget(link);
+
+        Residency residency = new Residency(bytes, this.frame);
+
+        this.residency.put(link, residency);
+        this.usedBytes += bytes;
+    }
+
+    private void forget(Link link)
+    {
+        Residency residency = this.residency.remove(link);
+
+        if (residency != null)
+        {
+            this.usedBytes -= residency.bytes;
+        }
+    }
+
+    /**
+     * Prepare textures for a new frame: upload asynchronously decoded
+     * textures, and evict least recently used textures if the video memory
+     * budget is exceeded
+     */
+    public void startRenderFrame()
+    {
+        this.frame += 1;
+
+        this.processUploads();
+        this.evict();
+    }
+
+    /**
+     * Delete least recently used textures until used memory fits into the
+     * budget (see {@link BBSSettings#texturesBudget}). Evicted textures are
+     * loaded again by their link once they're requested.
+     */
+    public void evict()
+    {
+        long budget = BBSSettings.texturesBudget.get() * 1024L * 1024L;
+
+        if (budget <= 0 || this.usedBytes <= budget)
+        {
+            return;
+        }
+
+        Iterator<Map.Entry<Link, Residency>> it = this.residency.entrySet().iterator();
+
+        while (it.hasNext() && this.usedBytes > budget)
+        {
+            Map.Entry<Link, Residency> entry = it.next();
+            Residency residency = entry.getValue();
+
+            if (this.frame - residency.lastUsed < PINNED_FRAMES)
+            {
+                /* The rest of textures were used even more recently */
+                break;
+            }
+
+            Link link = entry.getKey();
+            Texture texture = this.textures.remove(link);
+
+            if (texture != null)
+            {
+                texture.delete();
+            }
+
+            AnimatedTexture animatedTexture = this.animatedTextures.remove(link);
+
+            if (animatedTexture != null)
+            {
+                animatedTexture.delete();
+            }
+
+            it.remove();
+
+            this.usedBytes -= residency.bytes;
+            this.evictions += 1;
+        }
+    }
+
     private Texture get(Link link)
     {
+        Residency residency = this.residency.get(link);
+
+        if (residency != null)
+        {
+            residency.lastUsed = this.frame;
+        }
+
         if (this.animatedTextures.containsKey(link))
         {
             Texture texture = this.animatedTextures.get(link).getTexture(this.tick);
@@ -270,12 +617,17 @@ public class TextureManager implements IWatchDogListener
 
         this.textures.clear();
         this.animatedTextures.clear();
+        this.loading.clear();
+        this.residency.clear();
+        this.usedBytes = 0;
         this.extruder.deleteAll();
     }
 
     public void update()
     {
         this.tick += 1;
+
+        this.processUploads();
     }
 
     /**
@@ -297,6 +649,9 @@ public class TextureManager implements IWatchDogListener
             link = new Link(link.source, StringUtils.removeExtension(link.path));
         }
 
+        this.loading.remove(link);
+        this.forget(link);
+
         Texture texture = this.textures.remove(link);
 
         if (texture != null)
@@ -313,4 +668,37 @@ public class TextureManager implements IWatchDogListener
 
         this.extruder.delete(link);
     }
-}
\ No newline at end of file
+
+    private static class LoadRequest
+    {
+        public final Link link;
+        public final int filter;
+        public final boolean silent;
+        public final long requested = System.nanoTime();
+
+        public long started;
+        public long decoded;
+        public Pixels pixels;
+        public byte[] meta;
+        public Exception error;
+
+        public LoadRequest(Link link, int filter, boolean silent)
+        {
+            this.link = link;
+            this.filter = filter;
+            this.silent = silent;
+        }
+    }
+
+    private static class Residency
+    {
+        public final long bytes;
+        public int lastUsed;
+
+        public Residency(long bytes, int lastUsed)
+        {
+            this.bytes = bytes;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
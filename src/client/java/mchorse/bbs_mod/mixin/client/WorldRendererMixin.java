@@ -3,11 +3,15 @@ package mchorse.bbs_mod.mixin.client;
 import com.mojang.blaze3d.systems.RenderSystem;
 import mchorse.bbs_mod.BBSSettings;
 import mchorse.bbs_mod.client.BBSRendering;
+import mchorse.bbs_mod.particles.emitter.ParticleCollisionGrid;
 import mchorse.bbs_mod.utils.colors.Color;
+import net.minecraft.block.BlockState;
 import net.minecraft.client.gl.Framebuffer;
 import net.minecraft.client.render.RenderLayer;
 import net.minecraft.client.render.WorldRenderer;
 import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.BlockView;
 import org.joml.Matrix4f;
 import org.lwjgl.opengl.GL11;
 import org.spongepowered.asm.mixin.Mixin;
@@ -57,6 +61,12 @@ public class WorldRendererMixin
         }
     }
 
+    @Inject(method = "render", at = @At(value = "CONSTANT", args = "stringValue=destroyProgress"))
+    public void onRenderBlockEntitiesEnd(CallbackInfo info)
+    {
+        BBSRendering.onRenderBlockEntitiesEnd();
+    }
+
     @Inject(at = @At("RETURN"), method = "loadEntityOutlinePostProcessor")
     private void onLoadEntityOutlineShader(CallbackInfo info)
     {
@@ -73,4 +83,10 @@ public class WorldRendererMixin
 
         BBSRendering.resizeExtraFramebuffers();
     }
+
+    @Inject(method = "updateBlock", at = @At("HEAD"))
+    private void onUpdateBlock(BlockView world, BlockPos pos, BlockState oldState, BlockState newState, int flags, CallbackInfo info)
+    {
+        ParticleCollisionGrid.markBlockUpdate(pos);
+    }
 }
\ No newline at end of file
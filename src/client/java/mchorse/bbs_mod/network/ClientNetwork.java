@@ -5,8 +5,10 @@ import mchorse.bbs_mod.actions.ActionState;
 import mchorse.bbs_mod.blocks.entities.ModelBlockEntity;
 import mchorse.bbs_mod.blocks.entities.ModelProperties;
 import mchorse.bbs_mod.client.BBSRendering;
+import mchorse.bbs_mod.data.DataPatch;
 import mchorse.bbs_mod.data.DataStorageUtils;
 import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.MapType;
 import mchorse.bbs_mod.entity.GunProjectileEntity;
 import mchorse.bbs_mod.entity.IEntityFormProvider;
@@ -38,7 +40,9 @@ import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Hand;
 import net.minecraft.util.math.BlockPos;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.function.Consumer;
@@ -51,10 +55,22 @@ public class ClientNetwork
 
     private static boolean isBBSModOnServer;
 
+    private static String syncFilmId;
+    private static Map<String, SyncBaseline> syncBaselines = new HashMap<>();
+    private static int syncRevision;
+
     public static void resetHandshake()
     {
         isBBSModOnServer = false;
         crusher.reset();
+
+        syncFilmId = null;
+        syncBaselines.clear();
+    }
+
+    public static void tick()
+    {
+        crusher.tick();
     }
 
     public static boolean isIsBBSModOnServer()
@@ -83,6 +99,7 @@ public class ClientNetwork
         ClientPlayNetworking.registerGlobalReceiver(ServerNetwork.CLIENT_SELECTED_SLOT, (client, handler, buf, responseSender) -> handleSelectedSlotPacket(client, buf));
         ClientPlayNetworking.registerGlobalReceiver(ServerNetwork.CLIENT_ANIMATION_STATE_MODEL_BLOCK_TRIGGER, (client, handler, buf, responseSender) -> handleAnimationStateModelBlockPacket(client, buf));
         ClientPlayNetworking.registerGlobalReceiver(ServerNetwork.CLIENT_REFRESH_MODEL_BLOCKS, (client, handler, buf, responseSender) -> handleRefreshModelBlocksPacket(client, buf));
+        ClientPlayNetworking.registerGlobalReceiver(ServerNetwork.CLIENT_FILM_DATA_SYNC_RESET, (client, handler, buf, responseSender) -> handleSyncDataResetPacket(client, buf));
     }
 
     /* Handlers */
@@ -182,6 +199,61 @@ public class ClientNetwork
     private static void handleHandshakePacket(MinecraftClient client, PacketByteBuf buf)
     {
         isBBSModOnServer = true;
+
+        /* Older servers don't send transport flags, so they get neither
+         * the reply nor deflated payloads */
+        buf.readString();
+
+        if (buf.isReadable())
+        {
+            int flags = PacketCrusher.getTransportFlags();
+            PacketByteBuf reply = PacketByteBufs.create();
+
+            crusher.setTransportFlags(buf.readByte() & flags);
+            reply.writeByte(flags);
+
+            ClientPlayNetworking.send(ServerNetwork.SERVER_HANDSHAKE, reply);
+        }
+    }
+
+    private static void handleSyncDataResetPacket(MinecraftClient client, PacketByteBuf buf)
+    {
+        String filmId = buf.readString();
+        List<String> path = new ArrayList<>();
+
+        for (int i = 0, c = buf.readInt(); i < c; i++)
+        {
+            path.add(buf.readString());
+        }
+
+        int revision = buf.readInt();
+
+        client.execute(() ->
+        {
+            DataPath dataPath = new DataPath(path);
+            SyncBaseline baseline = syncBaselines.get(filmId + ":" + dataPath);
+
+            /* Full data was already sent after the rejected patch */
+            if (baseline != null && baseline.full > revision)
+            {
+                return;
+            }
+
+            syncBaselines.remove(filmId + ":" + dataPath);
+
+            UIFilmPanel panel = BBSModClient.getDashboard().getPanels().getPanel(UIFilmPanel.class);
+            Film film = panel == null ? null : panel.getData();
+
+            if (film != null && film.getId().equals(filmId))
+            {
+                BaseValue value = film.getRecursively(dataPath);
+
+                if (value != null)
+                {
+                    sendSyncData(filmId, value);
+                }
+            }
+        });
     }
 
     private static void handleRecordedActionsPacket(MinecraftClient client, PacketByteBuf buf)
@@ -481,20 +553,67 @@ public class ClientNetwork
         ClientPlayNetworking.send(ServerNetwork.SERVER_ACTION_CONTROL, buf);
     }
 
+    /**
+     * Sync given film's value to the server. The first time a value is synced,
+     * it's sent in full, and after that only a patch (see {@link DataPatch})
+     * against the previously synced data is sent.
+     */
     public static void sendSyncData(String filmId, BaseValue data)
     {
-        crusher.send(MinecraftClient.getInstance().player, ServerNetwork.SERVER_FILM_DATA_SYNC, data.toData(), (packetByteBuf) ->
+        if (!filmId.equals(syncFilmId))
         {
-            DataPath path = data.getPath();
+            syncFilmId = filmId;
+            syncBaselines.clear();
+        }
 
-            packetByteBuf.writeString(filmId);
-            packetByteBuf.writeInt(path.strings.size());
+        DataPath path = data.getPath();
+        String key = filmId + ":" + path;
+        BaseType newData = data.toData();
+        SyncBaseline baseline = syncBaselines.get(key);
+        int revision = syncRevision += 1;
+
+        if (baseline != null)
+        {
+            ListType patch = DataPatch.diff(baseline.data, newData);
 
-            for (String string : path.strings)
+            if (patch.isEmpty())
             {
-                packetByteBuf.writeString(string);
+                return;
             }
+
+            int baseRevision = baseline.revision;
+
+            crusher.send(MinecraftClient.getInstance().player, ServerNetwork.SERVER_FILM_DATA_PATCH, patch, (packetByteBuf) ->
+            {
+                writeSyncPath(packetByteBuf, filmId, path);
+                packetByteBuf.writeInt(baseRevision);
+                packetByteBuf.writeInt(revision);
+            });
+
+            baseline.data = newData;
+            baseline.revision = revision;
+
+            return;
+        }
+
+        crusher.send(MinecraftClient.getInstance().player, ServerNetwork.SERVER_FILM_DATA_SYNC, newData, (packetByteBuf) ->
+        {
+            writeSyncPath(packetByteBuf, filmId, path);
+            packetByteBuf.writeInt(revision);
         });
+
+        syncBaselines.put(key, new SyncBaseline(newData, revision));
+    }
+
+    private static void writeSyncPath(PacketByteBuf packetByteBuf, String filmId, DataPath path)
+    {
+        packetByteBuf.writeString(filmId);
+        packetByteBuf.writeInt(path.strings.size());
+
+        for (String string : path.strings)
+        {
+            packetByteBuf.writeString(string);
+        }
     }
 
     public static void sendTeleport(PlayerEntity entity, double x, double y, double z)
@@ -553,4 +672,18 @@ public class ClientNetwork
 
         ClientPlayNetworking.send(ServerNetwork.SERVER_PAUSE_FILM, buf);
     }
-}
\ No newline at end of file
+
+    private static class SyncBaseline
+    {
+        public BaseType data;
+        public int revision;
+        public final int full;
+
+        public SyncBaseline(BaseType data, int revision)
+        {
+            this.data = data;
+            this.revision = revision;
+            this.full = revision;
+        }
+    }
+}
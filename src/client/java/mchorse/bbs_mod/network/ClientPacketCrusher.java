@@ -7,9 +7,30 @@ import net.minecraft.util.Identifier;
 
 public class ClientPacketCrusher extends PacketCrusher
 {
+    private boolean deflate;
+
+    public void setTransportFlags(int flags)
+    {
+        this.deflate = (flags & TRANSPORT_DEFLATE) != 0;
+    }
+
+    @Override
+    public synchronized void reset()
+    {
+        super.reset();
+
+        this.deflate = false;
+    }
+
+    @Override
+    protected boolean canDeflate(PlayerEntity entity)
+    {
+        return this.deflate;
+    }
+
     @Override
     protected void sendBuffer(PlayerEntity entity, Identifier identifier, PacketByteBuf buf)
     {
         ClientPlayNetworking.send(identifier, buf);
     }
-}
\ No newline at end of file
+}
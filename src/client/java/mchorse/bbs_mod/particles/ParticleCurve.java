@@ -2,6 +2,7 @@ package mchorse.bbs_mod.particles;
 
 import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.MapType;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.Variable;
 import mchorse.bbs_mod.math.molang.MolangException;
 import mchorse.bbs_mod.math.molang.MolangParser;
@@ -27,12 +28,34 @@ public class ParticleCurve
         this.nodes.add(MolangParser.ZERO);
     }
 
-    public double compute()
+    /**
+     * Whether this curve depends only on emitter variables, so it has the
+     * same value for all particles of the emitter
+     */
+    public boolean isInvariant(ParticleMolangParser parser)
     {
-        return this.computeCurve(this.input.get() / this.range.get());
+        if (!parser.isInvariant(this.input) || !parser.isInvariant(this.range))
+        {
+            return false;
+        }
+
+        for (MolangExpression node : this.nodes)
+        {
+            if (!parser.isInvariant(node))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public double compute(MathContext context)
+    {
+        return this.computeCurve(context, this.input.get(context) / this.range.get(context));
     }
 
-    private double computeCurve(double factor)
+    private double computeCurve(MathContext context, double factor)
     {
         int length = this.nodes.size();
 
@@ -42,7 +65,7 @@ public class ParticleCurve
         }
         else if (length == 1)
         {
-            return this.nodes.get(0).get();
+            return this.nodes.get(0).get(context);
         }
 
         if (factor < 0)
@@ -56,7 +79,7 @@ public class ParticleCurve
         {
             if (length <= 3)
             {
-                return this.nodes.get(length - 2).get();
+                return this.nodes.get(length - 2).get(context);
             }
 
             factor *= (length - 3);
@@ -67,7 +90,7 @@ public class ParticleCurve
             MolangExpression next = this.getNode(index + 1);
             MolangExpression afterNext = this.getNode(index + 2);
 
-            return Lerps.cubicHermite(beforeFirst.get(), first.get(), next.get(), afterNext.get(), factor % 1);
+            return Lerps.cubicHermite(beforeFirst.get(context), first.get(context), next.get(context), afterNext.get(context), factor % 1);
         }
 
         factor *= length - 1;
@@ -76,7 +99,7 @@ public class ParticleCurve
         MolangExpression first = this.getNode(index);
         MolangExpression next = this.getNode(index + 1);
 
-        return Lerps.lerp(first.get(), next.get(), factor % 1);
+        return Lerps.lerp(first.get(context), next.get(context), factor % 1);
     }
 
     private MolangExpression getNode(int index)
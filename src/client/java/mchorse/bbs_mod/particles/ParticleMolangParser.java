@@ -1,13 +1,46 @@
 package mchorse.bbs_mod.particles;
 
+import mchorse.bbs_mod.BBSSettings;
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.math.compiler.MathCompiler;
+import mchorse.bbs_mod.math.compiler.MathOptimizer;
+import mchorse.bbs_mod.math.molang.MolangException;
 import mchorse.bbs_mod.math.molang.MolangParser;
+import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
+import mchorse.bbs_mod.math.molang.expressions.MolangOptimized;
 import mchorse.bbs_mod.particles.functions.GetParticleVariable;
 import mchorse.bbs_mod.particles.functions.SetParticleVariable;
 
+import java.util.Set;
+
 public class ParticleMolangParser extends MolangParser
 {
+    /**
+     * Variables which are set only by the emitter (see
+     * {@link mchorse.bbs_mod.particles.emitter.ParticleEmitter#setEmitterVariables(float)}),
+     * so they stay the same for all particles of the emitter, and
+     * expressions that depend only on them are cached in emitter's context
+     */
+    public static final Set<String> EMITTER_VARIABLES = Set.of(
+        "math.pi",
+        "variable.emitter_age", "variable.emitter_lifetime",
+        "variable.emitter_random_1", "variable.emitter_random_2", "variable.emitter_random_3", "variable.emitter_random_4",
+        "variable.emitter_user_1", "variable.emitter_user_2", "variable.emitter_user_3",
+        "variable.emitter_user_4", "variable.emitter_user_5", "variable.emitter_user_6"
+    );
+
     public final ParticleScheme scheme;
 
+    /**
+     * Whether any of parsed expressions accesses local values of other
+     * particles (by their index), in which case particles of this scheme
+     * depend on the order they're updated in, so they can't be updated in
+     * parallel
+     */
+    public boolean crossParticleAccess;
+
+    private final MathOptimizer optimizer = new MathOptimizer((variable) -> EMITTER_VARIABLES.contains(variable.getName()));
+
     public ParticleMolangParser(ParticleScheme scheme)
     {
         this.scheme = scheme;
@@ -15,4 +48,59 @@ public class ParticleMolangParser extends MolangParser
         this.functions.put("v.set", SetParticleVariable.class);
         this.functions.put("v.get", GetParticleVariable.class);
     }
-}
\ No newline at end of file
+
+    /**
+     * Whether given expression depends only on emitter variables (and
+     * constants)
+     */
+    public boolean isInvariant(MolangExpression expression)
+    {
+        if (expression instanceof MolangOptimized optimized)
+        {
+            return optimized.isInvariant() || this.optimizer.isInvariant(optimized.optimized);
+        }
+
+        return this.optimizer.isInvariant(expression);
+    }
+
+    @Override
+    public MolangExpression parseData(BaseType data) throws MolangException
+    {
+        MolangExpression expression = this.optimizer.optimize(super.parseData(data), true);
+
+        if (BBSSettings.particlesCompiled.get())
+        {
+            expression = this.compile(expression);
+        }
+
+        return expression;
+    }
+
+    /**
+     * Compile given expression, if it's worth compiling. If compilation
+     * fails, the expression stays interpreted.
+     */
+    private MolangExpression compile(MolangExpression expression)
+    {
+        if (MolangExpression.isExpressionConstant(expression))
+        {
+            return expression;
+        }
+
+        MolangOptimized optimized = expression instanceof MolangOptimized o ? o : new MolangOptimized(expression, expression, -1);
+
+        try
+        {
+            optimized.setCompiled(MathCompiler.compile(optimized.optimized));
+        }
+        catch (Exception e)
+        {
+            System.err.println("Failed to compile MoLang: " + expression);
+            e.printStackTrace();
+
+            return expression;
+        }
+
+        return optimized;
+    }
+}
@@ -0,0 +1,207 @@
+package mchorse.bbs_mod.particles;
+
+import mchorse.bbs_mod.BBSSettings;
+import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Particle scheduler
+ *
+ * When multi-threaded particle update is enabled, emitters that were
+ * ticked are queued, and updated all at once (see {@link #flush()}) on a
+ * fork-join pool at the end of the client tick. Every emitter evaluates its
+ * expressions with its own context, so emitters are updated independently
+ * from each other, while big emitters also split their particles into
+ * batches (see {@link ParticleEmitter#update(ParticleScheduler)}).
+ *
+ * Emitters that have components querying the world are updated on the
+ * client thread (their particle batches still run on the pool), so the
+ * world is never accessed from the pool's threads.
+ */
+public class ParticleScheduler
+{
+    private ForkJoinPool pool;
+    private Map<ParticleEmitter, Integer> queue = new LinkedHashMap<>();
+
+    public boolean isEnabled()
+    {
+        return BBSSettings.particlesMultiThreaded.get();
+    }
+
+    public int getBatchSize()
+    {
+        return BBSSettings.particlesBatchSize.get();
+    }
+
+    /**
+     * Update given emitter, either right away (if multi-threaded update is
+     * disabled), or during next {@link #flush()}. Emitters that were
+     * scheduled several times before the flush get updated as many times.
+     */
+    public void schedule(ParticleEmitter emitter)
+    {
+        if (!this.isEnabled())
+        {
+            emitter.update();
+
+            return;
+        }
+
+        this.queue.merge(emitter, 1, Integer::sum);
+    }
+
+    /**
+     * Update all scheduled emitters, and wait until they're done. If any
+     * emitter failed, its exception is rethrown on the calling thread (just
+     * like updating emitters right away would), after all other emitters
+     * were updated. Exceptions of other failed emitters are suppressed in
+     * the rethrown one.
+     */
+    public void flush()
+    {
+        if (this.queue.isEmpty())
+        {
+            return;
+        }
+
+        ForkJoinPool pool = this.getPool();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        List<Map.Entry<ParticleEmitter, Integer>> local = new ArrayList<>();
+
+        for (Map.Entry<ParticleEmitter, Integer> entry : this.queue.entrySet())
+        {
+            ParticleEmitter emitter = entry.getKey();
+            int times = entry.getValue();
+
+            if (emitter.isQueryingWorld())
+            {
+                local.add(entry);
+            }
+            else
+            {
+                tasks.add(pool.submit(() -> this.update(emitter, times)));
+            }
+        }
+
+        this.queue.clear();
+
+        Throwable failure = null;
+
+        for (Map.Entry<ParticleEmitter, Integer> entry : local)
+        {
+            try
+            {
+                this.update(entry.getKey(), entry.getValue());
+            }
+            catch (RuntimeException | Error e)
+            {
+                failure = addFailure(failure, e);
+            }
+        }
+
+        for (ForkJoinTask<?> task : tasks)
+        {
+            try
+            {
+                task.join();
+            }
+            catch (RuntimeException | Error e)
+            {
+                failure = addFailure(failure, e);
+            }
+        }
+
+        if (failure instanceof Error error)
+        {
+            throw error;
+        }
+        else if (failure != null)
+        {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    private static Throwable addFailure(Throwable failure, Throwable e)
+    {
+        if (failure == null)
+        {
+            return e;
+        }
+
+        failure.addSuppressed(e);
+
+        return failure;
+    }
+
+    /**
+     * Drop all scheduled emitters without updating them
+     */
+    public void reset()
+    {
+        this.queue.clear();
+    }
+
+    /**
+     * Run given tasks on the pool, and wait until they're done
+     */
+    public void invokeAll(List<? extends ForkJoinTask<?>> tasks)
+    {
+        ForkJoinPool pool = this.getPool();
+
+        if (ForkJoinTask.getPool() == pool)
+        {
+            ForkJoinTask.invokeAll(tasks);
+
+            return;
+        }
+
+        pool.invoke(new RecursiveAction()
+        {
+            @Override
+            protected void compute()
+            {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+    }
+
+    private void update(ParticleEmitter emitter, int times)
+    {
+        for (int i = 0; i < times; i++)
+        {
+            emitter.update(this);
+        }
+    }
+
+    private ForkJoinPool getPool()
+    {
+        if (this.pool == null)
+        {
+            int threads = BBSSettings.particlesThreads.get();
+
+            if (threads <= 0)
+            {
+                threads = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+            }
+
+            this.pool = new ForkJoinPool(threads, (pool) ->
+            {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+
+                thread.setName("BBS particles " + thread.getPoolIndex());
+
+                return thread;
+            }, null, false);
+        }
+
+        return this.pool;
+    }
+}
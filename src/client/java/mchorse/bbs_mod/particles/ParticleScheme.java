@@ -11,8 +11,6 @@ import mchorse.bbs_mod.particles.components.IComponentParticleRender;
 import mchorse.bbs_mod.particles.components.IComponentParticleUpdate;
 import mchorse.bbs_mod.particles.components.ParticleComponentBase;
 import mchorse.bbs_mod.particles.components.motion.ParticleComponentInitialSpeed;
-import mchorse.bbs_mod.particles.emitter.Particle;
-import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
 import mchorse.bbs_mod.resources.Link;
 import mchorse.bbs_mod.settings.values.core.ValueGroup;
 
@@ -48,8 +46,6 @@ public class ParticleScheme extends ValueGroup {
 
     /* MoLang integration */
     public final ParticleMolangParser parser;
-    public Particle particle;
-    public ParticleEmitter emitter;
 
     public static ParticleScheme parse(String json) {
         return parse(DataToString.mapFromString(json));
@@ -214,20 +210,6 @@ public class ParticleScheme extends ValueGroup {
         return (T) this.add(subclass);
     }
 
-    /**
-     * Update curve values
-     */
-    public void updateCurves()
-    {
-        for (ParticleCurve curve : this.curves.values())
-        {
-            if (curve.variable != null)
-            {
-                curve.variable.set(curve.compute());
-            }
-        }
-    }
-
     @Override
     public void fromData(BaseType data)
     {
@@ -12,7 +12,7 @@ public interface IComponentParticleRender extends IComponentBase
 
     public void render(ParticleEmitter emitter, VertexFormat format, Particle particle, BufferBuilder builder, Matrix4f matrix, int overlay, float transition);
 
-    public void renderUI(Particle particle, BufferBuilder builder, Matrix4f matrix, float transition);
+    public void renderUI(ParticleEmitter emitter, Particle particle, BufferBuilder builder, Matrix4f matrix, float transition);
 
     public void postRender(ParticleEmitter emitter, float transition);
 }
\ No newline at end of file
@@ -1,9 +1,25 @@
 package mchorse.bbs_mod.particles.components;
 
 import mchorse.bbs_mod.particles.emitter.Particle;
+import mchorse.bbs_mod.particles.emitter.ParticleContext;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
 
 public interface IComponentParticleUpdate extends IComponentBase
 {
-    public void update(ParticleEmitter emitter, Particle particle);
-}
\ No newline at end of file
+    /**
+     * Update given particle. Expressions should be evaluated with given
+     * context (and not emitter's), because particles can be updated in
+     * batches on several threads, each with its own context.
+     */
+    public void update(ParticleEmitter emitter, ParticleContext context, Particle particle);
+
+    /**
+     * Whether this component queries the world. Such components are always
+     * updated on the thread that updates the emitter, and never in parallel
+     * batches.
+     */
+    public default boolean isQueryingWorld()
+    {
+        return false;
+    }
+}
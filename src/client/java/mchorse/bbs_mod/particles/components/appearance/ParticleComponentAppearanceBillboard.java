@@ -408,9 +408,9 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
     }
 
     @Override
-    public void renderUI(Particle particle, BufferBuilder builder, Matrix4f matrix, float transition)
+    public void renderUI(ParticleEmitter emitter, Particle particle, BufferBuilder builder, Matrix4f matrix, float transition)
     {
-        this.calculateUVs(particle, null, transition);
+        this.calculateUVs(particle, emitter, transition);
 
         this.w = this.h = 0.5F;
         float angle = Lerps.lerp(particle.prevRotation, particle.rotation, transition);
@@ -461,18 +461,18 @@ public class ParticleComponentAppearanceBillboard extends ParticleComponentBase
     public void calculateUVs(Particle particle, ParticleEmitter emitter, float transition)
     {
         /* Update particle's UVs and size */
-        this.w = (float) this.sizeW.get() * 2.25F;
-        this.h = (float) this.sizeH.get() * 2.25F;
+        this.w = (float) this.sizeW.get(emitter.context) * 2.25F;
+        this.h = (float) this.sizeH.get(emitter.context) * 2.25F;
 
-        float u = (float) this.uvX.get();
-        float v = (float) this.uvY.get();
-        float w = (float) this.uvW.get();
-        float h = (float) this.uvH.get();
+        float u = (float) this.uvX.get(emitter.context);
+        float v = (float) this.uvY.get(emitter.context);
+        float w = (float) this.uvW.get(emitter.context);
+        float h = (float) this.uvH.get(emitter.context);
 
         if (this.flipbook)
         {
             int index = (int) (particle.getAge(transition) * this.fps);
-            int max = (int) this.maxFrame.get();
+            int max = (int) this.maxFrame.get(emitter.context);
 
             if (this.stretchFPS)
             {
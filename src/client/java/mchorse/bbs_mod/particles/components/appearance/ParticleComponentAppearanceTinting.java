@@ -66,15 +66,15 @@ public class ParticleComponentAppearanceTinting extends ParticleComponentBase im
     @Override
     public void render(ParticleEmitter emitter, VertexFormat format, Particle particle, BufferBuilder builder, Matrix4f matrix, int overlay, float transition)
     {
-        this.renderUI(particle, builder, matrix, transition);
+        this.renderUI(emitter, particle, builder, matrix, transition);
     }
 
     @Override
-    public void renderUI(Particle particle, BufferBuilder builder, Matrix4f matrix, float transition)
+    public void renderUI(ParticleEmitter emitter, Particle particle, BufferBuilder builder, Matrix4f matrix, float transition)
     {
         if (this.color != null)
         {
-            this.color.compute(particle);
+            this.color.compute(emitter.context, particle);
         }
         else
         {
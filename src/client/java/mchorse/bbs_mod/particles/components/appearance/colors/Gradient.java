@@ -4,6 +4,7 @@ import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.MapType;
 import mchorse.bbs_mod.math.Constant;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.molang.MolangParser;
 import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
 import mchorse.bbs_mod.math.molang.expressions.MolangValue;
@@ -49,7 +50,7 @@ public class Gradient extends Tint
     }
 
     @Override
-    public void compute(Particle particle)
+    public void compute(MathContext context, Particle particle)
     {
         int length = this.stops.size();
 
@@ -61,12 +62,12 @@ public class Gradient extends Tint
         }
         else if (length == 1)
         {
-            this.stops.get(0).color.compute(particle);
+            this.stops.get(0).color.compute(context, particle);
 
             return;
         }
 
-        double factor = this.interpolant.get();
+        double factor = this.interpolant.get(context);
 
         factor = MathUtils.clamp(factor, 0, 1);
 
@@ -74,7 +75,7 @@ public class Gradient extends Tint
 
         if (factor < prev.stop)
         {
-            prev.color.compute(particle);
+            prev.color.compute(context, particle);
 
             return;
         }
@@ -85,8 +86,8 @@ public class Gradient extends Tint
 
             if (stop.stop > factor)
             {
-                prev.color.compute(particle);
-                stop.color.lerp(particle, (float) (factor - prev.stop) / (stop.stop - prev.stop));
+                prev.color.compute(context, particle);
+                stop.color.lerp(context, particle, (float) (factor - prev.stop) / (stop.stop - prev.stop));
 
                 return;
             }
@@ -94,7 +95,7 @@ public class Gradient extends Tint
             prev = stop;
         }
 
-        prev.color.compute(particle);
+        prev.color.compute(context, particle);
     }
 
     @Override
@@ -3,6 +3,7 @@ package mchorse.bbs_mod.particles.components.appearance.colors;
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.StringType;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.molang.MolangParser;
 import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
 import mchorse.bbs_mod.particles.emitter.Particle;
@@ -42,12 +43,12 @@ public class Solid extends Tint
     }
 
     @Override
-    public void compute(Particle particle)
+    public void compute(MathContext context, Particle particle)
     {
-        particle.r = (float) this.r.get();
-        particle.g = (float) this.g.get();
-        particle.b = (float) this.b.get();
-        particle.a = (float) this.a.get();
+        particle.r = (float) this.r.get(context);
+        particle.g = (float) this.g.get(context);
+        particle.b = (float) this.b.get(context);
+        particle.a = (float) this.a.get(context);
     }
 
     @Override
@@ -89,11 +90,11 @@ public class Solid extends Tint
         return new StringType(hex);
     }
 
-    public void lerp(Particle particle, float factor)
+    public void lerp(MathContext context, Particle particle, float factor)
     {
-        particle.r = Lerps.lerp(particle.r, (float) this.r.get(), factor);
-        particle.g = Lerps.lerp(particle.g, (float) this.g.get(), factor);
-        particle.b = Lerps.lerp(particle.b, (float) this.b.get(), factor);
-        particle.a = Lerps.lerp(particle.a, (float) this.a.get(), factor);
+        particle.r = Lerps.lerp(particle.r, (float) this.r.get(context), factor);
+        particle.g = Lerps.lerp(particle.g, (float) this.g.get(context), factor);
+        particle.b = Lerps.lerp(particle.b, (float) this.b.get(context), factor);
+        particle.a = Lerps.lerp(particle.a, (float) this.a.get(context), factor);
     }
 }
\ No newline at end of file
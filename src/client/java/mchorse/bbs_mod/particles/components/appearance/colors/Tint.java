@@ -4,6 +4,7 @@ import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.MapType;
 import mchorse.bbs_mod.math.Constant;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.molang.MolangException;
 import mchorse.bbs_mod.math.molang.MolangParser;
 import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
@@ -118,7 +119,7 @@ public abstract class Tint
         return new Gradient(colorStops, expression, equal);
     }
 
-    public abstract void compute(Particle particle);
+    public abstract void compute(MathContext context, Particle particle);
 
     public abstract BaseType toData();
 
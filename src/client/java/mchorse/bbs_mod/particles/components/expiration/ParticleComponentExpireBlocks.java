@@ -37,6 +37,11 @@ public abstract class ParticleComponentExpireBlocks extends ParticleComponentBas
         return super.fromData(data, parser);
     }
 
+    public boolean isQueryingWorld()
+    {
+        return true;
+    }
+
     public BlockState getBlock(ParticleEmitter emitter, Particle particle)
     {
         if (emitter.world == null)
@@ -2,13 +2,14 @@ package mchorse.bbs_mod.particles.components.expiration;
 
 import mchorse.bbs_mod.particles.components.IComponentParticleUpdate;
 import mchorse.bbs_mod.particles.emitter.Particle;
+import mchorse.bbs_mod.particles.emitter.ParticleContext;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
 import net.minecraft.block.BlockState;
 
 public class ParticleComponentExpireInBlocks extends ParticleComponentExpireBlocks implements IComponentParticleUpdate
 {
     @Override
-    public void update(ParticleEmitter emitter, Particle particle)
+    public void update(ParticleEmitter emitter, ParticleContext context, Particle particle)
     {
         if (particle.isDead() || emitter.world == null)
         {
@@ -8,6 +8,7 @@ import mchorse.bbs_mod.math.molang.MolangParser;
 import mchorse.bbs_mod.particles.components.IComponentParticleUpdate;
 import mchorse.bbs_mod.particles.components.ParticleComponentBase;
 import mchorse.bbs_mod.particles.emitter.Particle;
+import mchorse.bbs_mod.particles.emitter.ParticleContext;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
 import org.joml.Vector3d;
 
@@ -58,7 +59,7 @@ public class ParticleComponentKillPlane extends ParticleComponentBase implements
     }
 
     @Override
-    public void update(ParticleEmitter emitter, Particle particle)
+    public void update(ParticleEmitter emitter, ParticleContext context, Particle particle)
     {
         if (particle.isDead())
         {
@@ -9,6 +9,7 @@ import mchorse.bbs_mod.particles.components.IComponentParticleInitialize;
 import mchorse.bbs_mod.particles.components.IComponentParticleUpdate;
 import mchorse.bbs_mod.particles.components.ParticleComponentBase;
 import mchorse.bbs_mod.particles.emitter.Particle;
+import mchorse.bbs_mod.particles.emitter.ParticleContext;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
 
 public class ParticleComponentParticleLifetime extends ParticleComponentBase implements IComponentParticleInitialize, IComponentParticleUpdate
@@ -54,9 +55,9 @@ public class ParticleComponentParticleLifetime extends ParticleComponentBase imp
     }
 
     @Override
-    public void update(ParticleEmitter emitter, Particle particle)
+    public void update(ParticleEmitter emitter, ParticleContext context, Particle particle)
     {
-        if (!this.max && this.expression.get() != 0)
+        if (!this.max && this.expression.get(context) != 0)
         {
             particle.setDead();
         }
@@ -67,7 +68,7 @@ public class ParticleComponentParticleLifetime extends ParticleComponentBase imp
     {
         if (this.max)
         {
-            particle.lifetime = (int) (this.expression.get() * 20);
+            particle.lifetime = (int) (this.expression.get(emitter.context) * 20);
         }
         else
         {
@@ -51,12 +51,12 @@ public class ParticleComponentLifetimeExpression extends ParticleComponentLifeti
     @Override
     public void update(ParticleEmitter emitter)
     {
-        if (!Operation.equals(this.activeTime.get(), 0))
+        if (!Operation.equals(this.activeTime.get(emitter.context), 0))
         {
             emitter.start();
         }
 
-        if (!Operation.equals(this.expiration.get(), 0))
+        if (!Operation.equals(this.expiration.get(emitter.context), 0))
         {
             emitter.stop();
         }
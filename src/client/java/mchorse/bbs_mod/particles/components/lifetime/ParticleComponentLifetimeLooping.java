@@ -44,8 +44,8 @@ public class ParticleComponentLifetimeLooping extends ParticleComponentLifetime
     @Override
     public void update(ParticleEmitter emitter)
     {
-        double active = this.activeTime.get();
-        double sleep = this.sleepTime.get();
+        double active = this.activeTime.get(emitter.context);
+        double sleep = this.sleepTime.get(emitter.context);
         double age = emitter.getAge();
 
         emitter.lifetime = (int) (active * 20);
@@ -7,7 +7,7 @@ public class ParticleComponentLifetimeOnce extends ParticleComponentLifetime
     @Override
     public void update(ParticleEmitter emitter)
     {
-        double time = this.activeTime.get();
+        double time = this.activeTime.get(emitter.context);
 
         emitter.lifetime = (int) (time * 20);
 
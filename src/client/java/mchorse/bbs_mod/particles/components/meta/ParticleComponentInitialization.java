@@ -40,14 +40,14 @@ public class ParticleComponentInitialization extends ParticleComponentBase imple
     @Override
     public void apply(ParticleEmitter emitter)
     {
-        this.creation.get();
+        this.creation.get(emitter.context);
         emitter.replaceVariables();
     }
 
     @Override
     public void update(ParticleEmitter emitter)
     {
-        this.update.get();
+        this.update.get(emitter.context);
         emitter.replaceVariables();
     }
 }
\ No newline at end of file
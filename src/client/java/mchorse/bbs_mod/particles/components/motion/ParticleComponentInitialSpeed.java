@@ -55,14 +55,14 @@ public class ParticleComponentInitialSpeed extends ParticleComponentBase impleme
         if (this.direction != null)
         {
             particle.speed.set(
-                (float) this.direction[0].get(),
-                (float) this.direction[1].get(),
-                (float) this.direction[2].get()
+                (float) this.direction[0].get(emitter.context),
+                (float) this.direction[1].get(emitter.context),
+                (float) this.direction[2].get(emitter.context)
             );
         }
         else
         {
-            float speed = (float) this.speed.get();
+            float speed = (float) this.speed.get(emitter.context);
 
             particle.speed.mul(speed);
         }
@@ -41,7 +41,7 @@ public class ParticleComponentInitialSpin extends ParticleComponentBase implemen
     @Override
     public void apply(ParticleEmitter emitter, Particle particle)
     {
-        particle.initialRotation = (float) this.rotation.get();
-        particle.rotationVelocity = (float) this.rate.get() / 20;
+        particle.initialRotation = (float) this.rotation.get(emitter.context);
+        particle.rotationVelocity = (float) this.rate.get(emitter.context) / 20;
     }
 }
\ No newline at end of file
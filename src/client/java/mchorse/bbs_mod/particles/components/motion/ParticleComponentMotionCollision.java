@@ -9,14 +9,12 @@ import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
 import mchorse.bbs_mod.particles.components.IComponentParticleUpdate;
 import mchorse.bbs_mod.particles.components.ParticleComponentBase;
 import mchorse.bbs_mod.particles.emitter.Particle;
+import mchorse.bbs_mod.particles.emitter.ParticleContext;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
-import net.minecraft.entity.Entity;
 import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Vec3d;
 import org.joml.Vector3d;
 
-import java.util.Collections;
-
 public class ParticleComponentMotionCollision extends ParticleComponentBase implements IComponentParticleUpdate
 {
     public MolangExpression enabled = MolangParser.ONE;
@@ -25,10 +23,6 @@ public class ParticleComponentMotionCollision extends ParticleComponentBase impl
     public float radius = 0.01F;
     public boolean expireOnImpact;
 
-    /* Runtime options */
-    private Vector3d previous = new Vector3d();
-    private Vector3d current = new Vector3d();
-
     @Override
     public BaseType toData()
     {
@@ -68,22 +62,19 @@ public class ParticleComponentMotionCollision extends ParticleComponentBase impl
     }
 
     @Override
-    public void update(ParticleEmitter emitter, Particle particle)
+    public void update(ParticleEmitter emitter, ParticleContext context, Particle particle)
     {
         if (emitter.world == null)
         {
             return;
         }
 
-        if (!particle.manual && Operation.equals(this.enabled.get(), 1))
+        if (!particle.manual && Operation.equals(this.enabled.get(context), 1))
         {
             float r = this.radius;
 
-            this.previous.set(particle.getGlobalPosition(emitter, particle.prevPosition));
-            this.current.set(particle.getGlobalPosition(emitter));
-
-            Vector3d prev = this.previous;
-            Vector3d now = this.current;
+            Vector3d prev = new Vector3d(particle.getGlobalPosition(emitter, particle.prevPosition));
+            Vector3d now = new Vector3d(particle.getGlobalPosition(emitter));
 
             double x = now.x - prev.x;
             double y = now.y - prev.y;
@@ -96,7 +87,7 @@ public class ParticleComponentMotionCollision extends ParticleComponentBase impl
             }
 
             Box box = new Box(prev.x - r, prev.y - r, prev.z - r, prev.x + r, prev.y + r, prev.z + r);
-            Vec3d vec = Entity.adjustMovementForCollisions(null, new Vec3d(x, y, z), box, emitter.world, Collections.emptyList());
+            Vec3d vec = emitter.getCollisionGrid().adjustMovement(emitter.world, emitter.lastGlobal, box, new Vec3d(x, y, z));
 
             if (vec.x != x || vec.y != y || vec.z != z)
             {
@@ -136,6 +127,12 @@ public class ParticleComponentMotionCollision extends ParticleComponentBase impl
         }
     }
 
+    @Override
+    public boolean isQueryingWorld()
+    {
+        return true;
+    }
+
     @Override
     public int getSortingIndex()
     {
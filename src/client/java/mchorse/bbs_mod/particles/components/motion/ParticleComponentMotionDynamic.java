@@ -9,6 +9,7 @@ import mchorse.bbs_mod.particles.ParticleUtils;
 import mchorse.bbs_mod.particles.components.IComponentParticleUpdate;
 import mchorse.bbs_mod.particles.components.ParticleComponentBase;
 import mchorse.bbs_mod.particles.emitter.Particle;
+import mchorse.bbs_mod.particles.emitter.ParticleContext;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
 
 public class ParticleComponentMotionDynamic extends ParticleComponentMotion implements IComponentParticleUpdate
@@ -51,14 +52,14 @@ public class ParticleComponentMotionDynamic extends ParticleComponentMotion impl
     }
 
     @Override
-    public void update(ParticleEmitter emitter, Particle particle)
+    public void update(ParticleEmitter emitter, ParticleContext context, Particle particle)
     {
-        particle.acceleration.x += (float) this.motionAcceleration[0].get();
-        particle.acceleration.y += (float) this.motionAcceleration[1].get();
-        particle.acceleration.z += (float) this.motionAcceleration[2].get();
-        particle.drag = (float) this.motionDrag.get();
+        particle.acceleration.x += (float) this.motionAcceleration[0].get(context);
+        particle.acceleration.y += (float) this.motionAcceleration[1].get(context);
+        particle.acceleration.z += (float) this.motionAcceleration[2].get(context);
+        particle.drag = (float) this.motionDrag.get(context);
 
-        particle.rotationAcceleration += (float) this.rotationAcceleration.get() / 20F;
-        particle.rotationDrag = (float) this.rotationDrag.get();
+        particle.rotationAcceleration += (float) this.rotationAcceleration.get(context) / 20F;
+        particle.rotationDrag = (float) this.rotationDrag.get(context);
     }
 }
\ No newline at end of file
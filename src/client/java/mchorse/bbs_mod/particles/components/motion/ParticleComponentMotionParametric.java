@@ -10,6 +10,7 @@ import mchorse.bbs_mod.particles.components.IComponentParticleInitialize;
 import mchorse.bbs_mod.particles.components.IComponentParticleUpdate;
 import mchorse.bbs_mod.particles.components.ParticleComponentBase;
 import mchorse.bbs_mod.particles.emitter.Particle;
+import mchorse.bbs_mod.particles.emitter.ParticleContext;
 import mchorse.bbs_mod.particles.emitter.ParticleEmitter;
 import org.joml.Vector3f;
 
@@ -55,7 +56,7 @@ public class ParticleComponentMotionParametric extends ParticleComponentMotion i
     @Override
     public void apply(ParticleEmitter emitter, Particle particle)
     {
-        Vector3f position = new Vector3f((float) this.position[0].get(), (float) this.position[1].get(), (float) this.position[2].get());
+        Vector3f position = new Vector3f((float) this.position[0].get(emitter.context), (float) this.position[1].get(emitter.context), (float) this.position[2].get(emitter.context));
 
         particle.manual = true;
         particle.initialPosition.set(particle.position);
@@ -64,19 +65,19 @@ public class ParticleComponentMotionParametric extends ParticleComponentMotion i
         particle.position.x = particle.initialPosition.x + position.x;
         particle.position.y = particle.initialPosition.y + position.y;
         particle.position.z = particle.initialPosition.z + position.z;
-        particle.rotation = (float) this.rotation.get();
+        particle.rotation = (float) this.rotation.get(emitter.context);
     }
 
     @Override
-    public void update(ParticleEmitter emitter, Particle particle)
+    public void update(ParticleEmitter emitter, ParticleContext context, Particle particle)
     {
-        Vector3f position = new Vector3f((float) this.position[0].get(), (float) this.position[1].get(), (float) this.position[2].get());
+        Vector3f position = new Vector3f((float) this.position[0].get(context), (float) this.position[1].get(context), (float) this.position[2].get(context));
 
         particle.matrix.transform(position);
         particle.position.x = particle.initialPosition.x + position.x;
         particle.position.y = particle.initialPosition.y + position.y;
         particle.position.z = particle.initialPosition.z + position.z;
-        particle.rotation = (float) this.rotation.get();
+        particle.rotation = (float) this.rotation.get(context);
     }
 
     @Override
@@ -56,7 +56,7 @@ public class ParticleComponentRateInstant extends ParticleComponentRate implemen
         {
             emitter.setEmitterVariables(0);
 
-            int particles = (int) this.particles.get();
+            int particles = (int) this.particles.get(emitter.context);
 
             for (int i = 0, c = particles; i < c; i ++)
             {
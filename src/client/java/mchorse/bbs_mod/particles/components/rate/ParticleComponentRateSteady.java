@@ -49,8 +49,8 @@ public class ParticleComponentRateSteady extends ParticleComponentRate implement
     {
         if (emitter.playing && !emitter.paused)
         {
-            float spawnRate = (float) (this.spawnRate.get() / 20D);
-            int max = (int) this.particles.get();
+            float spawnRate = (float) (this.spawnRate.get(emitter.context) / 20D);
+            int max = (int) this.particles.get(emitter.context);
             int particles = (int) Math.floor(spawnRate);
 
             while (emitter.spawnRemainder >= 1F)
@@ -42,13 +42,13 @@ public class ParticleComponentShapeBox extends ParticleComponentShapeBase
     @Override
     public void apply(ParticleEmitter emitter, Particle particle)
     {
-        float centerX = (float) this.offset[0].get();
-        float centerY = (float) this.offset[1].get();
-        float centerZ = (float) this.offset[2].get();
+        float centerX = (float) this.offset[0].get(emitter.context);
+        float centerY = (float) this.offset[1].get(emitter.context);
+        float centerZ = (float) this.offset[2].get(emitter.context);
 
-        float w = (float) this.halfDimensions[0].get();
-        float h = (float) this.halfDimensions[1].get();
-        float d = (float) this.halfDimensions[2].get();
+        float w = (float) this.halfDimensions[0].get(emitter.context);
+        float h = (float) this.halfDimensions[1].get(emitter.context);
+        float d = (float) this.halfDimensions[2].get(emitter.context);
 
         particle.position.x = centerX + ((float) Math.random() * 2 - 1F) * w;
         particle.position.y = centerY + ((float) Math.random() * 2 - 1F) * h;
@@ -66,6 +66,6 @@ public class ParticleComponentShapeBox extends ParticleComponentShapeBase
             else if (roll == 5) particle.position.z = centerZ - d;
         }
 
-        this.direction.applyDirection(particle, centerX, centerY, centerZ);
+        this.direction.applyDirection(emitter.context, particle, centerX, centerY, centerZ);
     }
 }
\ No newline at end of file
@@ -81,11 +81,11 @@ public class ParticleComponentShapeDisc extends ParticleComponentShapeSphere
     @Override
     public void apply(ParticleEmitter emitter, Particle particle)
     {
-        float centerX = (float) this.offset[0].get();
-        float centerY = (float) this.offset[1].get();
-        float centerZ = (float) this.offset[2].get();
+        float centerX = (float) this.offset[0].get(emitter.context);
+        float centerY = (float) this.offset[1].get(emitter.context);
+        float centerZ = (float) this.offset[2].get(emitter.context);
 
-        Vector3f forward = new Vector3f((float) this.normal[0].get(), (float) this.normal[1].get(), (float) this.normal[2].get());
+        Vector3f forward = new Vector3f((float) this.normal[0].get(emitter.context), (float) this.normal[1].get(emitter.context), (float) this.normal[2].get(emitter.context));
 
         if (forward.distanceSquared(0, 0, 0) == 0)
         {
@@ -99,13 +99,13 @@ public class ParticleComponentShapeDisc extends ParticleComponentShapeSphere
         position.normalize();
         rotation.transform(position);
 
-        position.mul((float) (this.radius.get() * (this.surface ? 1 : Math.random())));
+        position.mul((float) (this.radius.get(emitter.context) * (this.surface ? 1 : Math.random())));
         position.add(new Vector4f(centerX, centerY, centerZ, 0));
 
         particle.position.x += position.x;
         particle.position.y += position.y;
         particle.position.z += position.z;
 
-        this.direction.applyDirection(particle, centerX, centerY, centerZ);
+        this.direction.applyDirection(emitter.context, particle, centerX, centerY, centerZ);
     }
 }
\ No newline at end of file
@@ -9,9 +9,9 @@ public class ParticleComponentShapeEntityAABB extends ParticleComponentShapeBase
     @Override
     public void apply(ParticleEmitter emitter, Particle particle)
     {
-        float centerX = (float) this.offset[0].get();
-        float centerY = (float) this.offset[1].get();
-        float centerZ = (float) this.offset[2].get();
+        float centerX = (float) this.offset[0].get(emitter.context);
+        float centerY = (float) this.offset[1].get(emitter.context);
+        float centerZ = (float) this.offset[2].get(emitter.context);
 
         float w = 0;
         float h = 0;
@@ -42,6 +42,6 @@ public class ParticleComponentShapeEntityAABB extends ParticleComponentShapeBase
             else if (roll == 5) particle.position.z = centerZ - d / 2F;
         }
 
-        this.direction.applyDirection(particle, centerX, centerY, centerZ);
+        this.direction.applyDirection(emitter.context, particle, centerX, centerY, centerZ);
     }
 }
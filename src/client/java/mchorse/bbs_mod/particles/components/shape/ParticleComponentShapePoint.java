@@ -9,13 +9,13 @@ public class ParticleComponentShapePoint extends ParticleComponentShapeBase
     @Override
     public void apply(ParticleEmitter emitter, Particle particle)
     {
-        particle.position.x = (float) this.offset[0].get();
-        particle.position.y = (float) this.offset[1].get();
-        particle.position.z = (float) this.offset[2].get();
+        particle.position.x = (float) this.offset[0].get(emitter.context);
+        particle.position.y = (float) this.offset[1].get(emitter.context);
+        particle.position.z = (float) this.offset[2].get(emitter.context);
 
         if (this.direction instanceof ShapeDirectionVector)
         {
-            this.direction.applyDirection(particle, particle.position.x, particle.position.y, particle.position.z);
+            this.direction.applyDirection(emitter.context, particle, particle.position.x, particle.position.y, particle.position.z);
         }
     }
 }
\ No newline at end of file
@@ -46,10 +46,10 @@ public class ParticleComponentShapeSphere extends ParticleComponentShapeBase
     @Override
     public void apply(ParticleEmitter emitter, Particle particle)
     {
-        float centerX = (float) this.offset[0].get();
-        float centerY = (float) this.offset[1].get();
-        float centerZ = (float) this.offset[2].get();
-        float radius = (float) this.radius.get();
+        float centerX = (float) this.offset[0].get(emitter.context);
+        float centerY = (float) this.offset[1].get(emitter.context);
+        float centerZ = (float) this.offset[2].get(emitter.context);
+        float radius = (float) this.radius.get(emitter.context);
 
         Vector3f direction = new Vector3f((float) Math.random() * 2 - 1, (float) Math.random() * 2 - 1, (float) Math.random() * 2 - 1);
         direction.normalize();
@@ -65,6 +65,6 @@ public class ParticleComponentShapeSphere extends ParticleComponentShapeBase
         particle.position.y = centerY + direction.y;
         particle.position.z = centerZ + direction.z;
 
-        this.direction.applyDirection(particle, centerX, centerY, centerZ);
+        this.direction.applyDirection(emitter.context, particle, centerX, centerY, centerZ);
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package mchorse.bbs_mod.particles.components.shape.directions;
 
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.StringType;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.particles.emitter.Particle;
 import org.joml.Vector3d;
 
@@ -28,7 +29,7 @@ public class ShapeDirectionInwards extends ShapeDirection
     }
 
     @Override
-    public void applyDirection(Particle particle, double x, double y, double z)
+    public void applyDirection(MathContext context, Particle particle, double x, double y, double z)
     {
         Vector3d vector = new Vector3d(particle.position);
 
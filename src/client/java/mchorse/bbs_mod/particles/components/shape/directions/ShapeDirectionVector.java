@@ -2,6 +2,7 @@ package mchorse.bbs_mod.particles.components.shape.directions;
 
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.ListType;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
 import mchorse.bbs_mod.particles.emitter.Particle;
 
@@ -19,9 +20,9 @@ public class ShapeDirectionVector extends ShapeDirection
     }
 
     @Override
-    public void applyDirection(Particle particle, double x, double y, double z)
+    public void applyDirection(MathContext context, Particle particle, double x, double y, double z)
     {
-        particle.speed.set((float) this.x.get(), (float) this.y.get(), (float) this.z.get());
+        particle.speed.set((float) this.x.get(context), (float) this.y.get(context), (float) this.z.get(context));
 
         if (particle.speed.length() <= 0)
         {
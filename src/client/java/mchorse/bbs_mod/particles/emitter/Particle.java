@@ -1,6 +1,5 @@
 package mchorse.bbs_mod.particles.emitter;
 
-import mchorse.bbs_mod.utils.joml.Vectors;
 import org.joml.Matrix3f;
 import org.joml.Vector3d;
 import org.joml.Vector3f;
@@ -17,8 +16,8 @@ public class Particle
     public float random4 = (float) Math.random();
 
     /* States */
-    public final int index;
-    public final float offset;
+    public int index;
+    public float offset;
     public int age;
     public int lifetime;
     private boolean dead;
@@ -69,6 +68,57 @@ public class Particle
         this.speed.normalize();
     }
 
+    /**
+     * Reset this particle into the state of a freshly created particle, so
+     * dead particles could be reused instead of allocating new ones (see
+     * {@link ParticleStorage})
+     */
+    public void reset(int index, float offset)
+    {
+        this.random1 = (float) Math.random();
+        this.random2 = (float) Math.random();
+        this.random3 = (float) Math.random();
+        this.random4 = (float) Math.random();
+
+        this.index = index;
+        this.offset = offset;
+        this.age = 0;
+        this.lifetime = 0;
+        this.dead = false;
+        this.relativePosition = false;
+        this.relativeRotation = false;
+        this.relativeVelocity = false;
+        this.textureScale = false;
+        this.manual = false;
+
+        this.rotation = 0;
+        this.initialRotation = 0;
+        this.prevRotation = 0;
+        this.rotationVelocity = 0;
+        this.rotationAcceleration = 0;
+        this.rotationDrag = 0;
+
+        this.position.zero();
+        this.initialPosition.zero();
+        this.prevPosition.zero();
+        this.matrix.identity();
+        this.matrixSet = false;
+
+        this.speed.set((float) Math.random() - 0.5F, (float) Math.random() - 0.5F, (float) Math.random() - 0.5F);
+        this.speed.normalize();
+        this.acceleration.zero();
+        this.accelerationFactor.set(1, 1, 1);
+        this.drag = 0;
+        this.dragFactor = 0;
+
+        this.r = 1;
+        this.g = 1;
+        this.b = 1;
+        this.a = 1;
+
+        this.localValues.clear();
+    }
+
     public void setDead()
     {
         this.dead = true;
@@ -205,7 +255,7 @@ public class Particle
         }
         else if (this.textureScale && !this.matrixSet)
         {
-            this.matrix.identity().scale(emitter.rotation.getRow(0, Vectors.TEMP_3F).length());
+            this.matrix.identity().scale(emitter.rotation.getRow(0, new Vector3f()).length());
             this.matrixSet = true;
         }
     }
@@ -0,0 +1,259 @@
+package mchorse.bbs_mod.particles.emitter;
+
+import mchorse.bbs_mod.BBSSettings;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.util.shape.VoxelShapes;
+import net.minecraft.world.World;
+import org.joml.Vector3d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Particle collision grid
+ *
+ * Emitter's cache of block collision shapes in a cube of {@link #SIZE}
+ * blocks around the emitter. Shapes are looked up lazily, and the whole
+ * grid is dropped (and centered around the emitter again) every few ticks
+ * (see {@link BBSSettings#particlesCollisionRefresh}). Changed blocks
+ * (see {@link #markBlockUpdate(BlockPos)}) drop only their own cached
+ * shape in the grids that contain them.
+ *
+ * Collisions are resolved the same way as
+ * {@link net.minecraft.entity.Entity#adjustMovementForCollisions(net.minecraft.entity.Entity, Vec3d, Box, World, List)}
+ * does it for a box without an entity, but without looking up block
+ * shapes in the world every time.
+ */
+public class ParticleCollisionGrid
+{
+    public static final int SIZE = 32;
+
+    /**
+     * How many latest block updates are kept, grids that missed more
+     * updates than that are dropped entirely (it should be a power of two)
+     */
+    private static final int MAX_UPDATES = 256;
+
+    /* Ring buffer of changed block positions (packed with BlockPos.asLong()),
+     * revision is the total amount of block updates */
+    private static final long[] UPDATES = new long[MAX_UPDATES];
+    private static volatile int revision;
+
+    private final VoxelShape[] shapes = new VoxelShape[SIZE * SIZE * SIZE];
+    private final List<VoxelShape> collisions = new ArrayList<>();
+    private final BlockPos.Mutable pos = new BlockPos.Mutable();
+
+    private World world;
+    private int lastRevision;
+    private long lastRefresh;
+    private int x;
+    private int y;
+    private int z;
+
+    /**
+     * Drop cached shape of given block in all grids, because the block was
+     * changed. It should be called only on the main thread.
+     */
+    public static void markBlockUpdate(BlockPos pos)
+    {
+        int current = revision;
+
+        UPDATES[current & (MAX_UPDATES - 1)] = pos.asLong();
+        revision = current + 1;
+    }
+
+    /**
+     * Adjust movement of given box, so it wouldn't go through blocks
+     *
+     * @param center emitter's position, which is used to center the grid
+     *               when it gets refreshed
+     */
+    public Vec3d adjustMovement(World world, Vector3d center, Box box, Vec3d movement)
+    {
+        this.validate(world, center);
+        this.collectShapes(box.stretch(movement));
+
+        if (this.collisions.isEmpty())
+        {
+            return movement;
+        }
+
+        double x = movement.x;
+        double y = movement.y;
+        double z = movement.z;
+
+        if (y != 0D)
+        {
+            y = VoxelShapes.calculateMaxOffset(Direction.Axis.Y, box, this.collisions, y);
+
+            if (y != 0D)
+            {
+                box = box.offset(0D, y, 0D);
+            }
+        }
+
+        boolean zFirst = Math.abs(x) < Math.abs(z);
+
+        if (zFirst && z != 0D)
+        {
+            z = VoxelShapes.calculateMaxOffset(Direction.Axis.Z, box, this.collisions, z);
+
+            if (z != 0D)
+            {
+                box = box.offset(0D, 0D, z);
+            }
+        }
+
+        if (x != 0D)
+        {
+            x = VoxelShapes.calculateMaxOffset(Direction.Axis.X, box, this.collisions, x);
+
+            if (!zFirst && x != 0D)
+            {
+                box = box.offset(x, 0D, 0D);
+            }
+        }
+
+        if (!zFirst && z != 0D)
+        {
+            z = VoxelShapes.calculateMaxOffset(Direction.Axis.Z, box, this.collisions, z);
+        }
+
+        this.collisions.clear();
+
+        return new Vec3d(x, y, z);
+    }
+
+    private void validate(World world, Vector3d center)
+    {
+        long time = world.getTime();
+        int interval = BBSSettings.particlesCollisionRefresh.get();
+
+        if (this.world == world && time >= this.lastRefresh && time - this.lastRefresh < interval)
+        {
+            this.applyBlockUpdates();
+
+            return;
+        }
+
+        Arrays.fill(this.shapes, null);
+
+        this.world = world;
+        this.lastRevision = revision;
+        this.lastRefresh = time;
+        this.x = MathHelper.floor(center.x) - SIZE / 2;
+        this.y = MathHelper.floor(center.y) - SIZE / 2;
+        this.z = MathHelper.floor(center.z) - SIZE / 2;
+    }
+
+    /**
+     * Drop cached shapes of blocks that were changed since last validation
+     */
+    private void applyBlockUpdates()
+    {
+        int current = revision;
+
+        if (this.lastRevision == current)
+        {
+            return;
+        }
+
+        if (current - this.lastRevision <= MAX_UPDATES)
+        {
+            for (int i = this.lastRevision; i != current; i++)
+            {
+                long pos = UPDATES[i & (MAX_UPDATES - 1)];
+                int lx = BlockPos.unpackLongX(pos) - this.x;
+                int ly = BlockPos.unpackLongY(pos) - this.y;
+                int lz = BlockPos.unpackLongZ(pos) - this.z;
+
+                if (lx >= 0 && ly >= 0 && lz >= 0 && lx < SIZE && ly < SIZE && lz < SIZE)
+                {
+                    this.shapes[(ly * SIZE + lz) * SIZE + lx] = null;
+                }
+            }
+        }
+
+        /* Too many updates were missed (or the ring buffer got overwritten
+         * while it was read), so it's unknown which blocks changed */
+        if (revision - this.lastRevision > MAX_UPDATES)
+        {
+            Arrays.fill(this.shapes, null);
+        }
+
+        this.lastRevision = current;
+    }
+
+    /**
+     * Collect non-empty shapes of blocks around given box (including one
+     * extra block on every side for blocks that are taller than a full
+     * block, like fences)
+     */
+    private void collectShapes(Box box)
+    {
+        int minX = MathHelper.floor(box.minX - 1.0E-7D) - 1;
+        int minY = MathHelper.floor(box.minY - 1.0E-7D) - 1;
+        int minZ = MathHelper.floor(box.minZ - 1.0E-7D) - 1;
+        int maxX = MathHelper.floor(box.maxX + 1.0E-7D) + 1;
+        int maxY = MathHelper.floor(box.maxY + 1.0E-7D) + 1;
+        int maxZ = MathHelper.floor(box.maxZ + 1.0E-7D) + 1;
+
+        this.collisions.clear();
+
+        for (int bx = minX; bx <= maxX; bx++)
+        {
+            for (int by = minY; by <= maxY; by++)
+            {
+                for (int bz = minZ; bz <= maxZ; bz++)
+                {
+                    VoxelShape shape = this.getShape(bx, by, bz);
+
+                    if (!shape.isEmpty())
+                    {
+                        this.collisions.add(shape);
+                    }
+                }
+            }
+        }
+    }
+
+    private VoxelShape getShape(int x, int y, int z)
+    {
+        int lx = x - this.x;
+        int ly = y - this.y;
+        int lz = z - this.z;
+
+        if (lx < 0 || ly < 0 || lz < 0 || lx >= SIZE || ly >= SIZE || lz >= SIZE)
+        {
+            return this.lookupShape(x, y, z);
+        }
+
+        int index = (ly * SIZE + lz) * SIZE + lx;
+        VoxelShape shape = this.shapes[index];
+
+        if (shape == null)
+        {
+            shape = this.lookupShape(x, y, z);
+            this.shapes[index] = shape;
+        }
+
+        return shape;
+    }
+
+    private VoxelShape lookupShape(int x, int y, int z)
+    {
+        this.pos.set(x, y, z);
+
+        BlockState state = this.world.getBlockState(this.pos);
+        VoxelShape shape = state.getCollisionShape(this.world, this.pos);
+
+        return shape.isEmpty() ? VoxelShapes.empty() : shape.offset(x, y, z);
+    }
+}
@@ -0,0 +1,145 @@
+package mchorse.bbs_mod.particles.emitter;
+
+import mchorse.bbs_mod.math.MathContext;
+import mchorse.bbs_mod.math.Variable;
+import mchorse.bbs_mod.particles.ParticleCurve;
+import mchorse.bbs_mod.particles.ParticleScheme;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Particle context
+ *
+ * Molang context of a particle emitter, which holds emitter's and current
+ * particle's variables, so emitters that share the same scheme don't step
+ * on each other's toes.
+ *
+ * Curves are computed lazily: their variables get unbound whenever emitter
+ * or particle variables change (see {@link #resetCurves(boolean)}), and
+ * a curve is computed (and bound until the next reset) only when its
+ * variable is read.
+ */
+public class ParticleContext extends MathContext
+{
+    public final ParticleEmitter emitter;
+    public Particle particle;
+
+    /* Curves by their variable's index */
+    private ParticleCurve[] curves = new ParticleCurve[0];
+
+    /* Curves that depend on particle variables */
+    private final List<ParticleCurve> particleCurves = new ArrayList<>();
+
+    public ParticleContext(ParticleEmitter emitter)
+    {
+        this.emitter = emitter;
+    }
+
+    /**
+     * Reset values of curves, so they would be computed again when they're
+     * read. When only particle variables were changed, curves that depend
+     * only on emitter variables keep their values.
+     */
+    public void resetCurves(boolean emitter)
+    {
+        if (!emitter)
+        {
+            for (int i = 0, c = this.particleCurves.size(); i < c; i++)
+            {
+                this.unbind(this.particleCurves.get(i).variable);
+            }
+
+            return;
+        }
+
+        ParticleScheme scheme = this.emitter.scheme;
+
+        Arrays.fill(this.curves, null);
+        this.particleCurves.clear();
+
+        if (scheme == null)
+        {
+            return;
+        }
+
+        for (ParticleCurve curve : scheme.curves.values())
+        {
+            Variable variable = curve.variable;
+
+            if (variable == null)
+            {
+                continue;
+            }
+
+            int index = variable.getIndex();
+
+            if (index < 0)
+            {
+                /* Variables that aren't registered can't be bound */
+                variable.set(curve.compute(this));
+
+                continue;
+            }
+
+            if (index >= this.curves.length)
+            {
+                this.curves = Arrays.copyOf(this.curves, Math.max(index + 1, this.curves.length * 2));
+            }
+
+            this.curves[index] = curve;
+            this.unbind(variable);
+
+            if (!curve.isInvariant(scheme.parser))
+            {
+                this.particleCurves.add(curve);
+            }
+        }
+    }
+
+    @Override
+    protected double getUnbound(Variable variable)
+    {
+        int index = variable.getIndex();
+
+        if (index >= 0 && index < this.curves.length)
+        {
+            ParticleCurve curve = this.curves[index];
+
+            if (curve != null && curve.variable == variable)
+            {
+                /* Bind variable's own value first, so a curve that depends
+                 * on itself wouldn't recurse forever */
+                this.set(variable, variable.doubleValue());
+
+                double value = curve.compute(this);
+
+                this.set(variable, value);
+
+                return value;
+            }
+        }
+
+        return super.getUnbound(variable);
+    }
+
+    @Override
+    public void copy(MathContext context)
+    {
+        super.copy(context);
+
+        if (context instanceof ParticleContext particleContext)
+        {
+            if (this.curves.length != particleContext.curves.length)
+            {
+                this.curves = new ParticleCurve[particleContext.curves.length];
+            }
+
+            System.arraycopy(particleContext.curves, 0, this.curves, 0, this.curves.length);
+
+            this.particleCurves.clear();
+            this.particleCurves.addAll(particleContext.particleCurves);
+        }
+    }
+}
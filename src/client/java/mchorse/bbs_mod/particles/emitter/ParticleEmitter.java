@@ -6,6 +6,7 @@ import mchorse.bbs_mod.camera.Camera;
 import mchorse.bbs_mod.graphics.texture.Texture;
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.Variable;
+import mchorse.bbs_mod.particles.ParticleScheduler;
 import mchorse.bbs_mod.particles.ParticleScheme;
 import mchorse.bbs_mod.particles.components.IComponentEmitterInitialize;
 import mchorse.bbs_mod.particles.components.IComponentEmitterUpdate;
@@ -32,15 +33,16 @@ import org.joml.Vector3f;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Supplier;
 
 public class ParticleEmitter
 {
     public ParticleScheme scheme;
-    public List<Particle> particles = new ArrayList<>();
+    public final ParticleStorage particles = new ParticleStorage();
+    public final ParticleContext context = new ParticleContext(this);
     public Map<String, IExpression> variables;
 
     public Link texture;
@@ -51,6 +53,10 @@ public class ParticleEmitter
     public boolean running = true;
     private Particle uiParticle;
 
+    /* Contexts of particle batches, when updated in parallel */
+    private List<ParticleContext> batchContexts = new ArrayList<>();
+    private ParticleCollisionGrid collisionGrid;
+
     /* Intermediate values */
     public Vector3d lastGlobal = new Vector3d();
     public Matrix3f rotation = new Matrix3f();
@@ -118,6 +124,20 @@ public class ParticleEmitter
         return !this.paused ? (this.age + transition) / 20.0 : this.age / 20.0;
     }
 
+    /**
+     * Get emitter's cache of block collision shapes (it's created when
+     * it's needed for the first time)
+     */
+    public ParticleCollisionGrid getCollisionGrid()
+    {
+        if (this.collisionGrid == null)
+        {
+            this.collisionGrid = new ParticleCollisionGrid();
+        }
+
+        return this.collisionGrid;
+    }
+
     public void setTarget(LivingEntity target)
     {
         this.target = target;
@@ -142,6 +162,7 @@ public class ParticleEmitter
         this.stop();
         this.start();
 
+        this.context.clear();
         this.setupVariables();
         this.setEmitterVariables(0);
 
@@ -192,40 +213,44 @@ public class ParticleEmitter
 
     public void setParticleVariables(Particle particle, float transition)
     {
-        this.scheme.particle = particle;
-
-        if (this.varIndex != null) this.varIndex.set(particle.index);
-        if (this.varAge != null) this.varAge.set(particle.getAge(transition));
-        if (this.varLifetime != null) this.varLifetime.set(particle.lifetime / 20.0);
-        if (this.varRandom1 != null) this.varRandom1.set(particle.random1);
-        if (this.varRandom2 != null) this.varRandom2.set(particle.random2);
-        if (this.varRandom3 != null) this.varRandom3.set(particle.random3);
-        if (this.varRandom4 != null) this.varRandom4.set(particle.random4);
-        if (this.varPositionX != null) this.varPositionX.set(Lerps.lerp(particle.prevPosition.x, particle.position.x, transition));
-        if (this.varPositionY != null) this.varPositionY.set(Lerps.lerp(particle.prevPosition.y, particle.position.y, transition));
-        if (this.varPositionZ != null) this.varPositionZ.set(Lerps.lerp(particle.prevPosition.z, particle.position.z, transition));
-
-        this.scheme.updateCurves();
+        this.setParticleVariables(this.context, particle, transition);
+    }
+
+    public void setParticleVariables(ParticleContext context, Particle particle, float transition)
+    {
+        context.particle = particle;
+
+        if (this.varIndex != null) context.set(this.varIndex, particle.index);
+        if (this.varAge != null) context.set(this.varAge, particle.getAge(transition));
+        if (this.varLifetime != null) context.set(this.varLifetime, particle.lifetime / 20.0);
+        if (this.varRandom1 != null) context.set(this.varRandom1, particle.random1);
+        if (this.varRandom2 != null) context.set(this.varRandom2, particle.random2);
+        if (this.varRandom3 != null) context.set(this.varRandom3, particle.random3);
+        if (this.varRandom4 != null) context.set(this.varRandom4, particle.random4);
+        if (this.varPositionX != null) context.set(this.varPositionX, Lerps.lerp(particle.prevPosition.x, particle.position.x, transition));
+        if (this.varPositionY != null) context.set(this.varPositionY, Lerps.lerp(particle.prevPosition.y, particle.position.y, transition));
+        if (this.varPositionZ != null) context.set(this.varPositionZ, Lerps.lerp(particle.prevPosition.z, particle.position.z, transition));
+
+        context.resetCurves(false);
     }
 
     public void setEmitterVariables(float transition)
     {
-        this.scheme.emitter = this;
-
-        if (this.varEmitterAge != null) this.varEmitterAge.set(this.getAge(transition));
-        if (this.varEmitterLifetime != null) this.varEmitterLifetime.set(this.lifetime / 20.0);
-        if (this.varEmitterRandom1 != null) this.varEmitterRandom1.set(this.random1);
-        if (this.varEmitterRandom2 != null) this.varEmitterRandom2.set(this.random2);
-        if (this.varEmitterRandom3 != null) this.varEmitterRandom3.set(this.random3);
-        if (this.varEmitterRandom4 != null) this.varEmitterRandom4.set(this.random4);
-        if (this.varEmitterUser1 != null) this.varEmitterUser1.set(this.user1);
-        if (this.varEmitterUser2 != null) this.varEmitterUser2.set(this.user2);
-        if (this.varEmitterUser3 != null) this.varEmitterUser3.set(this.user3);
-        if (this.varEmitterUser4 != null) this.varEmitterUser4.set(this.user4);
-        if (this.varEmitterUser5 != null) this.varEmitterUser5.set(this.user5);
-        if (this.varEmitterUser6 != null) this.varEmitterUser6.set(this.user6);
-
-        this.scheme.updateCurves();
+        if (this.varEmitterAge != null) this.context.set(this.varEmitterAge, this.getAge(transition));
+        if (this.varEmitterLifetime != null) this.context.set(this.varEmitterLifetime, this.lifetime / 20.0);
+        if (this.varEmitterRandom1 != null) this.context.set(this.varEmitterRandom1, this.random1);
+        if (this.varEmitterRandom2 != null) this.context.set(this.varEmitterRandom2, this.random2);
+        if (this.varEmitterRandom3 != null) this.context.set(this.varEmitterRandom3, this.random3);
+        if (this.varEmitterRandom4 != null) this.context.set(this.varEmitterRandom4, this.random4);
+        if (this.varEmitterUser1 != null) this.context.set(this.varEmitterUser1, this.user1);
+        if (this.varEmitterUser2 != null) this.context.set(this.varEmitterUser2, this.user2);
+        if (this.varEmitterUser3 != null) this.context.set(this.varEmitterUser3, this.user3);
+        if (this.varEmitterUser4 != null) this.context.set(this.varEmitterUser4, this.user4);
+        if (this.varEmitterUser5 != null) this.context.set(this.varEmitterUser5, this.user5);
+        if (this.varEmitterUser6 != null) this.context.set(this.varEmitterUser6, this.user6);
+
+        this.context.invalidate();
+        this.context.resetCurves(true);
     }
 
     public void parseVariables(Map<String, String> variables)
@@ -261,7 +286,7 @@ public class ParticleEmitter
 
             if (var != null)
             {
-                var.set(entry.getValue().get().doubleValue());
+                this.context.set(var, entry.getValue().doubleValue(this.context));
             }
         }
     }
@@ -294,10 +319,41 @@ public class ParticleEmitter
         this.random4 = (float) Math.random();
     }
 
+    /**
+     * Whether particles of this emitter have components that query the
+     * world
+     */
+    public boolean isQueryingWorld()
+    {
+        if (this.scheme == null || this.world == null)
+        {
+            return false;
+        }
+
+        for (IComponentParticleUpdate component : this.scheme.particleUpdates)
+        {
+            if (component.isQueryingWorld())
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Update this current emitter
      */
     public void update()
+    {
+        this.update(null);
+    }
+
+    /**
+     * Update this current emitter, and if the scheduler is given, update
+     * big amounts of particles in parallel batches
+     */
+    public void update(ParticleScheduler scheduler)
     {
         if (this.scheme == null)
         {
@@ -312,7 +368,15 @@ public class ParticleEmitter
         }
 
         this.setEmitterVariables(0);
-        this.updateParticles();
+
+        if (scheduler != null && this.canUpdateInBatches(scheduler.getBatchSize()))
+        {
+            this.updateParticlesInBatches(scheduler);
+        }
+        else
+        {
+            this.updateParticles();
+        }
 
         if (!this.paused)
         {
@@ -320,22 +384,31 @@ public class ParticleEmitter
         }
     }
 
+    private boolean canUpdateInBatches(int batchSize)
+    {
+        return this.particles.size() >= batchSize * 2 && !this.scheme.parser.crossParticleAccess;
+    }
+
     /**
      * Update all particles
      */
     private void updateParticles()
     {
-        Iterator<Particle> it = this.particles.iterator();
-
-        while (it.hasNext())
+        for (int i = 0; i < this.particles.size();)
         {
-            Particle particle = it.next();
+            Particle particle = this.particles.get(i);
 
             this.updateParticle(particle);
 
+            /* The last particle takes the place of removed one, so it gets
+             * updated next */
             if (particle.isDead())
             {
-                it.remove();
+                this.particles.remove(i);
+            }
+            else
+            {
+                i += 1;
             }
         }
     }
@@ -351,14 +424,109 @@ public class ParticleEmitter
 
         for (IComponentParticleUpdate component : this.scheme.particleUpdates)
         {
-            component.update(this, particle);
+            component.update(this, this.context, particle);
+        }
+    }
+
+    /**
+     * Update all particles in batches of fixed size, where every batch has
+     * its own copy of emitter's context.
+     *
+     * Particle update components are split into stages, so that components
+     * which query the world run on the current thread (over all particles,
+     * with emitter's context), while the rest run in parallel batches.
+     * Since batches don't depend on the amount of threads, and every batch
+     * starts from the same context, the result stays the same no matter how
+     * the batches were scheduled.
+     */
+    private void updateParticlesInBatches(ParticleScheduler scheduler)
+    {
+        List<IComponentParticleUpdate> components = this.scheme.particleUpdates;
+        int batchSize = scheduler.getBatchSize();
+        int size = this.particles.size();
+        int batches = (size + batchSize - 1) / batchSize;
+
+        while (this.batchContexts.size() < batches)
+        {
+            this.batchContexts.add(new ParticleContext(this));
+        }
+
+        int start = 0;
+        boolean first = true;
+
+        while (first || start < components.size())
+        {
+            boolean world = !first && components.get(start).isQueryingWorld();
+            int end = start;
+
+            while (end < components.size() && components.get(end).isQueryingWorld() == world)
+            {
+                end += 1;
+            }
+
+            if (world)
+            {
+                this.updateStage(this.context, 0, size, start, end, false);
+            }
+            else
+            {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>(batches);
+
+                for (int i = 0; i < batches; i++)
+                {
+                    ParticleContext context = this.batchContexts.get(i);
+                    int from = i * batchSize;
+                    int to = Math.min(from + batchSize, size);
+                    int componentsStart = start;
+                    int componentsEnd = end;
+                    boolean update = first;
+
+                    context.copy(this.context);
+                    tasks.add(ForkJoinTask.adapt(() -> this.updateStage(context, from, to, componentsStart, componentsEnd, update)));
+                }
+
+                scheduler.invokeAll(tasks);
+            }
+
+            start = end;
+            first = false;
+        }
+
+        this.particles.removeDead();
+    }
+
+    /**
+     * Run a stage of particle update components (from start to end) on
+     * given range of particles
+     */
+    private void updateStage(ParticleContext context, int from, int to, int start, int end, boolean update)
+    {
+        List<IComponentParticleUpdate> components = this.scheme.particleUpdates;
+
+        for (int i = from; i < to; i++)
+        {
+            Particle particle = this.particles.get(i);
+
+            if (update)
+            {
+                particle.update(this);
+            }
+
+            this.setParticleVariables(context, particle, 0);
+
+            for (int j = start; j < end; j++)
+            {
+                components.get(j).update(this, context, particle);
+            }
         }
     }
 
     public Particle getParticleByIndex(int index)
     {
-        for (Particle particle : this.particles)
+        for (int i = 0, c = this.particles.size(); i < c; i++)
         {
+            Particle particle = this.particles.get(i);
+
             if (particle.index == index)
             {
                 return particle;
@@ -386,7 +554,7 @@ public class ParticleEmitter
      */
     private Particle createParticle(float offset)
     {
-        Particle particle = new Particle(this.index, offset);
+        Particle particle = this.particles.obtain(this.index, offset);
 
         this.index += 1;
 
@@ -454,7 +622,7 @@ public class ParticleEmitter
 
             for (IComponentParticleRender render : list)
             {
-                render.renderUI(this.uiParticle, builder, matrix, transition);
+                render.renderUI(this, this.uiParticle, builder, matrix, transition);
             }
 
             RenderSystem.setShader(GameRenderer::getPositionTexColorProgram);
@@ -489,9 +657,14 @@ public class ParticleEmitter
             this.bindTexture();
             builder.begin(VertexFormat.DrawMode.TRIANGLES, format);
 
-            for (Particle particle : this.particles)
+            /* Emitter variables stay the same for all particles, so expressions
+             * which depend only on them get evaluated once per frame */
+            this.setEmitterVariables(transition);
+
+            for (int i = 0, c = this.particles.size(); i < c; i++)
             {
-                this.setEmitterVariables(transition);
+                Particle particle = this.particles.get(i);
+
                 this.setParticleVariables(particle, transition);
 
                 for (IComponentParticleRender component : renders)
@@ -0,0 +1,156 @@
+package mchorse.bbs_mod.particles.emitter;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Particle storage
+ *
+ * Flat array of emitter's particles. Particles are removed by swapping
+ * them with the last particle (so removal doesn't shift the rest of the
+ * array, but the order of particles isn't preserved), and removed
+ * particles are kept in a pool, so spawning a particle reuses a dead one
+ * instead of allocating a new particle with all of its vectors.
+ */
+public class ParticleStorage implements Iterable<Particle>
+{
+    private Particle[] particles = new Particle[16];
+    private int size;
+
+    private Particle[] pool = new Particle[16];
+    private int pooled;
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    public Particle get(int index)
+    {
+        if (index < 0 || index >= this.size)
+        {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        return this.particles[index];
+    }
+
+    /**
+     * Get a reset particle from the pool, or create a new one if the pool
+     * is empty. The particle isn't added to the storage.
+     */
+    public Particle obtain(int index, float offset)
+    {
+        if (this.pooled == 0)
+        {
+            return new Particle(index, offset);
+        }
+
+        this.pooled -= 1;
+
+        Particle particle = this.pool[this.pooled];
+
+        this.pool[this.pooled] = null;
+        particle.reset(index, offset);
+
+        return particle;
+    }
+
+    public void add(Particle particle)
+    {
+        if (this.size == this.particles.length)
+        {
+            this.particles = Arrays.copyOf(this.particles, this.size * 2);
+        }
+
+        this.particles[this.size] = particle;
+        this.size += 1;
+    }
+
+    /**
+     * Remove particle at given index by putting the last particle in its
+     * place, and return the removed particle to the pool
+     */
+    public void remove(int index)
+    {
+        Particle particle = this.get(index);
+
+        this.size -= 1;
+        this.particles[index] = this.particles[this.size];
+        this.particles[this.size] = null;
+
+        this.release(particle);
+    }
+
+    /**
+     * Remove all dead particles
+     */
+    public void removeDead()
+    {
+        for (int i = 0; i < this.size;)
+        {
+            if (this.particles[i].isDead())
+            {
+                this.remove(i);
+            }
+            else
+            {
+                i += 1;
+            }
+        }
+    }
+
+    public void clear()
+    {
+        for (int i = 0; i < this.size; i++)
+        {
+            this.release(this.particles[i]);
+            this.particles[i] = null;
+        }
+
+        this.size = 0;
+    }
+
+    private void release(Particle particle)
+    {
+        if (this.pooled == this.pool.length)
+        {
+            this.pool = Arrays.copyOf(this.pool, this.pooled * 2);
+        }
+
+        this.pool[this.pooled] = particle;
+        this.pooled += 1;
+    }
+
+    @Override
+    public Iterator<Particle> iterator()
+    {
+        return new Iterator<>()
+        {
+            private int index;
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.index < ParticleStorage.this.size;
+            }
+
+            @Override
+            public Particle next()
+            {
+                if (!this.hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return ParticleStorage.this.particles[this.index++];
+            }
+        };
+    }
+}
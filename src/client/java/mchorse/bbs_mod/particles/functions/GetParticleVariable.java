@@ -2,15 +2,22 @@ package mchorse.bbs_mod.particles.functions;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.SNFunction;
 import mchorse.bbs_mod.particles.ParticleMolangParser;
 import mchorse.bbs_mod.particles.emitter.Particle;
+import mchorse.bbs_mod.particles.emitter.ParticleContext;
 
 public class GetParticleVariable extends SNFunction
 {
     public GetParticleVariable(MathBuilder builder, IExpression[] expressions, String name) throws Exception
     {
         super(builder, expressions, name);
+
+        if (expressions.length > 1 && builder instanceof ParticleMolangParser parser)
+        {
+            parser.crossParticleAccess = true;
+        }
     }
 
     @Override
@@ -26,14 +33,20 @@ public class GetParticleVariable extends SNFunction
     @Override
     public double doubleValue()
     {
-        if (this.builder instanceof ParticleMolangParser parser && parser.scheme.particle != null)
+        return this.doubleValue(null);
+    }
+
+    @Override
+    public double doubleValue(MathContext context)
+    {
+        if (context instanceof ParticleContext particleContext && particleContext.particle != null)
         {
             String name = this.args[this.args.length > 1 ? 1 : 0].stringValue();
-            Particle particle = parser.scheme.particle;
+            Particle particle = particleContext.particle;
 
             if (this.args.length > 1)
             {
-                 particle = parser.scheme.emitter.getParticleByIndex((int) this.args[0].doubleValue());
+                 particle = particleContext.emitter.getParticleByIndex((int) this.args[0].doubleValue(context));
             }
 
             if (particle == null)
@@ -2,15 +2,22 @@ package mchorse.bbs_mod.particles.functions;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.NNFunction;
 import mchorse.bbs_mod.particles.ParticleMolangParser;
 import mchorse.bbs_mod.particles.emitter.Particle;
+import mchorse.bbs_mod.particles.emitter.ParticleContext;
 
 public class SetParticleVariable extends NNFunction
 {
     public SetParticleVariable(MathBuilder builder, IExpression[] expressions, String name) throws Exception
     {
         super(builder, expressions, name);
+
+        if (expressions.length > 2 && builder instanceof ParticleMolangParser parser)
+        {
+            parser.crossParticleAccess = true;
+        }
     }
 
     @Override
@@ -24,19 +31,19 @@ public class SetParticleVariable extends NNFunction
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
-        if (this.builder instanceof ParticleMolangParser parser && parser.scheme.particle != null)
+        if (context instanceof ParticleContext particleContext && particleContext.particle != null)
         {
             int offset = this.args.length > 2 ? 1 : 0;
             String name = this.args[offset].stringValue();
-            double value = this.args[offset + 1].doubleValue();
+            double value = this.args[offset + 1].doubleValue(context);
 
-            Particle particle = parser.scheme.particle;
+            Particle particle = particleContext.particle;
 
             if (this.args.length > 2)
             {
-                particle = parser.scheme.emitter.getParticleByIndex((int) this.args[0].doubleValue());
+                particle = particleContext.emitter.getParticleByIndex((int) this.args[0].doubleValue(context));
             }
 
             if (particle == null)
@@ -423,6 +423,8 @@ public class UIKeys
     public static final IKey FORMS_EDITOR_CONTEXT_PASTE = L10n.lang("bbs.ui.forms.editor.context.paste");
     public static final IKey FORMS_EDITOR_CONTEXT_REMOVE = L10n.lang("bbs.ui.forms.editor.context.remove");
     public static final IKey FORMS_EDITOR_FINISH = L10n.lang("bbs.ui.forms.editor.finish");
+    public static final IKey FORMS_EDITOR_MODEL_LOD_SCALE = L10n.lang("bbs.ui.forms.editor.model.lod_scale");
+    public static final IKey FORMS_EDITOR_MODEL_LOD_SCALE_TOOLTIP = L10n.lang("bbs.ui.forms.editor.model.lod_scale-tooltip");
     public static final IKey FORMS_EDITOR_MODEL_MODELS = L10n.lang("bbs.ui.forms.editor.model.models");
     public static final IKey FORMS_EDITOR_MODEL_PICK_MODEL = L10n.lang("bbs.ui.forms.editor.model.pick_model");
     public static final IKey FORMS_EDITOR_MODEL_PICK_TEXTURE = L10n.lang("bbs.ui.forms.editor.model.pick_texture");
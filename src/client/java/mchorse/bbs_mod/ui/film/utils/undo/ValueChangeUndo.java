@@ -6,6 +6,7 @@ import mchorse.bbs_mod.settings.values.base.BaseValue;
 import mchorse.bbs_mod.settings.values.core.ValueGroup;
 import mchorse.bbs_mod.ui.framework.elements.UIElement;
 import mchorse.bbs_mod.utils.DataPath;
+import mchorse.bbs_mod.utils.clips.Clips;
 import mchorse.bbs_mod.utils.undo.IUndo;
 
 public class ValueChangeUndo extends FilmEditorUndo
@@ -90,6 +91,7 @@ public class ValueChangeUndo extends FilmEditorUndo
         if (value.getPath().equals(this.name))
         {
             value.fromData(this.oldValue);
+            Clips.invalidateIndices(value);
         }
     }
 
@@ -101,6 +103,7 @@ public class ValueChangeUndo extends FilmEditorUndo
         if (value.getPath().equals(this.name))
         {
             value.fromData(this.newValue);
+            Clips.invalidateIndices(value);
         }
     }
 }
\ No newline at end of file
@@ -12,8 +12,10 @@ import mchorse.bbs_mod.ui.forms.editors.panels.widgets.UIModelPoseEditor;
 import mchorse.bbs_mod.ui.framework.elements.buttons.UIButton;
 import mchorse.bbs_mod.ui.framework.elements.input.UIColor;
 import mchorse.bbs_mod.ui.framework.elements.input.UITexturePicker;
+import mchorse.bbs_mod.ui.framework.elements.input.UITrackpad;
 import mchorse.bbs_mod.ui.framework.elements.overlay.UIListOverlayPanel;
 import mchorse.bbs_mod.ui.framework.elements.overlay.UIOverlay;
+import mchorse.bbs_mod.ui.utils.UI;
 import mchorse.bbs_mod.ui.utils.shapes.UIShapeKeys;
 import mchorse.bbs_mod.utils.Direction;
 import mchorse.bbs_mod.utils.colors.Color;
@@ -25,6 +27,7 @@ public class UIModelFormPanel extends UIFormPanel<ModelForm>
     public UIColor color;
     public UIModelPoseEditor poseEditor;
     public UIShapeKeys shapeKeys;
+    public UITrackpad lodScale;
 
     public UIButton pickModel;
     public UIButton pick;
@@ -75,7 +78,11 @@ public class UIModelFormPanel extends UIFormPanel<ModelForm>
             UITexturePicker.open(this.getContext(), link, (l) -> this.form.texture.set(l));
         });
 
+        this.lodScale = new UITrackpad((v) -> this.form.lodScale.set(v.floatValue()));
+        this.lodScale.limit(0D, 16D).tooltip(UIKeys.FORMS_EDITOR_MODEL_LOD_SCALE_TOOLTIP);
+
         this.options.add(this.pickModel, this.pick, this.color, this.poseEditor);
+        this.options.add(UI.label(UIKeys.FORMS_EDITOR_MODEL_LOD_SCALE).marginTop(8), this.lodScale);
     }
 
     private void pickGroup(String group)
@@ -94,6 +101,7 @@ public class UIModelFormPanel extends UIFormPanel<ModelForm>
         this.poseEditor.setPose(form.pose.get(), model == null ? this.form.model.get() : model.poseGroup);
         this.poseEditor.fillGroups(model == null ? null : model.model, model == null ? null : model.flippedParts, true);
         this.color.setColor(form.color.get().getARGBColor());
+        this.lodScale.setValue(form.lodScale.get());
 
         this.shapeKeys.removeFromParent();
 
@@ -1,7 +1,6 @@
 package mchorse.bbs_mod.ui.particles.sections;
 
 import mchorse.bbs_mod.l10n.keys.IKey;
-import mchorse.bbs_mod.math.Variable;
 import mchorse.bbs_mod.math.molang.MolangParser;
 import mchorse.bbs_mod.particles.ParticleCurve;
 import mchorse.bbs_mod.particles.ParticleScheme;
@@ -45,11 +44,6 @@ public class UIParticleSchemeCurvesSection extends UIParticleSchemeSection
         ParticleCurve curve = new ParticleCurve();
         UICurveEditor curveEditor = new UICurveEditor(this);
 
-        if (!parser.variables.containsKey(name))
-        {
-            parser.variables.put(name, new Variable(name, 0));
-        }
-
         try
         {
             curve.input = parser.parseExpression("variable.particle_age");
@@ -60,7 +54,7 @@ public class UIParticleSchemeCurvesSection extends UIParticleSchemeSection
             e.printStackTrace();
         }
 
-        curve.variable = parser.variables.get(name);
+        curve.variable = parser.getOrCreateVariable(name);
         this.scheme.curves.put(name, curve);
 
         curveEditor.fill(curve);
@@ -1,7 +1,6 @@
 package mchorse.bbs_mod.ui.particles.utils;
 
 import mchorse.bbs_mod.l10n.keys.IKey;
-import mchorse.bbs_mod.math.Variable;
 import mchorse.bbs_mod.math.molang.MolangParser;
 import mchorse.bbs_mod.particles.ParticleCurve;
 import mchorse.bbs_mod.particles.ParticleCurveType;
@@ -77,13 +76,8 @@ public class UICurveEditor extends UIElement
                 Map<String, ParticleCurve> curves = this.section.getScheme().curves;
                 MolangParser parser = this.section.getScheme().parser;
 
-                if (!parser.variables.containsKey(newName))
-                {
-                    parser.variables.put(newName, new Variable(newName, 0));
-                }
-
                 curves.put(newName, curves.remove(oldName));
-                this.particleCurve.variable = parser.variables.get(newName);
+                this.particleCurve.variable = parser.getOrCreateVariable(newName);
                 this.name.label = IKey.constant(newName);
                 this.section.dirty();
             }
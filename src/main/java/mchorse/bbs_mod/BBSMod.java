@@ -504,6 +504,7 @@ public class BBSMod implements ModInitializer
 
         ServerLifecycleEvents.SERVER_STARTED.register((event) -> worldFolder = event.getSavePath(WorldSavePath.ROOT).toFile());
         ServerPlayConnectionEvents.JOIN.register((a, b, c) -> ServerNetwork.sendHandshake(c, b));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> ServerNetwork.disconnect(handler.player));
 
         ActionHandler.registerHandlers(actions);
 
@@ -520,6 +521,7 @@ public class BBSMod implements ModInitializer
             }
 
             runnables.clear();
+            ServerNetwork.tick();
         });
 
         ServerLifecycleEvents.SERVER_STOPPED.register((server) ->
@@ -87,6 +87,11 @@ public class BBSSettings
     public static ValueBoolean recordingOverlays;
     public static ValueInt recordingPoseTransformOverlays;
     public static ValueBoolean recordingCameraPreview;
+    public static ValueBoolean recordingReduction;
+    public static ValueFloat recordingReductionPosition;
+    public static ValueFloat recordingReductionRotation;
+    public static ValueFloat recordingReductionOther;
+    public static ValueInt recordingSeekActionsPerTick;
 
     public static ValueBoolean renderAllModelBlocks;
     public static ValueBoolean clickModelBlocks;
@@ -104,6 +109,32 @@ public class BBSSettings
     public static ValueBoolean audioWaveformFilename;
     public static ValueBoolean audioWaveformTime;
 
+    public static ValueBoolean networkCompression;
+    public static ValueInt networkChunksPerTick;
+    public static ValueInt networkTimeout;
+
+    public static ValueBoolean particlesMultiThreaded;
+    public static ValueInt particlesThreads;
+    public static ValueInt particlesBatchSize;
+    public static ValueInt particlesCollisionRefresh;
+    public static ValueBoolean particlesCompiled;
+
+    public static ValueBoolean texturesAsync;
+    public static ValueInt texturesUploadBudget;
+    public static ValueInt texturesBudget;
+
+    public static ValueInt modelsThreads;
+    public static ValueInt modelsUploadBudget;
+    public static ValueBoolean modelsParallelSkinning;
+    public static ValueBoolean modelsGreedyVox;
+    public static ValueBoolean modelsBatched;
+    public static ValueBoolean modelsInstancing;
+
+    public static ValueBoolean lodEnabled;
+    public static ValueInt lodDistance;
+    public static ValueInt lodFreezeDistance;
+    public static ValueInt lodMaxInterval;
+
     public static ValueString cdnUrl;
     public static ValueString cdnToken;
 
@@ -230,6 +261,11 @@ public class BBSSettings
         recordingOverlays = builder.getBoolean("overlays", true);
         recordingPoseTransformOverlays = builder.getInt("pose_transform_overlays", 0, 0, 42);
         recordingCameraPreview = builder.getBoolean("camera_preview", true);
+        recordingReduction = builder.getBoolean("reduction", false);
+        recordingReductionPosition = builder.getFloat("reduction_position", 0.001F, 0F, 1F);
+        recordingReductionRotation = builder.getFloat("reduction_rotation", 0.05F, 0F, 10F);
+        recordingReductionOther = builder.getFloat("reduction_other", 0.001F, 0F, 1F);
+        recordingSeekActionsPerTick = builder.getInt("seek_actions_per_tick", 0, 0, 10000);
 
         builder.category("model_blocks");
         renderAllModelBlocks = builder.getBoolean("render_all", true);
@@ -252,6 +288,37 @@ public class BBSSettings
         audioWaveformFilename = builder.getBoolean("waveform_filename", false);
         audioWaveformTime = builder.getBoolean("waveform_time", false);
 
+        builder.category("network");
+        networkCompression = builder.getBoolean("compression", true);
+        networkChunksPerTick = builder.getInt("chunks_per_tick", 0, 0, 1000);
+        networkTimeout = builder.getInt("timeout", 30, 5, 600);
+
+        builder.category("particles");
+        particlesMultiThreaded = builder.getBoolean("multithreaded", false);
+        particlesThreads = builder.getInt("threads", 0, 0, 64);
+        particlesBatchSize = builder.getInt("batch_size", 512, 64, 65536);
+        particlesCollisionRefresh = builder.getInt("collision_refresh", 20, 1, 1200);
+        particlesCompiled = builder.getBoolean("compiled", false);
+
+        builder.category("textures");
+        texturesAsync = builder.getBoolean("async", false);
+        texturesUploadBudget = builder.getInt("upload_budget", 4, 1, 50);
+        texturesBudget = builder.getInt("budget", 1024, 0, 16384);
+
+        builder.category("models");
+        modelsThreads = builder.getInt("threads", 0, 0, 16);
+        modelsUploadBudget = builder.getInt("upload_budget", 4, 1, 50);
+        modelsParallelSkinning = builder.getBoolean("parallel_skinning", false);
+        modelsGreedyVox = builder.getBoolean("greedy_vox", true);
+        modelsBatched = builder.getBoolean("batched", false);
+        modelsInstancing = builder.getBoolean("instancing", false);
+
+        builder.category("lod");
+        lodEnabled = builder.getBoolean("enabled", false);
+        lodDistance = builder.getInt("distance", 32, 4, 512);
+        lodFreezeDistance = builder.getInt("freeze_distance", 128, 8, 1024);
+        lodMaxInterval = builder.getInt("max_interval", 8, 1, 60);
+
         builder.category("cdn");
         cdnUrl = builder.getString("url", "");
         cdnToken = builder.getString("token", "");
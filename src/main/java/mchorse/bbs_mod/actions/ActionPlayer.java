@@ -1,6 +1,8 @@
 package mchorse.bbs_mod.actions;
 
 import mchorse.bbs_mod.BBSMod;
+import mchorse.bbs_mod.BBSSettings;
+import mchorse.bbs_mod.actions.types.ActionClip;
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.entity.ActorEntity;
 import mchorse.bbs_mod.film.Film;
@@ -13,6 +15,8 @@ import mchorse.bbs_mod.settings.values.base.BaseValue;
 import mchorse.bbs_mod.utils.CollectionUtils;
 import mchorse.bbs_mod.utils.DataPath;
 import mchorse.bbs_mod.utils.MathUtils;
+import mchorse.bbs_mod.utils.clips.Clip;
+import mchorse.bbs_mod.utils.clips.Clips;
 import net.minecraft.entity.EquipmentSlot;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.MovementType;
@@ -22,6 +26,7 @@ import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.Vec3d;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,6 +49,10 @@ public class ActionPlayer
 
     private Map<String, LivingEntity> actors = new HashMap<>();
 
+    private List<SeekAction> seekActions = new ArrayList<>();
+    private int seekIndex;
+    private List<Clip> seekClips = new ArrayList<>();
+
     private List<ItemStack> cachedInventory = new ArrayList<>();
     private Form cachedForm;
 
@@ -154,12 +163,12 @@ public class ActionPlayer
 
     public void apply(LivingEntity actor, Replay replay, float tick, boolean ticking)
     {
-        double x = replay.keyframes.x.interpolate(tick);
-        double y = replay.keyframes.y.interpolate(tick);
-        double z = replay.keyframes.z.interpolate(tick);
-        float yawHead = replay.keyframes.headYaw.interpolate(tick).floatValue();
-        float yawBody = replay.keyframes.bodyYaw.interpolate(tick).floatValue();
-        float pitch = replay.keyframes.pitch.interpolate(tick).floatValue();
+        double x = replay.keyframes.x.interpolateDouble(tick);
+        double y = replay.keyframes.y.interpolateDouble(tick);
+        double z = replay.keyframes.z.interpolateDouble(tick);
+        float yawHead = replay.keyframes.headYaw.interpolateFloat(tick);
+        float yawBody = replay.keyframes.bodyYaw.interpolateFloat(tick);
+        float pitch = replay.keyframes.pitch.interpolateFloat(tick);
 
         Vec3d pos = actor.getPos();
 
@@ -173,8 +182,8 @@ public class ActionPlayer
         actor.setHeadYaw(yawHead);
         actor.setPitch(pitch);
         actor.setBodyYaw(yawBody);
-        actor.setSneaking(replay.keyframes.sneaking.interpolate(tick) > 0);
-        actor.setOnGround(replay.keyframes.grounded.interpolate(tick) > 0);
+        actor.setSneaking(replay.keyframes.sneaking.interpolateDouble(tick) > 0);
+        actor.setOnGround(replay.keyframes.grounded.interpolateDouble(tick) > 0);
         actor.equipStack(EquipmentSlot.OFFHAND, replay.keyframes.offHand.interpolate(tick, ItemStack.EMPTY));
         actor.equipStack(EquipmentSlot.HEAD, replay.keyframes.armorHead.interpolate(tick, ItemStack.EMPTY));
         actor.equipStack(EquipmentSlot.CHEST, replay.keyframes.armorChest.interpolate(tick, ItemStack.EMPTY));
@@ -198,13 +207,13 @@ public class ActionPlayer
             actor.equipStack(EquipmentSlot.MAINHAND, replay.keyframes.mainHand.interpolate(tick, ItemStack.EMPTY));
         }
 
-        double vx = x - replay.keyframes.x.interpolate(tick - 1);
-        double vy = y - replay.keyframes.y.interpolate(tick - 1);
-        double vz = z - replay.keyframes.z.interpolate(tick - 1);
+        double vx = x - replay.keyframes.x.interpolateDouble(tick - 1);
+        double vy = y - replay.keyframes.y.interpolateDouble(tick - 1);
+        double vz = z - replay.keyframes.z.interpolateDouble(tick - 1);
 
         actor.setVelocity(vx, vy, vz);
 
-        actor.fallDistance = replay.keyframes.fall.interpolate(tick).floatValue();
+        actor.fallDistance = replay.keyframes.fall.interpolateFloat(tick);
     }
 
     public boolean tick()
@@ -216,6 +225,17 @@ public class ActionPlayer
             return false;
         }
 
+        if (this.isSeeking())
+        {
+            /* Playback waits until the previous seek's actions were applied */
+            this.applySeekActions();
+
+            if (this.isSeeking())
+            {
+                return false;
+            }
+        }
+
         for (Map.Entry<String, LivingEntity> entry : this.actors.entrySet())
         {
             Replay replay = (Replay) this.film.replays.get(entry.getKey());
@@ -281,6 +301,7 @@ public class ActionPlayer
         if (baseValue != null)
         {
             baseValue.fromData(data);
+            Clips.invalidateIndices(baseValue);
 
             if (baseValue.getId().equals("actor") || baseValue.getId().equals("enabled") || baseValue.getId().equals("replays"))
             {
@@ -294,6 +315,17 @@ public class ActionPlayer
         this.goTo(this.tick, tick);
     }
 
+    /**
+     * Go from one tick to another. Actions that would've been fired
+     * between these ticks (not including from tick) are applied in the same
+     * order as if the film was played tick by tick, but only clips that
+     * overlap the skipped range are looked at, so the cost of seeking
+     * depends on amount of fired actions rather than seek's distance.
+     *
+     * If {@link BBSSettings#recordingSeekActionsPerTick} is set, only that
+     * many actions are applied right away, and the rest are applied in the
+     * next ticks (see {@link #tick()}).
+     */
     public void goTo(int from, int tick)
     {
         for (Map.Entry<String, LivingEntity> entry : this.actors.entrySet())
@@ -308,19 +340,117 @@ public class ActionPlayer
 
         if (from != tick)
         {
-            this.tick = from;
+            this.collectSeekActions(from, tick);
+            this.tick = tick;
+            this.applySeekActions();
+        }
+    }
+
+    public boolean isSeeking()
+    {
+        return this.seekIndex < this.seekActions.size();
+    }
+
+    private void collectSeekActions(int from, int tick)
+    {
+        int direction = tick > from ? 1 : -1;
+        int min = Math.min(from + direction, tick);
+        int max = Math.max(from + direction, tick);
+        List<Replay> list = this.film.replays.getList();
+        List<SeekAction> actions = new ArrayList<>();
+
+        for (int i = 0; i < list.size(); i++)
+        {
+            Replay replay = list.get(i);
+
+            if (i == this.exception || !replay.enabled.get())
+            {
+                continue;
+            }
+
+            this.seekClips.clear();
+            replay.actions.getClips(min, max, this.seekClips);
 
-            while (this.tick != tick)
+            for (Clip clip : this.seekClips)
             {
-                this.tick += this.tick > tick ? -1 : 1;
+                if (clip instanceof ActionClip actionClip && actionClip.enabled.get())
+                {
+                    this.collectFiringTicks(replay, actionClip, min, max, actions);
+                }
+            }
+        }
+
+        /* Stable sort keeps replay and layer order within the same tick */
+        actions.sort(Comparator.comparingInt((action) -> action.tick * direction));
+
+        if (!this.isSeeking())
+        {
+            this.seekActions.clear();
+            this.seekIndex = 0;
+        }
 
-                this.applyAction();
+        this.seekActions.addAll(actions);
+        this.seekClips.clear();
+    }
+
+    private void collectFiringTicks(Replay replay, ActionClip clip, int min, int max, List<SeekAction> actions)
+    {
+        int start = clip.tick.get();
+        int frequency = clip.frequency.get();
+        int low = min;
+        int high = max;
+
+        if (!clip.isGlobal())
+        {
+            low = Math.max(low, start);
+            high = Math.min(high, start + clip.duration.get() - 1);
+        }
+
+        if (frequency == 0)
+        {
+            if (start >= low && start <= high)
+            {
+                actions.add(new SeekAction(replay, clip, start));
             }
+
+            return;
+        }
+
+        for (int t = low + Math.floorMod(start - low, frequency); t <= high; t += frequency)
+        {
+            actions.add(new SeekAction(replay, clip, t));
+        }
+    }
+
+    private void applySeekActions()
+    {
+        int limit = BBSSettings.recordingSeekActionsPerTick.get();
+        int applied = 0;
+        SuperFakePlayer fakePlayer = SuperFakePlayer.get(this.world);
+
+        while (this.isSeeking() && (limit <= 0 || applied < limit))
+        {
+            SeekAction action = this.seekActions.get(this.seekIndex);
+            LivingEntity actor = this.actors.get(action.replay.getId());
+
+            this.seekIndex += 1;
+            applied += 1;
+
+            action.clip.apply(actor, fakePlayer, this.film, action.replay, action.tick);
+        }
+
+        if (!this.isSeeking())
+        {
+            this.seekActions.clear();
+            this.seekIndex = 0;
         }
     }
 
     public void stop()
     {
+        this.seekActions.clear();
+        this.seekIndex = 0;
+
         for (LivingEntity value : this.actors.values())
         {
             if (!value.isPlayer())
@@ -349,4 +479,18 @@ public class ActionPlayer
     {
         this.playing = !this.playing;
     }
-}
\ No newline at end of file
+
+    private static class SeekAction
+    {
+        public final Replay replay;
+        public final ActionClip clip;
+        public final int tick;
+
+        public SeekAction(Replay replay, ActionClip clip, int tick)
+        {
+            this.replay = replay;
+            this.clip = clip;
+            this.tick = tick;
+        }
+    }
+}
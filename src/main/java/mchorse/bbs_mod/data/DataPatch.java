@@ -0,0 +1,287 @@
+package mchorse.bbs_mod.data;
+
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.IntType;
+import mchorse.bbs_mod.data.types.ListType;
+import mchorse.bbs_mod.data.types.MapType;
+import mchorse.bbs_mod.data.types.StringType;
+
+import java.util.Map;
+
+/**
+ * Data patch
+ *
+ * Structural diff and patch of {@link BaseType} trees. A patch is a list
+ * of operations, where every operation is a map with following keys:
+ *
+ * <ul>
+ *     <li><code>o</code> - operation's type: {@link #SET}, {@link #REMOVE}
+ *     or {@link #SPLICE}</li>
+ *     <li><code>p</code> - path to the node, a list of strings (map keys)
+ *     and integers (list indices)</li>
+ *     <li><code>v</code> - new value (set) or list of inserted values
+ *     (splice)</li>
+ *     <li><code>i</code>, <code>d</code> - index and amount of removed
+ *     elements (splice)</li>
+ * </ul>
+ *
+ * Lists get compared by common prefix and suffix, so editing, inserting
+ * or removing a single element (e.g. dragging a keyframe) results in a
+ * patch that is only as big as the changed element.
+ */
+public class DataPatch
+{
+    public static final int SET = 0;
+    public static final int REMOVE = 1;
+    public static final int SPLICE = 2;
+
+    /**
+     * Compute a patch that turns given from tree into to tree. Values in
+     * the patch aren't copied, so the patch shouldn't outlive to tree's
+     * modifications.
+     */
+    public static ListType diff(BaseType from, BaseType to)
+    {
+        ListType patch = new ListType();
+
+        diff(from, to, new ListType(), patch);
+
+        return patch;
+    }
+
+    private static void diff(BaseType from, BaseType to, ListType path, ListType patch)
+    {
+        if (from == null || to == null || from.getTypeId() != to.getTypeId())
+        {
+            patch.add(operation(SET, path, to == null ? new MapType() : to));
+        }
+        else if (from.isMap())
+        {
+            diffMaps(from.asMap(), to.asMap(), path, patch);
+        }
+        else if (from.isList())
+        {
+            diffLists(from.asList(), to.asList(), path, patch);
+        }
+        else if (!from.equals(to))
+        {
+            patch.add(operation(SET, path, to));
+        }
+    }
+
+    private static void diffMaps(MapType from, MapType to, ListType path, ListType patch)
+    {
+        for (String key : from.keys())
+        {
+            if (!to.has(key))
+            {
+                patch.add(operation(REMOVE, append(path, new StringType(key)), null));
+            }
+        }
+
+        for (Map.Entry<String, BaseType> entry : to)
+        {
+            BaseType value = from.get(entry.getKey());
+
+            if (value == null || !value.equals(entry.getValue()))
+            {
+                diff(value, entry.getValue(), append(path, new StringType(entry.getKey())), patch);
+            }
+        }
+    }
+
+    private static void diffLists(ListType from, ListType to, ListType path, ListType patch)
+    {
+        int fromSize = from.size();
+        int toSize = to.size();
+        int prefix = 0;
+        int suffix = 0;
+
+        while (prefix < fromSize && prefix < toSize && from.get(prefix).equals(to.get(prefix)))
+        {
+            prefix += 1;
+        }
+
+        while (
+            suffix < fromSize - prefix && suffix < toSize - prefix &&
+            from.get(fromSize - 1 - suffix).equals(to.get(toSize - 1 - suffix))
+        ) {
+            suffix += 1;
+        }
+
+        int removed = fromSize - prefix - suffix;
+        int added = toSize - prefix - suffix;
+
+        if (removed == 0 && added == 0)
+        {
+            return;
+        }
+
+        if (removed == added)
+        {
+            /* Same amount of elements were changed, so diff them one by one */
+            for (int i = prefix; i < prefix + added; i++)
+            {
+                diff(from.get(i), to.get(i), append(path, new IntType(i)), patch);
+            }
+
+            return;
+        }
+
+        ListType values = new ListType();
+
+        for (int i = prefix; i < prefix + added; i++)
+        {
+            values.add(to.get(i));
+        }
+
+        MapType operation = operation(SPLICE, path, values);
+
+        operation.putInt("i", prefix);
+        operation.putInt("d", removed);
+        patch.add(operation);
+    }
+
+    private static MapType operation(int type, ListType path, BaseType value)
+    {
+        MapType operation = new MapType();
+
+        operation.putByte("o", (byte) type);
+        operation.put("p", path);
+
+        if (value != null)
+        {
+            operation.put("v", value);
+        }
+
+        return operation;
+    }
+
+    private static ListType append(ListType path, BaseType segment)
+    {
+        ListType newPath = new ListType();
+
+        newPath.elements.addAll(path.elements);
+        newPath.add(segment);
+
+        return newPath;
+    }
+
+    /**
+     * Apply given patch to given tree. The tree gets modified in place,
+     * but if the patch replaces the root itself, new root is returned, so
+     * the returned value should always be used. Patch's values are moved
+     * into the tree.
+     *
+     * @throws IllegalStateException if the patch doesn't fit the tree
+     */
+    public static BaseType apply(BaseType root, ListType patch)
+    {
+        for (BaseType element : patch)
+        {
+            if (!element.isMap())
+            {
+                throw new IllegalStateException("Patch operation is not a map!");
+            }
+
+            MapType operation = element.asMap();
+            int type = operation.getByte("o");
+            ListType path = operation.getList("p");
+            BaseType value = operation.get("v");
+
+            if (type == SET && path.isEmpty())
+            {
+                root = value;
+
+                continue;
+            }
+
+            if (type == SPLICE)
+            {
+                BaseType target = resolve(root, path, path.size());
+
+                if (target == null || !target.isList() || value == null || !value.isList())
+                {
+                    throw new IllegalStateException("Can't splice a non-list at " + path + "!");
+                }
+
+                ListType list = target.asList();
+                int index = operation.getInt("i");
+                int removed = operation.getInt("d");
+
+                if (index < 0 || removed < 0 || index + removed > list.size())
+                {
+                    throw new IllegalStateException("Splice " + index + ", " + removed + " is out of bounds at " + path + "!");
+                }
+
+                list.elements.subList(index, index + removed).clear();
+                list.elements.addAll(index, value.asList().elements);
+
+                continue;
+            }
+
+            BaseType parent = resolve(root, path, path.size() - 1);
+            BaseType last = path.get(path.size() - 1);
+
+            if (parent != null && parent.isMap() && last.isString())
+            {
+                if (type == REMOVE)
+                {
+                    parent.asMap().remove(last.asString());
+                }
+                else if (type == SET && value != null)
+                {
+                    parent.asMap().put(last.asString(), value);
+                }
+                else
+                {
+                    throw new IllegalStateException("Invalid operation " + type + " at " + path + "!");
+                }
+            }
+            else if (parent != null && parent.isList() && last.isNumeric() && type == SET && value != null)
+            {
+                int index = last.asNumeric().intValue();
+
+                if (!parent.asList().has(index))
+                {
+                    throw new IllegalStateException("Index " + index + " is out of bounds at " + path + "!");
+                }
+
+                parent.asList().elements.set(index, value);
+            }
+            else
+            {
+                throw new IllegalStateException("Invalid operation " + type + " at " + path + "!");
+            }
+        }
+
+        return root;
+    }
+
+    private static BaseType resolve(BaseType root, ListType path, int length)
+    {
+        BaseType node = root;
+
+        for (int i = 0; i < length && node != null; i++)
+        {
+            BaseType segment = path.get(i);
+
+            if (node.isMap() && segment.isString())
+            {
+                node = node.asMap().get(segment.asString());
+            }
+            else if (node.isList() && segment.isNumeric())
+            {
+                int index = segment.asNumeric().intValue();
+
+                node = node.asList().has(index) ? node.asList().get(index) : null;
+            }
+            else
+            {
+                node = null;
+            }
+        }
+
+        return node;
+    }
+}
@@ -2,6 +2,7 @@ package mchorse.bbs_mod.film;
 
 import mchorse.bbs_mod.data.types.MapType;
 import mchorse.bbs_mod.utils.manager.BaseManager;
+import mchorse.bbs_mod.utils.manager.ManagerCache;
 import mchorse.bbs_mod.utils.manager.storage.CompressedDataStorage;
 
 import java.io.File;
@@ -9,12 +10,19 @@ import java.util.function.Supplier;
 
 public class FilmManager extends BaseManager<Film>
 {
+    /**
+     * Maximum total size (estimated heap memory taken by decoded data, not
+     * the size of compressed files on disk) of cached films
+     */
+    public static final long CACHE_LIMIT = 32 * 1024 * 1024;
+
     public FilmManager(Supplier<File> folder)
     {
         super(folder);
 
         this.backUps = true;
         this.storage = new CompressedDataStorage();
+        this.cache = new ManagerCache(CACHE_LIMIT);
     }
 
     @Override
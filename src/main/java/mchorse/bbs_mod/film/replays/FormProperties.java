@@ -96,10 +96,12 @@ public class FormProperties extends ValueGroup
             return;
         }
 
-        KeyframeSegment segment = value.find(tick);
+        KeyframeSegment segment = value.findSegment(tick);
 
         if (segment != null)
         {
+            segment.setup(tick);
+
             if (blend < 1F)
             {
                 IKeyframeFactory factory = value.getFactory();
@@ -5,7 +5,6 @@ import mchorse.bbs_mod.settings.values.base.BaseValue;
 import mchorse.bbs_mod.settings.values.core.ValueGroup;
 import mchorse.bbs_mod.utils.interps.IInterp;
 import mchorse.bbs_mod.utils.interps.Interpolations;
-import mchorse.bbs_mod.utils.keyframes.Keyframe;
 import mchorse.bbs_mod.utils.keyframes.KeyframeChannel;
 import mchorse.bbs_mod.utils.keyframes.KeyframeSegment;
 import mchorse.bbs_mod.utils.keyframes.factories.KeyframeFactories;
@@ -29,37 +28,37 @@ public class ReplayKeyframes extends ValueGroup
 
     public static final List<String> CURATED_CHANNELS = Arrays.asList("x", "y", "z", "pitch", "yaw", "headYaw", "bodyYaw", "sneaking", "sprinting", "item_main_hand", "item_off_hand", "item_head", "item_chest", "item_legs", "item_feet", "selected_slot", "stick_lx", "stick_ly", "stick_rx", "stick_ry", "trigger_l", "trigger_r", "extra1_x", "extra1_y", "extra2_x", "extra2_y", "grounded", "damage", "vX", "vY", "vZ");
 
-    public final KeyframeChannel<Double> x = new KeyframeChannel<>("x", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> y = new KeyframeChannel<>("y", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> z = new KeyframeChannel<>("z", KeyframeFactories.DOUBLE);
+    public final KeyframeChannel<Double> x = new KeyframeChannel<>("x", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> y = new KeyframeChannel<>("y", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> z = new KeyframeChannel<>("z", KeyframeFactories.DOUBLE).columnar();
 
-    public final KeyframeChannel<Double> vX = new KeyframeChannel<>("vX", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> vY = new KeyframeChannel<>("vY", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> vZ = new KeyframeChannel<>("vZ", KeyframeFactories.DOUBLE);
+    public final KeyframeChannel<Double> vX = new KeyframeChannel<>("vX", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> vY = new KeyframeChannel<>("vY", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> vZ = new KeyframeChannel<>("vZ", KeyframeFactories.DOUBLE).columnar();
 
-    public final KeyframeChannel<Double> yaw = new KeyframeChannel<>("yaw", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> pitch = new KeyframeChannel<>("pitch", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> headYaw = new KeyframeChannel<>("headYaw", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> bodyYaw = new KeyframeChannel<>("bodyYaw", KeyframeFactories.DOUBLE);
+    public final KeyframeChannel<Double> yaw = new KeyframeChannel<>("yaw", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> pitch = new KeyframeChannel<>("pitch", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> headYaw = new KeyframeChannel<>("headYaw", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> bodyYaw = new KeyframeChannel<>("bodyYaw", KeyframeFactories.DOUBLE).columnar();
 
-    public final KeyframeChannel<Double> sneaking = new KeyframeChannel<>("sneaking", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> sprinting = new KeyframeChannel<>("sprinting", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> grounded = new KeyframeChannel<>("grounded", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> fall = new KeyframeChannel<>("fall", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> damage = new KeyframeChannel<>("damage", KeyframeFactories.DOUBLE);
+    public final KeyframeChannel<Double> sneaking = new KeyframeChannel<>("sneaking", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> sprinting = new KeyframeChannel<>("sprinting", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> grounded = new KeyframeChannel<>("grounded", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> fall = new KeyframeChannel<>("fall", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> damage = new KeyframeChannel<>("damage", KeyframeFactories.DOUBLE).columnar();
 
-    public final KeyframeChannel<Double> stickLeftX = new KeyframeChannel<>("stick_lx", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> stickLeftY = new KeyframeChannel<>("stick_ly", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> stickRightX = new KeyframeChannel<>("stick_rx", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> stickRightY = new KeyframeChannel<>("stick_ry", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> triggerLeft = new KeyframeChannel<>("trigger_l", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> triggerRight = new KeyframeChannel<>("trigger_r", KeyframeFactories.DOUBLE);
+    public final KeyframeChannel<Double> stickLeftX = new KeyframeChannel<>("stick_lx", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> stickLeftY = new KeyframeChannel<>("stick_ly", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> stickRightX = new KeyframeChannel<>("stick_rx", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> stickRightY = new KeyframeChannel<>("stick_ry", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> triggerLeft = new KeyframeChannel<>("trigger_l", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> triggerRight = new KeyframeChannel<>("trigger_r", KeyframeFactories.DOUBLE).columnar();
 
     /* Miscellaneous animatable keyframe channels */
-    public final KeyframeChannel<Double> extra1X = new KeyframeChannel<>("extra1_x", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> extra1Y = new KeyframeChannel<>("extra1_y", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> extra2X = new KeyframeChannel<>("extra2_x", KeyframeFactories.DOUBLE);
-    public final KeyframeChannel<Double> extra2Y = new KeyframeChannel<>("extra2_y", KeyframeFactories.DOUBLE);
+    public final KeyframeChannel<Double> extra1X = new KeyframeChannel<>("extra1_x", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> extra1Y = new KeyframeChannel<>("extra1_y", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> extra2X = new KeyframeChannel<>("extra2_x", KeyframeFactories.DOUBLE).columnar();
+    public final KeyframeChannel<Double> extra2Y = new KeyframeChannel<>("extra2_y", KeyframeFactories.DOUBLE).columnar();
 
     public final KeyframeChannel<ItemStack> mainHand = new KeyframeChannel<>("item_main_hand", KeyframeFactories.ITEM_STACK);
     public final KeyframeChannel<ItemStack> offHand = new KeyframeChannel<>("item_off_hand", KeyframeFactories.ITEM_STACK);
@@ -69,6 +68,16 @@ public class ReplayKeyframes extends ValueGroup
     public final KeyframeChannel<ItemStack> armorFeet = new KeyframeChannel<>("item_feet", KeyframeFactories.ITEM_STACK);
     public final KeyframeChannel<Integer> selectedSlot = new KeyframeChannel<>("selected_slot", KeyframeFactories.INTEGER);
 
+    /* Reusable objects for apply(), so it wouldn't allocate per tick */
+    private final KeyframeSegment<Double> segment = new KeyframeSegment<>();
+    private final Vector2d prevX = new Vector2d();
+    private final Vector2d prevY = new Vector2d();
+    private final Vector2d prevZ = new Vector2d();
+    private final Vector2d prevYaw = new Vector2d();
+    private final Vector2d prevPitch = new Vector2d();
+    private final Vector2d prevHeadYaw = new Vector2d();
+    private final Vector2d prevBodyYaw = new Vector2d();
+
     public ReplayKeyframes(String id)
     {
         super(id);
@@ -127,10 +136,7 @@ public class ReplayKeyframes extends ValueGroup
     {
         for (KeyframeChannel<?> channel : this.getChannels())
         {
-            for (Keyframe<?> keyframe : channel.getKeyframes())
-            {
-                keyframe.setTick(keyframe.getTick() + tick);
-            }
+            channel.shift(tick);
         }
     }
 
@@ -147,6 +153,42 @@ public class ReplayKeyframes extends ValueGroup
         }
     }
 
+    /**
+     * Lossy reduction of numeric channels with tolerance per group of
+     * channels: position (and velocity), rotation and everything else.
+     * Returns how many keyframes were removed.
+     */
+    public int reduce(double position, double rotation, double other)
+    {
+        int removed = 0;
+
+        for (KeyframeChannel<?> channel : this.getChannels())
+        {
+            if (channel.getFactory() != KeyframeFactories.DOUBLE)
+            {
+                continue;
+            }
+
+            if (
+                channel == this.x || channel == this.y || channel == this.z ||
+                channel == this.vX || channel == this.vY || channel == this.vZ ||
+                channel == this.fall
+            ) {
+                removed += channel.reduce(position);
+            }
+            else if (channel == this.yaw || channel == this.pitch || channel == this.headYaw || channel == this.bodyYaw)
+            {
+                removed += channel.reduce(rotation);
+            }
+            else
+            {
+                removed += channel.reduce(other);
+            }
+        }
+
+        return removed;
+    }
+
     public void record(int tick, IEntity entity, List<String> groups)
     {
         boolean empty = groups == null || groups.isEmpty();
@@ -158,75 +200,80 @@ public class ReplayKeyframes extends ValueGroup
         boolean extra1 = empty || groups.contains(GROUP_EXTRA1);
         boolean extra2 = empty || groups.contains(GROUP_EXTRA2);
 
+        /* Notify only once for the whole tick instead of every channel */
+        this.preNotify();
+
         /* Position and rotation */
         if (position)
         {
-            this.x.insert(tick, entity.getX());
-            this.y.insert(tick, entity.getY());
-            this.z.insert(tick, entity.getZ());
+            this.x.insertSilently(tick, entity.getX());
+            this.y.insertSilently(tick, entity.getY());
+            this.z.insertSilently(tick, entity.getZ());
 
-            this.vX.insert(tick, entity.getVelocity().x);
-            this.vY.insert(tick, entity.getVelocity().y);
-            this.vZ.insert(tick, entity.getVelocity().z);
+            this.vX.insertSilently(tick, entity.getVelocity().x);
+            this.vY.insertSilently(tick, entity.getVelocity().y);
+            this.vZ.insertSilently(tick, entity.getVelocity().z);
 
-            this.fall.insert(tick, (double) entity.getFallDistance());
+            this.fall.insertSilently(tick, (double) entity.getFallDistance());
         }
 
-        this.sneaking.insert(tick, entity.isSneaking() ? 1D : 0D);
-        this.sprinting.insert(tick, entity.isSprinting() ? 1D : 0D);
-        this.grounded.insert(tick, entity.isOnGround() ? 1D : 0D);
-        this.damage.insert(tick, (double) entity.getHurtTimer());
+        this.sneaking.insertSilently(tick, entity.isSneaking() ? 1D : 0D);
+        this.sprinting.insertSilently(tick, entity.isSprinting() ? 1D : 0D);
+        this.grounded.insertSilently(tick, entity.isOnGround() ? 1D : 0D);
+        this.damage.insertSilently(tick, (double) entity.getHurtTimer());
 
         if (rotation)
         {
-            this.yaw.insert(tick, (double) entity.getYaw());
-            this.pitch.insert(tick, (double) entity.getPitch());
-            this.headYaw.insert(tick, (double) entity.getHeadYaw());
-            this.bodyYaw.insert(tick, (double) entity.getBodyYaw());
+            this.yaw.insertSilently(tick, (double) entity.getYaw());
+            this.pitch.insertSilently(tick, (double) entity.getPitch());
+            this.headYaw.insertSilently(tick, (double) entity.getHeadYaw());
+            this.bodyYaw.insertSilently(tick, (double) entity.getBodyYaw());
         }
 
         float[] sticks = entity.getExtraVariables();
 
         if (leftStick)
         {
-            this.stickLeftX.insert(tick, (double) sticks[0]);
-            this.stickLeftY.insert(tick, (double) sticks[1]);
+            this.stickLeftX.insertSilently(tick, (double) sticks[0]);
+            this.stickLeftY.insertSilently(tick, (double) sticks[1]);
         }
 
         if (rightStick)
         {
-            this.stickRightX.insert(tick, (double) sticks[2]);
-            this.stickRightY.insert(tick, (double) sticks[3]);
+            this.stickRightX.insertSilently(tick, (double) sticks[2]);
+            this.stickRightY.insertSilently(tick, (double) sticks[3]);
         }
 
         if (triggers)
         {
-            this.triggerLeft.insert(tick, (double) sticks[4]);
-            this.triggerRight.insert(tick, (double) sticks[5]);
+            this.triggerLeft.insertSilently(tick, (double) sticks[4]);
+            this.triggerRight.insertSilently(tick, (double) sticks[5]);
         }
 
         if (extra1)
         {
-            this.extra1X.insert(tick, (double) sticks[6]);
-            this.extra1Y.insert(tick, (double) sticks[7]);
+            this.extra1X.insertSilently(tick, (double) sticks[6]);
+            this.extra1Y.insertSilently(tick, (double) sticks[7]);
         }
 
         if (extra2)
         {
-            this.extra2X.insert(tick, (double) sticks[8]);
-            this.extra2Y.insert(tick, (double) sticks[9]);
+            this.extra2X.insertSilently(tick, (double) sticks[8]);
+            this.extra2Y.insertSilently(tick, (double) sticks[9]);
         }
 
         if (empty)
         {
-            this.mainHand.insert(tick, entity.getEquipmentStack(EquipmentSlot.MAINHAND).copy());
-            this.offHand.insert(tick, entity.getEquipmentStack(EquipmentSlot.OFFHAND).copy());
-            this.armorHead.insert(tick, entity.getEquipmentStack(EquipmentSlot.HEAD).copy());
-            this.armorChest.insert(tick, entity.getEquipmentStack(EquipmentSlot.CHEST).copy());
-            this.armorLegs.insert(tick, entity.getEquipmentStack(EquipmentSlot.LEGS).copy());
-            this.armorFeet.insert(tick, entity.getEquipmentStack(EquipmentSlot.FEET).copy());
-            this.selectedSlot.insert(tick, entity.getSelectedSlot());
+            this.mainHand.insertSilently(tick, entity.getEquipmentStack(EquipmentSlot.MAINHAND).copy());
+            this.offHand.insertSilently(tick, entity.getEquipmentStack(EquipmentSlot.OFFHAND).copy());
+            this.armorHead.insertSilently(tick, entity.getEquipmentStack(EquipmentSlot.HEAD).copy());
+            this.armorChest.insertSilently(tick, entity.getEquipmentStack(EquipmentSlot.CHEST).copy());
+            this.armorLegs.insertSilently(tick, entity.getEquipmentStack(EquipmentSlot.LEGS).copy());
+            this.armorFeet.insertSilently(tick, entity.getEquipmentStack(EquipmentSlot.FEET).copy());
+            this.selectedSlot.insertSilently(tick, entity.getSelectedSlot());
         }
+
+        this.postNotify();
     }
 
     public void apply(int tick, IEntity entity)
@@ -250,15 +297,12 @@ public class ReplayKeyframes extends ValueGroup
 
         if (position)
         {
-            entity.setVelocity(this.vX.interpolate(tick).floatValue(), this.vY.interpolate(tick).floatValue(), this.vZ.interpolate(tick).floatValue());
-            entity.setFallDistance(this.fall.interpolate(tick).floatValue());
+            entity.setVelocity(this.vX.interpolateFloat(tick), this.vY.interpolateFloat(tick), this.vZ.interpolateFloat(tick));
+            entity.setFallDistance(this.fall.interpolateFloat(tick));
 
-            KeyframeSegment<Double> x = this.x.findSegment(tick);
-            Vector2d xx = this.getPrev(x, this.x.interpolate(tick - 1), tick);
-            KeyframeSegment<Double> y = this.y.findSegment(tick);
-            Vector2d yy = this.getPrev(y, this.y.interpolate(tick - 1), tick);
-            KeyframeSegment<Double> z = this.z.findSegment(tick);
-            Vector2d zz = this.getPrev(z, this.z.interpolate(tick - 1), tick);
+            Vector2d xx = this.getPrev(this.x, tick, this.prevX);
+            Vector2d yy = this.getPrev(this.y, tick, this.prevY);
+            Vector2d zz = this.getPrev(this.z, tick, this.prevZ);
 
             entity.setPosition(xx.x, yy.x, zz.x);
             entity.setPrevX(xx.y);
@@ -268,14 +312,10 @@ public class ReplayKeyframes extends ValueGroup
 
         if (rotation)
         {
-            KeyframeSegment<Double> yaw = this.yaw.findSegment(tick);
-            Vector2d yyaw = this.getPrev(yaw, this.yaw.interpolate(tick - 1), tick);
-            KeyframeSegment<Double> pitch = this.pitch.findSegment(tick);
-            Vector2d ppitch = this.getPrev(pitch, this.pitch.interpolate(tick - 1), tick);
-            KeyframeSegment<Double> headYaw = this.headYaw.findSegment(tick);
-            Vector2d hheadYaw = this.getPrev(headYaw, this.headYaw.interpolate(tick - 1), tick);
-            KeyframeSegment<Double> bodyYaw = this.bodyYaw.findSegment(tick);
-            Vector2d bbodyYaw = this.getPrev(bodyYaw, this.bodyYaw.interpolate(tick - 1), tick);
+            Vector2d yyaw = this.getPrev(this.yaw, tick, this.prevYaw);
+            Vector2d ppitch = this.getPrev(this.pitch, tick, this.prevPitch);
+            Vector2d hheadYaw = this.getPrev(this.headYaw, tick, this.prevHeadYaw);
+            Vector2d bbodyYaw = this.getPrev(this.bodyYaw, tick, this.prevBodyYaw);
 
             entity.setYaw((float) yyaw.x);
             entity.setPitch((float) ppitch.x);
@@ -289,41 +329,41 @@ public class ReplayKeyframes extends ValueGroup
         }
 
         /* Motion and fall distance */
-        entity.setSneaking(this.sneaking.interpolate(tick) != 0D);
-        entity.setSprinting(this.sprinting.interpolate(tick) != 0D);
-        entity.setOnGround(this.grounded.interpolate(tick) != 0D);
-        entity.setHurtTimer(this.damage.interpolate(tick).intValue());
+        entity.setSneaking(this.sneaking.interpolateDouble(tick) != 0D);
+        entity.setSprinting(this.sprinting.interpolateDouble(tick) != 0D);
+        entity.setOnGround(this.grounded.interpolateDouble(tick) != 0D);
+        entity.setHurtTimer((int) this.damage.interpolateDouble(tick));
 
         float[] sticks = entity.getExtraVariables();
 
         if (leftStick)
         {
-            sticks[0] = this.stickLeftX.interpolate(tick).floatValue();
-            sticks[1] = this.stickLeftY.interpolate(tick).floatValue();
+            sticks[0] = this.stickLeftX.interpolateFloat(tick);
+            sticks[1] = this.stickLeftY.interpolateFloat(tick);
         }
 
         if (rightStick)
         {
-            sticks[2] = this.stickRightX.interpolate(tick).floatValue();
-            sticks[3] = this.stickRightY.interpolate(tick).floatValue();
+            sticks[2] = this.stickRightX.interpolateFloat(tick);
+            sticks[3] = this.stickRightY.interpolateFloat(tick);
         }
 
         if (triggers)
         {
-            sticks[4] = this.triggerLeft.interpolate(tick).floatValue();
-            sticks[5] = this.triggerRight.interpolate(tick).floatValue();
+            sticks[4] = this.triggerLeft.interpolateFloat(tick);
+            sticks[5] = this.triggerRight.interpolateFloat(tick);
         }
 
         if (extra1)
         {
-            sticks[6] = this.extra1X.interpolate(tick).floatValue();
-            sticks[7] = this.extra1Y.interpolate(tick).floatValue();
+            sticks[6] = this.extra1X.interpolateFloat(tick);
+            sticks[7] = this.extra1Y.interpolateFloat(tick);
         }
 
         if (extra2)
         {
-            sticks[8] = this.extra2X.interpolate(tick).floatValue();
-            sticks[9] = this.extra2Y.interpolate(tick).floatValue();
+            sticks[8] = this.extra2X.interpolateFloat(tick);
+            sticks[9] = this.extra2Y.interpolateFloat(tick);
         }
 
         entity.setEquipmentStack(EquipmentSlot.MAINHAND, this.mainHand.interpolate(tick));
@@ -337,37 +377,30 @@ public class ReplayKeyframes extends ValueGroup
     /**
      * Force teleportation for the previous keyframe being constant
      */
-    private Vector2d getPrev(KeyframeSegment<Double> frame, double prev, int tick)
+    private Vector2d getPrev(KeyframeChannel<Double> channel, int tick, Vector2d output)
     {
+        KeyframeSegment<Double> frame = channel.findSegment(tick, this.segment);
+        double prev = channel.interpolateDouble(tick - 1);
+
         if (frame == null)
         {
-            return new Vector2d(prev, prev);
+            return output.set(prev, prev);
         }
 
         IInterp interp = frame.a.getInterpolation().getInterp();
-        Double interpolated = frame.createInterpolated();
+        double interpolated = channel.interpolateDouble(tick);
 
         /*  */
         if (interp == Interpolations.CONST || interp == Interpolations.STEP)
         {
-            if (interpolated != null)
-            {
-                prev = interpolated;
-            }
-
-            return new Vector2d(prev, prev);
+            return output.set(interpolated, interpolated);
         }
 
         if (frame.preA != frame.a && frame.a.getTick() == tick && (frame.preA.getInterpolation().getInterp() == Interpolations.CONST || frame.preA.getInterpolation().getInterp() == Interpolations.STEP))
         {
-            if (interpolated != null)
-            {
-                prev = interpolated;
-            }
-
-            return new Vector2d(prev, prev);
+            return output.set(interpolated, interpolated);
         }
 
-        return new Vector2d(interpolated == null ? prev : interpolated, prev);
+        return output.set(interpolated, prev);
     }
 }
\ No newline at end of file
@@ -15,6 +15,11 @@ public class Group implements IExpression
         this.expression = expression;
     }
 
+    public IExpression getExpression()
+    {
+        return this.expression;
+    }
+
     @Override
     public IExpression get()
     {
@@ -45,6 +50,12 @@ public class Group implements IExpression
         return this.expression.doubleValue();
     }
 
+    @Override
+    public double doubleValue(MathContext context)
+    {
+        return this.expression.doubleValue(context);
+    }
+
     @Override
     public boolean booleanValue()
     {
@@ -23,6 +23,18 @@ public interface IExpression
 
     public double doubleValue();
 
+    /**
+     * Compute numeric value with variables bound in given context (or
+     * with variables' own values, if the context is null). Unlike
+     * {@link #get()}, it doesn't store anything in the expression, so
+     * the same expression can be evaluated with different contexts at
+     * the same time.
+     */
+    public default double doubleValue(MathContext context)
+    {
+        return this.doubleValue();
+    }
+
     public boolean booleanValue();
 
     public String stringValue();
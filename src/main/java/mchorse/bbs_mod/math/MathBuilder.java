@@ -67,6 +67,11 @@ public class MathBuilder
      */
     protected boolean strict = true;
 
+    /**
+     * Counter of indices of variables (and other values) in {@link MathContext}
+     */
+    private int contextIndices;
+
     public MathBuilder()
     {
         /* Some default values */
@@ -141,9 +146,22 @@ public class MathBuilder
      */
     public void register(Variable variable)
     {
+        if (variable.getIndex() < 0)
+        {
+            variable.setIndex(this.nextContextIndex());
+        }
+
         this.variables.put(variable.getName(), variable);
     }
 
+    /**
+     * Allocate a new index of a value in {@link MathContext}
+     */
+    public int nextContextIndex()
+    {
+        return this.contextIndices++;
+    }
+
     /**
      * Parse given math expression into a {@link IExpression} which can be
      * used to execute math.
@@ -0,0 +1,198 @@
+package mchorse.bbs_mod.math;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Math context
+ *
+ * A frame of variable values, which is passed to
+ * {@link IExpression#doubleValue(MathContext)} (and
+ * {@link mchorse.bbs_mod.math.molang.expressions.MolangExpression#get(MathContext)}).
+ * Variables that are bound in the context are read from (and assigned to)
+ * the context instead of the variables themselves, so the same parsed
+ * expression can be evaluated by many owners (like particle emitters that
+ * share one scheme), and on many threads at once, as long as every owner
+ * has its own context.
+ *
+ * Values are looked up by variable's index, which is assigned by the
+ * {@link MathBuilder} that registered the variable, so a context should be
+ * used only with expressions parsed by one builder.
+ */
+public class MathContext
+{
+    private double[] values = new double[16];
+    private boolean[] bound = new boolean[16];
+
+    /* Cached values of invariant expressions */
+    private double[] cache = new double[0];
+    private int[] cacheRevisions = new int[0];
+    private int revision = 1;
+
+    private Random random;
+
+    /**
+     * Get variable's value bound in this context, or variable's own value
+     * if it's not bound
+     */
+    public double get(Variable variable)
+    {
+        int index = variable.getIndex();
+
+        if (index >= 0 && index < this.bound.length && this.bound[index])
+        {
+            return this.values[index];
+        }
+
+        return this.getUnbound(variable);
+    }
+
+    /**
+     * Get value of a variable that isn't bound in this context. Subclasses
+     * can override it to compute values lazily.
+     */
+    protected double getUnbound(Variable variable)
+    {
+        return variable.doubleValue();
+    }
+
+    public boolean isBound(Variable variable)
+    {
+        int index = variable.getIndex();
+
+        return index >= 0 && index < this.bound.length && this.bound[index];
+    }
+
+    /**
+     * Bind variable's value in this context. Variables that weren't
+     * registered in a builder can't be bound, so their own value is set
+     * instead.
+     */
+    public void set(Variable variable, double value)
+    {
+        int index = variable.getIndex();
+
+        if (index < 0)
+        {
+            variable.set(value);
+
+            return;
+        }
+
+        if (index >= this.values.length)
+        {
+            int length = Math.max(index + 1, this.values.length * 2);
+            double[] values = new double[length];
+            boolean[] bound = new boolean[length];
+
+            System.arraycopy(this.values, 0, values, 0, this.values.length);
+            System.arraycopy(this.bound, 0, bound, 0, this.bound.length);
+
+            this.values = values;
+            this.bound = bound;
+        }
+
+        this.values[index] = value;
+        this.bound[index] = true;
+    }
+
+    public void unbind(Variable variable)
+    {
+        int index = variable.getIndex();
+
+        if (index >= 0 && index < this.bound.length)
+        {
+            this.bound[index] = false;
+        }
+    }
+
+    /**
+     * Unbind all variables, and drop cached values
+     */
+    public void clear()
+    {
+        Arrays.fill(this.bound, false);
+
+        this.invalidate();
+    }
+
+    /**
+     * Copy bound and cached values from given context, so this context can
+     * continue evaluation from the same state on another thread (random
+     * generator isn't copied)
+     */
+    public void copy(MathContext context)
+    {
+        if (this.values.length != context.values.length)
+        {
+            this.values = new double[context.values.length];
+            this.bound = new boolean[context.bound.length];
+        }
+
+        if (this.cache.length != context.cache.length)
+        {
+            this.cache = new double[context.cache.length];
+            this.cacheRevisions = new int[context.cacheRevisions.length];
+        }
+
+        System.arraycopy(context.values, 0, this.values, 0, context.values.length);
+        System.arraycopy(context.bound, 0, this.bound, 0, context.bound.length);
+        System.arraycopy(context.cache, 0, this.cache, 0, context.cache.length);
+        System.arraycopy(context.cacheRevisions, 0, this.cacheRevisions, 0, context.cacheRevisions.length);
+
+        this.revision = context.revision;
+    }
+
+    /* Cache */
+
+    /**
+     * Drop all cached values of invariant expressions (it should be called
+     * whenever values of invariant variables change)
+     */
+    public void invalidate()
+    {
+        this.revision += 1;
+    }
+
+    public boolean hasCached(int index)
+    {
+        return index < this.cacheRevisions.length && this.cacheRevisions[index] == this.revision;
+    }
+
+    public double getCached(int index)
+    {
+        return this.cache[index];
+    }
+
+    public void setCached(int index, double value)
+    {
+        if (index >= this.cache.length)
+        {
+            int length = Math.max(index + 1, this.cache.length * 2);
+            double[] cache = new double[length];
+            int[] cacheRevisions = new int[length];
+
+            System.arraycopy(this.cache, 0, cache, 0, this.cache.length);
+            System.arraycopy(this.cacheRevisions, 0, cacheRevisions, 0, this.cacheRevisions.length);
+
+            this.cache = cache;
+            this.cacheRevisions = cacheRevisions;
+        }
+
+        this.cache[index] = value;
+        this.cacheRevisions[index] = this.revision;
+    }
+
+    /**
+     * Random generator of this context, used by seeded random functions
+     */
+    public Random getRandom()
+    {
+        if (this.random == null)
+        {
+            this.random = new Random();
+        }
+
+        return this.random;
+    }
+}
@@ -24,6 +24,17 @@ public class Negate extends Wrapper
         return this.booleanValue() ? 1 : 0;
     }
 
+    @Override
+    public double doubleValue(MathContext context)
+    {
+        if (!this.expression.isNumber())
+        {
+            return this.doubleValue();
+        }
+
+        return Operation.isTrue(this.expression.doubleValue(context)) ? 0 : 1;
+    }
+
     @Override
     public boolean booleanValue()
     {
@@ -24,6 +24,12 @@ public class Negative extends Wrapper
         return -this.expression.doubleValue();
     }
 
+    @Override
+    public double doubleValue(MathContext context)
+    {
+        return -this.expression.doubleValue(context);
+    }
+
     @Override
     public boolean booleanValue()
     {
@@ -53,13 +53,19 @@ public class Operator implements IExpression
 
     @Override
     public double doubleValue()
+    {
+        return this.doubleValue(null);
+    }
+
+    @Override
+    public double doubleValue(MathContext context)
     {
         if (!this.isNumber() && this.operation == Operation.EQUALS)
         {
             return this.a.stringValue().equals(this.b.stringValue()) ? 1 : 0;
         }
 
-        return this.operation.calculate(this.a.doubleValue(), this.b.doubleValue());
+        return this.operation.calculate(this.a.doubleValue(context), this.b.doubleValue(context));
     }
 
     @Override
@@ -53,7 +53,13 @@ public class Ternary implements IExpression
     @Override
     public double doubleValue()
     {
-        return Operation.isTrue(this.condition.doubleValue()) ? this.ifTrue.doubleValue() : this.ifFalse.doubleValue();
+        return this.doubleValue(null);
+    }
+
+    @Override
+    public double doubleValue(MathContext context)
+    {
+        return Operation.isTrue(this.condition.doubleValue(context)) ? this.ifTrue.doubleValue(context) : this.ifFalse.doubleValue(context);
     }
 
     @Override
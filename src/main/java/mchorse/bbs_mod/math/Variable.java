@@ -13,6 +13,7 @@ package mchorse.bbs_mod.math;
 public class Variable extends Constant
 {
     private String name;
+    private int index = -1;
 
     public Variable(String name, double value)
     {
@@ -33,6 +34,27 @@ public class Variable extends Constant
         return name;
     }
 
+    /**
+     * Index of this variable's value in {@link MathContext}, which is
+     * assigned by the {@link MathBuilder} that registered this variable
+     * (or -1, if it's not registered)
+     */
+    public int getIndex()
+    {
+        return this.index;
+    }
+
+    public void setIndex(int index)
+    {
+        this.index = index;
+    }
+
+    @Override
+    public double doubleValue(MathContext context)
+    {
+        return context == null ? this.doubleValue() : context.get(this);
+    }
+
     @Override
     public String toString()
     {
@@ -45,6 +45,12 @@ public abstract class Wrapper implements IExpression
         return this.expression.doubleValue();
     }
 
+    @Override
+    public double doubleValue(MathContext context)
+    {
+        return this.expression.doubleValue(context);
+    }
+
     @Override
     public boolean booleanValue()
     {
@@ -0,0 +1,42 @@
+package mchorse.bbs_mod.math.compiler;
+
+import mchorse.bbs_mod.math.MathContext;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Compiled expression
+ *
+ * Expression compiled by {@link MathCompiler}, which is evaluated with a
+ * {@link MathContext} the same way as the interpreted expression (see
+ * {@link mchorse.bbs_mod.math.IExpression#doubleValue(MathContext)}).
+ */
+public class CompiledExpression
+{
+    private final MethodHandle handle;
+
+    public CompiledExpression(MethodHandle handle)
+    {
+        this.handle = handle;
+    }
+
+    /**
+     * Evaluate the expression with variables bound in given context (or
+     * with variables' own values, if the context is null)
+     */
+    public double evaluate(MathContext context)
+    {
+        try
+        {
+            return (double) this.handle.invokeExact(context);
+        }
+        catch (RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package mchorse.bbs_mod.math.compiler;
+
+import mchorse.bbs_mod.math.Constant;
+import mchorse.bbs_mod.math.Group;
+import mchorse.bbs_mod.math.IExpression;
+import mchorse.bbs_mod.math.MathContext;
+import mchorse.bbs_mod.math.Negate;
+import mchorse.bbs_mod.math.Negative;
+import mchorse.bbs_mod.math.Operation;
+import mchorse.bbs_mod.math.Operator;
+import mchorse.bbs_mod.math.Ternary;
+import mchorse.bbs_mod.math.Variable;
+import mchorse.bbs_mod.math.functions.Function;
+import mchorse.bbs_mod.math.functions.classic.Abs;
+import mchorse.bbs_mod.math.functions.classic.Exp;
+import mchorse.bbs_mod.math.functions.classic.Ln;
+import mchorse.bbs_mod.math.functions.classic.Mod;
+import mchorse.bbs_mod.math.functions.classic.Pow;
+import mchorse.bbs_mod.math.functions.classic.Sqrt;
+import mchorse.bbs_mod.math.functions.limit.Clamp;
+import mchorse.bbs_mod.math.functions.limit.Max;
+import mchorse.bbs_mod.math.functions.limit.Min;
+import mchorse.bbs_mod.math.functions.rounding.Ceil;
+import mchorse.bbs_mod.math.functions.rounding.Floor;
+import mchorse.bbs_mod.math.functions.rounding.Round;
+import mchorse.bbs_mod.math.functions.rounding.Trunc;
+import mchorse.bbs_mod.math.functions.trig.Acos;
+import mchorse.bbs_mod.math.functions.trig.Asin;
+import mchorse.bbs_mod.math.functions.trig.Atan;
+import mchorse.bbs_mod.math.functions.trig.Atan2;
+import mchorse.bbs_mod.math.functions.trig.Cos;
+import mchorse.bbs_mod.math.functions.trig.Sin;
+import mchorse.bbs_mod.math.functions.utility.HermiteBlend;
+import mchorse.bbs_mod.math.functions.utility.Lerp;
+import mchorse.bbs_mod.math.functions.utility.LerpRotate;
+import mchorse.bbs_mod.math.molang.expressions.MolangAssignment;
+import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
+import mchorse.bbs_mod.math.molang.expressions.MolangMultiStatement;
+import mchorse.bbs_mod.math.molang.expressions.MolangOptimized;
+import mchorse.bbs_mod.math.molang.expressions.MolangValue;
+import mchorse.bbs_mod.math.molang.functions.AcosDegrees;
+import mchorse.bbs_mod.math.molang.functions.AsinDegrees;
+import mchorse.bbs_mod.math.molang.functions.Atan2Degrees;
+import mchorse.bbs_mod.math.molang.functions.AtanDegrees;
+import mchorse.bbs_mod.math.molang.functions.CosDegrees;
+import mchorse.bbs_mod.math.molang.functions.SinDegrees;
+import mchorse.bbs_mod.utils.MathUtils;
+import mchorse.bbs_mod.utils.interps.Lerps;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Math compiler
+ *
+ * Compiles expressions parsed by {@link mchorse.bbs_mod.math.MathBuilder}
+ * (and statements parsed by {@link mchorse.bbs_mod.math.molang.MolangParser})
+ * into trees of {@link MethodHandle}s, which get evaluated without virtual
+ * dispatch over expression nodes and without writing intermediate results
+ * into {@link Constant}s.
+ *
+ * Compiled expressions read variables from (and assign them into) the
+ * {@link MathContext} they're evaluated with, by variables' context
+ * indices, exactly like the interpreter does it. They don't have any
+ * state of their own, so one compiled expression can be evaluated with
+ * many contexts on many threads at once.
+ *
+ * Nodes that can't be compiled (string operations, functions without an
+ * intrinsic, cached invariant statements) are evaluated by the
+ * interpreter with the same context, so compiled expressions give
+ * identical results to interpreted ones.
+ */
+public class MathCompiler
+{
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodType EVALUATE = MethodType.methodType(double.class, MathContext.class);
+    private static final MethodType UNARY = MethodType.methodType(double.class, double.class);
+    private static final MethodType BINARY = MethodType.methodType(double.class, double.class, double.class);
+    private static final MethodType TERNARY = MethodType.methodType(double.class, double.class, double.class, double.class);
+
+    private static final Map<Class<? extends Function>, MethodHandle> INTRINSICS = new HashMap<>();
+
+    private static final MethodHandle READ;
+    private static final MethodHandle ASSIGN;
+    private static final MethodHandle IS_TRUE;
+    private static final MethodHandle NEGATIVE;
+    private static final MethodHandle NOT;
+    private static final MethodHandle ADD;
+    private static final MethodHandle SUB;
+    private static final MethodHandle MUL;
+    private static final MethodHandle DIV;
+    private static final MethodHandle CALCULATE;
+    private static final MethodHandle INTERPRET;
+    private static final MethodHandle INTERPRET_MOLANG;
+
+    static
+    {
+        try
+        {
+            READ = LOOKUP.findStatic(MathCompiler.class, "read", MethodType.methodType(double.class, MathContext.class, Variable.class));
+            ASSIGN = LOOKUP.findStatic(MathCompiler.class, "assign", MethodType.methodType(double.class, MathContext.class, Variable.class, double.class));
+            IS_TRUE = LOOKUP.findStatic(Operation.class, "isTrue", MethodType.methodType(boolean.class, double.class));
+            NEGATIVE = LOOKUP.findStatic(MathCompiler.class, "negative", UNARY);
+            NOT = LOOKUP.findStatic(MathCompiler.class, "not", UNARY);
+            ADD = LOOKUP.findStatic(MathCompiler.class, "add", BINARY);
+            SUB = LOOKUP.findStatic(MathCompiler.class, "sub", BINARY);
+            MUL = LOOKUP.findStatic(MathCompiler.class, "mul", BINARY);
+            DIV = LOOKUP.findStatic(MathCompiler.class, "div", BINARY);
+            CALCULATE = LOOKUP.findVirtual(Operation.class, "calculate", BINARY);
+            INTERPRET = LOOKUP.findVirtual(IExpression.class, "doubleValue", EVALUATE);
+            INTERPRET_MOLANG = LOOKUP.findVirtual(MolangExpression.class, "get", EVALUATE);
+
+            registerIntrinsic(Abs.class, LOOKUP.findStatic(Math.class, "abs", UNARY));
+            registerIntrinsic(Exp.class, LOOKUP.findStatic(Math.class, "exp", UNARY));
+            registerIntrinsic(Ln.class, LOOKUP.findStatic(Math.class, "log", UNARY));
+            registerIntrinsic(Sqrt.class, LOOKUP.findStatic(Math.class, "sqrt", UNARY));
+            registerIntrinsic(Mod.class, LOOKUP.findStatic(MathCompiler.class, "mod", BINARY));
+            registerIntrinsic(Pow.class, LOOKUP.findStatic(Math.class, "pow", BINARY));
+            registerIntrinsic(Ceil.class, LOOKUP.findStatic(Math.class, "ceil", UNARY));
+            registerIntrinsic(Floor.class, LOOKUP.findStatic(Math.class, "floor", UNARY));
+            registerIntrinsic(Round.class, LOOKUP.findStatic(MathCompiler.class, "round", UNARY));
+            registerIntrinsic(Trunc.class, LOOKUP.findStatic(MathCompiler.class, "trunc", UNARY));
+            registerIntrinsic(Clamp.class, LOOKUP.findStatic(MathUtils.class, "clamp", TERNARY));
+            registerIntrinsic(Max.class, LOOKUP.findStatic(Math.class, "max", BINARY));
+            registerIntrinsic(Min.class, LOOKUP.findStatic(Math.class, "min", BINARY));
+            registerIntrinsic(Sin.class, LOOKUP.findStatic(Math.class, "sin", UNARY));
+            registerIntrinsic(Cos.class, LOOKUP.findStatic(Math.class, "cos", UNARY));
+            registerIntrinsic(Asin.class, LOOKUP.findStatic(Math.class, "asin", UNARY));
+            registerIntrinsic(Acos.class, LOOKUP.findStatic(Math.class, "acos", UNARY));
+            registerIntrinsic(Atan.class, LOOKUP.findStatic(Math.class, "atan", UNARY));
+            registerIntrinsic(Atan2.class, LOOKUP.findStatic(Math.class, "atan2", BINARY));
+            registerIntrinsic(SinDegrees.class, LOOKUP.findStatic(MathCompiler.class, "sinDegrees", UNARY));
+            registerIntrinsic(CosDegrees.class, LOOKUP.findStatic(MathCompiler.class, "cosDegrees", UNARY));
+            registerIntrinsic(AsinDegrees.class, LOOKUP.findStatic(MathCompiler.class, "asinDegrees", UNARY));
+            registerIntrinsic(AcosDegrees.class, LOOKUP.findStatic(MathCompiler.class, "acosDegrees", UNARY));
+            registerIntrinsic(AtanDegrees.class, LOOKUP.findStatic(MathCompiler.class, "atanDegrees", UNARY));
+            registerIntrinsic(Atan2Degrees.class, LOOKUP.findStatic(MathCompiler.class, "atan2Degrees", BINARY));
+            registerIntrinsic(Lerp.class, LOOKUP.findStatic(Lerps.class, "lerp", TERNARY));
+            registerIntrinsic(LerpRotate.class, LOOKUP.findStatic(Lerps.class, "lerpYaw", TERNARY));
+            registerIntrinsic(HermiteBlend.class, LOOKUP.findStatic(MathCompiler.class, "hermite", UNARY));
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Register a method handle that computes the same value as given
+     * function class does out of its first N arguments, where N is the
+     * amount of handle's double parameters. Only exact class matches are
+     * compiled with the intrinsic.
+     */
+    public static void registerIntrinsic(Class<? extends Function> clazz, MethodHandle handle)
+    {
+        INTRINSICS.put(clazz, handle);
+    }
+
+    /**
+     * Whether given function has an intrinsic, which also means that it's
+     * pure (its value depends only on its arguments).
+     */
+    public static boolean isIntrinsic(Function function)
+    {
+        return INTRINSICS.containsKey(function.getClass());
+    }
+
+    /* Operations which are used by compiled expressions */
+
+    private static double read(MathContext context, Variable variable)
+    {
+        return context == null ? variable.doubleValue() : context.get(variable);
+    }
+
+    private static double assign(MathContext context, Variable variable, double value)
+    {
+        if (context == null)
+        {
+            variable.set(value);
+        }
+        else
+        {
+            context.set(variable, value);
+        }
+
+        return value;
+    }
+
+    private static double negative(double a)
+    {
+        return -a;
+    }
+
+    private static double not(double a)
+    {
+        return Operation.isTrue(a) ? 0 : 1;
+    }
+
+    private static double add(double a, double b)
+    {
+        return a + b;
+    }
+
+    private static double sub(double a, double b)
+    {
+        return a - b;
+    }
+
+    private static double mul(double a, double b)
+    {
+        return a * b;
+    }
+
+    private static double div(double a, double b)
+    {
+        /* Same guard as in Operation.DIV */
+        return a / (b == 0 ? 1 : b);
+    }
+
+    private static double mod(double a, double b)
+    {
+        return a % b;
+    }
+
+    private static double round(double a)
+    {
+        return Math.round(a);
+    }
+
+    private static double trunc(double a)
+    {
+        return a < 0 ? Math.ceil(a) : Math.floor(a);
+    }
+
+    private static double sinDegrees(double a)
+    {
+        return Math.sin(a / 180 * Math.PI);
+    }
+
+    private static double cosDegrees(double a)
+    {
+        return Math.cos(a / 180 * Math.PI);
+    }
+
+    private static double asinDegrees(double a)
+    {
+        return Math.asin(a) / Math.PI * 180;
+    }
+
+    private static double acosDegrees(double a)
+    {
+        return Math.acos(a) / Math.PI * 180;
+    }
+
+    private static double atanDegrees(double a)
+    {
+        return Math.atan(a) / Math.PI * 180;
+    }
+
+    private static double atan2Degrees(double a, double b)
+    {
+        return Math.atan2(a, b) / Math.PI * 180;
+    }
+
+    private static double hermite(double x)
+    {
+        return 3 * x * x - 2 * x * x * x;
+    }
+
+    /* Compilation */
+
+    public static CompiledExpression compile(IExpression expression)
+    {
+        return new CompiledExpression(compileExpression(expression));
+    }
+
+    public static CompiledExpression compile(MolangExpression expression)
+    {
+        return new CompiledExpression(compileMolang(expression));
+    }
+
+    private static MethodHandle compileMolang(MolangExpression expression)
+    {
+        if (expression instanceof MolangValue value)
+        {
+            return compileExpression(value.expression);
+        }
+        else if (expression instanceof MolangAssignment assignment)
+        {
+            MethodHandle assign = MethodHandles.insertArguments(ASSIGN, 1, assignment.variable);
+
+            return merge(MethodHandles.filterArguments(assign, 1, compileExpression(assignment.expression)));
+        }
+        else if (expression instanceof MolangMultiStatement statement)
+        {
+            MethodHandle handle = null;
+
+            for (MolangExpression child : statement.expressions)
+            {
+                MethodHandle next = compileMolang(child);
+
+                /* Evaluate previous statements and discard their results */
+                handle = handle == null ? next : MethodHandles.foldArguments(MethodHandles.dropArguments(next, 0, double.class), handle);
+
+                if (child instanceof MolangValue value && value.returns)
+                {
+                    break;
+                }
+            }
+
+            return handle == null ? constant(0) : handle;
+        }
+        else if (expression instanceof MolangOptimized optimized && !optimized.isInvariant())
+        {
+            return compileMolang(optimized.optimized);
+        }
+
+        /* Unknown (or cached invariant) statement, evaluate it by the interpreter */
+        return INTERPRET_MOLANG.bindTo(expression);
+    }
+
+    /**
+     * Compile an expression into a handle that computes the same value as
+     * {@link IExpression#doubleValue(MathContext)}
+     */
+    private static MethodHandle compileExpression(IExpression expression)
+    {
+        if (expression instanceof Variable variable)
+        {
+            return MethodHandles.insertArguments(READ, 1, variable);
+        }
+        else if (expression instanceof Constant && expression.isNumber())
+        {
+            return constant(expression.doubleValue());
+        }
+        else if (expression instanceof Group group)
+        {
+            return compileExpression(group.getExpression());
+        }
+        else if (expression instanceof Operator operator && (operator.isNumber() || operator.operation != Operation.EQUALS))
+        {
+            MethodHandle operation = switch (operator.operation)
+            {
+                case ADD -> ADD;
+                case SUB -> SUB;
+                case MUL -> MUL;
+                case DIV -> DIV;
+                default -> CALCULATE.bindTo(operator.operation);
+            };
+
+            return combine(operation, compileExpression(operator.a), compileExpression(operator.b));
+        }
+        else if (expression instanceof Negative negative)
+        {
+            return MethodHandles.filterReturnValue(compileExpression(negative.expression), NEGATIVE);
+        }
+        else if (expression instanceof Negate negate && negate.expression.isNumber())
+        {
+            return MethodHandles.filterReturnValue(compileExpression(negate.expression), NOT);
+        }
+        else if (expression instanceof Ternary ternary)
+        {
+            return MethodHandles.guardWithTest(
+                MethodHandles.filterReturnValue(compileExpression(ternary.condition), IS_TRUE),
+                compileExpression(ternary.ifTrue),
+                compileExpression(ternary.ifFalse)
+            );
+        }
+        else if (expression instanceof Function function)
+        {
+            IExpression[] args = function.getArgs();
+            MethodHandle intrinsic = INTRINSICS.get(function.getClass());
+
+            if (intrinsic != null && intrinsic.type().parameterCount() <= args.length)
+            {
+                MethodHandle[] handles = new MethodHandle[intrinsic.type().parameterCount()];
+
+                for (int i = 0; i < handles.length; i++)
+                {
+                    handles[i] = compileExpression(args[i]);
+                }
+
+                return combine(intrinsic, handles);
+            }
+        }
+
+        return INTERPRET.bindTo(expression);
+    }
+
+    private static MethodHandle constant(double value)
+    {
+        return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, MathContext.class);
+    }
+
+    /**
+     * Feed given (MathContext) -> double handles into target's double
+     * parameters, and merge the result into a (MathContext) -> double handle.
+     */
+    private static MethodHandle combine(MethodHandle target, MethodHandle... args)
+    {
+        if (args.length == 0)
+        {
+            return MethodHandles.dropArguments(target, 0, MathContext.class);
+        }
+
+        return merge(MethodHandles.filterArguments(target, 0, args));
+    }
+
+    /**
+     * Merge all MathContext parameters of given handle into one.
+     */
+    private static MethodHandle merge(MethodHandle handle)
+    {
+        return MethodHandles.permuteArguments(handle, EVALUATE, new int[handle.type().parameterCount()]);
+    }
+}
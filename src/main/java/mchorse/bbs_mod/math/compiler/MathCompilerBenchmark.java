@@ -0,0 +1,94 @@
+package mchorse.bbs_mod.math.compiler;
+
+import com.ibm.icu.impl.Assert;
+import mchorse.bbs_mod.math.MathContext;
+import mchorse.bbs_mod.math.Variable;
+import mchorse.bbs_mod.math.molang.MolangParser;
+import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
+import mchorse.bbs_mod.utils.Benchmark;
+
+/**
+ * Headless check and microbenchmark of interpreted and compiled evaluation
+ * of Molang expressions, that are typical for particle schemes and
+ * animations. Every expression is evaluated with many inputs both ways,
+ * the check fails if any result (or assigned variable) differs, and then
+ * an average time per batch of evaluations is printed.
+ */
+public class MathCompilerBenchmark
+{
+    private static final String[] EXPRESSIONS = {
+        "variable.particle_age / variable.particle_lifetime",
+        "math.sin(query.anim_time * 360) * 0.5 + 0.5 * 2",
+        "variable.particle_random_1 > 0.5 ? math.lerp(1, 4, variable.particle_age) : -math.clamp(variable.particle_random_2 * 3, 0, 1)",
+        "t.speed = math.pow(variable.emitter_age, 2) / (variable.particle_random_3 - 0.5); return t.speed * math.cos(query.anim_time * 90) + variable.particle_age / 0",
+        "variable.x = math.mod(variable.particle_age, 0.3); !(variable.x > 0.1) && math.hermite_blend(variable.x) || math.round(query.anim_time) == 2"
+    };
+
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 10;
+    private static final int EVALUATIONS = 1_000_000;
+
+    private static double sink;
+
+    public static void main(String[] args) throws Exception
+    {
+        MolangParser parser = new MolangParser();
+        Variable age = parser.getOrCreateVariable("variable.particle_age");
+        Variable animTime = parser.getOrCreateVariable("query.anim_time");
+        Variable x = parser.getOrCreateVariable("variable.x");
+        MathContext interpretedContext = new MathContext();
+        MathContext compiledContext = new MathContext();
+
+        parser.setValue("variable.particle_lifetime", 3);
+        parser.setValue("variable.particle_random_1", 0.75);
+        parser.setValue("variable.particle_random_2", 0.25);
+        parser.setValue("variable.particle_random_3", 0.5);
+        parser.setValue("variable.emitter_age", 1.5);
+
+        for (String string : EXPRESSIONS)
+        {
+            MolangExpression expression = parser.parseExpression(string);
+            CompiledExpression compiled = MathCompiler.compile(expression);
+
+            System.out.println(string);
+
+            for (int i = 0; i < 10_000; i++)
+            {
+                bind(interpretedContext, age, animTime, i);
+                bind(compiledContext, age, animTime, i);
+
+                double a = expression.get(interpretedContext);
+                double b = compiled.evaluate(compiledContext);
+
+                Assert.assrt(string + " differs at " + i + ": " + a + " != " + b, Double.compare(a, b) == 0);
+                Assert.assrt(string + " assigned different values at " + i, Double.compare(interpretedContext.get(x), compiledContext.get(x)) == 0);
+            }
+
+            Benchmark.measure("  interpreted", WARMUP, ITERATIONS, () ->
+            {
+                for (int i = 0; i < EVALUATIONS; i++)
+                {
+                    bind(interpretedContext, age, animTime, i);
+                    sink += expression.get(interpretedContext);
+                }
+            });
+
+            Benchmark.measure("  compiled", WARMUP, ITERATIONS, () ->
+            {
+                for (int i = 0; i < EVALUATIONS; i++)
+                {
+                    bind(compiledContext, age, animTime, i);
+                    sink += compiled.evaluate(compiledContext);
+                }
+            });
+        }
+
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static void bind(MathContext context, Variable age, Variable animTime, int i)
+    {
+        context.set(age, i * 0.001);
+        context.set(animTime, i * 0.05);
+    }
+}
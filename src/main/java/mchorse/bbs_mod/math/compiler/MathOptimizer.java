@@ -0,0 +1,782 @@
+package mchorse.bbs_mod.math.compiler;
+
+import mchorse.bbs_mod.math.Constant;
+import mchorse.bbs_mod.math.Group;
+import mchorse.bbs_mod.math.IExpression;
+import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.Negate;
+import mchorse.bbs_mod.math.Negative;
+import mchorse.bbs_mod.math.Operation;
+import mchorse.bbs_mod.math.Operator;
+import mchorse.bbs_mod.math.Ternary;
+import mchorse.bbs_mod.math.Variable;
+import mchorse.bbs_mod.math.functions.Function;
+import mchorse.bbs_mod.math.molang.expressions.MolangAssignment;
+import mchorse.bbs_mod.math.molang.expressions.MolangExpression;
+import mchorse.bbs_mod.math.molang.expressions.MolangMultiStatement;
+import mchorse.bbs_mod.math.molang.expressions.MolangOptimized;
+import mchorse.bbs_mod.math.molang.expressions.MolangValue;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Math optimizer
+ *
+ * Optimization pass over expressions parsed by {@link MathBuilder} and
+ * {@link mchorse.bbs_mod.math.molang.MolangParser}, which:
+ *
+ * <ul>
+ *     <li>Folds subtrees that consist only of literals and pure functions
+ *     (the ones that have an intrinsic in {@link MathCompiler}) into
+ *     constants</li>
+ *     <li>Simplifies identities like <code>x * 1</code>, <code>x / 1</code>,
+ *     <code>x + 0</code> and <code>x - 0</code>, and ternaries with a
+ *     literal condition</li>
+ *     <li>Hoists subexpressions that are repeated within a
+ *     {@link MolangMultiStatement} into local variables, that are computed
+ *     once at the beginning of the statement</li>
+ *     <li>Removes statements after the first return</li>
+ * </ul>
+ *
+ * Only numeric pure subtrees are touched, so optimized expressions give the
+ * same results as the original ones (besides <code>-0 + 0</code> becoming
+ * <code>-0</code> instead of <code>0</code>). Original expressions are
+ * never modified, optimized expressions reuse the unchanged subtrees.
+ *
+ * Optimizer also can tell whether an expression depends only on invariant
+ * variables (for example, particle emitter's variables), so its value can
+ * be computed once for a batch of evaluations (see {@link MolangOptimized}).
+ */
+public class MathOptimizer
+{
+    private static final String HOISTED_PREFIX = "t.__cse_";
+
+    private final Predicate<Variable> invariant;
+
+    public MathOptimizer()
+    {
+        this((variable) -> false);
+    }
+
+    public MathOptimizer(Predicate<Variable> invariant)
+    {
+        this.invariant = invariant;
+    }
+
+    private static boolean isLiteral(IExpression expression)
+    {
+        return expression instanceof Constant && !(expression instanceof Variable) && expression.isNumber();
+    }
+
+    private static boolean isLiteral(IExpression expression, double value)
+    {
+        return isLiteral(expression) && expression.doubleValue() == value;
+    }
+
+    private static Function copyFunction(Function function, IExpression[] args)
+    {
+        try
+        {
+            Constructor<? extends Function> constructor = function.getClass().getConstructor(MathBuilder.class, IExpression[].class, String.class);
+
+            return constructor.newInstance(function.getBuilder(), args, function.getName());
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /* Folding and simplification */
+
+    /**
+     * Optimize given expression. If nothing could be optimized, the same
+     * expression is returned.
+     */
+    public IExpression optimize(IExpression expression)
+    {
+        if (expression instanceof Group group)
+        {
+            IExpression inner = this.optimize(group.getExpression());
+
+            if (isLiteral(inner))
+            {
+                return inner;
+            }
+
+            return inner == group.getExpression() ? group : new Group(inner);
+        }
+        else if (expression instanceof Operator operator)
+        {
+            return this.optimizeOperator(operator);
+        }
+        else if (expression instanceof Negative negative)
+        {
+            IExpression inner = this.optimize(negative.expression);
+
+            if (isLiteral(inner))
+            {
+                return new Constant(-inner.doubleValue());
+            }
+
+            return inner == negative.expression ? negative : new Negative(inner);
+        }
+        else if (expression instanceof Negate negate)
+        {
+            IExpression inner = this.optimize(negate.expression);
+
+            if (isLiteral(inner))
+            {
+                return new Constant(inner.booleanValue() ? 0 : 1);
+            }
+
+            return inner == negate.expression ? negate : new Negate(inner);
+        }
+        else if (expression instanceof Ternary ternary)
+        {
+            IExpression condition = this.optimize(ternary.condition);
+            IExpression ifTrue = this.optimize(ternary.ifTrue);
+            IExpression ifFalse = this.optimize(ternary.ifFalse);
+
+            if (isLiteral(condition) && ifTrue.isNumber() && ifFalse.isNumber())
+            {
+                return Operation.isTrue(condition.doubleValue()) ? ifTrue : ifFalse;
+            }
+
+            if (condition == ternary.condition && ifTrue == ternary.ifTrue && ifFalse == ternary.ifFalse)
+            {
+                return ternary;
+            }
+
+            return new Ternary(condition, ifTrue, ifFalse);
+        }
+        else if (expression instanceof Function function)
+        {
+            return this.optimizeFunction(function);
+        }
+
+        return expression;
+    }
+
+    private IExpression optimizeOperator(Operator operator)
+    {
+        IExpression a = this.optimize(operator.a);
+        IExpression b = this.optimize(operator.b);
+
+        if (isLiteral(a) && isLiteral(b))
+        {
+            return new Constant(operator.operation.calculate(a.doubleValue(), b.doubleValue()));
+        }
+
+        if (a.isNumber() && b.isNumber())
+        {
+            switch (operator.operation)
+            {
+                case MUL:
+                    if (isLiteral(b, 1)) return a;
+                    if (isLiteral(a, 1)) return b;
+                    break;
+                case DIV:
+                    if (isLiteral(b, 1)) return a;
+                    break;
+                case ADD:
+                    if (isLiteral(b, 0)) return a;
+                    if (isLiteral(a, 0)) return b;
+                    break;
+                case SUB:
+                    if (isLiteral(b, 0)) return a;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (a == operator.a && b == operator.b)
+        {
+            return operator;
+        }
+
+        return new Operator(operator.operation, a, b);
+    }
+
+    private IExpression optimizeFunction(Function function)
+    {
+        IExpression[] args = function.getArgs();
+        IExpression[] newArgs = new IExpression[args.length];
+        boolean changed = false;
+        boolean literals = true;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            newArgs[i] = this.optimize(args[i]);
+            changed = changed || newArgs[i] != args[i];
+            literals = literals && isLiteral(newArgs[i]);
+        }
+
+        Function result = function;
+
+        if (changed)
+        {
+            Function copy = copyFunction(function, newArgs);
+
+            result = copy == null ? function : copy;
+        }
+
+        if (literals && MathCompiler.isIntrinsic(result))
+        {
+            return new Constant(result.doubleValue());
+        }
+
+        return result;
+    }
+
+    /**
+     * Optimize given Molang expression. If nothing could be optimized, the
+     * same expression is returned.
+     */
+    public MolangExpression optimize(MolangExpression expression)
+    {
+        if (expression instanceof MolangValue value)
+        {
+            IExpression optimized = this.optimize(value.expression);
+
+            if (optimized == value.expression)
+            {
+                return value;
+            }
+
+            MolangValue newValue = new MolangValue(value.context, optimized);
+
+            return value.returns ? newValue.addReturn() : newValue;
+        }
+        else if (expression instanceof MolangAssignment assignment)
+        {
+            IExpression optimized = this.optimize(assignment.expression);
+
+            if (optimized == assignment.expression)
+            {
+                return assignment;
+            }
+
+            return new MolangAssignment(assignment.context, assignment.variable, optimized);
+        }
+        else if (expression instanceof MolangMultiStatement statement)
+        {
+            return this.optimizeStatement(statement);
+        }
+
+        return expression;
+    }
+
+    /**
+     * Optimize given expression and wrap it into {@link MolangOptimized}
+     * (if it was optimized or if it's invariant). If cache is true, values
+     * of invariant expressions are cached per {@link mchorse.bbs_mod.math.MathContext}.
+     */
+    public MolangExpression optimize(MolangExpression expression, boolean cache)
+    {
+        MolangExpression optimized = this.optimize(expression);
+        boolean invariant = cache && expression.context != null && this.isInvariant(optimized);
+
+        if (optimized instanceof MolangValue value && isLiteral(value.expression))
+        {
+            /* Literals are cheap enough on their own */
+            invariant = false;
+        }
+
+        if (optimized == expression && !invariant)
+        {
+            return expression;
+        }
+
+        return new MolangOptimized(expression, optimized, invariant ? expression.context.nextContextIndex() : -1);
+    }
+
+    private MolangExpression optimizeStatement(MolangMultiStatement statement)
+    {
+        List<MolangExpression> expressions = new ArrayList<>();
+        boolean changed = false;
+
+        for (MolangExpression child : statement.expressions)
+        {
+            MolangExpression optimized = this.optimize(child);
+
+            changed = changed || optimized != child;
+            expressions.add(optimized);
+
+            if (child instanceof MolangValue value && value.returns)
+            {
+                break;
+            }
+        }
+
+        changed = changed || expressions.size() != statement.expressions.size();
+
+        MolangMultiStatement hoisted = this.hoist(statement, expressions);
+
+        if (hoisted != null)
+        {
+            return hoisted;
+        }
+
+        if (expressions.size() == 1 && expressions.get(0) instanceof MolangValue)
+        {
+            /* Single value doesn't need a statement around it */
+            return expressions.get(0);
+        }
+
+        if (!changed)
+        {
+            return statement;
+        }
+
+        MolangMultiStatement newStatement = new MolangMultiStatement(statement.context);
+
+        newStatement.locals.putAll(statement.locals);
+        newStatement.expressions.addAll(expressions);
+
+        return newStatement;
+    }
+
+    /* Common subexpression hoisting */
+
+    /**
+     * Hoist repeated pure subexpressions of given statement's (optimized)
+     * expressions into locals.
+     *
+     * @return new statement, or null if there was nothing to hoist
+     */
+    private MolangMultiStatement hoist(MolangMultiStatement statement, List<MolangExpression> expressions)
+    {
+        Set<Variable> assigned = new HashSet<>();
+
+        for (MolangExpression expression : expressions)
+        {
+            if (expression instanceof MolangAssignment assignment)
+            {
+                assigned.add(assignment.variable);
+            }
+        }
+
+        KeyBuilder keys = new KeyBuilder(assigned);
+
+        for (MolangExpression expression : expressions)
+        {
+            keys.count(getExpression(expression));
+        }
+
+        if (!keys.hasRepeated())
+        {
+            return null;
+        }
+
+        Map<String, Variable> locals = new LinkedHashMap<>();
+        Map<String, IExpression> definitions = new LinkedHashMap<>();
+        List<MolangExpression> replaced = new ArrayList<>();
+
+        for (MolangExpression expression : expressions)
+        {
+            IExpression original = getExpression(expression);
+            IExpression newExpression = this.replace(original, keys, statement, locals, definitions);
+
+            if (newExpression == original)
+            {
+                replaced.add(expression);
+            }
+            else if (expression instanceof MolangAssignment assignment)
+            {
+                replaced.add(new MolangAssignment(assignment.context, assignment.variable, newExpression));
+            }
+            else
+            {
+                MolangValue value = new MolangValue(expression.context, newExpression);
+
+                replaced.add(((MolangValue) expression).returns ? value.addReturn() : value);
+            }
+        }
+
+        MolangMultiStatement newStatement = new MolangMultiStatement(statement.context);
+
+        newStatement.locals.putAll(statement.locals);
+
+        for (Map.Entry<String, Variable> entry : locals.entrySet())
+        {
+            Variable local = entry.getValue();
+
+            newStatement.locals.put(local.getName(), local);
+            newStatement.expressions.add(new MolangAssignment(statement.context, local, definitions.get(entry.getKey())));
+        }
+
+        newStatement.expressions.addAll(replaced);
+
+        return newStatement;
+    }
+
+    private static IExpression getExpression(MolangExpression expression)
+    {
+        if (expression instanceof MolangValue value)
+        {
+            return value.expression;
+        }
+        else if (expression instanceof MolangAssignment assignment)
+        {
+            return assignment.expression;
+        }
+
+        return null;
+    }
+
+    private IExpression replace(IExpression expression, KeyBuilder keys, MolangMultiStatement statement, Map<String, Variable> locals, Map<String, IExpression> definitions)
+    {
+        if (expression == null)
+        {
+            return null;
+        }
+
+        if (keys.isRepeated(expression))
+        {
+            String key = keys.getKey(expression);
+            Variable local = locals.get(key);
+
+            if (local == null)
+            {
+                int index = locals.size();
+
+                while (statement.locals.containsKey(HOISTED_PREFIX + index))
+                {
+                    index += 1;
+                }
+
+                local = new Variable(HOISTED_PREFIX + index, 0);
+
+                if (statement.context != null)
+                {
+                    local.setIndex(statement.context.nextContextIndex());
+                }
+
+                locals.put(key, local);
+                definitions.put(key, expression);
+            }
+
+            return local;
+        }
+
+        if (expression instanceof Group group)
+        {
+            IExpression inner = this.replace(group.getExpression(), keys, statement, locals, definitions);
+
+            return inner == group.getExpression() ? group : new Group(inner);
+        }
+        else if (expression instanceof Operator operator)
+        {
+            IExpression a = this.replace(operator.a, keys, statement, locals, definitions);
+            IExpression b = this.replace(operator.b, keys, statement, locals, definitions);
+
+            return a == operator.a && b == operator.b ? operator : new Operator(operator.operation, a, b);
+        }
+        else if (expression instanceof Negative negative)
+        {
+            IExpression inner = this.replace(negative.expression, keys, statement, locals, definitions);
+
+            return inner == negative.expression ? negative : new Negative(inner);
+        }
+        else if (expression instanceof Negate negate)
+        {
+            IExpression inner = this.replace(negate.expression, keys, statement, locals, definitions);
+
+            return inner == negate.expression ? negate : new Negate(inner);
+        }
+        else if (expression instanceof Ternary ternary)
+        {
+            IExpression condition = this.replace(ternary.condition, keys, statement, locals, definitions);
+            IExpression ifTrue = this.replace(ternary.ifTrue, keys, statement, locals, definitions);
+            IExpression ifFalse = this.replace(ternary.ifFalse, keys, statement, locals, definitions);
+
+            if (condition == ternary.condition && ifTrue == ternary.ifTrue && ifFalse == ternary.ifFalse)
+            {
+                return ternary;
+            }
+
+            return new Ternary(condition, ifTrue, ifFalse);
+        }
+        else if (expression instanceof Function function)
+        {
+            IExpression[] args = function.getArgs();
+            IExpression[] newArgs = new IExpression[args.length];
+            boolean changed = false;
+
+            for (int i = 0; i < args.length; i++)
+            {
+                newArgs[i] = this.replace(args[i], keys, statement, locals, definitions);
+                changed = changed || newArgs[i] != args[i];
+            }
+
+            Function copy = changed ? copyFunction(function, newArgs) : null;
+
+            return copy == null ? function : copy;
+        }
+
+        return expression;
+    }
+
+    /* Invariance */
+
+    /**
+     * Whether given expression depends only on invariant variables, and
+     * doesn't have any side effects (besides assigning locals).
+     */
+    public boolean isInvariant(MolangExpression expression)
+    {
+        if (expression instanceof MolangValue value)
+        {
+            return this.isInvariant(value.expression, null);
+        }
+        else if (expression instanceof MolangMultiStatement statement)
+        {
+            Set<Variable> defined = new HashSet<>();
+
+            for (MolangExpression child : statement.expressions)
+            {
+                if (child instanceof MolangAssignment assignment)
+                {
+                    if (!statement.locals.containsValue(assignment.variable) || !this.isInvariant(assignment.expression, defined))
+                    {
+                        return false;
+                    }
+
+                    defined.add(assignment.variable);
+                }
+                else if (child instanceof MolangValue value)
+                {
+                    if (!this.isInvariant(value.expression, defined))
+                    {
+                        return false;
+                    }
+
+                    if (value.returns)
+                    {
+                        break;
+                    }
+                }
+                else
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean isInvariant(IExpression expression, Set<Variable> locals)
+    {
+        if (expression instanceof Variable variable)
+        {
+            return (locals != null && locals.contains(variable)) || this.invariant.test(variable);
+        }
+        else if (expression instanceof Constant)
+        {
+            return true;
+        }
+        else if (expression instanceof Group group)
+        {
+            return this.isInvariant(group.getExpression(), locals);
+        }
+        else if (expression instanceof Negative negative)
+        {
+            return this.isInvariant(negative.expression, locals);
+        }
+        else if (expression instanceof Negate negate)
+        {
+            return this.isInvariant(negate.expression, locals);
+        }
+        else if (expression instanceof Operator operator)
+        {
+            return this.isInvariant(operator.a, locals) && this.isInvariant(operator.b, locals);
+        }
+        else if (expression instanceof Ternary ternary)
+        {
+            return this.isInvariant(ternary.condition, locals) && this.isInvariant(ternary.ifTrue, locals) && this.isInvariant(ternary.ifFalse, locals);
+        }
+        else if (expression instanceof Function function)
+        {
+            if (!MathCompiler.isIntrinsic(function))
+            {
+                return false;
+            }
+
+            for (IExpression arg : function.getArgs())
+            {
+                if (!this.isInvariant(arg, locals))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Builds structural keys of pure numeric subexpressions, and counts
+     * how many times every non-trivial subexpression occurs.
+     */
+    private static class KeyBuilder
+    {
+        private final Set<Variable> assigned;
+        private final Map<IExpression, String> keys = new IdentityHashMap<>();
+        private final Map<Variable, Integer> variables = new IdentityHashMap<>();
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        public KeyBuilder(Set<Variable> assigned)
+        {
+            this.assigned = assigned;
+        }
+
+        public String getKey(IExpression expression)
+        {
+            return this.keys.get(expression);
+        }
+
+        public boolean hasRepeated()
+        {
+            for (int count : this.counts.values())
+            {
+                if (count > 1)
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        public boolean isRepeated(IExpression expression)
+        {
+            String key = this.keys.get(expression);
+
+            return key != null && isNonTrivial(expression) && this.counts.getOrDefault(key, 0) > 1;
+        }
+
+        private static boolean isNonTrivial(IExpression expression)
+        {
+            return expression instanceof Operator || expression instanceof Ternary
+                || expression instanceof Negative || expression instanceof Negate
+                || expression instanceof Function;
+        }
+
+        /**
+         * Compute the key of given expression (null if it's not pure),
+         * counting occurrences of all its subexpressions.
+         */
+        public String count(IExpression expression)
+        {
+            if (expression == null)
+            {
+                return null;
+            }
+
+            String key = this.computeKey(expression);
+
+            if (key != null)
+            {
+                this.keys.put(expression, key);
+
+                if (isNonTrivial(expression))
+                {
+                    this.counts.merge(key, 1, Integer::sum);
+                }
+            }
+
+            return key;
+        }
+
+        private String computeKey(IExpression expression)
+        {
+            if (isLiteral(expression))
+            {
+                return "c" + Double.doubleToLongBits(expression.doubleValue());
+            }
+            else if (expression instanceof Variable variable)
+            {
+                if (this.assigned.contains(variable) || !variable.isNumber())
+                {
+                    return null;
+                }
+
+                return "v" + this.variables.computeIfAbsent(variable, (k) -> this.variables.size());
+            }
+            else if (expression instanceof Group group)
+            {
+                return this.count(group.getExpression());
+            }
+            else if (expression instanceof Negative negative)
+            {
+                String inner = this.count(negative.expression);
+
+                return inner == null || !negative.expression.isNumber() ? null : "-" + inner;
+            }
+            else if (expression instanceof Negate negate)
+            {
+                String inner = this.count(negate.expression);
+
+                return inner == null || !negate.expression.isNumber() ? null : "!" + inner;
+            }
+            else if (expression instanceof Operator operator)
+            {
+                String a = this.count(operator.a);
+                String b = this.count(operator.b);
+
+                if (a == null || b == null || !operator.a.isNumber() || !operator.b.isNumber())
+                {
+                    return null;
+                }
+
+                return "(" + a + " " + operator.operation.sign + " " + b + ")";
+            }
+            else if (expression instanceof Ternary ternary)
+            {
+                String condition = this.count(ternary.condition);
+                String ifTrue = this.count(ternary.ifTrue);
+                String ifFalse = this.count(ternary.ifFalse);
+
+                if (condition == null || ifTrue == null || ifFalse == null || !ternary.ifTrue.isNumber() || !ternary.ifFalse.isNumber())
+                {
+                    return null;
+                }
+
+                return "(" + condition + " ? " + ifTrue + " : " + ifFalse + ")";
+            }
+            else if (expression instanceof Function function)
+            {
+                boolean pure = MathCompiler.isIntrinsic(function);
+                StringBuilder builder = new StringBuilder(function.getClass().getName()).append("(");
+
+                for (IExpression arg : function.getArgs())
+                {
+                    String key = this.count(arg);
+
+                    pure = pure && key != null && arg.isNumber();
+                    builder.append(key).append(", ");
+                }
+
+                return pure ? builder.append(")").toString() : null;
+            }
+
+            return null;
+        }
+    }
+}
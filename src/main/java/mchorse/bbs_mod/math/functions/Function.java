@@ -3,6 +3,7 @@ package mchorse.bbs_mod.math.functions;
 import mchorse.bbs_mod.math.Constant;
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 
 /**
  * Abstract function class
@@ -48,6 +49,19 @@ public abstract class Function implements IExpression
     public void set(String value)
     {}
 
+    public MathBuilder getBuilder()
+    {
+        return this.builder;
+    }
+
+    /**
+     * Get argument expressions (not evaluated)
+     */
+    public IExpression[] getArgs()
+    {
+        return this.args;
+    }
+
     /**
      * Get the value of nth argument 
      */
@@ -61,6 +75,19 @@ public abstract class Function implements IExpression
         return this.args[index].get();
     }
 
+    /**
+     * Get the numeric value of nth argument computed with given context
+     */
+    public double getArgValue(MathContext context, int index)
+    {
+        if (index < 0 || index >= this.args.length)
+        {
+            throw new IllegalStateException("Index should be within the argument's length range! Given " + index + ", arguments length: " +this.args.length);
+        }
+
+        return this.args[index].doubleValue(context);
+    }
+
     @Override
     public String toString()
     {
@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.functions;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.Operation;
 
 /**
@@ -31,6 +32,15 @@ public abstract class NNFunction extends Function
         return this.result;
     }
 
+    @Override
+    public double doubleValue()
+    {
+        return this.doubleValue(null);
+    }
+
+    @Override
+    public abstract double doubleValue(MathContext context);
+
     @Override
     public boolean isNumber()
     {
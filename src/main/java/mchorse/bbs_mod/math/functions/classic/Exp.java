@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.functions.classic;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.NNFunction;
 
 public class Exp extends NNFunction
@@ -18,8 +19,8 @@ public class Exp extends NNFunction
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
-        return Math.exp(this.getArg(0).doubleValue());
+        return Math.exp(this.getArgValue(context, 0));
     }
 }
\ No newline at end of file
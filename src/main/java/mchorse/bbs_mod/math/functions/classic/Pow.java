@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.functions.classic;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.NNFunction;
 
 public class Pow extends NNFunction
@@ -18,8 +19,8 @@ public class Pow extends NNFunction
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
-        return Math.pow(this.getArg(0).doubleValue(), this.getArg(1).doubleValue());
+        return Math.pow(this.getArgValue(context, 0), this.getArgValue(context, 1));
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.functions.rounding;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.NNFunction;
 
 public class Ceil extends NNFunction
@@ -18,8 +19,8 @@ public class Ceil extends NNFunction
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
-        return Math.ceil(this.getArg(0).doubleValue());
+        return Math.ceil(this.getArgValue(context, 0));
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.functions.rounding;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.NNFunction;
 
 public class Trunc extends NNFunction
@@ -18,9 +19,9 @@ public class Trunc extends NNFunction
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
-        double value = this.getArg(0).doubleValue();
+        double value = this.getArgValue(context, 0);
 
         return value < 0 ? Math.ceil(value) : Math.floor(value);
     }
@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.functions.trig;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.NNFunction;
 
 public class Asin extends NNFunction
@@ -18,8 +19,8 @@ public class Asin extends NNFunction
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
-        return Math.asin(this.getArg(0).doubleValue());
+        return Math.asin(this.getArgValue(context, 0));
     }
 }
@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.functions.trig;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.NNFunction;
 
 public class Sin extends NNFunction
@@ -18,8 +19,8 @@ public class Sin extends NNFunction
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
-        return Math.sin(this.getArg(0).doubleValue());
+        return Math.sin(this.getArgValue(context, 0));
     }
 }
\ No newline at end of file
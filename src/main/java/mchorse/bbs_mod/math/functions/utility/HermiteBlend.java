@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.functions.utility;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.NNFunction;
 
 public class HermiteBlend extends NNFunction
@@ -18,9 +19,9 @@ public class HermiteBlend extends NNFunction
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
-        double x = this.getArg(0).doubleValue();
+        double x = this.getArgValue(context, 0);
 
         return 3 * x * x - 2 * x * x * x;
     }
@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.functions.utility;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.NNFunction;
 import mchorse.bbs_mod.utils.interps.Lerps;
 
@@ -19,8 +20,8 @@ public class LerpRotate extends NNFunction
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
-        return Lerps.lerpYaw(this.getArg(0).doubleValue(), this.getArg(1).doubleValue(), this.getArg(2).doubleValue());
+        return Lerps.lerpYaw(this.getArgValue(context, 0), this.getArgValue(context, 1), this.getArgValue(context, 2));
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.functions.utility;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.NNFunction;
 
 public class Random extends NNFunction
@@ -16,14 +17,17 @@ public class Random extends NNFunction
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
         double random;
 
         if (this.args.length >= 3)
         {
-            this.random.setSeed((long) this.getArg(2).doubleValue());
-            random = this.random.nextDouble();
+            /* Shared generator can't be seeded concurrently */
+            java.util.Random generator = context == null ? this.random : context.getRandom();
+
+            generator.setSeed((long) this.getArgValue(context, 2));
+            random = generator.nextDouble();
         }
         else
         {
@@ -32,8 +36,8 @@ public class Random extends NNFunction
 
         if (this.args.length >= 2)
         {
-            double a = this.getArg(0).doubleValue();
-            double b = this.getArg(1).doubleValue();
+            double a = this.getArgValue(context, 0);
+            double b = this.getArgValue(context, 1);
 
             double min = Math.min(a, b);
             double max = Math.max(a, b);
@@ -42,7 +46,7 @@ public class Random extends NNFunction
         }
         else if (this.args.length >= 1)
         {
-            random = random * this.getArg(0).doubleValue();
+            random = random * this.getArgValue(context, 0);
         }
 
         return random;
@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.functions.utility;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 
 public class RandomInteger extends Random
 {
@@ -11,8 +12,8 @@ public class RandomInteger extends Random
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
-        return (int) super.doubleValue();
+        return (int) super.doubleValue(context);
     }
 }
\ No newline at end of file
@@ -97,7 +97,11 @@ public class MolangParser extends MathBuilder
         this.variables.put(newName, this.variables.remove(old));
     }
 
-    public void setValue(String name, double value)
+    /**
+     * Set variable's value (it's synchronized with parsing, see
+     * {@link #parseExpression(String)})
+     */
+    public synchronized void setValue(String name, double value)
     {
         Variable variable = this.getVariable(name);
 
@@ -111,7 +115,7 @@ public class MolangParser extends MathBuilder
      * Interactively return a new variable
      */
     @Override
-    protected Variable getVariable(String name)
+    protected synchronized Variable getVariable(String name)
     {
         if (name.charAt(1) == '.')
         {
@@ -143,7 +147,7 @@ public class MolangParser extends MathBuilder
         return variable;
     }
 
-    public Variable getOrCreateVariable(String key)
+    public synchronized Variable getOrCreateVariable(String key)
     {
         Variable variable = this.variables.get(key);
 
@@ -177,7 +181,7 @@ public class MolangParser extends MathBuilder
         return defaultExpression;
     }
 
-    public MolangExpression parseData(BaseType data) throws MolangException
+    public synchronized MolangExpression parseData(BaseType data) throws MolangException
     {
         if (BaseType.isPrimitive(data))
         {
@@ -212,7 +216,7 @@ public class MolangParser extends MathBuilder
         return ZERO;
     }
 
-    public MolangExpression parseGlobalData(BaseType data)
+    public synchronized MolangExpression parseGlobalData(BaseType data)
     {
         this.registerAsGlobals = true;
 
@@ -224,9 +228,12 @@ public class MolangParser extends MathBuilder
     }
 
     /**
-     * Parse a molang expression
+     * Parse a molang expression. Parsing is synchronized, because the
+     * parser keeps the statement that is being parsed, and it registers new
+     * variables (models are loaded, and their animations are parsed, on
+     * several threads with one parser).
      */
-    public MolangExpression parseExpression(String expression) throws MolangException
+    public synchronized MolangExpression parseExpression(String expression) throws MolangException
     {
         List<String> lines = new ArrayList<>();
 
@@ -300,6 +307,7 @@ public class MolangParser extends MathBuilder
                 if (!this.registerAsGlobals && !this.variables.containsKey(name) && !this.currentStatement.locals.containsKey(name))
                 {
                     variable = new Variable(name, 0);
+                    variable.setIndex(this.nextContextIndex());
                     this.currentStatement.locals.put(name, variable);
                 }
                 else
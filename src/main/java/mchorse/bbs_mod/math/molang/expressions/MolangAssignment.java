@@ -1,6 +1,7 @@
 package mchorse.bbs_mod.math.molang.expressions;
 
 import mchorse.bbs_mod.math.IExpression;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.Variable;
 import mchorse.bbs_mod.math.molang.MolangParser;
 
@@ -27,6 +28,23 @@ public class MolangAssignment extends MolangExpression
         return value;
     }
 
+    @Override
+    public double get(MathContext context)
+    {
+        double value = this.expression.doubleValue(context);
+
+        if (context == null)
+        {
+            this.variable.set(value);
+        }
+        else
+        {
+            context.set(this.variable, value);
+        }
+
+        return value;
+    }
+
     @Override
     public String toString()
     {
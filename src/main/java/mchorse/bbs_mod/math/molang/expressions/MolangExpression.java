@@ -3,6 +3,7 @@ package mchorse.bbs_mod.math.molang.expressions;
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.StringType;
 import mchorse.bbs_mod.math.Constant;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.Operation;
 import mchorse.bbs_mod.math.molang.MolangParser;
 
@@ -51,6 +52,14 @@ public abstract class MolangExpression
 
     public abstract double get();
 
+    /**
+     * Evaluate this expression with variables bound in given context (see
+     * {@link MathContext}). Assignments are also written into the context,
+     * so the same expression can be evaluated with different contexts at
+     * the same time.
+     */
+    public abstract double get(MathContext context);
+
     public BaseType toData()
     {
         return new StringType(this.toString());
@@ -1,5 +1,6 @@
 package mchorse.bbs_mod.math.molang.expressions;
 
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.Variable;
 import mchorse.bbs_mod.math.molang.MolangParser;
 
@@ -37,6 +38,24 @@ public class MolangMultiStatement extends MolangExpression
         return value;
     }
 
+    @Override
+    public double get(MathContext context)
+    {
+        double value = 0;
+
+        for (MolangExpression expression : this.expressions)
+        {
+            value = expression.get(context);
+
+            if (expression instanceof MolangValue && ((MolangValue) expression).returns)
+            {
+                break;
+            }
+        }
+
+        return value;
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,106 @@
+package mchorse.bbs_mod.math.molang.expressions;
+
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.math.MathContext;
+import mchorse.bbs_mod.math.compiler.CompiledExpression;
+
+/**
+ * Optimized Molang expression
+ *
+ * Keeps the expression the way it was parsed (for saving and displaying it
+ * to the user) along with its optimized version (see
+ * {@link mchorse.bbs_mod.math.compiler.MathOptimizer}), which is the one
+ * that gets evaluated.
+ *
+ * If the expression depends only on invariant variables (like emitter
+ * variables of particles), its value is also cached in the
+ * {@link MathContext} it's evaluated with, until the context gets
+ * invalidated.
+ *
+ * Optimized expression can be also compiled (see
+ * {@link mchorse.bbs_mod.math.compiler.MathCompiler}), in which case the
+ * compiled version is evaluated with contexts instead.
+ */
+public class MolangOptimized extends MolangExpression
+{
+    public final MolangExpression source;
+    public final MolangExpression optimized;
+
+    private final int cacheIndex;
+    private CompiledExpression compiled;
+
+    /**
+     * @param cacheIndex index of the cached value in {@link MathContext}, or
+     *                   -1 if the expression isn't invariant
+     */
+    public MolangOptimized(MolangExpression source, MolangExpression optimized, int cacheIndex)
+    {
+        super(source.context);
+
+        this.source = source;
+        this.optimized = optimized;
+        this.cacheIndex = cacheIndex;
+    }
+
+    /**
+     * Whether this expression depends only on invariant variables, and
+     * therefore its value is cached.
+     */
+    public boolean isInvariant()
+    {
+        return this.cacheIndex >= 0;
+    }
+
+    public void setCompiled(CompiledExpression compiled)
+    {
+        this.compiled = compiled;
+    }
+
+    public boolean isCompiled()
+    {
+        return this.compiled != null;
+    }
+
+    @Override
+    public double get()
+    {
+        return this.optimized.get();
+    }
+
+    private double evaluate(MathContext context)
+    {
+        return this.compiled == null ? this.optimized.get(context) : this.compiled.evaluate(context);
+    }
+
+    @Override
+    public double get(MathContext context)
+    {
+        if (context == null || this.cacheIndex < 0)
+        {
+            return this.evaluate(context);
+        }
+
+        if (context.hasCached(this.cacheIndex))
+        {
+            return context.getCached(this.cacheIndex);
+        }
+
+        double value = this.evaluate(context);
+
+        context.setCached(this.cacheIndex, value);
+
+        return value;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.source.toString();
+    }
+
+    @Override
+    public BaseType toData()
+    {
+        return this.source.toData();
+    }
+}
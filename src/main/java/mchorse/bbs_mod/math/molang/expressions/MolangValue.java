@@ -4,6 +4,7 @@ import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.DoubleType;
 import mchorse.bbs_mod.math.Constant;
 import mchorse.bbs_mod.math.IExpression;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.molang.MolangParser;
 
 public class MolangValue extends MolangExpression
@@ -31,6 +32,12 @@ public class MolangValue extends MolangExpression
         return this.expression.get().doubleValue();
     }
 
+    @Override
+    public double get(MathContext context)
+    {
+        return this.expression.doubleValue(context);
+    }
+
     @Override
     public String toString()
     {
@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.molang.functions;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.trig.Asin;
 
 public class AsinDegrees extends Asin
@@ -12,8 +13,8 @@ public class AsinDegrees extends Asin
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
-        return super.doubleValue() / Math.PI * 180;
+        return super.doubleValue(context) / Math.PI * 180;
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package mchorse.bbs_mod.math.molang.functions;
 
 import mchorse.bbs_mod.math.IExpression;
 import mchorse.bbs_mod.math.MathBuilder;
+import mchorse.bbs_mod.math.MathContext;
 import mchorse.bbs_mod.math.functions.NNFunction;
 
 public class CosDegrees extends NNFunction
@@ -18,8 +19,8 @@ public class CosDegrees extends NNFunction
     }
 
     @Override
-    public double doubleValue()
+    public double doubleValue(MathContext context)
     {
-        return Math.cos(this.getArg(0).doubleValue() / 180 * Math.PI);
+        return Math.cos(this.getArgValue(context, 0) / 180 * Math.PI);
     }
 }
\ No newline at end of file
@@ -0,0 +1,182 @@
+package mchorse.bbs_mod.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import mchorse.bbs_mod.data.DataStorageUtils;
+import mchorse.bbs_mod.data.types.BaseType;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Encoded payload
+ *
+ * Data that was serialized and split into {@link PacketCrusher#BUFFER_SIZE}
+ * chunks once, so it can be sent to any amount of players (and any amount
+ * of times) without encoding it again. Chunks are read-only views of the
+ * same byte array, so sending them doesn't copy the payload either.
+ *
+ * Payloads are reference counted: whoever keeps a payload around (like
+ * {@link PayloadCache}) or is in the middle of sending it holds a
+ * reference, and once all references are released, the chunks are
+ * dropped.
+ *
+ * Deflated variant of the payload, for peers that support it, is created
+ * lazily and only once as well.
+ */
+public class EncodedPayload
+{
+    /**
+     * Payloads smaller than this aren't worth deflating
+     */
+    public static final int DEFLATE_THRESHOLD = 1024;
+
+    private final byte[] bytes;
+    private final boolean deflated;
+    private ByteBuf[] chunks;
+    private EncodedPayload deflatedPayload;
+    private int references = 1;
+
+    public static EncodedPayload encode(BaseType data)
+    {
+        return new EncodedPayload(DataStorageUtils.writeToBytes(data));
+    }
+
+    public EncodedPayload(byte[] bytes)
+    {
+        this(bytes.length == 0 ? new byte[]{69} : bytes, false);
+    }
+
+    private EncodedPayload(byte[] bytes, boolean deflated)
+    {
+        int total = Math.max((int) Math.ceil(bytes.length / (float) PacketCrusher.BUFFER_SIZE), 1);
+
+        this.bytes = bytes;
+        this.deflated = deflated;
+        this.chunks = new ByteBuf[total];
+
+        for (int index = 0; index < total; index++)
+        {
+            int offset = index * PacketCrusher.BUFFER_SIZE;
+            int size = Math.min(PacketCrusher.BUFFER_SIZE, bytes.length - offset);
+
+            this.chunks[index] = Unpooled.wrappedBuffer(bytes, offset, size).asReadOnly();
+        }
+    }
+
+    public int getLength()
+    {
+        return this.bytes.length;
+    }
+
+    public boolean isDeflated()
+    {
+        return this.deflated;
+    }
+
+    /**
+     * Get deflated variant of this payload. If the payload is too small,
+     * or deflating doesn't make it smaller, this payload is returned.
+     */
+    public synchronized EncodedPayload getDeflated()
+    {
+        if (this.deflatedPayload == null)
+        {
+            this.deflatedPayload = this;
+
+            if (!this.deflated && this.bytes.length >= DEFLATE_THRESHOLD)
+            {
+                byte[] deflated = deflate(this.bytes);
+
+                if (deflated.length < this.bytes.length)
+                {
+                    this.deflatedPayload = new EncodedPayload(deflated, true);
+                }
+            }
+        }
+
+        return this.deflatedPayload;
+    }
+
+    private static byte[] deflate(byte[] bytes)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(bytes.length / 2);
+        byte[] buffer = new byte[8192];
+
+        try
+        {
+            deflater.setInput(bytes);
+            deflater.finish();
+
+            while (!deflater.finished())
+            {
+                stream.write(buffer, 0, deflater.deflate(buffer));
+            }
+        }
+        finally
+        {
+            deflater.end();
+        }
+
+        return stream.toByteArray();
+    }
+
+    public synchronized int getTotal()
+    {
+        return this.chunks == null ? 0 : this.chunks.length;
+    }
+
+    /**
+     * Get a fresh view of a chunk at given index, which can be read
+     * independently of other views.
+     */
+    public synchronized ByteBuf getChunk(int index)
+    {
+        if (this.chunks == null)
+        {
+            throw new IllegalStateException("Encoded payload was already released!");
+        }
+
+        return this.chunks[index].duplicate();
+    }
+
+    public synchronized boolean isReleased()
+    {
+        return this.references <= 0;
+    }
+
+    public synchronized EncodedPayload retain()
+    {
+        if (this.references <= 0)
+        {
+            throw new IllegalStateException("Encoded payload was already released!");
+        }
+
+        this.references += 1;
+
+        return this;
+    }
+
+    public synchronized void release()
+    {
+        if (this.references <= 0)
+        {
+            return;
+        }
+
+        this.references -= 1;
+
+        if (this.references == 0)
+        {
+            this.chunks = null;
+
+            if (this.deflatedPayload != null && this.deflatedPayload != this)
+            {
+                this.deflatedPayload.release();
+            }
+
+            this.deflatedPayload = null;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package mchorse.bbs_mod.network;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import mchorse.bbs_mod.BBSSettings;
 import mchorse.bbs_mod.data.DataStorageUtils;
 import mchorse.bbs_mod.data.types.BaseType;
 import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
@@ -8,51 +11,270 @@ import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
+/**
+ * Packet crusher
+ *
+ * Splits big payloads into {@link #BUFFER_SIZE} chunks, and assembles them
+ * back on the other side. Every chunk has a header of transfer ID, chunk's
+ * index, total amount of chunks (negative if the payload is deflated) and
+ * chunk's size.
+ *
+ * Payloads get deflated only for peers that advertised support of it in
+ * the handshake (see {@link #TRANSPORT_DEFLATE}). Outgoing chunks are
+ * queued per player, and if {@link BBSSettings#networkChunksPerTick} is
+ * set, only that many chunks per player are sent every tick, so big
+ * transfers get spread across several ticks. Incoming transfers are kept
+ * per sender, because transfer IDs are only unique per sender, and
+ * incomplete ones that didn't receive a chunk in
+ * {@link BBSSettings#networkTimeout} seconds get evicted.
+ */
 public abstract class PacketCrusher
 {
     public static final int BUFFER_SIZE = 30_000;
 
-    private Map<Integer, ByteArrayOutputStream> chunks = new HashMap<>();
+    /**
+     * Transport flag, which is sent in the handshake, that signals that
+     * the peer can receive deflated payloads
+     */
+    public static final int TRANSPORT_DEFLATE = 0b1;
+
+    /**
+     * Maximum size of inflated payload, to avoid inflating a malicious
+     * payload into gigabytes of memory
+     */
+    public static final int MAX_INFLATED_SIZE = 256 * 1024 * 1024;
+
+    private static final UUID NO_PLAYER = new UUID(0, 0);
+
+    private Map<UUID, Map<Integer, IncomingTransfer>> chunks = new HashMap<>();
+    private Map<UUID, OutgoingQueue> queues = new LinkedHashMap<>();
     private int counter;
 
-    public void reset()
+    public static int getTransportFlags()
     {
+        return BBSSettings.networkCompression.get() ? TRANSPORT_DEFLATE : 0;
+    }
+
+    public synchronized void reset()
+    {
+        for (OutgoingQueue queue : this.queues.values())
+        {
+            queue.clear();
+        }
+
         this.chunks.clear();
+        this.queues.clear();
         this.counter = 0;
     }
 
+    /**
+     * Drop all queued transfers to, and incomplete transfers from given
+     * player (e.g. when the player disconnected).
+     */
+    public synchronized void remove(UUID uuid)
+    {
+        OutgoingQueue queue = this.queues.remove(uuid);
+
+        if (queue != null)
+        {
+            queue.clear();
+        }
+
+        this.chunks.remove(uuid);
+    }
+
+    /**
+     * Whether given player can receive deflated payloads.
+     */
+    protected boolean canDeflate(PlayerEntity entity)
+    {
+        return false;
+    }
+
+    /**
+     * Send queued chunks within this tick's budget, and evict stale
+     * incomplete incoming transfers.
+     */
+    public synchronized void tick()
+    {
+        Iterator<OutgoingQueue> it = this.queues.values().iterator();
+
+        while (it.hasNext())
+        {
+            OutgoingQueue queue = it.next();
+
+            queue.sent = 0;
+            this.flush(queue);
+
+            if (queue.transfers.isEmpty())
+            {
+                it.remove();
+            }
+        }
+
+        long timeout = BBSSettings.networkTimeout.get() * 1000L;
+        long now = System.currentTimeMillis();
+
+        for (Map<Integer, IncomingTransfer> transfers : this.chunks.values())
+        {
+            transfers.values().removeIf((transfer) -> now - transfer.lastUpdate > timeout);
+        }
+
+        this.chunks.values().removeIf(Map::isEmpty);
+    }
+
     public void receive(PacketByteBuf buf, IBufferReceiver receiver)
+    {
+        this.receive(NO_PLAYER, buf, receiver);
+    }
+
+    /**
+     * Receive a chunk from given sender (player's UUID on the server)
+     */
+    public void receive(UUID sender, PacketByteBuf buf, IBufferReceiver receiver)
     {
         int id = buf.readInt();
         int index = buf.readInt();
         int total = buf.readInt();
         int size = buf.readInt();
+        boolean deflated = total < 0;
+
+        total = Math.abs(total);
+
+        if (size < 0 || size > BUFFER_SIZE || size > buf.readableBytes())
+        {
+            synchronized (this)
+            {
+                this.removeIncoming(sender, id);
+            }
+
+            return;
+        }
+
         byte[] bytes = new byte[size];
+        byte[] finalBytes;
 
         buf.readBytes(bytes);
 
-        ByteArrayOutputStream map = this.chunks.computeIfAbsent(id, (k) -> new ByteArrayOutputStream(total * BUFFER_SIZE));
+        synchronized (this)
+        {
+            Map<Integer, IncomingTransfer> transfers = this.chunks.computeIfAbsent(sender, (k) -> new HashMap<>());
+            IncomingTransfer transfer = transfers.get(id);
+
+            if (index == 0)
+            {
+                /* A new transfer with the same ID replaces stale one */
+                transfer = new IncomingTransfer(total, deflated);
+
+                transfers.put(id, transfer);
+            }
+
+            if (transfer == null || transfer.next != index || transfer.total != total)
+            {
+                /* A chunk got lost, there is no way to assemble this
+                 * transfer anymore */
+                this.removeIncoming(sender, id);
+
+                return;
+            }
+
+            transfer.stream.writeBytes(bytes);
+            transfer.next += 1;
+            transfer.lastUpdate = System.currentTimeMillis();
+
+            if (index != total - 1)
+            {
+                return;
+            }
+
+            this.removeIncoming(sender, id);
+
+            finalBytes = transfer.stream.toByteArray();
+
+            if (transfer.deflated)
+            {
+                try
+                {
+                    finalBytes = inflate(finalBytes);
+                }
+                catch (DataFormatException e)
+                {
+                    e.printStackTrace();
+
+                    return;
+                }
+            }
+        }
+
+        if (finalBytes.length == 1 && finalBytes[0] == 69)
+        {
+            finalBytes = null;
+        }
+
+        receiver.receiveBuffer(finalBytes, buf);
+    }
 
-        map.writeBytes(bytes);
+    private void removeIncoming(UUID sender, int id)
+    {
+        Map<Integer, IncomingTransfer> transfers = this.chunks.get(sender);
 
-        if (index == total - 1)
+        if (transfers != null)
         {
-            byte[] finalBytes = map.toByteArray();
+            transfers.remove(id);
 
-            if (finalBytes.length == 1 && finalBytes[0] == 69)
+            if (transfers.isEmpty())
             {
-                finalBytes = null;
+                this.chunks.remove(sender);
             }
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes) throws DataFormatException
+    {
+        Inflater inflater = new Inflater();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(bytes.length * 4);
+        byte[] buffer = new byte[8192];
+
+        try
+        {
+            inflater.setInput(bytes);
+
+            while (!inflater.finished())
+            {
+                int read = inflater.inflate(buffer);
 
-            receiver.receiveBuffer(finalBytes, buf);
-            this.chunks.remove(id);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    throw new DataFormatException("Deflated payload is truncated!");
+                }
+
+                if (stream.size() + read > MAX_INFLATED_SIZE)
+                {
+                    throw new DataFormatException("Inflated payload is bigger than " + MAX_INFLATED_SIZE + " bytes!");
+                }
+
+                stream.write(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            inflater.end();
         }
+
+        return stream.toByteArray();
     }
 
     public void send(PlayerEntity entity, Identifier identifier, BaseType baseType, Consumer<PacketByteBuf> consumer)
@@ -72,40 +294,150 @@ public abstract class PacketCrusher
 
     public void send(Collection<PlayerEntity> entities, Identifier identifier, byte[] bytes, Consumer<PacketByteBuf> consumer)
     {
-        if (bytes.length == 0)
-        {
-            bytes = new byte[]{69};
-        }
+        EncodedPayload payload = new EncodedPayload(bytes);
 
-        int total = Math.max((int) Math.ceil(bytes.length / (float) BUFFER_SIZE), 1);
+        this.send(entities, identifier, payload, consumer);
+        payload.release();
+    }
+
+    public void send(PlayerEntity entity, Identifier identifier, EncodedPayload payload, Consumer<PacketByteBuf> consumer)
+    {
+        this.send(Collections.singleton(entity), identifier, payload, consumer);
+    }
+
+    /**
+     * Send pre-encoded payload to given players. Payload's chunks aren't
+     * copied, only prefixed with the header (and the last one is followed
+     * by consumer's data), so the same payload can be fanned out to many
+     * players cheaply.
+     */
+    public synchronized void send(Collection<PlayerEntity> entities, Identifier identifier, EncodedPayload payload, Consumer<PacketByteBuf> consumer)
+    {
+        PacketByteBuf trailer = PacketByteBufs.create();
         int counter = this.counter;
 
-        for (int index = 0; index < total; index++)
+        if (consumer != null)
         {
-            int offset = index * BUFFER_SIZE;
+            consumer.accept(trailer);
+        }
 
-            PacketByteBuf buf = PacketByteBufs.create();
-            int size = Math.min(BUFFER_SIZE, bytes.length - offset);
+        for (PlayerEntity entity : entities)
+        {
+            EncodedPayload variant = BBSSettings.networkCompression.get() && this.canDeflate(entity) ? payload.getDeflated() : payload;
+            UUID uuid = entity == null ? NO_PLAYER : entity.getUuid();
+            OutgoingQueue queue = this.queues.computeIfAbsent(uuid, (k) -> new OutgoingQueue());
 
-            buf.writeInt(counter);
-            buf.writeInt(index);
-            buf.writeInt(total);
-            buf.writeInt(size);
-            buf.writeBytes(bytes, offset, size);
+            queue.transfers.add(new OutgoingTransfer(entity, identifier, variant.retain(), counter, trailer));
+            this.flush(queue);
 
-            if (consumer != null && index == total - 1)
+            if (queue.transfers.isEmpty())
             {
-                consumer.accept(buf);
+                this.queues.remove(uuid);
             }
+        }
+
+        this.counter += 1;
+    }
+
+    /**
+     * Send as many queued chunks as this tick's budget allows.
+     */
+    private void flush(OutgoingQueue queue)
+    {
+        int limit = BBSSettings.networkChunksPerTick.get();
+
+        while (!queue.transfers.isEmpty() && (limit <= 0 || queue.sent < limit))
+        {
+            OutgoingTransfer transfer = queue.transfers.peekFirst();
+
+            this.sendBuffer(transfer.entity, transfer.identifier, transfer.createChunk());
+
+            queue.sent += 1;
 
-            for (PlayerEntity playerEntity : entities)
+            if (transfer.isDone())
             {
-                this.sendBuffer(playerEntity, identifier, buf);
+                queue.transfers.pollFirst().payload.release();
             }
         }
-
-        this.counter += 1;
     }
 
     protected abstract void sendBuffer(PlayerEntity entity, Identifier identifier, PacketByteBuf buf);
-}
\ No newline at end of file
+
+    private static class IncomingTransfer
+    {
+        public final ByteArrayOutputStream stream;
+        public final int total;
+        public final boolean deflated;
+        public int next;
+        public long lastUpdate = System.currentTimeMillis();
+
+        public IncomingTransfer(int total, boolean deflated)
+        {
+            /* Don't trust the total too much when preallocating */
+            this.stream = new ByteArrayOutputStream(Math.min(total, 32) * BUFFER_SIZE);
+            this.total = total;
+            this.deflated = deflated;
+        }
+    }
+
+    private static class OutgoingQueue
+    {
+        public final Deque<OutgoingTransfer> transfers = new ArrayDeque<>();
+        public int sent;
+
+        public void clear()
+        {
+            for (OutgoingTransfer transfer : this.transfers)
+            {
+                transfer.payload.release();
+            }
+
+            this.transfers.clear();
+        }
+    }
+
+    private static class OutgoingTransfer
+    {
+        public final PlayerEntity entity;
+        public final Identifier identifier;
+        public final EncodedPayload payload;
+        public final int counter;
+        public final PacketByteBuf trailer;
+        public int index;
+
+        public OutgoingTransfer(PlayerEntity entity, Identifier identifier, EncodedPayload payload, int counter, PacketByteBuf trailer)
+        {
+            this.entity = entity;
+            this.identifier = identifier;
+            this.payload = payload;
+            this.counter = counter;
+            this.trailer = trailer;
+        }
+
+        public boolean isDone()
+        {
+            return this.index >= this.payload.getTotal();
+        }
+
+        public PacketByteBuf createChunk()
+        {
+            int total = this.payload.getTotal();
+            ByteBuf chunk = this.payload.getChunk(this.index);
+            PacketByteBuf header = PacketByteBufs.create();
+
+            header.writeInt(this.counter);
+            header.writeInt(this.index);
+            header.writeInt(this.payload.isDeflated() ? -total : total);
+            header.writeInt(chunk.readableBytes());
+
+            this.index += 1;
+
+            if (this.index == total)
+            {
+                return new PacketByteBuf(Unpooled.wrappedBuffer(header, chunk, this.trailer.duplicate()));
+            }
+
+            return new PacketByteBuf(Unpooled.wrappedBuffer(header, chunk));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package mchorse.bbs_mod.network;
+
+import mchorse.bbs_mod.data.types.BaseType;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Payload cache
+ *
+ * Keeps {@link EncodedPayload}s by ID (e.g. film ID) and revision. Every
+ * invalidation of an ID bumps its revision (and clearing bumps the
+ * generation of the whole cache), so a payload that was being encoded
+ * while the data was changed doesn't get cached as current.
+ *
+ * Payloads can also remember modification time and size of the file
+ * their data came from, so a file that was changed on disk (without going
+ * through {@link #invalidate(String)}) gets encoded again.
+ */
+public class PayloadCache
+{
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Integer> revisions = new HashMap<>();
+    private int generation;
+
+    /**
+     * Get a payload for given ID, encoding the data provided by given
+     * supplier only if the current revision isn't cached yet, or given
+     * source file (can be null) was modified since it was cached. The
+     * returned payload is retained, so it must be released by the caller
+     * once it's done with it.
+     */
+    public EncodedPayload get(String id, File file, Supplier<BaseType> data)
+    {
+        int revision;
+        int generation;
+        long modified = file == null ? 0 : file.lastModified();
+        long length = file == null ? 0 : file.length();
+
+        synchronized (this)
+        {
+            revision = this.revisions.getOrDefault(id, 0);
+            generation = this.generation;
+
+            Entry entry = this.entries.get(id);
+
+            if (entry != null && entry.revision == revision && entry.modified == modified && entry.length == length)
+            {
+                return entry.payload.retain();
+            }
+        }
+
+        EncodedPayload payload = EncodedPayload.encode(data.get());
+
+        synchronized (this)
+        {
+            if (this.revisions.getOrDefault(id, 0) == revision && this.generation == generation)
+            {
+                Entry old = this.entries.put(id, new Entry(payload.retain(), revision, modified, length));
+
+                if (old != null)
+                {
+                    old.payload.release();
+                }
+            }
+        }
+
+        return payload;
+    }
+
+    public synchronized int getRevision(String id)
+    {
+        return this.revisions.getOrDefault(id, 0);
+    }
+
+    public synchronized void invalidate(String id)
+    {
+        this.revisions.put(id, this.revisions.getOrDefault(id, 0) + 1);
+
+        Entry entry = this.entries.remove(id);
+
+        if (entry != null)
+        {
+            entry.payload.release();
+        }
+    }
+
+    public synchronized void clear()
+    {
+        for (Entry entry : this.entries.values())
+        {
+            entry.payload.release();
+        }
+
+        this.entries.clear();
+        this.generation += 1;
+    }
+
+    private static class Entry
+    {
+        public final EncodedPayload payload;
+        public final int revision;
+        public final long modified;
+        public final long length;
+
+        public Entry(EncodedPayload payload, int revision, long modified, long length)
+        {
+            this.payload = payload;
+            this.revision = revision;
+            this.modified = modified;
+            this.length = length;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import mchorse.bbs_mod.actions.ActionRecorder;
 import mchorse.bbs_mod.actions.ActionState;
 import mchorse.bbs_mod.actions.PlayerType;
 import mchorse.bbs_mod.blocks.entities.ModelBlockEntity;
+import mchorse.bbs_mod.data.DataPatch;
 import mchorse.bbs_mod.data.DataStorageUtils;
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.ByteType;
@@ -43,6 +44,8 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -70,6 +73,7 @@ public class ServerNetwork
     public static final Identifier CLIENT_SELECTED_SLOT = new Identifier(BBSMod.MOD_ID, "c15");
     public static final Identifier CLIENT_ANIMATION_STATE_MODEL_BLOCK_TRIGGER = new Identifier(BBSMod.MOD_ID, "c16");
     public static final Identifier CLIENT_REFRESH_MODEL_BLOCKS = new Identifier(BBSMod.MOD_ID, "c17");
+    public static final Identifier CLIENT_FILM_DATA_SYNC_RESET = new Identifier(BBSMod.MOD_ID, "c18");
 
     public static final Identifier SERVER_MODEL_BLOCK_FORM_PACKET = new Identifier(BBSMod.MOD_ID, "s1");
     public static final Identifier SERVER_MODEL_BLOCK_TRANSFORMS_PACKET = new Identifier(BBSMod.MOD_ID, "s2");
@@ -84,12 +88,78 @@ public class ServerNetwork
     public static final Identifier SERVER_SHARED_FORM = new Identifier(BBSMod.MOD_ID, "s11");
     public static final Identifier SERVER_ZOOM = new Identifier(BBSMod.MOD_ID, "s12");
     public static final Identifier SERVER_PAUSE_FILM = new Identifier(BBSMod.MOD_ID, "s13");
+    public static final Identifier SERVER_HANDSHAKE = new Identifier(BBSMod.MOD_ID, "s14");
+    public static final Identifier SERVER_FILM_DATA_PATCH = new Identifier(BBSMod.MOD_ID, "s15");
+
+    /**
+     * Maximum amount of sync baselines per player. Least recently used
+     * baselines over this limit are dropped (their next patch gets rejected,
+     * so the client sends full data again).
+     */
+    public static final int MAX_SYNC_BASELINES = 32;
 
     private static ServerPacketCrusher crusher = new ServerPacketCrusher();
+    private static PayloadCache filmPayloads = new PayloadCache();
+    private static Map<UUID, Map<String, SyncBaseline>> syncBaselines = new HashMap<>();
 
     public static void reset()
     {
         crusher.reset();
+        filmPayloads.clear();
+        syncBaselines.clear();
+    }
+
+    public static void tick()
+    {
+        crusher.tick();
+    }
+
+    public static void disconnect(ServerPlayerEntity player)
+    {
+        crusher.remove(player.getUuid());
+        syncBaselines.remove(player.getUuid());
+    }
+
+    private static Map<String, SyncBaseline> getSyncBaselines(ServerPlayerEntity player)
+    {
+        return syncBaselines.computeIfAbsent(player.getUuid(), (k) -> new LinkedHashMap<String, SyncBaseline>(16, 0.75F, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SyncBaseline> eldest)
+            {
+                return this.size() > MAX_SYNC_BASELINES;
+            }
+        });
+    }
+
+    /**
+     * Remove all players' sync baselines of given film (e.g. when it was
+     * deleted or renamed)
+     */
+    private static void removeSyncBaselines(String filmId)
+    {
+        String prefix = filmId + ":";
+
+        for (Map<String, SyncBaseline> baselines : syncBaselines.values())
+        {
+            baselines.keySet().removeIf((key) -> key.startsWith(prefix));
+        }
+    }
+
+    /**
+     * Remove given player's sync baselines of all films except given one
+     * (the player switched to another film)
+     */
+    private static void removeSyncBaselines(ServerPlayerEntity player, String filmId)
+    {
+        Map<String, SyncBaseline> baselines = syncBaselines.get(player.getUuid());
+
+        if (baselines != null)
+        {
+            String prefix = filmId + ":";
+
+            baselines.keySet().removeIf((key) -> !key.startsWith(prefix));
+        }
     }
 
     public static void setup()
@@ -107,6 +177,8 @@ public class ServerNetwork
         ServerPlayNetworking.registerGlobalReceiver(SERVER_SHARED_FORM, (server, player, handler, buf, responder) -> handleSharedFormPacket(server, player, buf));
         ServerPlayNetworking.registerGlobalReceiver(SERVER_ZOOM, (server, player, handler, buf, responder) -> handleZoomPacket(server, player, buf));
         ServerPlayNetworking.registerGlobalReceiver(SERVER_PAUSE_FILM, (server, player, handler, buf, responder) -> handlePauseFilmPacket(server, player, buf));
+        ServerPlayNetworking.registerGlobalReceiver(SERVER_HANDSHAKE, (server, player, handler, buf, responder) -> handleHandshakePacket(server, player, buf));
+        ServerPlayNetworking.registerGlobalReceiver(SERVER_FILM_DATA_PATCH, (server, player, handler, buf, responder) -> handleSyncDataPatch(server, player, buf));
     }
 
     /* Handlers */
@@ -118,7 +190,7 @@ public class ServerNetwork
             return;
         }
 
-        crusher.receive(buf, (bytes, packetByteBuf) ->
+        crusher.receive(player.getUuid(), buf, (bytes, packetByteBuf) ->
         {
             BlockPos pos = buf.readBlockPos();
 
@@ -149,7 +221,7 @@ public class ServerNetwork
             return;
         }
 
-        crusher.receive(buf, (bytes, packetByteBuf) ->
+        crusher.receive(player.getUuid(), buf, (bytes, packetByteBuf) ->
         {
             try
             {
@@ -177,7 +249,7 @@ public class ServerNetwork
             return;
         }
 
-        crusher.receive(buf, (bytes, packetByteBuf) ->
+        crusher.receive(player.getUuid(), buf, (bytes, packetByteBuf) ->
         {
             Form form = null;
 
@@ -209,7 +281,7 @@ public class ServerNetwork
             return;
         }
 
-        crusher.receive(buf, (bytes, packetByteBuf) ->
+        crusher.receive(player.getUuid(), buf, (bytes, packetByteBuf) ->
         {
             MapType data = (MapType) DataStorageUtils.readFromBytes(bytes);
             int callbackId = packetByteBuf.readInt();
@@ -221,19 +293,28 @@ public class ServerNetwork
                 String id = data.getString("id");
                 Film film = films.load(id);
 
+                /* Player switched to another film */
+                server.execute(() -> removeSyncBaselines(player, id));
+
                 sendManagerData(player, callbackId, op, film.toData());
             }
             else if (op == RepositoryOperation.SAVE)
             {
                 films.save(data.getString("id"), data.getMap("data"));
+                filmPayloads.invalidate(data.getString("id"));
             }
             else if (op == RepositoryOperation.RENAME)
             {
                 films.rename(data.getString("from"), data.getString("to"));
+                server.execute(() -> removeSyncBaselines(data.getString("from")));
+                filmPayloads.invalidate(data.getString("from"));
+                filmPayloads.invalidate(data.getString("to"));
             }
             else if (op == RepositoryOperation.DELETE)
             {
                 films.delete(data.getString("id"));
+                server.execute(() -> removeSyncBaselines(data.getString("id")));
+                filmPayloads.invalidate(data.getString("id"));
             }
             else if (op == RepositoryOperation.KEYS)
             {
@@ -247,10 +328,14 @@ public class ServerNetwork
             }
             else if (op == RepositoryOperation.RENAME_FOLDER)
             {
+                filmPayloads.clear();
+                server.execute(() -> syncBaselines.clear());
                 sendManagerData(player, callbackId, op, new ByteType(films.renameFolder(data.getString("from"), data.getString("to"))));
             }
             else if (op == RepositoryOperation.DELETE_FOLDER)
             {
+                filmPayloads.clear();
+                server.execute(() -> syncBaselines.clear());
                 sendManagerData(player, callbackId, op, new ByteType(films.deleteFolder(data.getString("folder"))));
             }
         });
@@ -411,7 +496,7 @@ public class ServerNetwork
             return;
         }
 
-        crusher.receive(buf, (bytes, packetByteBuf) ->
+        crusher.receive(player.getUuid(), buf, (bytes, packetByteBuf) ->
         {
             String filmId = packetByteBuf.readString();
             List<String> path = new ArrayList<>();
@@ -421,11 +506,75 @@ public class ServerNetwork
                 path.add(buf.readString());
             }
 
+            /* Older clients don't send the revision */
+            int revision = packetByteBuf.isReadable() ? packetByteBuf.readInt() : 0;
             BaseType data = DataStorageUtils.readFromBytes(bytes);
 
             server.execute(() ->
             {
-                BBSMod.getActions().syncData(filmId, new DataPath(path), data);
+                DataPath dataPath = new DataPath(path);
+
+                getSyncBaselines(player).put(filmId + ":" + dataPath, new SyncBaseline(data, revision));
+
+                BBSMod.getActions().syncData(filmId, dataPath, data == null ? null : data.copy());
+                filmPayloads.invalidate(filmId);
+            });
+        });
+    }
+
+    /**
+     * Apply a patch (see {@link DataPatch}) to the last synced data of given path,
+     * and sync the result. If the patch was made against a different revision than
+     * the server has (or doesn't fit it), the client is asked to send the full data.
+     */
+    private static void handleSyncDataPatch(MinecraftServer server, ServerPlayerEntity player, PacketByteBuf buf)
+    {
+        if (!PermissionUtils.arePanelsAllowed(server, player))
+        {
+            return;
+        }
+
+        crusher.receive(player.getUuid(), buf, (bytes, packetByteBuf) ->
+        {
+            String filmId = packetByteBuf.readString();
+            List<String> path = new ArrayList<>();
+
+            for (int i = 0, c = packetByteBuf.readInt(); i < c; i++)
+            {
+                path.add(packetByteBuf.readString());
+            }
+
+            int baseRevision = packetByteBuf.readInt();
+            int revision = packetByteBuf.readInt();
+            BaseType patch = DataStorageUtils.readFromBytes(bytes);
+
+            server.execute(() ->
+            {
+                DataPath dataPath = new DataPath(path);
+                String key = filmId + ":" + dataPath;
+                Map<String, SyncBaseline> baselines = getSyncBaselines(player);
+                SyncBaseline baseline = baselines.get(key);
+
+                if (baseline != null && baseline.revision == baseRevision && patch instanceof ListType list)
+                {
+                    try
+                    {
+                        baseline.data = DataPatch.apply(baseline.data, list);
+                        baseline.revision = revision;
+
+                        BBSMod.getActions().syncData(filmId, dataPath, baseline.data == null ? null : baseline.data.copy());
+                        filmPayloads.invalidate(filmId);
+
+                        return;
+                    }
+                    catch (Exception e)
+                    {
+                        e.printStackTrace();
+                    }
+                }
+
+                baselines.remove(key);
+                sendSyncDataReset(player, filmId, path, revision);
             });
         });
     }
@@ -478,7 +627,7 @@ public class ServerNetwork
 
     private static void handleSharedFormPacket(MinecraftServer server, ServerPlayerEntity player, PacketByteBuf buf)
     {
-        crusher.receive(buf, (bytes, packetByteBuf) ->
+        crusher.receive(player.getUuid(), buf, (bytes, packetByteBuf) ->
         {
             UUID playerUuid = packetByteBuf.readUuid();
             MapType data = (MapType) DataStorageUtils.readFromBytes(bytes);
@@ -529,6 +678,11 @@ public class ServerNetwork
         }
     }
 
+    private static void handleHandshakePacket(MinecraftServer server, ServerPlayerEntity player, PacketByteBuf buf)
+    {
+        crusher.setTransportFlags(player.getUuid(), buf.readByte() & PacketCrusher.getTransportFlags());
+    }
+
     /* API */
 
     public static void sendMorph(ServerPlayerEntity player, int playerId, Form form)
@@ -568,13 +722,14 @@ public class ServerNetwork
             {
                 BBSMod.getActions().play(player, world, film, 0);
 
-                BaseType data = film.toData();
+                EncodedPayload payload = filmPayloads.get(filmId, BBSMod.getFilms().getFile(filmId), film::toData);
 
-                crusher.send(world.getPlayers().stream().map((p) -> (PlayerEntity) p).toList(), CLIENT_PLAY_FILM_PACKET, data, (packetByteBuf) ->
+                crusher.send(world.getPlayers().stream().map((p) -> (PlayerEntity) p).toList(), CLIENT_PLAY_FILM_PACKET, payload, (packetByteBuf) ->
                 {
                     packetByteBuf.writeString(filmId);
                     packetByteBuf.writeBoolean(withCamera);
                 });
+                payload.release();
             }
         }
         catch (Exception e)
@@ -593,11 +748,14 @@ public class ServerNetwork
             {
                 BBSMod.getActions().play(player, player.getServerWorld(), film, 0);
 
-                crusher.send(player, CLIENT_PLAY_FILM_PACKET, film.toData(), (packetByteBuf) ->
+                EncodedPayload payload = filmPayloads.get(filmId, BBSMod.getFilms().getFile(filmId), film::toData);
+
+                crusher.send(player, CLIENT_PLAY_FILM_PACKET, payload, (packetByteBuf) ->
                 {
                     packetByteBuf.writeString(filmId);
                     packetByteBuf.writeBoolean(withCamera);
                 });
+                payload.release();
             }
         }
         catch (Exception e)
@@ -656,10 +814,28 @@ public class ServerNetwork
         }
 
         buf.writeString(id);
+        buf.writeByte(PacketCrusher.getTransportFlags());
 
         return buf;
     }
 
+    public static void sendSyncDataReset(ServerPlayerEntity player, String filmId, List<String> path, int revision)
+    {
+        PacketByteBuf buf = PacketByteBufs.create();
+
+        buf.writeString(filmId);
+        buf.writeInt(path.size());
+
+        for (String string : path)
+        {
+            buf.writeString(string);
+        }
+
+        buf.writeInt(revision);
+
+        ServerPlayNetworking.send(player, ServerNetwork.CLIENT_FILM_DATA_SYNC_RESET, buf);
+    }
+
     public static void sendCheatsPermission(ServerPlayerEntity player, boolean cheats)
     {
         PacketByteBuf buf = PacketByteBufs.create();
@@ -748,4 +924,20 @@ public class ServerNetwork
 
         ServerPlayNetworking.send(player, CLIENT_REFRESH_MODEL_BLOCKS, buf);
     }
-}
\ No newline at end of file
+
+    /**
+     * Last synced data of a film's value by a player, against which the
+     * player's patches are applied
+     */
+    private static class SyncBaseline
+    {
+        public BaseType data;
+        public int revision;
+
+        public SyncBaseline(BaseType data, int revision)
+        {
+            this.data = data;
+            this.revision = revision;
+        }
+    }
+}
@@ -6,11 +6,51 @@ import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class ServerPacketCrusher extends PacketCrusher
 {
+    private Set<UUID> deflate = ConcurrentHashMap.newKeySet();
+
+    public void setTransportFlags(UUID uuid, int flags)
+    {
+        if ((flags & TRANSPORT_DEFLATE) != 0)
+        {
+            this.deflate.add(uuid);
+        }
+        else
+        {
+            this.deflate.remove(uuid);
+        }
+    }
+
+    @Override
+    public synchronized void reset()
+    {
+        super.reset();
+
+        this.deflate.clear();
+    }
+
+    @Override
+    public synchronized void remove(UUID uuid)
+    {
+        super.remove(uuid);
+
+        this.deflate.remove(uuid);
+    }
+
+    @Override
+    protected boolean canDeflate(PlayerEntity entity)
+    {
+        return entity != null && this.deflate.contains(entity.getUuid());
+    }
+
     @Override
     protected void sendBuffer(PlayerEntity entity, Identifier identifier, PacketByteBuf buf)
     {
         ServerPlayNetworking.send((ServerPlayerEntity) entity, identifier, buf);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,47 @@
+package mchorse.bbs_mod.utils;
+
+/**
+ * Benchmark
+ *
+ * Timing loop shared by headless benchmarks (main methods next to the code
+ * they measure). Benchmarks check their results before timing anything,
+ * and fail with {@link com.ibm.icu.impl.Assert} like {@link MatrixUtilsTest}
+ * does, so they can be run as checks too.
+ */
+public class Benchmark
+{
+    public static final int WARMUP = 20;
+    public static final int ITERATIONS = 50;
+
+    /**
+     * Run given code {@link #WARMUP} times, then measure it {@link #ITERATIONS}
+     * times, and print average time of one run.
+     *
+     * @return average time of one run in milliseconds
+     */
+    public static double measure(String name, Runnable runnable)
+    {
+        return measure(name, WARMUP, ITERATIONS, runnable);
+    }
+
+    public static double measure(String name, int warmup, int iterations, Runnable runnable)
+    {
+        for (int i = 0; i < warmup; i++)
+        {
+            runnable.run();
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++)
+        {
+            runnable.run();
+        }
+
+        double time = (System.nanoTime() - start) / 1_000_000D / iterations;
+
+        System.out.println(String.format("%s: %.3f ms", name, time));
+
+        return time;
+    }
+}
@@ -6,19 +6,38 @@ import mchorse.bbs_mod.camera.data.Point;
 import mchorse.bbs_mod.data.types.BaseType;
 import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.MapType;
+import mchorse.bbs_mod.settings.values.base.BaseValue;
 import mchorse.bbs_mod.settings.values.core.ValueGroup;
 import mchorse.bbs_mod.utils.MathUtils;
 import mchorse.bbs_mod.utils.factory.IFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 public class Clips extends ValueGroup
 {
     private List<Clip> clips = new ArrayList<>();
     private IFactory<Clip, ClipFactoryData> factory;
+    private ClipsIndex index = new ClipsIndex();
+
+    /**
+     * Invalidate indices of all clips that given value belongs to. Needed
+     * only when clip's tick, duration or layer were changed without
+     * notifying (like {@link BaseValue#fromData(BaseType)}).
+     */
+    public static void invalidateIndices(BaseValue value)
+    {
+        while (value != null)
+        {
+            if (value instanceof Clips clips)
+            {
+                clips.index.invalidate();
+            }
+
+            value = value.getParent();
+        }
+    }
 
     public Clips(String id, IFactory<Clip, ClipFactoryData> factory)
     {
@@ -151,23 +170,22 @@ public class Clips extends ValueGroup
         return this.getClips(tick, Integer.MAX_VALUE);
     }
 
+    /**
+     * Get clips at given tick which are below given layer, sorted by layer.
+     * The returned list is shared, so it must not be modified or held onto.
+     */
     public List<Clip> getClips(int tick, int maxLayer)
     {
-        List<Clip> clipList = new ArrayList<>();
-
-        for (Clip clip : this.clips)
-        {
-            boolean isGlobal = clip.isGlobal() && maxLayer == Integer.MAX_VALUE;
-
-            if ((clip.isInside(tick) || isGlobal) && clip.layer.get() < maxLayer)
-            {
-                clipList.add(clip);
-            }
-        }
-
-        clipList.sort(Comparator.comparingInt((a) -> a.layer.get()));
+        return this.index.getClips(this.clips, tick, maxLayer);
+    }
 
-        return clipList;
+    /**
+     * Add clips which overlap given range of ticks (both ends inclusive),
+     * sorted by layer, to given output list.
+     */
+    public void getClips(int from, int to, List<Clip> output)
+    {
+        this.index.getClips(this.clips, Math.min(from, to), Math.max(from, to), output);
     }
 
     /**
@@ -223,6 +241,7 @@ public class Clips extends ValueGroup
 
     public void sync()
     {
+        this.index.invalidate();
         this.removeAll();
 
         for (int i = 0, c = this.clips.size(); i < c; i++)
@@ -307,6 +326,15 @@ public class Clips extends ValueGroup
 
     /* Value implementation */
 
+    @Override
+    public void postNotify(BaseValue value, int flag)
+    {
+        /* Any clip's tick, duration or layer might have changed */
+        this.index.invalidate();
+
+        super.postNotify(value, flag);
+    }
+
     @Override
     public BaseType toData()
     {
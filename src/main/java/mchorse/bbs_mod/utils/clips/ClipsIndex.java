@@ -0,0 +1,322 @@
+package mchorse.bbs_mod.utils.clips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Clips index
+ *
+ * Interval index of {@link Clips} for looking up clips at a tick. Clip
+ * ticks and ends split the timeline into segments, within which the set
+ * of clips doesn't change, and every segment's layer ordered list of clips
+ * is computed once (when it's first looked up) by querying a static
+ * interval tree. The lists are immutable, so they can be returned to the
+ * callers as is.
+ *
+ * The index is rebuilt lazily after it was invalidated.
+ */
+public class ClipsIndex
+{
+    private static final Segment EMPTY = new Segment(Collections.emptyList(), Collections.emptyList());
+
+    private boolean dirty = true;
+
+    /* Interval tree over clips sorted by their tick, where every middle
+     * element of a range stores the maximum end of that range */
+    private Clip[] clips = new Clip[0];
+    private int[] orders = new int[0];
+    private int[] starts = new int[0];
+    private int[] ends = new int[0];
+    private int[] maxEnds = new int[0];
+
+    private int[] bounds = new int[0];
+    private Segment[] segments = new Segment[0];
+    private Segment outside = EMPTY;
+
+    private List<Clip> globals = Collections.emptyList();
+    private int[] globalOrders = new int[0];
+
+    private final List<Clip> buffer = new ArrayList<>();
+    private final List<Integer> bufferOrders = new ArrayList<>();
+
+    public void invalidate()
+    {
+        this.dirty = true;
+    }
+
+    /**
+     * Get layer ordered clips at given tick (see {@link Clips#getClips(int, int)}).
+     * The returned list must not be modified.
+     */
+    public List<Clip> getClips(List<Clip> clips, int tick, int maxLayer)
+    {
+        if (this.dirty)
+        {
+            this.rebuild(clips);
+        }
+
+        Segment segment = this.getSegment(tick);
+
+        if (maxLayer == Integer.MAX_VALUE)
+        {
+            return segment.all;
+        }
+
+        List<Clip> inside = segment.inside;
+        int count = 0;
+
+        while (count < inside.size() && inside.get(count).layer.get() < maxLayer)
+        {
+            count += 1;
+        }
+
+        return count == inside.size() ? inside : inside.subList(0, count);
+    }
+
+    /**
+     * Get layer ordered clips that overlap given range of ticks (both ends
+     * inclusive), including global clips (see {@link Clips#getClips(int, int, List)}).
+     */
+    public void getClips(List<Clip> clips, int from, int to, List<Clip> output)
+    {
+        if (this.dirty)
+        {
+            this.rebuild(clips);
+        }
+
+        this.buffer.clear();
+        this.bufferOrders.clear();
+        this.query(0, this.starts.length, from, to);
+
+        for (int i = 0; i < this.globals.size(); i++)
+        {
+            if (!this.buffer.contains(this.globals.get(i)))
+            {
+                this.buffer.add(this.globals.get(i));
+                this.bufferOrders.add(this.globalOrders[i]);
+            }
+        }
+
+        output.addAll(this.sort(this.buffer, this.bufferOrders));
+    }
+
+    private Segment getSegment(int tick)
+    {
+        int index = Arrays.binarySearch(this.bounds, tick);
+
+        if (index < 0)
+        {
+            index = -index - 2;
+        }
+
+        if (index < 0 || index >= this.segments.length)
+        {
+            return this.outside;
+        }
+
+        Segment segment = this.segments[index];
+
+        if (segment == null)
+        {
+            segment = this.segments[index] = this.createSegment(this.bounds[index]);
+        }
+
+        return segment;
+    }
+
+    private Segment createSegment(int tick)
+    {
+        this.buffer.clear();
+        this.bufferOrders.clear();
+        this.query(0, this.starts.length, tick, tick);
+
+        int size = this.buffer.size();
+
+        if (size == 0 && this.globals.isEmpty())
+        {
+            return EMPTY;
+        }
+
+        List<Clip> inside = this.sort(this.buffer, this.bufferOrders);
+
+        if (this.globals.isEmpty())
+        {
+            return new Segment(inside, inside);
+        }
+
+        for (int i = 0; i < this.globals.size(); i++)
+        {
+            if (!this.buffer.contains(this.globals.get(i)))
+            {
+                this.buffer.add(this.globals.get(i));
+                this.bufferOrders.add(this.globalOrders[i]);
+            }
+        }
+
+        return new Segment(inside, this.sort(this.buffer, this.bufferOrders));
+    }
+
+    private void query(int low, int high, int from, int to)
+    {
+        if (low >= high)
+        {
+            return;
+        }
+
+        int mid = (low + high) >>> 1;
+
+        if (this.maxEnds[mid] <= from)
+        {
+            return;
+        }
+
+        this.query(low, mid, from, to);
+
+        if (this.starts[mid] <= to)
+        {
+            if (this.ends[mid] > from)
+            {
+                this.buffer.add(this.clips[mid]);
+                this.bufferOrders.add(this.orders[mid]);
+            }
+
+            this.query(mid + 1, high, from, to);
+        }
+    }
+
+    /**
+     * Sort given clips by layer, and then by their order in the clips list
+     * (to match stable sort by layer of clips in the list order).
+     */
+    private List<Clip> sort(List<Clip> clips, List<Integer> orders)
+    {
+        Integer[] indices = new Integer[clips.size()];
+        Clip[] sorted = new Clip[clips.size()];
+
+        for (int i = 0; i < indices.length; i++)
+        {
+            indices[i] = i;
+        }
+
+        Arrays.sort(indices, Comparator.comparingInt((Integer i) -> clips.get(i).layer.get()).thenComparingInt(orders::get));
+
+        for (int i = 0; i < indices.length; i++)
+        {
+            sorted[i] = clips.get(indices[i]);
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(sorted));
+    }
+
+    private void rebuild(List<Clip> list)
+    {
+        List<Integer> candidates = new ArrayList<>();
+        List<Clip> globals = new ArrayList<>();
+        List<Integer> globalOrders = new ArrayList<>();
+
+        for (int i = 0; i < list.size(); i++)
+        {
+            Clip clip = list.get(i);
+
+            if (clip.duration.get() > 0)
+            {
+                candidates.add(i);
+            }
+
+            if (clip.isGlobal())
+            {
+                globals.add(clip);
+                globalOrders.add(i);
+            }
+        }
+
+        candidates.sort(Comparator.comparingInt((i) -> list.get(i).tick.get()));
+
+        int size = candidates.size();
+
+        this.clips = new Clip[size];
+        this.orders = new int[size];
+        this.starts = new int[size];
+        this.ends = new int[size];
+        this.maxEnds = new int[size];
+
+        int[] bounds = new int[size * 2];
+
+        for (int i = 0; i < size; i++)
+        {
+            int order = candidates.get(i);
+            Clip clip = list.get(order);
+
+            this.clips[i] = clip;
+            this.orders[i] = order;
+            this.starts[i] = clip.tick.get();
+            this.ends[i] = clip.tick.get() + clip.duration.get();
+
+            bounds[i * 2] = this.starts[i];
+            bounds[i * 2 + 1] = this.ends[i];
+        }
+
+        this.buildMaxEnds(0, size);
+
+        /* Sort and remove duplicate bounds */
+        Arrays.sort(bounds);
+
+        int unique = 0;
+
+        for (int i = 0; i < bounds.length; i++)
+        {
+            if (unique == 0 || bounds[unique - 1] != bounds[i])
+            {
+                bounds[unique++] = bounds[i];
+            }
+        }
+
+        this.bounds = Arrays.copyOf(bounds, unique);
+        this.segments = new Segment[Math.max(unique - 1, 0)];
+
+        if (globals.isEmpty())
+        {
+            this.globals = Collections.emptyList();
+            this.globalOrders = new int[0];
+            this.outside = EMPTY;
+        }
+        else
+        {
+            this.globals = globals;
+            this.globalOrders = globalOrders.stream().mapToInt(Integer::intValue).toArray();
+            this.outside = new Segment(Collections.emptyList(), this.sort(globals, globalOrders));
+        }
+
+        this.dirty = false;
+    }
+
+    private int buildMaxEnds(int low, int high)
+    {
+        if (low >= high)
+        {
+            return Integer.MIN_VALUE;
+        }
+
+        int mid = (low + high) >>> 1;
+        int max = Math.max(this.ends[mid], Math.max(this.buildMaxEnds(low, mid), this.buildMaxEnds(mid + 1, high)));
+
+        this.maxEnds[mid] = max;
+
+        return max;
+    }
+
+    private static class Segment
+    {
+        public final List<Clip> inside;
+        public final List<Clip> all;
+
+        public Segment(List<Clip> inside, List<Clip> all)
+        {
+            this.inside = inside;
+            this.all = all;
+        }
+    }
+}
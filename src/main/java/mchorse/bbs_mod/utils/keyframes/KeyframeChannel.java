@@ -1,8 +1,10 @@
 package mchorse.bbs_mod.utils.keyframes;
 
 import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.ListType;
 import mchorse.bbs_mod.data.types.MapType;
 import mchorse.bbs_mod.settings.values.base.BaseValue;
+import mchorse.bbs_mod.settings.values.base.BaseValueGroup;
 import mchorse.bbs_mod.settings.values.core.ValueList;
 import mchorse.bbs_mod.utils.CollectionUtils;
 import mchorse.bbs_mod.utils.interps.Interpolations;
@@ -17,11 +19,29 @@ import java.util.List;
  *
  * This class is responsible for storing individual keyframes and also
  * interpolating between them.
+ *
+ * Double channels can be made columnar (see {@link #columnar()}), in that
+ * case plain keyframes are stored in {@link KeyframeColumns} and they get
+ * unpacked into {@link Keyframe} objects only when something requests
+ * keyframes for editing (i.e. UI). Read only methods ({@link #size()},
+ * {@link #has(int)}, {@link #isEmpty()}, {@link #equals(Object)}, etc.)
+ * and shifting work on the columns directly, so they keep channels packed.
  */
 public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
 {
     private IKeyframeFactory<T> factory;
 
+    private boolean columnar;
+    private KeyframeColumns columns;
+    private Keyframe<T>[] flyweights;
+
+    /**
+     * Lower bound index found by last lookup, it's checked first by next
+     * lookups, so monotonic playback doesn't need a binary search
+     */
+    private int cursor;
+    private final KeyframeSegment<T> segment = new KeyframeSegment<>();
+
     public KeyframeChannel(String id, IKeyframeFactory<T> factory)
     {
         super(id);
@@ -34,35 +54,137 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
         return this.factory;
     }
 
+    /**
+     * Allow this channel to store plain double keyframes in columns
+     * instead of keyframe objects.
+     */
+    public KeyframeChannel<T> columnar()
+    {
+        if (this.factory == KeyframeFactories.DOUBLE)
+        {
+            this.columnar = true;
+
+            this.pack();
+        }
+
+        return this;
+    }
+
+    public boolean isPacked()
+    {
+        return this.columns != null;
+    }
+
+    /**
+     * Move keyframes into columns, if this channel is columnar and all
+     * of its keyframes don't have any extra data.
+     */
+    public void pack()
+    {
+        if (!this.columnar || this.columns != null || this.factory != KeyframeFactories.DOUBLE)
+        {
+            return;
+        }
+
+        for (Keyframe<T> keyframe : this.list)
+        {
+            if (!KeyframeColumns.canStore(keyframe))
+            {
+                return;
+            }
+        }
+
+        KeyframeColumns columns = new KeyframeColumns();
+
+        for (Keyframe<T> keyframe : this.list)
+        {
+            columns.add((Keyframe<Double>) keyframe);
+        }
+
+        columns.trim();
+
+        this.list.clear();
+        this.columns = columns;
+    }
+
+    /**
+     * Move keyframes from columns back into keyframe objects.
+     */
+    public void unpack()
+    {
+        if (this.columns == null)
+        {
+            return;
+        }
+
+        KeyframeColumns columns = this.columns;
+
+        this.columns = null;
+
+        for (int i = 0; i < columns.size(); i++)
+        {
+            Keyframe<Double> keyframe = new Keyframe<>(String.valueOf(i), KeyframeFactories.DOUBLE);
+
+            columns.fill(keyframe, i);
+            this.add((Keyframe<T>) keyframe);
+        }
+    }
+
     /* Read only */
 
     public double getLength()
     {
+        if (this.columns != null)
+        {
+            return (int) this.columns.getLastTick();
+        }
+
         return this.list.isEmpty() ? 0 : (int) this.list.get(this.list.size() - 1).getTick();
     }
 
     public boolean isEmpty()
     {
-        return this.list.isEmpty();
+        return this.columns != null ? this.columns.isEmpty() : this.list.isEmpty();
+    }
+
+    /**
+     * Amount of keyframes (without unpacking columnar channel)
+     */
+    public int size()
+    {
+        return this.columns != null ? this.columns.size() : this.list.size();
     }
 
     public List<Keyframe<T>> getKeyframes()
     {
+        this.unpack();
+
         return Collections.unmodifiableList(this.list);
     }
 
     public boolean has(int index)
     {
-        return index >= 0 && index < this.list.size();
+        return index >= 0 && index < this.size();
     }
 
+    /**
+     * Get keyframe at given index for editing (it unpacks columnar channels)
+     */
     public Keyframe<T> get(int index)
     {
+        this.unpack();
+
         return this.has(index) ? this.list.get(index) : null;
     }
 
+    /**
+     * Find a keyframe segment at given ticks, which keyframes can be edited
+     * (unlike {@link #findSegment(float)}, it unpacks columnar channels).
+     */
     public KeyframeSegment<T> find(float ticks)
     {
+        this.unpack();
+
         KeyframeSegment<T> segment = this.findSegment(ticks);
 
         if (segment == null)
@@ -88,23 +210,85 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
 
     public T interpolate(float ticks, T orDefault)
     {
-        KeyframeSegment<T> segment = this.findSegment(ticks);
+        if (this.columns != null)
+        {
+            return this.columns.isEmpty() ? orDefault : (T) Double.valueOf(this.columns.interpolate(ticks, 0D));
+        }
+
+        KeyframeSegment<T> segment = this.findSegment(ticks, this.segment);
 
         if (segment == null)
         {
             return orDefault;
         }
 
-        segment.setup(ticks);
-
         return segment.createInterpolated();
     }
 
+    public double interpolateDouble(float ticks)
+    {
+        return this.interpolateDouble(ticks, 0D);
+    }
+
+    /**
+     * Interpolate numeric channel's value at given ticks without boxing
+     * (for columnar channels) or allocating a segment.
+     */
+    public double interpolateDouble(float ticks, double orDefault)
+    {
+        if (this.columns != null)
+        {
+            return this.columns.interpolate(ticks, orDefault);
+        }
+
+        KeyframeSegment<T> segment = this.findSegment(ticks, this.segment);
+
+        if (segment == null)
+        {
+            return orDefault;
+        }
+
+        if (segment.isSame())
+        {
+            return this.factory.getY(segment.a.getValue());
+        }
+
+        return this.factory.getY(this.factory.interpolate(segment.preA, segment.a, segment.b, segment.postB, segment.a.getInterpolation(), segment.x));
+    }
+
+    public float interpolateFloat(float ticks)
+    {
+        return (float) this.interpolateDouble(ticks, 0D);
+    }
+
+    public float interpolateFloat(float ticks, float orDefault)
+    {
+        return (float) this.interpolateDouble(ticks, orDefault);
+    }
+
     /**
      * Find a keyframe segment at given ticks
+     *
+     * If the channel is packed, the segment's keyframes are temporary
+     * copies that will be overwritten by next call, so they shouldn't be
+     * edited or stored.
      */
     public KeyframeSegment<T> findSegment(float ticks)
     {
+        return this.findSegment(ticks, new KeyframeSegment<>());
+    }
+
+    /**
+     * Find a keyframe segment at given ticks, and fill given segment
+     * with it (so it can be reused). Returns null if there are no keyframes.
+     */
+    public KeyframeSegment<T> findSegment(float ticks, KeyframeSegment<T> segment)
+    {
+        if (this.columns != null)
+        {
+            return this.findColumnsSegment(ticks, segment);
+        }
+
         /* No keyframes, no values */
         if (this.list.isEmpty())
         {
@@ -112,24 +296,54 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
         }
 
         /* Check whether given ticks are outside keyframe channel's range */
-        Keyframe<T> prev = this.list.get(0);
         int size = this.list.size();
 
-        if (size == 1 || ticks < prev.getTick())
+        if (size == 1 || ticks < this.list.get(0).getTick())
         {
-            return new KeyframeSegment<>(prev, prev);
+            return this.fillSegment(segment, 0, 0, ticks);
         }
 
-        Keyframe<T> last = this.list.get(size - 1);
+        if (ticks >= this.list.get(size - 1).getTick())
+        {
+            return this.fillSegment(segment, size - 1, size - 1, ticks);
+        }
 
-        if (ticks >= last.getTick())
+        int low = this.searchCursor(ticks);
+
+        if (this.list.get(low).getTick() == Math.floor(ticks) && low < size - 1)
         {
-            return new KeyframeSegment<>(last, last);
+            low += 1;
         }
 
-        /* Use binary search to find the proper segment */
+        return this.fillSegment(segment, low - 1 >= 0 ? low - 1 : low, low, ticks);
+    }
+
+    private KeyframeSegment<T> fillSegment(KeyframeSegment<T> segment, int a, int b, float ticks)
+    {
+        segment.a = this.list.get(a);
+        segment.b = this.list.get(b);
+        segment.preA = a - 1 >= 0 ? this.list.get(a - 1) : segment.a;
+        segment.postB = a + 2 < this.list.size() ? this.list.get(a + 2) : segment.b;
+        segment.setup(ticks);
+
+        return segment;
+    }
+
+    /**
+     * Lower bound search (first keyframe which tick is not less than given
+     * ticks). It checks the last found index and its neighbours first, and
+     * then falls back to binary search.
+     */
+    private int searchCursor(float ticks)
+    {
+        int cursor = this.cursor;
+
+        if (this.isLowerBound(cursor, ticks)) return cursor;
+        if (this.isLowerBound(cursor + 1, ticks)) return this.cursor = cursor + 1;
+        if (this.isLowerBound(cursor - 1, ticks)) return this.cursor = cursor - 1;
+
         int low = 0;
-        int high = size - 1;
+        int high = this.list.size() - 1;
 
         while (low <= high)
         {
@@ -145,33 +359,76 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
             }
         }
 
-        Keyframe<T> b = this.list.get(low);
+        return this.cursor = low;
+    }
+
+    private boolean isLowerBound(int index, float ticks)
+    {
+        return index >= 0 && index < this.list.size()
+            && this.list.get(index).getTick() >= ticks
+            && (index == 0 || this.list.get(index - 1).getTick() < ticks);
+    }
 
-        if (b.getTick() == Math.floor(ticks) && low < size - 1)
+    private KeyframeSegment<T> findColumnsSegment(float ticks, KeyframeSegment<T> segment)
+    {
+        if (this.columns.isEmpty())
         {
-            low += 1;
-            b = this.list.get(low);
+            return null;
         }
 
-        Keyframe<T> a = low - 1 >= 0 ? this.list.get(low - 1) : b;
-        KeyframeSegment<T> segment = new KeyframeSegment<>(a, b);
+        if (this.flyweights == null)
+        {
+            this.flyweights = new Keyframe[4];
+
+            for (int i = 0; i < this.flyweights.length; i++)
+            {
+                this.flyweights[i] = new Keyframe<>("", this.factory);
+            }
+        }
 
+        int size = this.columns.size();
+        int b = this.columns.findB(ticks);
+        int a = this.columns.findA(ticks, b);
+        int preA = a - 1 >= 0 ? a - 1 : a;
+        int postB = a + 2 < size ? a + 2 : b;
+
+        segment.a = this.fillFlyweight(0, a);
+        segment.b = b == a ? segment.a : this.fillFlyweight(1, b);
+        segment.preA = preA == a ? segment.a : this.fillFlyweight(2, preA);
+        segment.postB = postB == b ? segment.b : this.fillFlyweight(3, postB);
         segment.setup(ticks);
 
         return segment;
     }
 
+    private Keyframe<T> fillFlyweight(int slot, int index)
+    {
+        Keyframe<T> keyframe = this.flyweights[slot];
+
+        this.columns.fill((Keyframe<Double>) keyframe, index);
+
+        return keyframe;
+    }
+
     /* Write only */
 
     public void removeAll()
     {
         this.preNotify();
+
+        if (this.columns != null)
+        {
+            this.columns.clear();
+        }
+
         this.list.clear();
         this.postNotify();
     }
 
     public void remove(int index)
     {
+        this.unpack();
+
         if (index < 0 || index > this.list.size() - 1)
         {
             return;
@@ -185,6 +442,8 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
 
     public void insertSpace(int where, int ticks)
     {
+        this.unpack();
+
         KeyframeSegment<T> segment = this.findSegment(where);
 
         if (segment == null || where > segment.b.getTick())
@@ -232,54 +491,65 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
     {
         this.preNotify();
 
-        Keyframe<T> prev;
+        int index = this.insertSilently(tick, value);
 
-        if (!this.list.isEmpty())
-        {
-            prev = this.list.get(0);
+        this.postNotify();
 
-            if (tick < prev.getTick())
-            {
-                this.add(0, new Keyframe<>("", this.factory, tick, value));
-                this.sort();
+        return index;
+    }
 
-                this.postNotify();
+    /**
+     * Same as {@link #insert(float, Object)}, but without notifying. It's
+     * meant for batches, i.e. recording a tick into many channels where
+     * the common parent value gets notified only once.
+     */
+    public int insertSilently(float tick, T value)
+    {
+        if (this.columns != null && !(value instanceof Double))
+        {
+            this.unpack();
+        }
 
-                return 0;
-            }
+        if (this.columns != null)
+        {
+            return this.columns.insert(tick, (Double) value, Interpolations.LINEAR);
         }
 
-        prev = null;
-        int index = 0;
+        int size = this.list.size();
 
-        for (Keyframe<T> frame : this.list)
+        /* Appending to the end is the most common case when recording */
+        if (size == 0 || tick > this.list.get(size - 1).getTick())
         {
-            if (frame.getTick() == tick)
-            {
-                frame.setValue(value);
-                this.postNotify();
+            this.add(new Keyframe<>(String.valueOf(size), this.factory, tick, value));
 
-                return index;
-            }
+            return size;
+        }
 
-            if (prev != null && tick > prev.getTick() && tick < frame.getTick())
-            {
-                break;
-            }
+        int index = this.searchCursor(tick);
+        Keyframe<T> keyframe = this.list.get(index);
 
-            index++;
-            prev = frame;
+        if (keyframe.getTick() == tick)
+        {
+            keyframe.setValue(value);
+
+            return index;
         }
 
-        this.add(index, new Keyframe<T>("", this.factory, tick, value));
-        this.sort();
-        this.postNotify();
+        this.add(index, new Keyframe<>("", this.factory, tick, value));
+        this.sync();
 
         return index;
     }
 
     public void sort()
     {
+        if (this.columns != null)
+        {
+            this.columns.sort();
+
+            return;
+        }
+
         this.list.sort((a, b) -> (int) (a.getTick() - b.getTick()));
 
         this.sync();
@@ -287,6 +557,15 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
 
     public void simplify()
     {
+        if (this.columns != null)
+        {
+            this.preNotify();
+            this.columns.simplify();
+            this.postNotify();
+
+            return;
+        }
+
         if (this.list.size() <= 2)
         {
             return;
@@ -319,16 +598,94 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
         this.postNotify();
     }
 
+    /**
+     * Lossy reduction of linearly interpolated numeric keyframes, it
+     * removes keyframes that can be restored by interpolating remaining
+     * keyframes within given tolerance (see {@link KeyframeReducer}).
+     *
+     * Returns how many keyframes were removed.
+     */
+    public int reduce(double tolerance)
+    {
+        if (this.columns != null)
+        {
+            this.preNotify();
+
+            int removed = this.columns.reduce(tolerance);
+
+            this.postNotify();
+
+            return removed;
+        }
+
+        int size = this.list.size();
+
+        if (size <= 2 || !KeyframeFactories.isNumeric(this.factory))
+        {
+            return 0;
+        }
+
+        float[] ticks = new float[size];
+        double[] values = new double[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            Keyframe<T> keyframe = this.list.get(i);
+
+            if (keyframe.getInterpolation().getInterp() != Interpolations.LINEAR || keyframe.getDuration() != 0F)
+            {
+                return 0;
+            }
+
+            ticks[i] = keyframe.getTick();
+            values[i] = this.factory.getY(keyframe.getValue());
+        }
+
+        boolean[] keep = KeyframeReducer.reduce(ticks, values, size, tolerance);
+
+        this.preNotify();
+
+        int w = 0;
+
+        for (int i = 0; i < size; i++)
+        {
+            if (keep[i])
+            {
+                this.list.set(w, this.list.get(i));
+                w += 1;
+            }
+        }
+
+        this.list.subList(w, size).clear();
+        this.sync();
+        this.postNotify();
+
+        return size - this.list.size();
+    }
+
     public void moveX(float offset)
     {
         this.preNotify();
+        this.shift(offset);
+        this.postNotify();
+    }
+
+    /**
+     * Same as {@link #moveX(float)}, but without notifying
+     */
+    public void shift(float offset)
+    {
+        if (this.columns != null)
+        {
+            this.columns.shift(offset);
+
+            return;
+        }
 
         for (Keyframe<T> keyframe : this.list)
         {
             keyframe.setTick(keyframe.getTick() + offset);
         }
-
-        this.postNotify();
     }
 
     @Override
@@ -337,12 +694,118 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
         return new Keyframe<>(id, this.factory);
     }
 
+    /* Value list overrides that need keyframe objects */
+
+    @Override
+    public List<Keyframe<T>> getList()
+    {
+        this.unpack();
+
+        return super.getList();
+    }
+
+    @Override
+    public List<BaseValue> getAll()
+    {
+        this.unpack();
+
+        return super.getAll();
+    }
+
+    @Override
+    public List<Keyframe<T>> getAllTyped()
+    {
+        this.unpack();
+
+        return super.getAllTyped();
+    }
+
+    @Override
+    public BaseValue get(String key)
+    {
+        this.unpack();
+
+        return super.get(key);
+    }
+
+    @Override
+    public void add(Keyframe<T> value)
+    {
+        this.unpack();
+
+        super.add(value);
+    }
+
+    @Override
+    public void add(int index, Keyframe<T> value)
+    {
+        this.unpack();
+
+        super.add(index, value);
+    }
+
+    @Override
+    public void copy(BaseValueGroup group)
+    {
+        this.columns = null;
+
+        super.copy(group);
+    }
+
+    @Override
+    public void sync()
+    {
+        if (this.columns == null)
+        {
+            super.sync();
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj instanceof KeyframeChannel<?> channel && obj.getClass() == this.getClass() && (this.columns != null || channel.columns != null))
+        {
+            if (this.columns != null && channel.columns != null)
+            {
+                return this.columns.contentEquals(channel.columns);
+            }
+
+            int size = this.size();
+
+            if (size != channel.size())
+            {
+                return false;
+            }
+
+            /* One of channels is packed, its keyframes get compared through
+             * a temporary keyframe, so neither of them gets unpacked */
+            KeyframeChannel<?> packed = this.columns != null ? this : channel;
+            KeyframeChannel<?> unpacked = packed == this ? channel : this;
+            Keyframe<Double> keyframe = new Keyframe<>("", KeyframeFactories.DOUBLE);
+
+            for (int i = 0; i < size; i++)
+            {
+                packed.columns.fill(keyframe, i);
+
+                if (!keyframe.equals(unpacked.list.get(i)))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        return super.equals(obj);
+    }
+
     @Override
     public BaseType toData()
     {
         MapType data = new MapType();
 
-        data.put("keyframes", super.toData());
+        data.put("keyframes", this.columns != null ? this.columns.toData() : super.toData());
         data.putString("type", CollectionUtils.getKey(KeyframeFactories.FACTORIES, this.factory));
 
         return data;
@@ -360,16 +823,63 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
         IKeyframeFactory<T> factory = KeyframeFactories.FACTORIES.get(map.getString("type"));
 
         this.factory = factory;
+        this.columns = null;
+
+        ListType keyframes = map.getList("keyframes");
+
+        if (this.fromColumnsData(keyframes))
+        {
+            return;
+        }
 
-        super.fromData(map.getList("keyframes"));
+        super.fromData(keyframes);
 
         this.sort();
     }
 
+    private boolean fromColumnsData(ListType keyframes)
+    {
+        if (!this.columnar || this.factory != KeyframeFactories.DOUBLE)
+        {
+            return false;
+        }
+
+        for (BaseType keyframe : keyframes)
+        {
+            if (!KeyframeColumns.canStore(keyframe))
+            {
+                return false;
+            }
+        }
+
+        KeyframeColumns columns = new KeyframeColumns();
+
+        for (BaseType keyframe : keyframes)
+        {
+            columns.add(keyframe);
+        }
+
+        columns.sort();
+        columns.trim();
+
+        this.list.clear();
+        this.columns = columns;
+
+        return true;
+    }
+
     public void copyKeyframes(KeyframeChannel<T> channel)
     {
+        this.columns = null;
         this.list.clear();
 
+        if (channel.columns != null && this.columnar && this.factory == channel.factory)
+        {
+            this.columns = channel.columns.copy();
+
+            return;
+        }
+
         for (Keyframe<T> keyframe : channel.getKeyframes())
         {
             Keyframe<T> value = new Keyframe<>(keyframe.getId(), keyframe.getFactory());
@@ -388,6 +898,7 @@ public class KeyframeChannel <T> extends ValueList<Keyframe<T>>
             return;
         }
 
+        this.unpack();
         this.preNotify();
 
         double start = tick + ((Keyframe) channel.getKeyframes().get(0)).getTick();
@@ -0,0 +1,79 @@
+package mchorse.bbs_mod.utils.keyframes;
+
+import com.ibm.icu.impl.Assert;
+import mchorse.bbs_mod.utils.keyframes.factories.KeyframeFactories;
+
+/**
+ * Checks that columnar keyframe channels stay packed after they were
+ * loaded and read (compared, shifted, copied, etc.)
+ */
+public class KeyframeChannelTest
+{
+    public static void main(String[] args)
+    {
+        testLoadedChannelStaysPacked();
+        testPackedEqualsUnpacked();
+    }
+
+    public static void testLoadedChannelStaysPacked()
+    {
+        KeyframeChannel<Double> a = load(createChannel());
+        KeyframeChannel<Double> b = load(createChannel());
+
+        Assert.assrt("Loaded channel isn't packed", a.isPacked() && b.isPacked());
+        Assert.assrt("Loaded channels aren't equal", a.equals(b));
+        Assert.assrt("Index check failed", a.has(99) && !a.has(100) && !a.isEmpty() && a.size() == 100);
+
+        a.shift(10F);
+        b.shift(10F);
+
+        Assert.assrt("Shifted channels aren't equal", a.equals(b));
+
+        KeyframeChannel<Double> copy = new KeyframeChannel<Double>("x", KeyframeFactories.DOUBLE).columnar();
+
+        copy.copyKeyframes(a);
+
+        Assert.assrt("Copied channels aren't equal", copy.equals(a));
+        Assert.assrt("Channel got unpacked by reading", a.isPacked() && b.isPacked() && copy.isPacked());
+        Assert.assrt("Packed interpolation is wrong", Math.abs(a.interpolateDouble(15.5F) - 5.5D) < 0.0001D);
+    }
+
+    public static void testPackedEqualsUnpacked()
+    {
+        KeyframeChannel<Double> packed = load(createChannel());
+        KeyframeChannel<Double> unpacked = createChannel();
+
+        Assert.assrt("Packed and unpacked channels aren't equal", packed.equals(unpacked) && unpacked.equals(packed));
+        Assert.assrt("Channel got unpacked by comparison", packed.isPacked());
+
+        unpacked.get(50).setValue(-1D);
+
+        Assert.assrt("Different channels are equal", !packed.equals(unpacked) && !unpacked.equals(packed));
+    }
+
+    private static KeyframeChannel<Double> createChannel()
+    {
+        KeyframeChannel<Double> channel = new KeyframeChannel<>("x", KeyframeFactories.DOUBLE);
+
+        for (int i = 0; i < 100; i++)
+        {
+            channel.insert(i, (double) i);
+        }
+
+        return channel;
+    }
+
+    private static KeyframeChannel<Double> load(KeyframeChannel<Double> channel)
+    {
+        KeyframeChannel<Double> loaded = new KeyframeChannel<Double>("x", KeyframeFactories.DOUBLE).columnar();
+
+        loaded.fromData(channel.toData());
+
+        if (!loaded.isPacked())
+        {
+            Assert.fail("Channel wasn't loaded into columns");
+        }
+
+        return loaded;
+    }
+}
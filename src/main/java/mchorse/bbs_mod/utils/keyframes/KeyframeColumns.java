@@ -0,0 +1,556 @@
+package mchorse.bbs_mod.utils.keyframes;
+
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.DoubleType;
+import mchorse.bbs_mod.data.types.ListType;
+import mchorse.bbs_mod.data.types.MapType;
+import mchorse.bbs_mod.data.types.StringType;
+import mchorse.bbs_mod.utils.CollectionUtils;
+import mchorse.bbs_mod.utils.MathUtils;
+import mchorse.bbs_mod.utils.interps.IInterp;
+import mchorse.bbs_mod.utils.interps.Interpolation;
+import mchorse.bbs_mod.utils.interps.Interpolations;
+import mchorse.bbs_mod.utils.keyframes.factories.KeyframeFactories;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keyframe columns
+ *
+ * Columnar storage of plain numeric keyframes (parallel arrays of ticks,
+ * values and interpolation IDs). It's used by {@link KeyframeChannel} to
+ * store long recorded channels without allocating a {@link Keyframe} object
+ * (and its boxed value, interpolation and handles) per tick.
+ *
+ * Only keyframes that don't have any extra data (custom Bezier handles,
+ * forced duration, color, shape or easing arguments) can be stored in
+ * columns.
+ */
+public class KeyframeColumns
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private float[] ticks = new float[INITIAL_CAPACITY];
+    private double[] values = new double[INITIAL_CAPACITY];
+    private byte[] interps = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Lower bound index found by last lookup, it's checked first by next
+     * lookups as playback is mostly monotonic
+     */
+    private int cursor;
+
+    /**
+     * Interpolations palette, packed interpolation IDs are indices into
+     * this list
+     */
+    private final List<IInterp> palette = new ArrayList<>();
+
+    public static boolean canStore(Keyframe<?> keyframe)
+    {
+        Interpolation interp = keyframe.getInterpolation();
+
+        return keyframe.getFactory() == KeyframeFactories.DOUBLE
+            && keyframe.getValue() instanceof Double
+            && keyframe.lx == 5F && keyframe.ly == 0F
+            && keyframe.rx == 5F && keyframe.ry == 0F
+            && keyframe.getDuration() == 0F
+            && keyframe.getColor() == null
+            && keyframe.getShape() == KeyframeShape.SQUARE
+            && interp.getV1() == 0D && interp.getV2() == 0D
+            && interp.getV3() == 0D && interp.getV4() == 0D;
+    }
+
+    public static boolean canStore(BaseType data)
+    {
+        if (!data.isMap())
+        {
+            return false;
+        }
+
+        MapType map = data.asMap();
+
+        for (String key : map.keys())
+        {
+            if (key.equals("tick") || key.equals("value"))
+            {
+                continue;
+            }
+
+            if (key.equals("interp") && map.get(key).isString())
+            {
+                continue;
+            }
+
+            return false;
+        }
+
+        return map.has("value") && map.get("value").isNumeric();
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    public float getTick(int index)
+    {
+        return this.ticks[index];
+    }
+
+    public double getValue(int index)
+    {
+        return this.values[index];
+    }
+
+    public IInterp getInterp(int index)
+    {
+        return this.palette.get(this.interps[index] & 0xFF);
+    }
+
+    public float getLastTick()
+    {
+        return this.size == 0 ? 0F : this.ticks[this.size - 1];
+    }
+
+    public KeyframeColumns copy()
+    {
+        KeyframeColumns columns = new KeyframeColumns();
+
+        columns.ticks = Arrays.copyOf(this.ticks, Math.max(this.size, INITIAL_CAPACITY));
+        columns.values = Arrays.copyOf(this.values, columns.ticks.length);
+        columns.interps = Arrays.copyOf(this.interps, columns.ticks.length);
+        columns.size = this.size;
+        columns.palette.addAll(this.palette);
+
+        return columns;
+    }
+
+    /**
+     * Whether both columns have the same keyframes (ticks, values and
+     * interpolations, same as {@link Keyframe#equals(Object)} for
+     * keyframes that can be stored in columns)
+     */
+    public boolean contentEquals(KeyframeColumns columns)
+    {
+        if (this.size != columns.size)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < this.size; i++)
+        {
+            if (this.ticks[i] != columns.ticks[i]
+                || Double.doubleToLongBits(this.values[i]) != Double.doubleToLongBits(columns.values[i])
+                || this.getInterp(i) != columns.getInterp(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public void shift(float offset)
+    {
+        for (int i = 0; i < this.size; i++)
+        {
+            this.ticks[i] += offset;
+        }
+    }
+
+    public void clear()
+    {
+        this.size = 0;
+        this.palette.clear();
+    }
+
+    public void trim()
+    {
+        int capacity = Math.max(this.size, INITIAL_CAPACITY);
+
+        if (capacity < this.ticks.length)
+        {
+            this.ticks = Arrays.copyOf(this.ticks, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.interps = Arrays.copyOf(this.interps, capacity);
+        }
+    }
+
+    /**
+     * Insert given value at given tick, or overwrite the value of the
+     * keyframe that is already at that tick. Returns the index of the
+     * keyframe.
+     */
+    public int insert(float tick, double value, IInterp interp)
+    {
+        /* Appending to the end is the most common case when recording */
+        if (this.size == 0 || tick > this.ticks[this.size - 1])
+        {
+            this.insertAt(this.size, tick, value, interp);
+
+            return this.size - 1;
+        }
+
+        int index = this.search(tick);
+
+        if (index < this.size && this.ticks[index] == tick)
+        {
+            this.values[index] = value;
+
+            return index;
+        }
+
+        this.insertAt(index, tick, value, interp);
+
+        return index;
+    }
+
+    private void insertAt(int index, float tick, double value, IInterp interp)
+    {
+        byte id = this.getInterpId(interp);
+
+        this.ensureCapacity(this.size + 1);
+
+        if (index < this.size)
+        {
+            int length = this.size - index;
+
+            System.arraycopy(this.ticks, index, this.ticks, index + 1, length);
+            System.arraycopy(this.values, index, this.values, index + 1, length);
+            System.arraycopy(this.interps, index, this.interps, index + 1, length);
+        }
+
+        this.ticks[index] = tick;
+        this.values[index] = value;
+        this.interps[index] = id;
+        this.size += 1;
+    }
+
+    /**
+     * Lower bound binary search, i.e. first index which tick is not less
+     * than given tick (or size, if there is none).
+     */
+    public int search(float tick)
+    {
+        int low = 0;
+        int high = this.size - 1;
+
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+
+            if (this.ticks[mid] < tick)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Same as {@link #search(float)}, but it checks the last found index
+     * and its neighbours first, and only then falls back to binary search.
+     */
+    public int searchCursor(float tick)
+    {
+        int cursor = this.cursor;
+
+        if (this.isLowerBound(cursor, tick)) return cursor;
+        if (this.isLowerBound(cursor + 1, tick)) return this.cursor = cursor + 1;
+        if (this.isLowerBound(cursor - 1, tick)) return this.cursor = cursor - 1;
+
+        return this.cursor = this.search(tick);
+    }
+
+    private boolean isLowerBound(int index, float tick)
+    {
+        return index >= 0 && index < this.size
+            && this.ticks[index] >= tick
+            && (index == 0 || this.ticks[index - 1] < tick);
+    }
+
+    /**
+     * Find the index of the segment's second keyframe at given ticks. The
+     * first keyframe of the segment is at the returned index minus one,
+     * unless the returned index is 0, or ticks are out of range (in that
+     * case both keyframes are the same).
+     *
+     * This logic has to match {@link KeyframeChannel#findSegment(float)}.
+     */
+    public int findB(float ticks)
+    {
+        if (this.size == 1 || ticks < this.ticks[0])
+        {
+            return 0;
+        }
+
+        int last = this.size - 1;
+
+        if (ticks >= this.ticks[last])
+        {
+            return last;
+        }
+
+        int low = this.searchCursor(ticks);
+
+        if (this.ticks[low] == Math.floor(ticks) && low < last)
+        {
+            low += 1;
+        }
+
+        return low;
+    }
+
+    public int findA(float ticks, int b)
+    {
+        if (this.size == 1 || ticks < this.ticks[0] || ticks >= this.ticks[this.size - 1])
+        {
+            return b;
+        }
+
+        return b - 1 >= 0 ? b - 1 : b;
+    }
+
+    public double interpolate(float ticks, double orDefault)
+    {
+        if (this.size == 0)
+        {
+            return orDefault;
+        }
+
+        int b = this.findB(ticks);
+        int a = this.findA(ticks, b);
+
+        return this.interpolate(a, b, ticks);
+    }
+
+    /**
+     * Interpolate between keyframes at indices a and b. It replicates
+     * {@link KeyframeSegment#createInterpolated()} and
+     * {@link mchorse.bbs_mod.utils.keyframes.factories.DoubleKeyframeFactory}.
+     */
+    public double interpolate(int a, int b, float ticks)
+    {
+        if (a == b)
+        {
+            return this.values[a];
+        }
+
+        float aTick = this.ticks[a];
+        float bTick = this.ticks[b];
+        float duration = bTick - aTick;
+        float x = MathUtils.clamp(duration == 0 ? 0F : (ticks - aTick) / duration, 0F, 1F);
+        IInterp interp = this.getInterp(a);
+
+        if (interp.has(Interpolations.BEZIER))
+        {
+            return BezierUtils.get(this.values[a], this.values[b], aTick, bTick, 5F, 0F, 5F, 0F, x);
+        }
+
+        double preA = this.values[a - 1 >= 0 ? a - 1 : a];
+        double postB = this.values[a + 2 < this.size ? a + 2 : b];
+
+        return interp.interpolate(IInterp.context.set(preA, this.values[a], this.values[b], postB, x));
+    }
+
+    /**
+     * Fill given keyframe with data at given index.
+     */
+    public void fill(Keyframe<Double> keyframe, int index)
+    {
+        keyframe.setTick(this.ticks[index]);
+        keyframe.setValue(this.values[index]);
+        keyframe.getInterpolation().setInterp(this.getInterp(index));
+    }
+
+    public void add(Keyframe<Double> keyframe)
+    {
+        this.insertAt(this.size, keyframe.getTick(), keyframe.getValue(), keyframe.getInterpolation().getInterp());
+    }
+
+    public void add(BaseType data)
+    {
+        MapType map = data.asMap();
+        IInterp interp = map.has("interp") ? Interpolations.MAP.getOrDefault(map.getString("interp"), Interpolations.LINEAR) : Interpolations.LINEAR;
+
+        this.insertAt(this.size, map.getFloat("tick"), map.get("value").asNumeric().doubleValue(), interp);
+    }
+
+    public void sort()
+    {
+        /* Insertion sort, as columns are almost always sorted already */
+        for (int i = 1; i < this.size; i++)
+        {
+            float tick = this.ticks[i];
+            double value = this.values[i];
+            byte interp = this.interps[i];
+            int j = i - 1;
+
+            while (j >= 0 && this.ticks[j] > tick)
+            {
+                this.ticks[j + 1] = this.ticks[j];
+                this.values[j + 1] = this.values[j];
+                this.interps[j + 1] = this.interps[j];
+                j -= 1;
+            }
+
+            this.ticks[j + 1] = tick;
+            this.values[j + 1] = value;
+            this.interps[j + 1] = interp;
+        }
+    }
+
+    /**
+     * Remove keyframes which value is the same as their neighbours', same
+     * logic as {@link KeyframeChannel#simplify()}.
+     */
+    public void simplify()
+    {
+        if (this.size <= 2)
+        {
+            return;
+        }
+
+        int w = 1;
+
+        for (int i = 1; i < this.size - 1; i++)
+        {
+            if (this.same(i, w - 1) && this.same(i, i + 1))
+            {
+                continue;
+            }
+
+            this.move(i, w);
+            w += 1;
+        }
+
+        this.move(this.size - 1, w);
+        this.size = w + 1;
+
+        if (this.same(this.size - 1, this.size - 2))
+        {
+            this.size -= 1;
+        }
+    }
+
+    public boolean isLinear()
+    {
+        for (int i = 0; i < this.size; i++)
+        {
+            if (this.getInterp(i) != Interpolations.LINEAR)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Remove keyframes that can be restored by linear interpolation within
+     * given tolerance (see {@link KeyframeReducer}). Returns how many
+     * keyframes were removed.
+     */
+    public int reduce(double tolerance)
+    {
+        if (this.size <= 2 || !this.isLinear())
+        {
+            return 0;
+        }
+
+        boolean[] keep = KeyframeReducer.reduce(this.ticks, this.values, this.size, tolerance);
+        int w = 0;
+
+        for (int i = 0; i < this.size; i++)
+        {
+            if (keep[i])
+            {
+                this.move(i, w);
+                w += 1;
+            }
+        }
+
+        int removed = this.size - w;
+
+        this.size = w;
+
+        return removed;
+    }
+
+    private boolean same(int a, int b)
+    {
+        return Double.doubleToLongBits(this.values[a]) == Double.doubleToLongBits(this.values[b]);
+    }
+
+    private void move(int from, int to)
+    {
+        if (from != to)
+        {
+            this.ticks[to] = this.ticks[from];
+            this.values[to] = this.values[from];
+            this.interps[to] = this.interps[from];
+        }
+    }
+
+    public ListType toData()
+    {
+        ListType list = new ListType();
+
+        for (int i = 0; i < this.size; i++)
+        {
+            MapType data = new MapType();
+            IInterp interp = this.getInterp(i);
+
+            data.putFloat("tick", this.ticks[i]);
+            data.put("value", new DoubleType(this.values[i]));
+
+            if (interp != Interpolations.LINEAR) data.put("interp", new StringType(CollectionUtils.getKey(Interpolations.MAP, interp)));
+
+            list.add(data);
+        }
+
+        return list;
+    }
+
+    private byte getInterpId(IInterp interp)
+    {
+        int index = this.palette.indexOf(interp);
+
+        if (index < 0)
+        {
+            index = this.palette.size();
+
+            this.palette.add(interp);
+        }
+
+        return (byte) index;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= this.ticks.length)
+        {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, this.ticks.length + (this.ticks.length >> 1));
+
+        this.ticks = Arrays.copyOf(this.ticks, newCapacity);
+        this.values = Arrays.copyOf(this.values, newCapacity);
+        this.interps = Arrays.copyOf(this.interps, newCapacity);
+    }
+}
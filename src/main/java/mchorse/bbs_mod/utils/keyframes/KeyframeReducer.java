@@ -0,0 +1,92 @@
+package mchorse.bbs_mod.utils.keyframes;
+
+/**
+ * Keyframe reducer
+ *
+ * Lossy reduction of linearly interpolated numeric keyframes using
+ * Ramer-Douglas-Peucker algorithm. The error is measured vertically (i.e.
+ * the difference of values at the same tick), so every removed keyframe
+ * is guaranteed to be restored by linear interpolation of the remaining
+ * keyframes within given tolerance.
+ */
+public class KeyframeReducer
+{
+    /**
+     * Returns an array of flags which points should be kept. First and
+     * last points are always kept.
+     */
+    public static boolean[] reduce(float[] ticks, double[] values, int size, double tolerance)
+    {
+        boolean[] keep = new boolean[size];
+
+        if (size <= 2)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                keep[i] = true;
+            }
+
+            return keep;
+        }
+
+        keep[0] = keep[size - 1] = true;
+
+        /* Explicit stack of ranges instead of recursion, as recordings can
+         * be tens of thousands of keyframes long */
+        int[] stack = new int[64];
+        int pointer = 0;
+
+        stack[pointer++] = 0;
+        stack[pointer++] = size - 1;
+
+        while (pointer > 0)
+        {
+            int last = stack[--pointer];
+            int first = stack[--pointer];
+
+            if (last - first < 2)
+            {
+                continue;
+            }
+
+            float firstTick = ticks[first];
+            float duration = ticks[last] - firstTick;
+            double firstValue = values[first];
+            double delta = values[last] - firstValue;
+            double maxError = -1;
+            int index = -1;
+
+            for (int i = first + 1; i < last; i++)
+            {
+                double x = duration == 0 ? 0 : (ticks[i] - firstTick) / duration;
+                double error = Math.abs(values[i] - (firstValue + delta * x));
+
+                if (error > maxError)
+                {
+                    maxError = error;
+                    index = i;
+                }
+            }
+
+            if (maxError > tolerance)
+            {
+                keep[index] = true;
+
+                if (pointer + 4 > stack.length)
+                {
+                    int[] newStack = new int[stack.length * 2];
+
+                    System.arraycopy(stack, 0, newStack, 0, stack.length);
+                    stack = newStack;
+                }
+
+                stack[pointer++] = first;
+                stack[pointer++] = index;
+                stack[pointer++] = index;
+                stack[pointer++] = last;
+            }
+        }
+
+        return keep;
+    }
+}
@@ -23,6 +23,12 @@ public abstract class BaseManager <T extends ValueGroup> extends FolderManager<T
     protected IDataStorage storage = new JSONLikeStorage();
     protected boolean backUps;
 
+    /**
+     * Optional cache of loaded data, when set, repeated loads of the same
+     * ID won't read and decode the file again.
+     */
+    protected ManagerCache cache;
+
     public BaseManager(Supplier<File> folder)
     {
         super(folder);
@@ -40,12 +46,29 @@ public abstract class BaseManager <T extends ValueGroup> extends FolderManager<T
 
     protected abstract T createData(String id, MapType mapType);
 
+    public ManagerCache getCache()
+    {
+        return this.cache;
+    }
+
     @Override
     public T load(String id)
     {
         try
         {
-            MapType mapType = this.storage.load(this.getFile(id));
+            File file = this.getFile(id);
+            MapType mapType = this.cache == null ? null : this.cache.get(id, file);
+
+            if (mapType == null)
+            {
+                mapType = this.storage.load(file);
+
+                if (this.cache != null)
+                {
+                    this.cache.put(id, file, (MapType) mapType.copy());
+                }
+            }
+
             T data = this.create(id, mapType);
 
             return data;
@@ -99,6 +122,11 @@ public abstract class BaseManager <T extends ValueGroup> extends FolderManager<T
         {
             this.storage.save(file, data);
 
+            if (this.cache != null)
+            {
+                this.cache.put(id, file, (MapType) data.copy());
+            }
+
             return true;
         }
         catch (Exception e)
@@ -106,6 +134,57 @@ public abstract class BaseManager <T extends ValueGroup> extends FolderManager<T
             e.printStackTrace();
         }
 
+        if (this.cache != null)
+        {
+            this.cache.remove(id);
+        }
+
         return false;
     }
+
+    @Override
+    public boolean rename(String from, String to)
+    {
+        if (this.cache != null)
+        {
+            this.cache.remove(from);
+            this.cache.remove(to);
+        }
+
+        return super.rename(from, to);
+    }
+
+    @Override
+    public boolean delete(String name)
+    {
+        if (this.cache != null)
+        {
+            this.cache.remove(name);
+        }
+
+        return super.delete(name);
+    }
+
+    @Override
+    public boolean renameFolder(String from, String to)
+    {
+        if (this.cache != null)
+        {
+            this.cache.removeFolder(from.endsWith("/") ? from : from + "/");
+            this.cache.removeFolder(to.endsWith("/") ? to : to + "/");
+        }
+
+        return super.renameFolder(from, to);
+    }
+
+    @Override
+    public boolean deleteFolder(String path)
+    {
+        if (this.cache != null)
+        {
+            this.cache.removeFolder(path.endsWith("/") ? path : path + "/");
+        }
+
+        return super.deleteFolder(path);
+    }
 }
\ No newline at end of file
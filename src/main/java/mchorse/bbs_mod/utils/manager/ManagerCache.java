@@ -0,0 +1,237 @@
+package mchorse.bbs_mod.utils.manager;
+
+import mchorse.bbs_mod.data.types.BaseType;
+import mchorse.bbs_mod.data.types.ByteArrayType;
+import mchorse.bbs_mod.data.types.IntArrayType;
+import mchorse.bbs_mod.data.types.ListType;
+import mchorse.bbs_mod.data.types.MapType;
+import mchorse.bbs_mod.data.types.ShortArrayType;
+import mchorse.bbs_mod.data.types.StringType;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Manager cache
+ *
+ * Bounded LRU cache of decoded data which sits in front of manager's
+ * storage, so loading the same data repeatedly doesn't have to read
+ * and decode the file every time. The limit is in bytes of heap memory
+ * taken by decoded data: the size of every entry is estimated by walking
+ * its data tree (see {@link #estimateSize(BaseType)}), and entries get
+ * evicted once the total size goes over the limit.
+ *
+ * Cached data is never handed out directly, only its copies, so that
+ * the objects created out of it can be freely modified. Every entry
+ * also remembers file's modification time and size, so files changed
+ * outside of the manager are picked up on the next load.
+ */
+public class ManagerCache
+{
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private final long limit;
+    private long size;
+
+    private long hits;
+    private long misses;
+
+    public ManagerCache(long limit)
+    {
+        this.limit = limit;
+    }
+
+    public synchronized long getHits()
+    {
+        return this.hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return this.misses;
+    }
+
+    public synchronized long getSize()
+    {
+        return this.size;
+    }
+
+    public synchronized int getCount()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Get a copy of cached data for given ID, or null if it isn't cached
+     * or the file was modified since it was cached.
+     */
+    public synchronized MapType get(String id, File file)
+    {
+        Entry entry = this.entries.get(id);
+
+        if (entry != null && entry.isValid(file))
+        {
+            this.hits += 1;
+
+            return (MapType) entry.data.copy();
+        }
+
+        if (entry != null)
+        {
+            this.remove(id);
+        }
+
+        this.misses += 1;
+
+        return null;
+    }
+
+    /**
+     * Put given data into the cache. Given data is not copied, so
+     * the caller shouldn't modify it afterward.
+     */
+    public synchronized void put(String id, File file, MapType data)
+    {
+        this.remove(id);
+
+        if (data == null || file == null || !file.isFile())
+        {
+            return;
+        }
+
+        Entry entry = new Entry(data, file.lastModified(), file.length(), estimateSize(data));
+
+        if (entry.size > this.limit)
+        {
+            return;
+        }
+
+        this.entries.put(id, entry);
+        this.size += entry.size;
+
+        Iterator<Entry> it = this.entries.values().iterator();
+
+        while (this.size > this.limit && it.hasNext())
+        {
+            this.size -= it.next().size;
+
+            it.remove();
+        }
+    }
+
+    public synchronized void remove(String id)
+    {
+        Entry entry = this.entries.remove(id);
+
+        if (entry != null)
+        {
+            this.size -= entry.size;
+        }
+    }
+
+    /**
+     * Remove all entries within given folder (path must have a trailing slash).
+     */
+    public synchronized void removeFolder(String path)
+    {
+        Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+
+        while (it.hasNext())
+        {
+            Map.Entry<String, Entry> entry = it.next();
+
+            if (entry.getKey().startsWith(path))
+            {
+                this.size -= entry.getValue().size;
+
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear()
+    {
+        this.entries.clear();
+        this.size = 0;
+    }
+
+    /**
+     * Rough estimate of how many bytes of heap given data takes (object
+     * headers, references, boxed map entries and backing arrays, assuming
+     * compressed references). Decoded data is usually many times bigger
+     * than its compressed file.
+     */
+    public static long estimateSize(BaseType data)
+    {
+        if (data instanceof MapType map)
+        {
+            /* Object, map and its table, and a node per entry */
+            long size = 16 + 48 + map.elements.size() * (32L + 8L);
+
+            for (Map.Entry<String, BaseType> entry : map.elements.entrySet())
+            {
+                size += 40 + entry.getKey().length() + estimateSize(entry.getValue());
+            }
+
+            return size;
+        }
+        else if (data instanceof ListType list)
+        {
+            long size = 16 + 24 + 16 + list.elements.size() * 4L;
+
+            for (BaseType element : list.elements)
+            {
+                size += estimateSize(element);
+            }
+
+            return size;
+        }
+        else if (data instanceof StringType string)
+        {
+            return 16 + 40 + string.value.length();
+        }
+        else if (data instanceof ByteArrayType array)
+        {
+            return 16 + 16 + array.value.length;
+        }
+        else if (data instanceof IntArrayType array)
+        {
+            return 16 + 16 + array.value.length * 4L;
+        }
+        else if (data instanceof ShortArrayType array)
+        {
+            return 16 + 16 + array.value.length * 2L;
+        }
+
+        /* Numeric types */
+        return 24;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "ManagerCache{entries=" + this.entries.size() + ", size=" + this.size + "/" + this.limit + ", hits=" + this.hits + ", misses=" + this.misses + "}";
+    }
+
+    private static class Entry
+    {
+        public final MapType data;
+        public final long modified;
+        public final long length;
+        public final long size;
+
+        public Entry(MapType data, long modified, long length, long size)
+        {
+            this.data = data;
+            this.modified = modified;
+            this.length = length;
+            this.size = size;
+        }
+
+        public boolean isValid(File file)
+        {
+            return file != null && file.lastModified() == this.modified && file.length() == this.length;
+        }
+    }
+}
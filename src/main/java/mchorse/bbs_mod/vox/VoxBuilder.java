@@ -6,30 +6,32 @@ import org.joml.Matrix3f;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
 
+import java.util.Arrays;
+
 public class VoxBuilder
 {
     public Vector3f translation;
     public Matrix3f transform;
     public Vector3f vector = new Vector3f();
 
-    private Vector3f right;
-    private Vector3f left;
-    private Vector3f front;
-    private Vector3f back;
-    private Vector3f bottom;
-    private Vector3f top;
+    /**
+     * Whether coplanar faces of the same color should be merged (see
+     * {@link #buildGreedy(Vox)})
+     */
+    public boolean greedy;
+
+    /* Transformed normals by face */
+    private Vector3f[] normals = new Vector3f[Face.values().length];
 
     public VoxBuilder(Vector3f translation, Matrix3f transform)
     {
         this.translation = translation;
         this.transform = transform;
 
-        this.right = this.processNormal(new Vector3f(-1, 0, 0));
-        this.left = this.processNormal(new Vector3f(1, 0, 0));
-        this.front = this.processNormal(new Vector3f(0, 0, 1));
-        this.back = this.processNormal(new Vector3f(0, 0, -1));
-        this.bottom = this.processNormal(new Vector3f(0, -1, 0));
-        this.top = this.processNormal(new Vector3f(0, 1, 0));
+        for (Face face : Face.values())
+        {
+            this.normals[face.ordinal()] = this.processNormal(new Vector3f(face.x, face.y, face.z));
+        }
     }
 
     private Vector3f processNormal(Vector3f normal)
@@ -45,8 +47,15 @@ public class VoxBuilder
 
     public ModelMesh build(Vox vox)
     {
+        if (this.greedy)
+        {
+            return this.buildGreedy(vox);
+        }
+
         /* Worst case scenario */
         ModelMesh mesh = new ModelMesh();
+        int[] min = new int[3];
+        int[] max = new int[3];
 
         for (int x = 0; x < vox.w; x++)
         {
@@ -56,9 +65,24 @@ public class VoxBuilder
                 {
                     int voxel = vox.voxels[vox.toIndex(x, y, z)];
 
-                    if (voxel != 0)
+                    if (voxel == 0)
                     {
-                        this.buildVertex(mesh, x, y, z, voxel, vox);
+                        continue;
+                    }
+
+                    min[0] = x;
+                    min[1] = y;
+                    min[2] = z;
+                    max[0] = x + 1;
+                    max[1] = y + 1;
+                    max[2] = z + 1;
+
+                    for (Face face : Face.values())
+                    {
+                        if (!vox.has(x + face.x, y + face.y, z + face.z))
+                        {
+                            this.addFace(mesh, vox, face, voxel, min, max);
+                        }
                     }
                 }
             }
@@ -67,85 +91,128 @@ public class VoxBuilder
         return mesh;
     }
 
-    private void buildVertex(ModelMesh mesh, int x, int y, int z, int voxel, Vox vox)
+    /**
+     * Build a mesh, in which exposed faces that are next to each other,
+     * face the same direction and have the same color are merged into
+     * bigger quads (every face is textured with one palette pixel, so
+     * the mesh looks the same with far fewer vertices).
+     *
+     * Every slice of voxels along every face's axis is turned into a mask
+     * of exposed faces' colors, and the mask is covered with rectangles:
+     * a rectangle grows as far as it can along the first axis, and then
+     * along the second axis, as long as the whole row has the same color.
+     */
+    private ModelMesh buildGreedy(Vox vox)
     {
-        boolean top = vox.has(x, y + 1, z);
-        boolean bottom = vox.has(x, y - 1, z);
-        boolean left = vox.has(x + 1, y, z);
-        boolean right = vox.has(x - 1, y, z);
-        boolean front = vox.has(x, y, z + 1);
-        boolean back = vox.has(x, y, z - 1);
-
-        if (!top)
-        {
-            Vector3f normal = this.top;
-
-            this.add(mesh, vox, x, y + 1, z + 1, voxel, -0.5F, 0.5F, normal);
-            this.add(mesh, vox, x + 1, y + 1, z, voxel, 0.5F, -0.5F, normal);
-            this.add(mesh, vox, x, y + 1, z, voxel, -0.5F, -0.5F, normal);
-            this.add(mesh, vox, x + 1, y + 1, z + 1, voxel, 0.5F, 0.5F, normal);
-            this.add(mesh, vox, x + 1, y + 1, z, voxel, 0.5F, -0.5F, normal);
-            this.add(mesh, vox, x, y + 1, z + 1, voxel, -0.5F, 0.5F, normal);
-        }
+        ModelMesh mesh = new ModelMesh();
+        int[] size = {vox.w, vox.h, vox.d};
+        int[] pos = new int[3];
+        int[] min = new int[3];
+        int[] max = new int[3];
 
-        if (!bottom)
+        for (Face face : Face.values())
         {
-            Vector3f normal = this.bottom;
-
-            this.add(mesh, vox, x + 1, y, z, voxel, 0.5F, -0.5F, normal);
-            this.add(mesh, vox, x, y, z + 1, voxel, -0.5F, 0.5F, normal);
-            this.add(mesh, vox, x, y, z, voxel, -0.5F, -0.5F, normal);
-            this.add(mesh, vox, x + 1, y, z, voxel, 0.5F, -0.5F, normal);
-            this.add(mesh, vox, x + 1, y, z + 1, voxel, 0.5F, 0.5F, normal);
-            this.add(mesh, vox, x, y, z + 1, voxel, -0.5F, 0.5F, normal);
-        }
+            int a = face.axis;
+            int u = (a + 1) % 3;
+            int v = (a + 2) % 3;
+            int du = size[u];
+            int dv = size[v];
+            int[] mask = new int[du * dv];
 
-        if (!left)
-        {
-            Vector3f normal = this.left;
-
-            this.add(mesh, vox, x + 1, y + 1, z, voxel, 0.5F, -0.5F, normal);
-            this.add(mesh, vox, x + 1, y, z + 1, voxel, -0.5F, 0.5F, normal);
-            this.add(mesh, vox, x + 1, y, z, voxel, -0.5F, -0.5F, normal);
-            this.add(mesh, vox, x + 1, y + 1, z + 1, voxel, 0.5F, 0.5F, normal);
-            this.add(mesh, vox, x + 1, y, z + 1, voxel, -0.5F, 0.5F, normal);
-            this.add(mesh, vox, x + 1, y + 1, z, voxel, 0.5F, -0.5F, normal);
-        }
+            for (int i = 0; i < size[a]; i++)
+            {
+                pos[a] = i;
 
-        if (!right)
-        {
-            Vector3f normal = this.right;
-
-            this.add(mesh, vox, x, y, z + 1, voxel, -0.5F, 0.5F, normal);
-            this.add(mesh, vox, x, y + 1, z, voxel, 0.5F, -0.5F, normal);
-            this.add(mesh, vox, x, y, z, voxel, -0.5F, -0.5F, normal);
-            this.add(mesh, vox, x, y, z + 1, voxel, -0.5F, 0.5F, normal);
-            this.add(mesh, vox, x, y + 1, z + 1, voxel, 0.5F, 0.5F, normal);
-            this.add(mesh, vox, x, y + 1, z, voxel, 0.5F, -0.5F, normal);
-        }
+                for (int pv = 0; pv < dv; pv++)
+                {
+                    pos[v] = pv;
 
-        if (!front)
-        {
-            Vector3f normal = this.front;
-
-            this.add(mesh, vox, x + 1, y, z + 1, voxel, 0.5F, -0.5F, normal);
-            this.add(mesh, vox, x, y + 1, z + 1, voxel, -0.5F, 0.5F, normal);
-            this.add(mesh, vox, x, y, z + 1, voxel, -0.5F, -0.5F, normal);
-            this.add(mesh, vox, x + 1, y, z + 1, voxel, 0.5F, -0.5F, normal);
-            this.add(mesh, vox, x + 1, y + 1, z + 1, voxel, 0.5F, 0.5F, normal);
-            this.add(mesh, vox, x, y + 1, z + 1, voxel, -0.5F, 0.5F, normal);
+                    for (int pu = 0; pu < du; pu++)
+                    {
+                        pos[u] = pu;
+
+                        int voxel = vox.voxels[vox.toIndex(pos[0], pos[1], pos[2])];
+
+                        mask[pv * du + pu] = voxel != 0 && !vox.has(pos[0] + face.x, pos[1] + face.y, pos[2] + face.z) ? voxel : 0;
+                    }
+                }
+
+                for (int pv = 0; pv < dv; pv++)
+                {
+                    for (int pu = 0; pu < du;)
+                    {
+                        int voxel = mask[pv * du + pu];
+
+                        if (voxel == 0)
+                        {
+                            pu += 1;
+
+                            continue;
+                        }
+
+                        int width = 1;
+                        int height = 1;
+
+                        while (pu + width < du && mask[pv * du + pu + width] == voxel)
+                        {
+                            width += 1;
+                        }
+
+                        grow:
+                        while (pv + height < dv)
+                        {
+                            int row = (pv + height) * du + pu;
+
+                            for (int k = 0; k < width; k++)
+                            {
+                                if (mask[row + k] != voxel)
+                                {
+                                    break grow;
+                                }
+                            }
+
+                            height += 1;
+                        }
+
+                        for (int k = 0; k < height; k++)
+                        {
+                            int row = (pv + k) * du + pu;
+
+                            Arrays.fill(mask, row, row + width, 0);
+                        }
+
+                        min[a] = i;
+                        max[a] = i + 1;
+                        min[u] = pu;
+                        max[u] = pu + width;
+                        min[v] = pv;
+                        max[v] = pv + height;
+
+                        this.addFace(mesh, vox, face, voxel, min, max);
+
+                        pu += width;
+                    }
+                }
+            }
         }
 
-        if (!back)
+        return mesh;
+    }
+
+    /**
+     * Add two triangles of given face of a box (in voxel coordinates)
+     */
+    private void addFace(ModelMesh mesh, Vox vox, Face face, int voxel, int[] min, int[] max)
+    {
+        Vector3f normal = this.normals[face.ordinal()];
+
+        for (int[] corner : face.corners)
         {
-            Vector3f normal = this.back;
-
-            this.add(mesh, vox, x, y + 1, z, voxel, -0.5F, 0.5F, normal);
-            this.add(mesh, vox, x + 1, y, z, voxel, 0.5F, -0.5F, normal);
-            this.add(mesh, vox, x, y, z, voxel, -0.5F, -0.5F, normal);
-            this.add(mesh, vox, x + 1, y + 1, z, voxel, 0.5F, 0.5F, normal);
-            this.add(mesh, vox, x + 1, y, z, voxel, 0.5F, -0.5F, normal);
-            this.add(mesh, vox, x, y + 1, z, voxel, -0.5F, 0.5F, normal);
+            int x = corner[0] == 0 ? min[0] : max[0];
+            int y = corner[1] == 0 ? min[1] : max[1];
+            int z = corner[2] == 0 ? min[2] : max[2];
+
+            this.add(mesh, vox, x, y, z, voxel, corner[3] - 0.5F, corner[4] - 0.5F, normal);
         }
     }
 
@@ -174,4 +241,35 @@ public class VoxBuilder
 
         return this.vector;
     }
-}
\ No newline at end of file
+
+    /**
+     * Faces of a voxel. Every corner of face's two triangles is whether
+     * it's on the min (0) or max (1) side of the box along X, Y and Z, and
+     * whether it's on the left/top (0) or right/bottom (1) side of voxel's
+     * palette pixel.
+     */
+    private static enum Face
+    {
+        TOP(1, 0, 1, 0, new int[][] {{0, 1, 1, 0, 1}, {1, 1, 0, 1, 0}, {0, 1, 0, 0, 0}, {1, 1, 1, 1, 1}, {1, 1, 0, 1, 0}, {0, 1, 1, 0, 1}}),
+        BOTTOM(1, 0, -1, 0, new int[][] {{1, 0, 0, 1, 0}, {0, 0, 1, 0, 1}, {0, 0, 0, 0, 0}, {1, 0, 0, 1, 0}, {1, 0, 1, 1, 1}, {0, 0, 1, 0, 1}}),
+        LEFT(0, 1, 0, 0, new int[][] {{1, 1, 0, 1, 0}, {1, 0, 1, 0, 1}, {1, 0, 0, 0, 0}, {1, 1, 1, 1, 1}, {1, 0, 1, 0, 1}, {1, 1, 0, 1, 0}}),
+        RIGHT(0, -1, 0, 0, new int[][] {{0, 0, 1, 0, 1}, {0, 1, 0, 1, 0}, {0, 0, 0, 0, 0}, {0, 0, 1, 0, 1}, {0, 1, 1, 1, 1}, {0, 1, 0, 1, 0}}),
+        FRONT(2, 0, 0, 1, new int[][] {{1, 0, 1, 1, 0}, {0, 1, 1, 0, 1}, {0, 0, 1, 0, 0}, {1, 0, 1, 1, 0}, {1, 1, 1, 1, 1}, {0, 1, 1, 0, 1}}),
+        BACK(2, 0, 0, -1, new int[][] {{0, 1, 0, 0, 1}, {1, 0, 0, 1, 0}, {0, 0, 0, 0, 0}, {1, 1, 0, 1, 1}, {1, 0, 0, 1, 0}, {0, 1, 0, 0, 1}});
+
+        public final int axis;
+        public final int x;
+        public final int y;
+        public final int z;
+        public final int[][] corners;
+
+        private Face(int axis, int x, int y, int z, int[][] corners)
+        {
+            this.axis = axis;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.corners = corners;
+        }
+    }
+}
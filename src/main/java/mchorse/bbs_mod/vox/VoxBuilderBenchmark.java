@@ -0,0 +1,235 @@
+package mchorse.bbs_mod.vox;
+
+import com.ibm.icu.impl.Assert;
+import mchorse.bbs_mod.cubic.data.model.ModelMesh;
+import mchorse.bbs_mod.resources.Link;
+import mchorse.bbs_mod.utils.Benchmark;
+import mchorse.bbs_mod.vox.data.Vox;
+import org.joml.Matrix3f;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Vertex count and build time benchmark of {@link VoxBuilder}'s per-voxel
+ * and greedy meshing. Given .vox files (or all .vox files in given
+ * folders) are built both ways, or a few generated scenes if no arguments
+ * were given. Both meshes are also checked to cover the same area with
+ * every color in every direction, and the check fails if they don't, or
+ * if greedy meshing produced more vertices.
+ */
+public class VoxBuilderBenchmark
+{
+    private static final int WARMUP = 1;
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws Exception
+    {
+        List<File> files = new ArrayList<>();
+
+        for (String arg : args)
+        {
+            collect(new File(arg), files);
+        }
+
+        if (files.isEmpty())
+        {
+            Random random = new Random(42);
+
+            benchmark("sphere 64", List.of(sphere(64)));
+            benchmark("terrain 256x256", List.of(terrain(256, 64, random)));
+            benchmark("noise 64", List.of(noise(64, random)));
+
+            return;
+        }
+
+        for (File file : files)
+        {
+            try (InputStream stream = new FileInputStream(file))
+            {
+                VoxDocument document = new VoxReader().read(stream, Link.create(file.getName()));
+                List<Vox> chunks = new ArrayList<>();
+
+                for (VoxDocument.LimbNode node : document.generate())
+                {
+                    chunks.add(node.chunk);
+                }
+
+                benchmark(file.getName(), chunks);
+            }
+        }
+    }
+
+    private static void collect(File file, List<File> files)
+    {
+        if (file.isDirectory())
+        {
+            File[] children = file.listFiles();
+
+            if (children != null)
+            {
+                for (File child : children)
+                {
+                    collect(child, files);
+                }
+            }
+        }
+        else if (file.getName().endsWith(".vox"))
+        {
+            files.add(file);
+        }
+    }
+
+    private static void benchmark(String name, List<Vox> chunks)
+    {
+        VoxBuilder simple = new VoxBuilder(new Vector3f(), new Matrix3f());
+        VoxBuilder greedy = new VoxBuilder(new Vector3f(), new Matrix3f());
+
+        greedy.greedy = true;
+
+        int simpleVertices = 0;
+        int greedyVertices = 0;
+        boolean same = true;
+
+        for (Vox vox : chunks)
+        {
+            ModelMesh a = simple.build(vox);
+            ModelMesh b = greedy.build(vox);
+
+            simpleVertices += a.baseData.vertices.size();
+            greedyVertices += b.baseData.vertices.size();
+            same &= computeAreas(a).equals(computeAreas(b));
+        }
+
+        System.out.println(String.format("%s: %d -> %d vertices (%.1f%%), same coverage: %s",
+            name,
+            simpleVertices,
+            greedyVertices,
+            simpleVertices == 0 ? 0D : greedyVertices * 100D / simpleVertices,
+            same
+        ));
+
+        Assert.assrt(name + ": greedy mesh doesn't cover the same area", same);
+        Assert.assrt(name + ": greedy mesh has more vertices", greedyVertices <= simpleVertices);
+
+        Benchmark.measure(name + " per-voxel", WARMUP, ITERATIONS, () -> build(simple, chunks));
+        Benchmark.measure(name + " greedy", WARMUP, ITERATIONS, () -> build(greedy, chunks));
+    }
+
+    private static void build(VoxBuilder builder, List<Vox> chunks)
+    {
+        for (Vox vox : chunks)
+        {
+            builder.build(vox);
+        }
+    }
+
+    /**
+     * Sum up area of triangles by their normal and color (palette index)
+     */
+    private static Map<String, Long> computeAreas(ModelMesh mesh)
+    {
+        Map<String, Long> areas = new HashMap<>();
+        Vector3f a = new Vector3f();
+        Vector3f b = new Vector3f();
+
+        for (int i = 0; i < mesh.baseData.vertices.size(); i += 3)
+        {
+            Vector3f p1 = mesh.baseData.vertices.get(i);
+            Vector3f normal = mesh.baseData.normals.get(i);
+            Vector2f uv1 = mesh.baseData.uvs.get(i);
+            Vector2f uv2 = mesh.baseData.uvs.get(i + 1);
+            Vector2f uv3 = mesh.baseData.uvs.get(i + 2);
+            int color = (int) Math.min(uv1.x, Math.min(uv2.x, uv3.x));
+
+            a.set(mesh.baseData.vertices.get(i + 1)).sub(p1);
+            b.set(mesh.baseData.vertices.get(i + 2)).sub(p1);
+
+            /* Doubled area of a triangle with integer coordinates is an integer */
+            long area = Math.round(a.cross(b).length());
+            String key = Math.round(normal.x) + "," + Math.round(normal.y) + "," + Math.round(normal.z) + ":" + color;
+
+            areas.merge(key, area, Long::sum);
+        }
+
+        return areas;
+    }
+
+    private static Vox create(int w, int h, int d)
+    {
+        Vox vox = new Vox();
+
+        vox.w = w;
+        vox.h = h;
+        vox.d = d;
+        vox.voxels = new int[w * h * d];
+
+        return vox;
+    }
+
+    private static Vox sphere(int size)
+    {
+        Vox vox = create(size, size, size);
+        float r = size / 2F;
+
+        for (int x = 0; x < size; x++)
+        {
+            for (int y = 0; y < size; y++)
+            {
+                for (int z = 0; z < size; z++)
+                {
+                    float dx = x + 0.5F - r;
+                    float dy = y + 0.5F - r;
+                    float dz = z + 0.5F - r;
+
+                    if (dx * dx + dy * dy + dz * dz < r * r)
+                    {
+                        vox.set(x, y, z, z < r ? 1 : 2);
+                    }
+                }
+            }
+        }
+
+        return vox;
+    }
+
+    private static Vox terrain(int size, int height, Random random)
+    {
+        Vox vox = create(size, size, height);
+
+        for (int x = 0; x < size; x++)
+        {
+            for (int y = 0; y < size; y++)
+            {
+                int top = (int) (height / 2 + Math.sin(x / 16D) * height / 6 + Math.cos(y / 12D) * height / 6);
+
+                for (int z = 0; z < top; z++)
+                {
+                    vox.set(x, y, z, z == top - 1 ? 3 + random.nextInt(2) : 5);
+                }
+            }
+        }
+
+        return vox;
+    }
+
+    private static Vox noise(int size, Random random)
+    {
+        Vox vox = create(size, size, size);
+
+        for (int i = 0; i < vox.voxels.length; i++)
+        {
+            vox.voxels[i] = random.nextInt(3) == 0 ? 1 + random.nextInt(8) : 0;
+        }
+
+        return vox;
+    }
+}